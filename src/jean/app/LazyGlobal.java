@@ -0,0 +1,144 @@
+
+package jean.app;
+
+import java.util.function.Supplier;
+
+import jam.app.JamLogger;
+import jam.lang.JamException;
+
+/**
+ * Holds a global resource that is loaded on first use, exactly once,
+ * no matter how many threads request it concurrently.
+ *
+ * <p>Once the resource has been loaded, {@link LazyGlobal#get()} is a
+ * single volatile read with no locking.  Before then, the first
+ * caller runs the loader while holding the lock of this holder and
+ * any concurrent callers wait for (and then share) its result.  If
+ * the loader throws an exception, no resource is recorded and the
+ * next call tries again.
+ *
+ * <p>Typical usage:
+ *
+ * <pre>
+ *     private static final LazyGlobal&lt;HugoMaster&gt; global =
+ *         LazyGlobal.create("HugoMaster", HugoMaster::createGlobal);
+ *
+ *     public static HugoMaster global() {
+ *         return global.get();
+ *     }
+ * </pre>
+ *
+ * @param <T> the runtime type of the global resource.
+ */
+public final class LazyGlobal<T> implements Supplier<T> {
+    private final String name;
+    private final Supplier<? extends T> loader;
+
+    private volatile T resource = null;
+    private volatile long loadNanos = -1L;
+
+    private LazyGlobal(String name, Supplier<? extends T> loader) {
+        this.name = name;
+        this.loader = loader;
+    }
+
+    /**
+     * Creates a new holder for a lazily loaded global resource.
+     *
+     * @param <T> the runtime type of the global resource.
+     *
+     * @param name a descriptive name for the resource (used in log
+     * messages).
+     *
+     * @param loader the function that loads the resource; it is
+     * called at most once unless it throws an exception.
+     *
+     * @return a new holder that has not loaded its resource.
+     */
+    public static <T> LazyGlobal<T> create(String name, Supplier<? extends T> loader) {
+        return new LazyGlobal<T>(name, loader);
+    }
+
+    /**
+     * Returns the global resource, loading it if necessary.
+     *
+     * @return the global resource.
+     *
+     * @throws RuntimeException if the resource cannot be loaded.
+     */
+    @Override public T get() {
+        T result = resource;
+
+        if (result != null)
+            return result;
+        else
+            return load();
+    }
+
+    private synchronized T load() {
+        if (resource != null)
+            return resource;
+
+        long start = System.nanoTime();
+        T result = loader.get();
+
+        if (result == null)
+            throw JamException.runtime("Loader for global resource [%s] returned null.", name);
+
+        loadNanos = System.nanoTime() - start;
+        resource = result;
+
+        JamLogger.info("Loaded global resource [%s] in [%.3f] seconds.", name, getLoadTime());
+        return result;
+    }
+
+    /**
+     * Loads the global resource now (if it has not been loaded), so
+     * that later calls to {@link LazyGlobal#get()} return at once.
+     *
+     * @return this holder, for chaining.
+     *
+     * @throws RuntimeException if the resource cannot be loaded.
+     */
+    public LazyGlobal<T> warmUp() {
+        get();
+        return this;
+    }
+
+    /**
+     * Identifies holders whose resource has been loaded.
+     *
+     * @return {@code true} iff the global resource has been loaded.
+     */
+    public boolean isLoaded() {
+        return resource != null;
+    }
+
+    /**
+     * Returns the descriptive name of the global resource.
+     *
+     * @return the descriptive name of the global resource.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the time taken to load the global resource.
+     *
+     * @return the time taken to load the global resource in seconds,
+     * or {@code Double.NaN} if the resource has not been loaded.
+     */
+    public double getLoadTime() {
+        long nanos = loadNanos;
+
+        if (nanos < 0L)
+            return Double.NaN;
+        else
+            return 1.0E-09 * nanos;
+    }
+
+    @Override public String toString() {
+        return "LazyGlobal(" + name + (isLoaded() ? ", loaded)" : ")");
+    }
+}
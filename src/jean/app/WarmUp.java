@@ -0,0 +1,203 @@
+
+package jean.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import jam.app.JamLogger;
+import jam.app.JamProperties;
+
+/**
+ * Loads the reference resources required by an application
+ * concurrently on a bounded thread pool, so that startup takes as
+ * long as the slowest single load rather than the sum of all loads.
+ *
+ * <p>Applications declare each resource with a name and a loader,
+ * then call {@link WarmUp#run()} once:
+ *
+ * <pre>
+ *     WarmUp warmUp = WarmUp.create();
+ *
+ *     warmUp.add("HugoMaster", HugoMaster::global);
+ *     warmUp.add("EnsemblProteinDb", EnsemblProteinDb::reference);
+ *
+ *     LazyGlobal&lt;MissenseTable&gt; table =
+ *         warmUp.add("MissenseTable", () -&gt; MissenseTable.load(mafFile));
+ *
+ *     warmUp.run();
+ * </pre>
+ *
+ * <p>Each declared resource is held by a {@link LazyGlobal}, so a
+ * resource that depends on another (for example, an expression model
+ * that requires the tumor-patient table) simply waits for the single
+ * load of its dependency, and a resource requested before the warm-up
+ * is loaded on demand.  After the warm-up, the load time and the
+ * approximate heap growth of each resource are logged; heap growth is
+ * measured around each load, so concurrent loads overlap and the
+ * per-resource figures are only estimates.
+ */
+public final class WarmUp {
+    private final int threadCount;
+    private final List<LazyGlobal<?>> resources = new ArrayList<LazyGlobal<?>>();
+
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private WarmUp(int threadCount) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("Thread count must be positive.");
+
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Name of the system property that specifies the maximum number
+     * of resources loaded concurrently (one per available processor
+     * by default).
+     */
+    public static final String THREAD_COUNT_PROPERTY = "jean.app.warmUpThreadCount";
+
+    /**
+     * Creates a new warm-up with the thread count defined by system
+     * properties.
+     *
+     * @return a new warm-up with no declared resources.
+     */
+    public static WarmUp create() {
+        return create(resolveThreadCount());
+    }
+
+    /**
+     * Creates a new warm-up with a fixed thread count.
+     *
+     * @param threadCount the maximum number of resources to load
+     * concurrently.
+     *
+     * @return a new warm-up with no declared resources.
+     *
+     * @throws IllegalArgumentException unless the thread count is
+     * positive.
+     */
+    public static WarmUp create(int threadCount) {
+        return new WarmUp(threadCount);
+    }
+
+    private static int resolveThreadCount() {
+        return JamProperties.getOptionalInt(THREAD_COUNT_PROPERTY, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Declares a resource to be loaded by this warm-up.
+     *
+     * @param <T> the runtime type of the resource.
+     *
+     * @param name a descriptive name for the resource.
+     *
+     * @param loader the function that loads the resource.
+     *
+     * @return the holder for the resource, which returns the loaded
+     * resource at once after {@link WarmUp#run()} has completed.
+     */
+    public <T> LazyGlobal<T> add(String name, Supplier<? extends T> loader) {
+        LazyGlobal<T> resource = LazyGlobal.create(name, loader);
+        resources.add(resource);
+        return resource;
+    }
+
+    /**
+     * Loads all declared resources and logs the load time and heap
+     * growth for each.
+     *
+     * @throws RuntimeException if any resource cannot be loaded (after
+     * the attempts to load every other resource have finished).
+     */
+    public void run() {
+        if (resources.isEmpty())
+            return;
+
+        int poolSize = Math.min(threadCount, resources.size());
+        JamLogger.info("Loading [%d] resources on [%d] threads...", resources.size(), poolSize);
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        List<Future<Long>> futures = new ArrayList<Future<Long>>(resources.size());
+
+        for (LazyGlobal<?> resource : resources)
+            futures.add(pool.submit(() -> load(resource)));
+
+        pool.shutdown();
+
+        long[] heapGrowth = new long[resources.size()];
+        RuntimeException failure = null;
+
+        for (int index = 0; index < futures.size(); ++index) {
+            try {
+                heapGrowth[index] = futures.get(index).get();
+            }
+            catch (ExecutionException ex) {
+                JamLogger.warn("Failed to load resource [%s]: %s", resources.get(index).getName(), ex.getCause());
+
+                if (failure == null)
+                    failure = asRuntime(ex.getCause());
+            }
+            catch (InterruptedException ex) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            }
+        }
+
+        report(heapGrowth, 1.0E-09 * (System.nanoTime() - start));
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private static long load(LazyGlobal<?> resource) {
+        long before = usedMemory();
+        resource.get();
+        return Math.max(0L, usedMemory() - before);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static RuntimeException asRuntime(Throwable cause) {
+        if (cause instanceof RuntimeException)
+            return (RuntimeException) cause;
+        else
+            return new RuntimeException(cause);
+    }
+
+    private void report(long[] heapGrowth, double elapsed) {
+        double totalLoadTime = 0.0;
+
+        for (int index = 0; index < resources.size(); ++index) {
+            LazyGlobal<?> resource = resources.get(index);
+
+            if (!resource.isLoaded())
+                continue;
+
+            totalLoadTime += resource.getLoadTime();
+            JamLogger.info("Resource [%s]: [%.3f] seconds, [%.1f] MB.",
+                           resource.getName(), resource.getLoadTime(), heapGrowth[index] / BYTES_PER_MB);
+        }
+
+        JamLogger.info("Loaded resources in [%.3f] seconds (sequential total [%.3f] seconds).", elapsed, totalLoadTime);
+    }
+
+    /**
+     * Returns the number of declared resources.
+     *
+     * @return the number of declared resources.
+     */
+    public int size() {
+        return resources.size();
+    }
+}
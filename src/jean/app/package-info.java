@@ -0,0 +1,5 @@
+/**
+ * Provides application infrastructure shared by the {@code jean}
+ * packages: lazily loaded global resources and their warm-up.
+ */
+package jean.app;
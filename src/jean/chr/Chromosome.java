@@ -4,10 +4,19 @@ package jean.chr;
 import java.io.File;
 
 import jean.ensembl.EnsemblLocator;
+import jean.fasta.FastaIndex;
 import jean.nucleic.DNA;
 
 /**
  * Enumerates all human chromosomes.
+ *
+ * <p>The reference sequences are read from the Ensembl chromosome
+ * FASTA files, which may be uncompressed or compressed in the BGZF
+ * format.  Each file is indexed on first access (or its {@code .fai}
+ * index is loaded) and subsequences are then read on demand, without
+ * loading the entire chromosome into memory.  Chromosome sequences
+ * are opened lazily by the first thread that requires them and may
+ * be released explicitly when no longer needed.
  */
 public enum Chromosome {
     Chr1("1",248956,125000),
@@ -39,8 +48,9 @@ public enum Chromosome {
     private final Length length;
     private final Length centromere;
 
-    // Created on demand...
-    private DNA dna = null;
+    // Created on demand (guarded by this instance)...
+    private volatile FastaIndex index = null;
+    private volatile DNA dna = null;
 
     private Chromosome(String code, int length_kb, int centromere_kb) {
         this.code = code;
@@ -69,15 +79,101 @@ public enum Chromosome {
     }
 
     /**
-     * Returns the reference DNA sequence for this chromosome.
+     * Returns the complete reference DNA sequence for this chromosome,
+     * which is loaded into memory on the first call and retained until
+     * the chromosome is released.
+     *
+     * <p>Callers that need only part of the sequence should use
+     * {@link Chromosome#subsequence(int, int)} instead.
      *
      * @return the reference DNA sequence for this chromosome.
      */
     public DNA dna() {
-        if (dna == null)
-            dna = DNA.load(ensemblFile());
+        DNA result = dna;
+
+        if (result == null) {
+            synchronized (this) {
+                result = dna;
+
+                if (result == null) {
+                    result = DNA.load(ensemblFile());
+                    dna = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a subsequence of the reference DNA sequence for this
+     * chromosome directly from the indexed FASTA file.
+     *
+     * @param start the zero-based position of the first nucleotide
+     * to read (inclusive).
+     *
+     * @param end the zero-based position of the last nucleotide to
+     * read (exclusive).
+     *
+     * @return the reference DNA sequence in the range
+     * {@code [start, end)}.
+     *
+     * @throws RuntimeException unless the range lies within the
+     * reference sequence.
+     */
+    public DNA subsequence(int start, int end) {
+        return DNA.parse(index().fetch(code, start, end));
+    }
+
+    /**
+     * Returns the number of nucleotides in the reference DNA sequence
+     * for this chromosome.
+     *
+     * @return the number of nucleotides in the reference sequence.
+     */
+    public int sequenceLength() {
+        return index().require(code).getLength();
+    }
+
+    private FastaIndex index() {
+        FastaIndex result = index;
+
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+
+                if (result == null) {
+                    result = FastaIndex.open(ensemblFile());
+                    result.require(code);
+                    index = result;
+                }
+            }
+        }
+
+        return result;
+    }
 
-        return dna;
+    /**
+     * Releases the reference sequence and FASTA index for this
+     * chromosome; they will be reloaded if required again.  This
+     * method must not be called while other threads are reading
+     * subsequences from this chromosome.
+     */
+    public synchronized void release() {
+        if (index != null)
+            index.close();
+
+        index = null;
+        dna = null;
+    }
+
+    /**
+     * Releases the reference sequences and FASTA indexes for all
+     * chromosomes.
+     */
+    public static void releaseAll() {
+        for (Chromosome chromosome : values())
+            chromosome.release();
     }
 
     /**
@@ -0,0 +1,142 @@
+
+package jean.chr;
+
+/**
+ * Represents a contiguous segment of a chromosome: the half-open
+ * range of zero-based positions {@code [start, end)}.
+ */
+public final class GenomicInterval {
+    private final Chromosome chromosome;
+    private final int start;
+    private final int end;
+
+    private GenomicInterval(Chromosome chromosome, int start, int end) {
+        this.chromosome = chromosome;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the interval covering a range of positions on a
+     * chromosome.
+     *
+     * @param chromosome the chromosome containing the interval.
+     *
+     * @param start the zero-based position of the first base in the
+     * interval (inclusive).
+     *
+     * @param end the zero-based position of the last base in the
+     * interval (exclusive).
+     *
+     * @return the interval covering the specified positions.
+     *
+     * @throws IllegalArgumentException unless
+     * {@code 0 <= start <= end}.
+     */
+    public static GenomicInterval of(Chromosome chromosome, int start, int end) {
+        if (start < 0 || end < start)
+            throw new IllegalArgumentException(String.format("Invalid interval: [%d, %d).", start, end));
+
+        return new GenomicInterval(chromosome, start, end);
+    }
+
+    /**
+     * Returns the interval covering a single position on a
+     * chromosome.
+     *
+     * @param chromosome the chromosome containing the position.
+     *
+     * @param position the zero-based position.
+     *
+     * @return the interval covering the specified position.
+     *
+     * @throws IllegalArgumentException if the position is negative.
+     */
+    public static GenomicInterval point(Chromosome chromosome, int position) {
+        return of(chromosome, position, position + 1);
+    }
+
+    /**
+     * Determines whether this interval contains a position.
+     *
+     * @param position the zero-based position to test.
+     *
+     * @return {@code true} iff this interval contains the specified
+     * position.
+     */
+    public boolean contains(int position) {
+        return start <= position && position < end;
+    }
+
+    /**
+     * Determines whether this interval overlaps another.
+     *
+     * @param that the interval to test.
+     *
+     * @return {@code true} iff the intervals lie on the same
+     * chromosome and share at least one position.
+     */
+    public boolean overlaps(GenomicInterval that) {
+        return this.chromosome == that.chromosome
+            && this.start < that.end
+            && that.start < this.end;
+    }
+
+    /**
+     * Returns the chromosome containing this interval.
+     *
+     * @return the chromosome containing this interval.
+     */
+    public Chromosome chromosome() {
+        return chromosome;
+    }
+
+    /**
+     * Returns the zero-based position of the first base in this
+     * interval (inclusive).
+     *
+     * @return the zero-based position of the first base in this
+     * interval (inclusive).
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Returns the zero-based position of the last base in this
+     * interval (exclusive).
+     *
+     * @return the zero-based position of the last base in this
+     * interval (exclusive).
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Returns the length of this interval.
+     *
+     * @return the length of this interval.
+     */
+    public Length length() {
+        return Length.bases(end - start);
+    }
+
+    @Override public boolean equals(Object obj) {
+        return (obj instanceof GenomicInterval) && equalsInterval((GenomicInterval) obj);
+    }
+
+    private boolean equalsInterval(GenomicInterval that) {
+        return this.chromosome == that.chromosome
+            && this.start == that.start
+            && this.end == that.end;
+    }
+
+    @Override public int hashCode() {
+        return start + 37 * end + 37 * 37 * chromosome.hashCode();
+    }
+
+    @Override public String toString() {
+        return String.format("%s:%d-%d", chromosome.code(), start, end);
+    }
+}
@@ -0,0 +1,539 @@
+
+package jean.chr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+import jam.lang.JamException;
+
+/**
+ * Indexes features located on chromosomes (exons, mutation sites,
+ * copy-number segments, etc.) for fast overlap, nearest-neighbor, and
+ * coverage queries.
+ *
+ * <p>The features on each chromosome are stored in primitive arrays
+ * sorted by start position and organized as an implicit augmented
+ * interval tree: the sorted array is viewed as a complete binary
+ * search tree (node {@code i} at level {@code k} has children
+ * {@code i - 2^(k-1)} and {@code i + 2^(k-1)}), and each node records
+ * the maximum end position in its subtree.  Overlap queries take
+ * {@code O(log n + m)} time for {@code m} overlapping features, and
+ * the index requires about 16 bytes per feature in addition to the
+ * features themselves.
+ *
+ * <p>Intervals are half-open ranges of zero-based positions
+ * {@code [start, end)}.  Indexes are immutable after construction
+ * and may be shared by multiple threads.
+ */
+public final class IntervalIndex<V> {
+    private final Map<Chromosome, IntervalTree> trees;
+    private final int size;
+
+    private IntervalIndex(Map<Chromosome, IntervalTree> trees) {
+        this.trees = trees;
+        this.size = countFeatures(trees);
+    }
+
+    private static int countFeatures(Map<Chromosome, IntervalTree> trees) {
+        int count = 0;
+
+        for (IntervalTree tree : trees.values())
+            count += tree.size();
+
+        return count;
+    }
+
+    // Empty tree for chromosomes with no features...
+    private static final IntervalTree EMPTY = new IntervalTree(new int[0], new int[0], new Object[0]);
+
+    /**
+     * Creates a new interval index.
+     *
+     * @param <V> the runtime feature type.
+     *
+     * @param features the features to index.
+     *
+     * @param locator a function that returns the location of each
+     * feature.
+     *
+     * @return a new index containing the specified features.
+     */
+    public static <V> IntervalIndex<V> create(Collection<? extends V> features,
+                                              Function<? super V, GenomicInterval> locator) {
+        return create(features, locator, false);
+    }
+
+    /**
+     * Creates a new interval index from features that are already
+     * sorted by start position within each chromosome (e.g., from a
+     * sorted BED or MAF file), which avoids sorting the features.
+     *
+     * @param <V> the runtime feature type.
+     *
+     * @param features the features to index, sorted by start
+     * position within each chromosome (the chromosomes may appear in
+     * any order and may be interleaved).
+     *
+     * @param locator a function that returns the location of each
+     * feature.
+     *
+     * @return a new index containing the specified features.
+     *
+     * @throws RuntimeException unless the features are sorted.
+     */
+    public static <V> IntervalIndex<V> createSorted(Collection<? extends V> features,
+                                                    Function<? super V, GenomicInterval> locator) {
+        return create(features, locator, true);
+    }
+
+    private static <V> IntervalIndex<V> create(Collection<? extends V> features,
+                                               Function<? super V, GenomicInterval> locator,
+                                               boolean sorted) {
+        Map<Chromosome, Loader> loaders = new EnumMap<Chromosome, Loader>(Chromosome.class);
+
+        for (V feature : features) {
+            GenomicInterval interval = locator.apply(feature);
+            Loader loader = loaders.get(interval.chromosome());
+
+            if (loader == null) {
+                loader = new Loader(interval.chromosome(), sorted);
+                loaders.put(interval.chromosome(), loader);
+            }
+
+            loader.add(interval, feature);
+        }
+
+        Map<Chromosome, IntervalTree> trees = new EnumMap<Chromosome, IntervalTree>(Chromosome.class);
+
+        for (Map.Entry<Chromosome, Loader> entry : loaders.entrySet())
+            trees.put(entry.getKey(), entry.getValue().build());
+
+        return new IntervalIndex<V>(trees);
+    }
+
+    /**
+     * Finds all features that overlap an interval.
+     *
+     * @param interval the interval of interest.
+     *
+     * @return a list of the features that overlap the specified
+     * interval, in order of their start positions.
+     */
+    public List<V> overlap(GenomicInterval interval) {
+        return overlap(interval.chromosome(), interval.start(), interval.end());
+    }
+
+    /**
+     * Finds all features that overlap a range of positions.
+     *
+     * @param chromosome the chromosome of interest.
+     *
+     * @param start the first position in the range (inclusive).
+     *
+     * @param end the last position in the range (exclusive).
+     *
+     * @return a list of the features that overlap the specified
+     * range, in order of their start positions.
+     */
+    public List<V> overlap(Chromosome chromosome, int start, int end) {
+        IntervalTree tree = tree(chromosome);
+        List<V> features = new ArrayList<V>();
+
+        tree.overlap(start, end, index -> features.add(tree.feature(index)));
+        return features;
+    }
+
+    /**
+     * Counts the features that overlap a range of positions.
+     *
+     * @param chromosome the chromosome of interest.
+     *
+     * @param start the first position in the range (inclusive).
+     *
+     * @param end the last position in the range (exclusive).
+     *
+     * @return the number of features that overlap the specified
+     * range.
+     */
+    public int countOverlaps(Chromosome chromosome, int start, int end) {
+        int[] count = new int[1];
+        tree(chromosome).overlap(start, end, index -> ++count[0]);
+        return count[0];
+    }
+
+    /**
+     * Finds all features that contain a position.
+     *
+     * @param chromosome the chromosome of interest.
+     *
+     * @param position the zero-based position of interest.
+     *
+     * @return a list of the features that contain the specified
+     * position, in order of their start positions.
+     */
+    public List<V> stab(Chromosome chromosome, int position) {
+        return overlap(chromosome, position, position + 1);
+    }
+
+    /**
+     * Finds the feature nearest to a position: a feature containing
+     * the position if there is one; otherwise, the feature with the
+     * smallest gap between the position and its closest end (ties
+     * are resolved in favor of the upstream feature).
+     *
+     * @param chromosome the chromosome of interest.
+     *
+     * @param position the zero-based position of interest.
+     *
+     * @return the feature nearest to the specified position, or
+     * {@code null} if there are no features on the chromosome.
+     */
+    public V nearest(Chromosome chromosome, int position) {
+        IntervalTree tree = tree(chromosome);
+        int index = tree.nearest(position);
+
+        if (index >= 0)
+            return tree.feature(index);
+        else
+            return null;
+    }
+
+    /**
+     * Computes the number of bases covered by features in fixed-width
+     * bins along a chromosome; bases covered by multiple features are
+     * counted multiple times.
+     *
+     * @param chromosome the chromosome of interest.
+     *
+     * @param binWidth the width of each bin (e.g.,
+     * {@code Length.kilo(100)} or {@code Length.mega(1)}).
+     *
+     * @return an array whose element {@code k} contains the coverage
+     * of the positions {@code [k * w, (k + 1) * w)} for bin width
+     * {@code w}; the array spans the entire chromosome and any
+     * features that extend beyond its nominal length.
+     *
+     * @throws IllegalArgumentException unless the bin width is
+     * positive.
+     */
+    public long[] coverage(Chromosome chromosome, Length binWidth) {
+        int width = binWidth.bases();
+
+        if (width <= 0)
+            throw new IllegalArgumentException("Bin width must be positive.");
+
+        IntervalTree tree = tree(chromosome);
+        long extent = Math.max(chromosome.length().bases(), tree.maxEnd());
+
+        long[] bins = new long[(int) ((extent + width - 1) / width)];
+        tree.addCoverage(bins, width);
+
+        return bins;
+    }
+
+    /**
+     * Returns the total number of features in this index.
+     *
+     * @return the total number of features in this index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of features on a chromosome.
+     *
+     * @param chromosome the chromosome of interest.
+     *
+     * @return the number of features on the specified chromosome.
+     */
+    public int size(Chromosome chromosome) {
+        return tree(chromosome).size();
+    }
+
+    private IntervalTree tree(Chromosome chromosome) {
+        return trees.getOrDefault(chromosome, EMPTY);
+    }
+
+    // Collects the features for one chromosome...
+    private static final class Loader {
+        private final Chromosome chromosome;
+        private final boolean sorted;
+
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private Object[] features = new Object[16];
+        private int count = 0;
+
+        private Loader(Chromosome chromosome, boolean sorted) {
+            this.chromosome = chromosome;
+            this.sorted = sorted;
+        }
+
+        private void add(GenomicInterval interval, Object feature) {
+            if (sorted && count > 0 && interval.start() < starts[count - 1])
+                throw JamException.runtime("Features on chromosome [%s] are not sorted by start position.", chromosome.code());
+
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * count);
+                ends = Arrays.copyOf(ends, 2 * count);
+                features = Arrays.copyOf(features, 2 * count);
+            }
+
+            starts[count] = interval.start();
+            ends[count] = interval.end();
+            features[count] = feature;
+            ++count;
+        }
+
+        private IntervalTree build() {
+            if (sorted)
+                return new IntervalTree(Arrays.copyOf(starts, count),
+                                        Arrays.copyOf(ends, count),
+                                        Arrays.copyOf(features, count));
+
+            //
+            // Sort primitive keys that pack the start position with the
+            // original index, so no comparator or boxing is needed...
+            //
+            long[] keys = new long[count];
+
+            for (int k = 0; k < count; ++k)
+                keys[k] = ((long) starts[k] << 32) | k;
+
+            Arrays.sort(keys);
+
+            int[] sortedStarts = new int[count];
+            int[] sortedEnds = new int[count];
+            Object[] sortedFeatures = new Object[count];
+
+            for (int k = 0; k < count; ++k) {
+                int index = (int) keys[k];
+
+                sortedStarts[k] = starts[index];
+                sortedEnds[k] = ends[index];
+                sortedFeatures[k] = features[index];
+            }
+
+            return new IntervalTree(sortedStarts, sortedEnds, sortedFeatures);
+        }
+    }
+
+    // Implicit augmented interval tree over features sorted by start
+    // position (the layout used by cgranges)...
+    private static final class IntervalTree {
+        private final int[] starts;
+        private final int[] ends;
+        private final Object[] features;
+
+        // Maximum end position in the subtree rooted at each node...
+        private final int[] maxEnds;
+
+        // Index of the feature with the maximum end position among
+        // features [0, i] (for nearest-neighbor queries)...
+        private final int[] prefixMax;
+
+        // Level of the root node...
+        private final int rootLevel;
+
+        // Subtrees at or below this level are scanned linearly...
+        private static final int SCAN_LEVEL = 3;
+
+        private IntervalTree(int[] starts, int[] ends, Object[] features) {
+            this.starts = starts;
+            this.ends = ends;
+            this.features = features;
+            this.maxEnds = new int[starts.length];
+            this.prefixMax = new int[starts.length];
+            this.rootLevel = buildTree();
+
+            buildPrefixMax();
+        }
+
+        private int buildTree() {
+            int n = starts.length;
+
+            if (n == 0)
+                return -1;
+
+            int lastIndex = 0;
+            int lastMax = 0;
+
+            for (int i = 0; i < n; i += 2) {
+                lastIndex = i;
+                lastMax = maxEnds[i] = ends[i];
+            }
+
+            int k = 1;
+
+            for (; (1L << k) <= n; ++k) {
+                int x = 1 << (k - 1);
+                int step = x << 2;
+
+                for (int i = (x << 1) - 1; i < n; i += step) {
+                    int leftMax = maxEnds[i - x];
+                    int rightMax = (i + x < n) ? maxEnds[i + x] : lastMax;
+
+                    maxEnds[i] = Math.max(ends[i], Math.max(leftMax, rightMax));
+                }
+
+                lastIndex = ((lastIndex >> k) & 1) != 0 ? lastIndex - x : lastIndex + x;
+
+                if (lastIndex < n && maxEnds[lastIndex] > lastMax)
+                    lastMax = maxEnds[lastIndex];
+            }
+
+            return k - 1;
+        }
+
+        private void buildPrefixMax() {
+            for (int i = 0; i < starts.length; ++i)
+                if (i == 0 || ends[i] > ends[prefixMax[i - 1]])
+                    prefixMax[i] = i;
+                else
+                    prefixMax[i] = prefixMax[i - 1];
+        }
+
+        @SuppressWarnings("unchecked")
+        private <V> V feature(int index) {
+            return (V) features[index];
+        }
+
+        private int size() {
+            return starts.length;
+        }
+
+        private int maxEnd() {
+            return (starts.length > 0) ? ends[prefixMax[starts.length - 1]] : 0;
+        }
+
+        private void overlap(int start, int end, IntConsumer consumer) {
+            int n = starts.length;
+
+            if (n == 0 || start >= end)
+                return;
+
+            //
+            // Depth-first traversal with an explicit stack; each entry
+            // holds the node index, level, and whether its left child
+            // has been visited.  Features are reported in sorted order...
+            //
+            int[] nodes = new int[64];
+            int[] levels = new int[64];
+            boolean[] visited = new boolean[64];
+            int top = 0;
+
+            nodes[top] = (1 << rootLevel) - 1;
+            levels[top] = rootLevel;
+            visited[top++] = false;
+
+            while (top > 0) {
+                --top;
+
+                int x = nodes[top];
+                int k = levels[top];
+
+                if (k <= SCAN_LEVEL) {
+                    int i0 = (x >> k) << k;
+                    int i1 = Math.min(n, i0 + (1 << (k + 1)) - 1);
+
+                    for (int i = i0; i < i1 && starts[i] < end; ++i)
+                        if (start < ends[i])
+                            consumer.accept(i);
+                }
+                else if (!visited[top]) {
+                    int y = x - (1 << (k - 1));
+
+                    visited[top++] = true;
+
+                    if (y >= n || maxEnds[y] > start) {
+                        nodes[top] = y;
+                        levels[top] = k - 1;
+                        visited[top++] = false;
+                    }
+                }
+                else if (x < n && starts[x] < end) {
+                    if (start < ends[x])
+                        consumer.accept(x);
+
+                    nodes[top] = x + (1 << (k - 1));
+                    levels[top] = k - 1;
+                    visited[top++] = false;
+                }
+            }
+        }
+
+        private int nearest(int position) {
+            int n = starts.length;
+
+            if (n == 0)
+                return -1;
+
+            int[] found = new int[] { -1 };
+
+            overlap(position, position + 1, index -> {
+                    if (found[0] < 0)
+                        found[0] = index;
+                });
+
+            if (found[0] >= 0)
+                return found[0];
+
+            //
+            // No feature contains the position, so every feature that
+            // starts before the position also ends at or before it...
+            //
+            int right = firstStartAfter(position);
+            int left = (right > 0) ? prefixMax[right - 1] : -1;
+
+            if (left < 0)
+                return right;
+
+            if (right >= n)
+                return left;
+
+            long leftGap = (long) position - ends[left] + 1;
+            long rightGap = (long) starts[right] - position;
+
+            return (leftGap <= rightGap) ? left : right;
+        }
+
+        // Returns the index of the first feature that starts after a
+        // position (or the feature count if none does)...
+        private int firstStartAfter(int position) {
+            int lo = 0;
+            int hi = starts.length;
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+
+                if (starts[mid] <= position)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+
+            return lo;
+        }
+
+        private void addCoverage(long[] bins, int width) {
+            for (int i = 0; i < starts.length; ++i) {
+                int start = starts[i];
+                int end = ends[i];
+
+                for (int bin = start / width; start < end; ++bin) {
+                    int binEnd = (int) Math.min((long) (bin + 1) * width, end);
+
+                    bins[bin] += binEnd - start;
+                    start = binEnd;
+                }
+            }
+        }
+    }
+}
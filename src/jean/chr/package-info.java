@@ -1,4 +1,5 @@
 /**
- * Quantifies the properties of human chromosomes.
+ * Quantifies the properties of human chromosomes and indexes
+ * features located on them.
  */
 package jean.chr;
@@ -80,15 +80,19 @@ public final class EnsemblLocator {
             throw JamException.runtime("Could not find nucleotide sequence for chromosome [%s].", code);
     }
 
+    //
+    // Accepts plain and compressed FASTA files, but not the .fai and
+    // .gzi index files stored beside them...
+    //
     private static FileFilter chromosomeFileFilter(String code) {
         return new FileFilter() {
             @Override public boolean accept(File file) {
                 String baseName = file.getName();
                 String speciesFragment = "Homo_sapiens.GRCh";
-                String chromosomeFragment = ".dna.chromosome." + code + ".fa";
+                String chromosomeSuffix = ".dna.chromosome." + code + ".fa";
 
                 return baseName.startsWith(speciesFragment)
-                    && baseName.contains(chromosomeFragment);
+                    && (baseName.endsWith(chromosomeSuffix) || baseName.endsWith(chromosomeSuffix + ".gz"));
             }
         };
     }
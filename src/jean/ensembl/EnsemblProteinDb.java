@@ -1,6 +1,7 @@
 
 package jean.ensembl;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -12,11 +13,16 @@ import java.util.Set;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
+import jam.app.JamProperties;
 import jam.lang.JamException;
 import jam.util.MapUtil;
 
+import jean.app.LazyGlobal;
 import jean.hugo.HugoSymbol;
-import jean.fasta.FastaPeptideReader;
+import jean.fasta.FastaBlockReader;
+import jean.fasta.FastaIndex;
+import jean.fasta.FastaIndexEntry;
+import jean.fasta.FastaPeptideCache;
 import jean.fasta.FastaPeptideRecord;
 
 /**
@@ -34,7 +40,8 @@ public final class EnsemblProteinDb {
     // The GRCh38 reference Ensembl database defines a mapping from gene to HUGO symbol...
     private final Map<EnsemblGeneID, HugoSymbol> geneHugoMap;
 
-    private static EnsemblProteinDb reference = null;
+    private static final LazyGlobal<EnsemblProteinDb> reference =
+        LazyGlobal.create("EnsemblProteinDb", EnsemblProteinDb::loadReference);
 
     private EnsemblProteinDb() {
         this.proteinRecordMap = new HashMap<EnsemblProteinID, EnsemblProteinRecord>();
@@ -46,6 +53,26 @@ public final class EnsemblProteinDb {
         this.geneHugoMap = new HashMap<EnsemblGeneID, HugoSymbol>();
     }
 
+    /**
+     * System property that specifies whether the reference proteome
+     * should be loaded lazily: if {@code true}, only the record
+     * headers are loaded at startup and the protein structures are
+     * decoded on demand.
+     */
+    public static final String LAZY_PROPERTY = "jean.ensembl.lazyProteome";
+
+    /**
+     * System property that specifies the maximum number of protein
+     * structures to retain in memory (for each proteome file) when
+     * the proteome is loaded lazily.
+     */
+    public static final String PEPTIDE_CACHE_SIZE_PROPERTY = "jean.ensembl.peptideCacheSize";
+
+    /**
+     * Default value for the peptide cache size.
+     */
+    public static final int PEPTIDE_CACHE_SIZE_DEFAULT = 10000;
+
     /**
      * Creates a database of Ensembl records from FASTA files.
      *
@@ -75,31 +102,75 @@ public final class EnsemblProteinDb {
         return database;
     }
 
+    /**
+     * Creates a database of Ensembl records from FASTA files, loading
+     * only the record headers: the protein structures are decoded
+     * from the FASTA files on demand and retained in a cache of
+     * bounded size (specified by the system property
+     * {@code jean.ensembl.peptideCacheSize}).
+     *
+     * <p>The FASTA files must be uncompressed or compressed in the
+     * BGZF format, and they remain open for the lifetime of the
+     * database.
+     *
+     * @param primaryFile the primary FASTA file:  all protein and
+     * transcript identifiers in this file must be unique.
+     *
+     * @param secondaryFiles optional secondary FASTA files:  they may
+     * contain duplicate protein or transcript identifiers, which will
+     * be ignored.
+     *
+     * @return the database of Ensembl records.
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public static EnsemblProteinDb index(String primaryFile, String... secondaryFiles) {
+        EnsemblProteinDb database = new EnsemblProteinDb();
+        database.indexPrimary(primaryFile);
+
+        for (String secondaryFile : secondaryFiles)
+            database.indexSecondary(secondaryFile);
+
+        return database;
+    }
+
     private void loadPrimary(String fastaFile) {
-        try (FastaPeptideReader reader = FastaPeptideReader.open(fastaFile)) {
-            loadPrimary(reader);
-        }
+        //
+        // The records must be processed in file order so that any
+        // duplicate identifiers are resolved deterministically...
+        //
+        FastaBlockReader.read(new File(fastaFile),
+                              FastaPeptideRecord::decode,
+                              record -> addPrimary(EnsemblProteinRecord.parse(record)),
+                              true);
     }
 
     private void loadSecondary(String fastaFile) {
-        try (FastaPeptideReader reader = FastaPeptideReader.open(fastaFile)) {
-            loadSecondary(reader);
-        }
+        FastaBlockReader.read(new File(fastaFile),
+                              FastaPeptideRecord::decode,
+                              record -> addSecondary(EnsemblProteinRecord.parse(record)),
+                              true);
     }
 
-    private void loadPrimary(Iterable<FastaPeptideRecord> records) {
-        for (FastaPeptideRecord record : records)
-            addPrimary(record);
+    private void indexPrimary(String fastaFile) {
+        FastaPeptideCache cache = createPeptideCache(fastaFile);
+
+        for (FastaIndexEntry entry : cache.getIndex().viewEntries())
+            addPrimary(EnsemblProteinRecord.parse(entry, cache));
     }
 
-    private void loadSecondary(Iterable<FastaPeptideRecord> records) {
-        for (FastaPeptideRecord record : records)
-            addSecondary(record);
+    private void indexSecondary(String fastaFile) {
+        FastaPeptideCache cache = createPeptideCache(fastaFile);
+
+        for (FastaIndexEntry entry : cache.getIndex().viewEntries())
+            addSecondary(EnsemblProteinRecord.parse(entry, cache));
     }
 
-    private void addPrimary(FastaPeptideRecord fastaRecord) {
-        EnsemblProteinRecord ensemblRecord = EnsemblProteinRecord.parse(fastaRecord);
+    private static FastaPeptideCache createPeptideCache(String fastaFile) {
+        return FastaPeptideCache.create(FastaIndex.build(fastaFile), resolvePeptideCacheSize());
+    }
 
+    private void addPrimary(EnsemblProteinRecord ensemblRecord) {
         mapProtein(ensemblRecord);
         mapTranscript(ensemblRecord);
         mapGene(ensemblRecord);
@@ -137,11 +208,9 @@ public final class EnsemblProteinDb {
         }
     }
 
-    private void addSecondary(FastaPeptideRecord fastaRecord) {
-        EnsemblProteinRecord ensemblRecord = EnsemblProteinRecord.parse(fastaRecord);
-
+    private void addSecondary(EnsemblProteinRecord ensemblRecord) {
         if (isUniqueProtein(ensemblRecord) && isUniqueTranscript(ensemblRecord))
-            addPrimary(fastaRecord);
+            addPrimary(ensemblRecord);
     }
 
     private boolean isUniqueProtein(EnsemblProteinRecord ensemblRecord) {
@@ -155,23 +224,54 @@ public final class EnsemblProteinDb {
     /**
      * Returns the reference human proteome.
      *
+     * <p>The proteome is loaded lazily if the system property
+     * {@code jean.ensembl.lazyProteome} is {@code true}.
+     *
      * @return the reference human proteome.
      */
-    public static synchronized EnsemblProteinDb reference() {
-        if (reference == null)
-            reference = loadReference();
-
-        return reference;
+    public static EnsemblProteinDb reference() {
+        return reference.get();
     }
 
     private static EnsemblProteinDb loadReference() {
         String primaryFile = EnsemblLocator.resolvePrimaryProteomeFileName();
         String secondaryFile = EnsemblLocator.resolveSecondaryProteomeFileName();
 
-        if (secondaryFile != null)
-            return load(primaryFile, secondaryFile);
-        else
-            return load(primaryFile);
+        if (resolveLazy()) {
+            if (secondaryFile != null)
+                return index(primaryFile, secondaryFile);
+            else
+                return index(primaryFile);
+        }
+        else {
+            if (secondaryFile != null)
+                return load(primaryFile, secondaryFile);
+            else
+                return load(primaryFile);
+        }
+    }
+
+    /**
+     * Determines whether the reference proteome should be loaded
+     * lazily (as specified through system properties).
+     *
+     * @return {@code true} iff the reference proteome should be
+     * loaded lazily.
+     */
+    public static boolean resolveLazy() {
+        return JamProperties.getOptionalBoolean(LAZY_PROPERTY, false);
+    }
+
+    /**
+     * Returns the maximum number of protein structures to retain in
+     * memory for each lazily loaded proteome file (as specified
+     * through system properties).
+     *
+     * @return the maximum number of protein structures to retain in
+     * memory for each lazily loaded proteome file.
+     */
+    public static int resolvePeptideCacheSize() {
+        return JamProperties.getOptionalInt(PEPTIDE_CACHE_SIZE_PROPERTY, PEPTIDE_CACHE_SIZE_DEFAULT);
     }
 
     /**
@@ -1,6 +1,8 @@
 
 package jean.ensembl;
 
+import jean.fasta.FastaIndexEntry;
+import jean.fasta.FastaPeptideCache;
 import jean.fasta.FastaPeptideRecord;
 import jean.hugo.HugoSymbol;
 import jean.peptide.Peptide;
@@ -10,25 +12,32 @@ import jean.peptide.Peptide;
  * describe a protein structure in the Ensembl database.
  */
 public final class EnsemblProteinRecord {
-    private final Peptide peptide;
+    private final String fastaKey;
     private final HugoSymbol hugoSymbol;
     private final EnsemblGeneID geneID;
     private final EnsemblProteinID proteinID;
     private final EnsemblTranscriptID transcriptID;
     private final TranscriptBiotype transcriptBiotype;
 
-    private EnsemblProteinRecord(Peptide peptide,
-                                 HugoSymbol hugoSymbol,
-                                 EnsemblGeneID geneID,
-                                 EnsemblProteinID proteinID,
-                                 EnsemblTranscriptID transcriptID,
-                                 TranscriptBiotype transcriptBiotype) {
+    // Exactly one of these will be non-null: the peptide itself (for
+    // records loaded eagerly) or the cache that decodes the peptide
+    // on demand (for records loaded lazily)...
+    private final Peptide peptide;
+    private final FastaPeptideCache peptideCache;
+
+    private EnsemblProteinRecord(String fastaKey,
+                                 String headerLine,
+                                 Peptide peptide,
+                                 FastaPeptideCache peptideCache) {
+        this.fastaKey = fastaKey;
         this.peptide = peptide;
-        this.hugoSymbol = hugoSymbol;
-        this.geneID = geneID;
-        this.proteinID = proteinID;
-        this.transcriptID = transcriptID;
-        this.transcriptBiotype = transcriptBiotype;
+        this.peptideCache = peptideCache;
+
+        this.hugoSymbol = EnsemblGeneSymbol.parseHeader(headerLine);
+        this.geneID = EnsemblGeneID.parseHeader(headerLine);
+        this.proteinID = EnsemblProteinID.parseKey(fastaKey);
+        this.transcriptID = EnsemblTranscriptID.parseHeader(headerLine);
+        this.transcriptBiotype = TranscriptBiotype.parseHeader(headerLine);
     }
 
     /**
@@ -41,17 +50,24 @@ public final class EnsemblProteinRecord {
      * @return the protein record encoded in the given FASTA record.
      */
     public static EnsemblProteinRecord parse(FastaPeptideRecord fastaRecord) {
-        String fastaKey = fastaRecord.getKey();
-        String headerLine = fastaRecord.getComment();
-
-        HugoSymbol hugoSymbol = EnsemblGeneSymbol.parseHeader(headerLine);
-        EnsemblGeneID geneID = EnsemblGeneID.parseHeader(headerLine);
-        EnsemblProteinID proteinID = EnsemblProteinID.parseKey(fastaKey);
-        EnsemblTranscriptID transcriptID = EnsemblTranscriptID.parseHeader(headerLine);
-        TranscriptBiotype transcriptBiotype = TranscriptBiotype.parseHeader(headerLine);
+        return new EnsemblProteinRecord(fastaRecord.getKey(), fastaRecord.getComment(), fastaRecord.getPeptide(), null);
+    }
 
-        return new EnsemblProteinRecord(fastaRecord.getPeptide(), hugoSymbol, geneID,
-                                        proteinID, transcriptID, transcriptBiotype);
+    /**
+     * Creates a new protein record by parsing the header of an
+     * indexed FASTA record found in an Ensembl database file; the
+     * protein structure will be decoded on demand.
+     *
+     * @param indexEntry the index entry that encodes the protein
+     * metadata.
+     *
+     * @param peptideCache the cache that decodes the protein
+     * structure from the indexed FASTA file.
+     *
+     * @return the protein record encoded in the given index entry.
+     */
+    public static EnsemblProteinRecord parse(FastaIndexEntry indexEntry, FastaPeptideCache peptideCache) {
+        return new EnsemblProteinRecord(indexEntry.getKey(), indexEntry.getComment(), null, peptideCache);
     }
 
     /**
@@ -93,10 +109,17 @@ public final class EnsemblProteinRecord {
     /**
      * Returns the protein structure in this record.
      *
+     * <p>For records loaded lazily, the structure is decoded from the
+     * FASTA file on first access and retained in a cache of bounded
+     * size.
+     *
      * @return the protein structure in this record.
      */
     public Peptide getPeptide() {
-        return peptide;
+        if (peptide != null)
+            return peptide;
+        else
+            return peptideCache.get(fastaKey);
     }
 
     /**
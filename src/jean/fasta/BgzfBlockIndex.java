@@ -0,0 +1,207 @@
+
+package jean.fasta;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import jam.lang.JamException;
+
+/**
+ * Maps offsets in the uncompressed data stream of a BGZF file to the
+ * compressed blocks that contain them.
+ *
+ * <p>The index may be stored in the {@code .gzi} format used by
+ * {@code bgzip} and {@code samtools}: a little-endian 64-bit block
+ * count followed by pairs of 64-bit (compressed, uncompressed)
+ * offsets for every block except the first.
+ */
+public final class BgzfBlockIndex {
+    // Offsets of the first byte in each block, in the compressed file
+    // and in the uncompressed data stream; both sorted...
+    private final long[] compressedOffsets;
+    private final long[] uncompressedOffsets;
+
+    BgzfBlockIndex(long[] compressedOffsets, long[] uncompressedOffsets) {
+        this.compressedOffsets = compressedOffsets;
+        this.uncompressedOffsets = uncompressedOffsets;
+    }
+
+    /**
+     * Returns the name of the file that stores the block index for a
+     * BGZF file.
+     *
+     * @param bgzfFile the BGZF file.
+     *
+     * @return the name of the block index file.
+     */
+    public static File indexFile(File bgzfFile) {
+        return new File(bgzfFile.getPath() + ".gzi");
+    }
+
+    /**
+     * Reads a block index from a {@code .gzi} file.
+     *
+     * @param indexFile the block index file.
+     *
+     * @return the block index stored in the file.
+     *
+     * @throws RuntimeException unless the file contains a valid block
+     * index, or if any I/O errors occur.
+     */
+    public static BgzfBlockIndex load(File indexFile) {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (buffer.hasRemaining())
+                if (channel.read(buffer) < 0)
+                    break;
+
+            buffer.flip();
+
+            if (buffer.remaining() < Long.BYTES)
+                throw JamException.runtime("Corrupt block index file: [%s].", indexFile);
+
+            long count = buffer.getLong();
+
+            if (count < 0 || count > buffer.remaining() / (2 * Long.BYTES))
+                throw JamException.runtime("Corrupt block index file: [%s].", indexFile);
+
+            long[] compressed = new long[(int) count + 1];
+            long[] uncompressed = new long[(int) count + 1];
+
+            // The first block is implicit and starts at offset zero in
+            // both streams; the others must follow it in order...
+            for (int k = 1; k <= count; ++k) {
+                compressed[k] = buffer.getLong();
+                uncompressed[k] = buffer.getLong();
+
+                if (compressed[k] <= compressed[k - 1] || uncompressed[k] <= uncompressed[k - 1])
+                    throw JamException.runtime("Corrupt block index file: [%s].", indexFile);
+            }
+
+            return new BgzfBlockIndex(compressed, uncompressed);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes this block index to a {@code .gzi} file.
+     *
+     * @param indexFile the block index file.
+     *
+     * @throws RuntimeException unless the first block starts at
+     * offset zero in both the compressed file and the uncompressed
+     * data stream (where the {@code .gzi} format places it
+     * implicitly), or if any I/O errors occur.
+     */
+    public void store(File indexFile) {
+        if (countBlocks() > 0 && (compressedOffsets[0] != 0L || uncompressedOffsets[0] != 0L))
+            throw JamException.runtime("The first block must start at offset zero: [%d, %d].",
+                                       compressedOffsets[0], uncompressedOffsets[0]);
+
+        // The first block is implicit, so an empty index also has no
+        // explicit entries...
+        int count = Math.max(0, countBlocks() - 1);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 16 * count).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putLong(count);
+
+        for (int k = 1; k <= count; ++k) {
+            buffer.putLong(compressedOffsets[k]);
+            buffer.putLong(uncompressedOffsets[k]);
+        }
+
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the number of blocks in this index.
+     *
+     * @return the number of blocks in this index.
+     */
+    public int countBlocks() {
+        return compressedOffsets.length;
+    }
+
+    /**
+     * Returns the offset of a block in the compressed file.
+     *
+     * @param block the zero-based block number.
+     *
+     * @return the offset of the specified block in the compressed
+     * file.
+     */
+    public long getCompressedOffset(int block) {
+        return compressedOffsets[block];
+    }
+
+    /**
+     * Returns the offset of the first byte of a block in the
+     * uncompressed data stream.
+     *
+     * @param block the zero-based block number.
+     *
+     * @return the offset of the first byte of the specified block in
+     * the uncompressed data stream.
+     */
+    public long getUncompressedOffset(int block) {
+        return uncompressedOffsets[block];
+    }
+
+    /**
+     * Finds the block that contains a given byte in the uncompressed
+     * data stream.
+     *
+     * @param offset the offset of the byte in the uncompressed data
+     * stream.
+     *
+     * @return the zero-based number of the block that contains the
+     * specified byte.
+     */
+    public int locateBlock(long offset) {
+        if (offset < 0)
+            throw JamException.runtime("Invalid offset: [%d].", offset);
+
+        int index = Arrays.binarySearch(uncompressedOffsets, offset);
+
+        if (index >= 0)
+            return index;
+        else
+            return -index - 2;
+    }
+
+    /**
+     * Computes the BGZF virtual offset for a given byte in the
+     * uncompressed data stream: the compressed offset of the block
+     * containing the byte, shifted left by 16 bits, combined with the
+     * offset of the byte within the uncompressed block.
+     *
+     * @param offset the offset of the byte in the uncompressed data
+     * stream.
+     *
+     * @return the virtual offset of the specified byte.
+     */
+    public long virtualOffset(long offset) {
+        int block = locateBlock(offset);
+        return (compressedOffsets[block] << 16) | (offset - uncompressedOffsets[block]);
+    }
+}
@@ -0,0 +1,302 @@
+
+package jean.fasta;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import jam.lang.JamException;
+
+/**
+ * Provides random access to the uncompressed data stream of a file
+ * written in the blocked GNU zip format (BGZF).
+ *
+ * <p>A BGZF file is a series of concatenated gzip members (blocks),
+ * each holding at most 64 KB of uncompressed data and recording its
+ * own compressed size in a {@code BC} extra field.  Any byte in the
+ * uncompressed stream can therefore be read by decompressing a single
+ * block.  BGZF files remain valid gzip files and may also be read
+ * sequentially by any gzip decoder.
+ *
+ * <p>Blocks are read with positional channel operations and the most
+ * recently used blocks are cached, so a single instance may be shared
+ * by multiple threads.
+ */
+public final class BgzfFile implements AutoCloseable {
+    private final File file;
+    private final FileChannel channel;
+    private final BgzfBlockIndex blockIndex;
+    private final LoadingCache<Integer, byte[]> blockCache;
+
+    /**
+     * Size of the header for each BGZF block.
+     */
+    public static final int HEADER_SIZE = 18;
+
+    /**
+     * Size of the footer (CRC and uncompressed size) for each BGZF
+     * block.
+     */
+    public static final int FOOTER_SIZE = 8;
+
+    /**
+     * Maximum size of a BGZF block (compressed or uncompressed).
+     */
+    public static final int MAX_BLOCK_SIZE = 65536;
+
+    /**
+     * Number of decompressed blocks retained in memory.
+     */
+    public static final int BLOCK_CACHE_SIZE = 32;
+
+    private BgzfFile(File file, FileChannel channel, BgzfBlockIndex blockIndex) {
+        this.file = file;
+        this.channel = channel;
+        this.blockIndex = blockIndex;
+        this.blockCache =
+            CacheBuilder.newBuilder().maximumSize(BLOCK_CACHE_SIZE).build(CacheLoader.from(this::inflateBlock));
+    }
+
+    /**
+     * Identifies files written in the BGZF format.
+     *
+     * @param file the file to examine.
+     *
+     * @return {@code true} iff the specified file begins with a valid
+     * BGZF block header.
+     */
+    public static boolean isBgzf(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return false;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return isBlockHeader(readBuffer(channel, 0L, HEADER_SIZE));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Opens a BGZF file for random access.
+     *
+     * <p>If a {@code .gzi} block index file exists and is at least as
+     * recent as the BGZF file, the block index is read from it;
+     * otherwise, the block index is built by walking the block headers.
+     *
+     * @param file the BGZF file to open.
+     *
+     * @return the opened file.
+     *
+     * @throws RuntimeException unless the file is a valid BGZF file.
+     */
+    public static BgzfFile open(File file) {
+        FileChannel channel = openChannel(file);
+        File indexFile = BgzfBlockIndex.indexFile(file);
+
+        if (indexFile.isFile() && indexFile.lastModified() >= file.lastModified())
+            return new BgzfFile(file, channel, BgzfBlockIndex.load(indexFile));
+        else
+            return new BgzfFile(file, channel, scanBlocks(file, channel));
+    }
+
+    private static FileChannel openChannel(File file) {
+        try {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static BgzfBlockIndex scanBlocks(File file, FileChannel channel) {
+        try {
+            long fileSize = channel.size();
+            long compressed = 0L;
+            long uncompressed = 0L;
+
+            long[] compressedOffsets = new long[1024];
+            long[] uncompressedOffsets = new long[1024];
+            int count = 0;
+
+            while (compressed < fileSize) {
+                ByteBuffer header = readBuffer(channel, compressed, HEADER_SIZE);
+
+                if (!isBlockHeader(header))
+                    throw JamException.runtime("Invalid BGZF block at offset [%d] in [%s].", compressed, file);
+
+                int blockSize = blockSize(header);
+                int dataSize  = readBuffer(channel, compressed + blockSize - 4, 4).getInt();
+
+                // Skip empty blocks (including the end-of-file marker)...
+                if (dataSize > 0) {
+                    if (count == compressedOffsets.length) {
+                        compressedOffsets = Arrays.copyOf(compressedOffsets, 2 * count);
+                        uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, 2 * count);
+                    }
+
+                    compressedOffsets[count] = compressed;
+                    uncompressedOffsets[count] = uncompressed;
+                    ++count;
+                }
+
+                compressed += blockSize;
+                uncompressed += dataSize;
+            }
+
+            return new BgzfBlockIndex(Arrays.copyOf(compressedOffsets, count),
+                                      Arrays.copyOf(uncompressedOffsets, count));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static ByteBuffer readBuffer(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                break;
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean isBlockHeader(ByteBuffer header) {
+        return header.limit() == HEADER_SIZE
+            && (header.get(0) & 0xff) == 31
+            && (header.get(1) & 0xff) == 139
+            && header.get(2) == 8
+            && (header.get(3) & 4) != 0
+            && header.getShort(10) == 6
+            && header.get(12) == 'B'
+            && header.get(13) == 'C'
+            && header.getShort(14) == 2;
+    }
+
+    private static int blockSize(ByteBuffer header) {
+        return (header.getShort(16) & 0xffff) + 1;
+    }
+
+    private byte[] inflateBlock(Integer block) {
+        long position = blockIndex.getCompressedOffset(block);
+
+        try {
+            ByteBuffer header = readBuffer(channel, position, HEADER_SIZE);
+
+            if (!isBlockHeader(header))
+                throw JamException.runtime("Invalid BGZF block at offset [%d] in [%s].", position, file);
+
+            int blockSize = blockSize(header);
+            ByteBuffer buffer = readBuffer(channel, position, blockSize);
+
+            int expectedCRC = buffer.getInt(blockSize - 8);
+            int dataSize = buffer.getInt(blockSize - 4);
+
+            byte[] data = new byte[dataSize];
+            Inflater inflater = new Inflater(true);
+
+            try {
+                inflater.setInput(buffer.array(), HEADER_SIZE, blockSize - HEADER_SIZE - FOOTER_SIZE);
+
+                if (inflater.inflate(data) != dataSize)
+                    throw JamException.runtime("Truncated BGZF block at offset [%d] in [%s].", position, file);
+            }
+            finally {
+                inflater.end();
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+
+            if ((int) crc.getValue() != expectedCRC)
+                throw JamException.runtime("Corrupt BGZF block at offset [%d] in [%s].", position, file);
+
+            return data;
+        }
+        catch (DataFormatException ex) {
+            throw JamException.runtime("Corrupt BGZF block at offset [%d] in [%s].", position, file);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Reads bytes from the uncompressed data stream.
+     *
+     * @param offset the offset of the first byte to read in the
+     * uncompressed data stream.
+     *
+     * @param buffer the destination for the uncompressed bytes.
+     *
+     * @param start the first position in the destination buffer to
+     * fill.
+     *
+     * @param length the number of bytes to read.
+     *
+     * @throws RuntimeException unless the uncompressed data stream
+     * contains the requested bytes.
+     */
+    public void read(long offset, byte[] buffer, int start, int length) {
+        while (length > 0) {
+            int block = blockIndex.locateBlock(offset);
+            byte[] data = blockCache.getUnchecked(block);
+
+            int within = (int) (offset - blockIndex.getUncompressedOffset(block));
+
+            if (within >= data.length)
+                throw JamException.runtime("Read past the end of [%s].", file);
+
+            int count = Math.min(length, data.length - within);
+            System.arraycopy(data, within, buffer, start, count);
+
+            offset += count;
+            start  += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Returns the block index for this file.
+     *
+     * @return the block index for this file.
+     */
+    public BgzfBlockIndex getBlockIndex() {
+        return blockIndex;
+    }
+
+    /**
+     * Returns the underlying compressed file.
+     *
+     * @return the underlying compressed file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Closes the underlying compressed file.
+     */
+    @Override public void close() {
+        try {
+            channel.close();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
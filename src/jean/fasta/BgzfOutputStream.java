@@ -0,0 +1,248 @@
+
+package jean.fasta;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes data in the blocked GNU zip format (BGZF), which may be read
+ * sequentially by any gzip decoder or randomly by {@link BgzfFile}.
+ */
+public final class BgzfOutputStream extends OutputStream {
+    private final OutputStream stream;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+
+    // Uncompressed data for the current block...
+    private final byte[] data = new byte[MAX_DATA_SIZE];
+    private int dataSize = 0;
+
+    // Compressed output for the current block...
+    private final byte[] block = new byte[BgzfFile.MAX_BLOCK_SIZE];
+
+    // Offsets of the current block in the compressed file and the
+    // uncompressed data stream...
+    private long compressedOffset = 0L;
+    private long uncompressedOffset = 0L;
+
+    // Offsets of every block written so far...
+    private long[] compressedOffsets = new long[1024];
+    private long[] uncompressedOffsets = new long[1024];
+    private int blockCount = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Maximum number of uncompressed bytes in one block (the value
+     * used by {@code bgzip}, which guarantees that incompressible
+     * data still fits in a single block).
+     */
+    public static final int MAX_DATA_SIZE = 0xff00;
+
+    // The standard empty block that marks the end of a BGZF file...
+    private static final byte[] EOF_BLOCK = new byte[] {
+        31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 66, 67, 2, 0,
+        27, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private BgzfOutputStream(OutputStream stream) {
+        this.stream = stream;
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /**
+     * Opens a BGZF file for writing.
+     *
+     * @param file the file to write.
+     *
+     * @return a stream that compresses its data into the file.
+     *
+     * @throws RuntimeException if the file cannot be opened for
+     * writing.
+     */
+    public static BgzfOutputStream open(File file) {
+        try {
+            return new BgzfOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Compresses a file into the BGZF format and writes the block
+     * index for the compressed file.
+     *
+     * @param source the uncompressed source file.
+     *
+     * @param target the compressed target file.
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public static void compress(File source, File target) {
+        byte[] buffer = new byte[MAX_DATA_SIZE];
+
+        try (InputStream input = Files.newInputStream(source.toPath());
+             BgzfOutputStream output = open(target)) {
+            while (true) {
+                int count = input.read(buffer);
+
+                if (count < 0)
+                    break;
+
+                output.write(buffer, 0, count);
+            }
+
+            output.finish();
+            output.getBlockIndex().store(BgzfBlockIndex.indexFile(target));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the BGZF virtual offset of the next byte to be written.
+     *
+     * @return the BGZF virtual offset of the next byte to be written.
+     */
+    public long getVirtualOffset() {
+        return (compressedOffset << 16) | dataSize;
+    }
+
+    /**
+     * Returns the offset of the next byte to be written in the
+     * uncompressed data stream.
+     *
+     * @return the offset of the next byte to be written in the
+     * uncompressed data stream.
+     */
+    public long getUncompressedOffset() {
+        return uncompressedOffset + dataSize;
+    }
+
+    /**
+     * Returns the index of the blocks written so far.
+     *
+     * @return the index of the blocks written so far.
+     */
+    public BgzfBlockIndex getBlockIndex() {
+        return new BgzfBlockIndex(Arrays.copyOf(compressedOffsets, blockCount),
+                                  Arrays.copyOf(uncompressedOffsets, blockCount));
+    }
+
+    /**
+     * Writes any buffered data and the end-of-file marker block; no
+     * further data may be written.
+     *
+     * @throws IOException if any I/O errors occur.
+     */
+    public void finish() throws IOException {
+        if (closed)
+            return;
+
+        writeBlock();
+        stream.write(EOF_BLOCK);
+        stream.flush();
+
+        deflater.end();
+        closed = true;
+    }
+
+    @Override public void close() throws IOException {
+        finish();
+        stream.close();
+    }
+
+    @Override public void flush() throws IOException {
+        stream.flush();
+    }
+
+    @Override public void write(int b) throws IOException {
+        if (dataSize == MAX_DATA_SIZE)
+            writeBlock();
+
+        data[dataSize++] = (byte) b;
+    }
+
+    @Override public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (dataSize == MAX_DATA_SIZE)
+                writeBlock();
+
+            int count = Math.min(length, MAX_DATA_SIZE - dataSize);
+            System.arraycopy(bytes, offset, data, dataSize, count);
+
+            dataSize += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (closed)
+            throw new IOException("Stream has been closed.");
+
+        if (dataSize == 0)
+            return;
+
+        deflater.reset();
+        deflater.setInput(data, 0, dataSize);
+        deflater.finish();
+
+        int capacity = block.length - BgzfFile.HEADER_SIZE - BgzfFile.FOOTER_SIZE;
+        int compressedSize = deflater.deflate(block, BgzfFile.HEADER_SIZE, capacity);
+
+        if (!deflater.finished())
+            throw new IOException("BGZF block overflow.");
+
+        crc.reset();
+        crc.update(data, 0, dataSize);
+
+        int blockSize = BgzfFile.HEADER_SIZE + compressedSize + BgzfFile.FOOTER_SIZE;
+        ByteBuffer buffer = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.put(0, (byte) 31);
+        buffer.put(1, (byte) 139);
+        buffer.put(2, (byte) 8);
+        buffer.put(3, (byte) 4);
+        buffer.putInt(4, 0);
+        buffer.put(8, (byte) 0);
+        buffer.put(9, (byte) 255);
+        buffer.putShort(10, (short) 6);
+        buffer.put(12, (byte) 'B');
+        buffer.put(13, (byte) 'C');
+        buffer.putShort(14, (short) 2);
+        buffer.putShort(16, (short) (blockSize - 1));
+        buffer.putInt(blockSize - 8, (int) crc.getValue());
+        buffer.putInt(blockSize - 4, dataSize);
+
+        stream.write(block, 0, blockSize);
+        recordBlock();
+
+        compressedOffset += blockSize;
+        uncompressedOffset += dataSize;
+        dataSize = 0;
+    }
+
+    private void recordBlock() {
+        if (blockCount == compressedOffsets.length) {
+            compressedOffsets = Arrays.copyOf(compressedOffsets, 2 * blockCount);
+            uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, 2 * blockCount);
+        }
+
+        compressedOffsets[blockCount] = compressedOffset;
+        uncompressedOffsets[blockCount] = uncompressedOffset;
+        ++blockCount;
+    }
+}
@@ -0,0 +1,411 @@
+
+package jean.fasta;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import jam.app.JamLogger;
+import jam.lang.JamException;
+
+/**
+ * Reads FASTA files in large blocks of raw bytes and decodes the
+ * records in parallel.
+ *
+ * <p>A single thread reads the file into a byte buffer, locates the
+ * record boundaries and separates the header from the sequence data
+ * with a simple byte scan (no line strings or regular expressions).
+ * Each complete record is then passed to a pool of worker threads,
+ * which apply a {@link FastaDecoder} and deliver the decoded records
+ * to a caller-supplied sink.
+ *
+ * <p>In <em>ordered</em> mode, the sink is invoked from the calling
+ * thread with the records in the order of their appearance in the
+ * file, so the sink need not be thread-safe.  In <em>unordered</em>
+ * mode, the sink is invoked directly from the worker threads as soon
+ * as each record is decoded, so the sink must be thread-safe.
+ *
+ * <p>Lines are interpreted exactly as by {@link FastaReader}: line
+ * breaks may be {@code LF}, {@code CR}, or {@code CRLF}; leading and
+ * trailing white space is removed from every line; blank lines and
+ * lines beginning with a semicolon are ignored; and the record key is
+ * separated from the comment by the first run of white space.
+ *
+ * <p>The number of records awaiting decoding is bounded, so memory
+ * usage does not grow with the size of the file.  Compressed files
+ * (gzip or BGZF) are decompressed sequentially.
+ */
+public final class FastaBlockReader<V> {
+    private final File file;
+    private final FastaDecoder<V> decoder;
+    private final Consumer<? super V> sink;
+    private final boolean ordered;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final Deque<Future<V>> pending = new ArrayDeque<Future<V>>();
+
+    // Bytes in the current header line and the current record
+    // sequence...
+    private byte[] header = new byte[256];
+    private byte[] sequence = new byte[4096];
+
+    private int headerLength = 0;
+    private int sequenceLength = 0;
+
+    // Start of the current line in the sequence buffer, so that its
+    // trailing white space can be removed...
+    private int sequenceLineStart = 0;
+
+    // Type of the line being scanned (zero at the start of a line)...
+    private byte lineType = 0;
+
+    // Key and comment for the record being scanned (the key is null
+    // before the first header line)...
+    private String recordKey = null;
+    private String recordComment = null;
+
+    private static final byte HEADER_LINE = '>';
+    private static final byte COMMENT_LINE = ';';
+    private static final byte SEQUENCE_LINE = 'S';
+
+    /**
+     * Number of bytes read from the file at one time.
+     */
+    public static final int BLOCK_SIZE = 1 << 22;
+
+    /**
+     * Maximum number of records awaiting decoding for each worker
+     * thread.
+     */
+    public static final int PENDING_PER_THREAD = 16;
+
+    private FastaBlockReader(File file,
+                             FastaDecoder<V> decoder,
+                             Consumer<? super V> sink,
+                             boolean ordered,
+                             int threadCount) {
+        if (threadCount < 1)
+            throw new IllegalArgumentException("Thread count must be positive.");
+
+        this.file = file;
+        this.decoder = decoder;
+        this.sink = sink;
+        this.ordered = ordered;
+        this.maxPending = PENDING_PER_THREAD * threadCount;
+        this.executor = Executors.newFixedThreadPool(threadCount);
+    }
+
+    /**
+     * Reads all records from a FASTA file, decoding them in parallel
+     * with one worker thread per available processor.
+     *
+     * @param <V> the runtime FASTA record type.
+     *
+     * @param file the FASTA file to read.
+     *
+     * @param decoder the (thread-safe) decoder that creates records
+     * from their raw contents.
+     *
+     * @param sink the consumer of the decoded records.
+     *
+     * @param ordered whether the records must be delivered to the
+     * sink in file order (from the calling thread); if {@code false},
+     * the records are delivered in arbitrary order from the worker
+     * threads and the sink must be thread-safe.
+     *
+     * @throws RuntimeException if any I/O errors occur, if the file
+     * is improperly formatted, or if the decoder or sink fails.
+     */
+    public static <V> void read(File file, FastaDecoder<V> decoder, Consumer<? super V> sink, boolean ordered) {
+        read(file, decoder, sink, ordered, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads all records from a FASTA file, decoding them in parallel.
+     *
+     * @param <V> the runtime FASTA record type.
+     *
+     * @param file the FASTA file to read.
+     *
+     * @param decoder the (thread-safe) decoder that creates records
+     * from their raw contents.
+     *
+     * @param sink the consumer of the decoded records.
+     *
+     * @param ordered whether the records must be delivered to the
+     * sink in file order (from the calling thread); if {@code false},
+     * the records are delivered in arbitrary order from the worker
+     * threads and the sink must be thread-safe.
+     *
+     * @param threadCount the number of worker threads.
+     *
+     * @throws RuntimeException if any I/O errors occur, if the file
+     * is improperly formatted, or if the decoder or sink fails.
+     */
+    public static <V> void read(File file, FastaDecoder<V> decoder, Consumer<? super V> sink, boolean ordered, int threadCount) {
+        FastaBlockReader<V> reader = new FastaBlockReader<V>(file, decoder, sink, ordered, threadCount);
+        reader.read();
+    }
+
+    /**
+     * Reads all records from a FASTA file, decoding them in parallel
+     * with one worker thread per available processor.
+     *
+     * @param <V> the runtime FASTA record type.
+     *
+     * @param file the FASTA file to read.
+     *
+     * @param decoder the (thread-safe) decoder that creates records
+     * from their raw contents.
+     *
+     * @return a list containing the decoded records in file order.
+     *
+     * @throws RuntimeException if any I/O errors occur, if the file
+     * is improperly formatted, or if the decoder fails.
+     */
+    public static <V> List<V> read(File file, FastaDecoder<V> decoder) {
+        List<V> records = new ArrayList<V>();
+        read(file, decoder, records::add, true);
+        return records;
+    }
+
+    /**
+     * Reads all peptide records from a FASTA file, decoding them in
+     * parallel with one worker thread per available processor; the
+     * peptides are not added to the cache of peptide instances.
+     *
+     * @param file the FASTA file to read.
+     *
+     * @return a list containing the peptide records in file order.
+     *
+     * @throws RuntimeException if any I/O errors occur or if the file
+     * contains improperly formatted peptides.
+     */
+    public static List<FastaPeptideRecord> readPeptides(File file) {
+        return read(file, FastaPeptideRecord::decode);
+    }
+
+    private void read() {
+        JamLogger.info("Reading [%s]...", file);
+
+        try (ReadableByteChannel channel = openChannel(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+
+            while (true) {
+                int count = fill(channel, buffer);
+
+                if (count == 0)
+                    break;
+
+                scan(buffer.array(), count);
+            }
+
+            endLine();
+            endRecord();
+
+            while (!pending.isEmpty())
+                complete(pending.removeFirst());
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ReadableByteChannel openChannel(File file) throws IOException {
+        if (file.getName().endsWith(".gz") || BgzfFile.isBgzf(file))
+            return Channels.newChannel(new GZIPInputStream(Files.newInputStream(file.toPath()), 1 << 16));
+        else
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    private static int fill(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                break;
+
+        return buffer.position();
+    }
+
+    private void scan(byte[] bytes, int count) {
+        for (int k = 0; k < count; ++k) {
+            byte b = bytes[k];
+
+            if (b == '\n' || b == '\r') {
+                endLine();
+                continue;
+            }
+
+            if (lineType == 0) {
+                // Skip leading white space...
+                if (isTrimmed(b))
+                    continue;
+
+                startLine(b);
+
+                if (lineType != SEQUENCE_LINE)
+                    continue;
+            }
+
+            if (lineType == SEQUENCE_LINE)
+                appendSequence(b);
+            else if (lineType == HEADER_LINE)
+                appendHeader(b);
+        }
+    }
+
+    private void startLine(byte b) {
+        if (b == HEADER_LINE) {
+            endRecord();
+            lineType = HEADER_LINE;
+        }
+        else if (b == COMMENT_LINE) {
+            lineType = COMMENT_LINE;
+        }
+        else {
+            if (recordKey == null)
+                throw JamException.runtime("Sequence data precedes the first header in [%s].", file);
+
+            lineType = SEQUENCE_LINE;
+            sequenceLineStart = sequenceLength;
+        }
+    }
+
+    private void endLine() {
+        if (lineType == HEADER_LINE)
+            parseHeader();
+
+        if (lineType == SEQUENCE_LINE)
+            while (sequenceLength > sequenceLineStart && isTrimmed(sequence[sequenceLength - 1]))
+                --sequenceLength;
+
+        lineType = 0;
+    }
+
+    private void appendHeader(byte b) {
+        if (headerLength == header.length)
+            header = Arrays.copyOf(header, 2 * headerLength);
+
+        header[headerLength++] = b;
+    }
+
+    private void appendSequence(byte b) {
+        if (sequenceLength == sequence.length)
+            sequence = Arrays.copyOf(sequence, 2 * sequenceLength);
+
+        sequence[sequenceLength++] = b;
+    }
+
+    private void parseHeader() {
+        //
+        // Remove trailing white space from the line; the key and
+        // comment are then separated by the first run of white space
+        // (as matched by the regular expression \s+)...
+        //
+        int lineEnd = headerLength;
+
+        while (lineEnd > 0 && isTrimmed(header[lineEnd - 1]))
+            --lineEnd;
+
+        int keyEnd = 0;
+
+        while (keyEnd < lineEnd && !isWhiteSpace(header[keyEnd]))
+            ++keyEnd;
+
+        int commentStart = keyEnd;
+
+        while (commentStart < lineEnd && isWhiteSpace(header[commentStart]))
+            ++commentStart;
+
+        int commentEnd = lineEnd;
+
+        recordKey = new String(header, 0, keyEnd, StandardCharsets.US_ASCII);
+        recordComment = new String(header, commentStart, commentEnd - commentStart, StandardCharsets.US_ASCII);
+
+        headerLength = 0;
+        sequenceLength = 0;
+    }
+
+    // The characters removed by String.trim()...
+    private static boolean isTrimmed(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    // The characters matched by the regular expression \s...
+    private static boolean isWhiteSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    private void endRecord() {
+        if (recordKey == null)
+            return;
+
+        if (sequenceLength == 0)
+            throw JamException.runtime("No data for record [%s].", recordKey);
+
+        submit(recordKey, recordComment, Arrays.copyOf(sequence, sequenceLength));
+
+        recordKey = null;
+        recordComment = null;
+        sequenceLength = 0;
+    }
+
+    private void submit(String key, String comment, byte[] data) {
+        if (ordered)
+            pending.addLast(executor.submit(() -> decoder.decode(key, comment, data)));
+        else
+            pending.addLast(executor.submit(() -> { sink.accept(decoder.decode(key, comment, data)); return null; }));
+
+        while (pending.size() > maxPending)
+            complete(pending.removeFirst());
+    }
+
+    private void complete(Future<V> future) {
+        V record = await(future);
+
+        if (ordered)
+            sink.accept(record);
+    }
+
+    private static <V> V await(Future<V> future) {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            else
+                throw new RuntimeException(cause);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+
+package jean.fasta;
+
+/**
+ * Creates FASTA records from their header fields and raw sequence
+ * bytes.
+ *
+ * <p>Decoders used with {@link FastaBlockReader} are invoked from
+ * multiple worker threads and must therefore be thread-safe.
+ */
+@FunctionalInterface
+public interface FastaDecoder<V> {
+    /**
+     * Creates a FASTA record.
+     *
+     * @param key the FASTA record key.
+     *
+     * @param comment the FASTA record comment text.
+     *
+     * @param sequence the single-byte codes for the nucleotides or
+     * residues in the record, with all line terminators removed.
+     *
+     * @return the FASTA record with the specified contents.
+     */
+    V decode(String key, String comment, byte[] sequence);
+}
@@ -0,0 +1,637 @@
+
+package jean.fasta;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import jam.app.JamLogger;
+import jam.io.IOUtil;
+import jam.io.LineReader;
+import jam.lang.JamException;
+
+/**
+ * Provides random access to the records in a FASTA file.
+ *
+ * <p>The index is built by scanning the file once: only the record
+ * headers and the byte offsets of the sequence data are retained in
+ * memory.  Sequences are read from the file on demand, so the memory
+ * required by the index is proportional to the number of records, not
+ * the total sequence length.
+ *
+ * <p>The sequence lines within each record must have a uniform
+ * length, except for the last line (the same requirement imposed by
+ * {@code samtools faidx}).
+ *
+ * <p>The FASTA file may be uncompressed or compressed in the blocked
+ * GNU zip format (BGZF) written by {@code bgzip} or {@link
+ * BgzfOutputStream}; other compressed files cannot be indexed.  The
+ * entry offsets always refer to the uncompressed data stream, and a
+ * BGZF block index translates them into positions in the compressed
+ * file, so any subsequence may be read with a single seek.
+ *
+ * <p>The index may be stored in a {@code .fai} file (and, for BGZF
+ * files, a {@code .gzi} block index file) that is compatible with
+ * {@code samtools faidx}.  The {@code .fai} format does not store the
+ * record comments, so entries restored from an index file have empty
+ * comments.
+ *
+ * <p>Uncompressed FASTA files are memory-mapped, so sequence reads
+ * are served from the operating system page cache without copying
+ * whole records into the heap; BGZF blocks are read with positional
+ * channel operations.  A single index may be shared by multiple
+ * threads.
+ */
+public final class FastaIndex implements AutoCloseable {
+    private final File file;
+    private final Map<String, FastaIndexEntry> entries;
+
+    // Exactly one of these will be non-null (until the index is
+    // closed)...
+    private volatile MappedByteBuffer[] segments;
+    private final BgzfFile bgzf;
+
+    /**
+     * Maximum number of bytes in each memory-mapped segment of an
+     * uncompressed FASTA file.
+     */
+    public static final int SEGMENT_SIZE = 1 << 30;
+
+    private FastaIndex(File file, Map<String, FastaIndexEntry> entries, BgzfFile bgzf) {
+        this.file = file;
+        this.entries = entries;
+        this.bgzf = bgzf;
+        this.segments = (bgzf == null) ? mapSegments(file) : null;
+    }
+
+    /**
+     * Builds an index for a FASTA file.
+     *
+     * @param file the FASTA file to index.
+     *
+     * @return the index for the specified file.
+     *
+     * @throws RuntimeException if the file cannot be opened for
+     * reading, if it is compressed in a format other than BGZF, if
+     * it contains duplicate record keys, or if any record has
+     * irregular line lengths.
+     */
+    public static FastaIndex build(File file) {
+        JamLogger.info("Indexing [%s]...", file);
+
+        BgzfFile bgzf = openBgzf(file);
+        Map<String, FastaIndexEntry> entries = Scanner.scan(file, openStream(file, bgzf));
+
+        JamLogger.info("Indexed [%d] records...", entries.size());
+        return new FastaIndex(file, entries, bgzf);
+    }
+
+    /**
+     * Builds an index for a FASTA file.
+     *
+     * @param fileName the name of the FASTA file to index.
+     *
+     * @return the index for the specified file.
+     *
+     * @throws RuntimeException if the file cannot be opened for
+     * reading, if it is compressed in a format other than BGZF, if
+     * it contains duplicate record keys, or if any record has
+     * irregular line lengths.
+     */
+    public static FastaIndex build(String fileName) {
+        return build(new File(fileName));
+    }
+
+    /**
+     * Opens an index for a FASTA file: if a {@code .fai} index file
+     * exists and is at least as recent as the FASTA file, the index
+     * is read from it; otherwise, the index is built by scanning the
+     * FASTA file.
+     *
+     * @param file the FASTA file to index.
+     *
+     * @return the index for the specified file.
+     *
+     * @throws RuntimeException if the FASTA file or index file cannot
+     * be read or if the FASTA file cannot be indexed.
+     */
+    public static FastaIndex open(File file) {
+        File indexFile = indexFile(file);
+
+        if (indexFile.isFile() && indexFile.lastModified() >= file.lastModified())
+            return new FastaIndex(file, loadEntries(indexFile), openBgzf(file));
+        else
+            return build(file);
+    }
+
+    /**
+     * Opens an index for a FASTA file: if a {@code .fai} index file
+     * exists and is at least as recent as the FASTA file, the index
+     * is read from it; otherwise, the index is built by scanning the
+     * FASTA file.
+     *
+     * @param fileName the name of the FASTA file to index.
+     *
+     * @return the index for the specified file.
+     *
+     * @throws RuntimeException if the FASTA file or index file cannot
+     * be read or if the FASTA file cannot be indexed.
+     */
+    public static FastaIndex open(String fileName) {
+        return open(new File(fileName));
+    }
+
+    /**
+     * Returns the name of the file that stores the index for a FASTA
+     * file.
+     *
+     * @param fastaFile the FASTA file.
+     *
+     * @return the name of the index file.
+     */
+    public static File indexFile(File fastaFile) {
+        return new File(fastaFile.getPath() + ".fai");
+    }
+
+    private static BgzfFile openBgzf(File file) {
+        if (BgzfFile.isBgzf(file))
+            return BgzfFile.open(file);
+
+        if (file.getName().endsWith(".gz"))
+            throw JamException.runtime("Compressed FASTA file [%s] is not in BGZF format.", file);
+
+        return null;
+    }
+
+    private static InputStream openStream(File file, BgzfFile bgzf) {
+        try {
+            InputStream stream = new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16);
+
+            if (bgzf != null)
+                return new GZIPInputStream(stream, 1 << 16);
+            else
+                return stream;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static Map<String, FastaIndexEntry> loadEntries(File indexFile) {
+        Map<String, FastaIndexEntry> entries = new LinkedHashMap<String, FastaIndexEntry>();
+
+        try (LineReader reader = LineReader.open(indexFile)) {
+            for (String line : reader) {
+                String[] fields = line.split("\t");
+
+                if (fields.length < 5)
+                    throw JamException.runtime("Invalid index line: [%s].", line);
+
+                FastaIndexEntry entry =
+                    new FastaIndexEntry(fields[0], "",
+                                        Long.parseLong(fields[2]),
+                                        Integer.parseInt(fields[1]),
+                                        Integer.parseInt(fields[3]),
+                                        Integer.parseInt(fields[4]));
+
+                if (entries.put(entry.getKey(), entry) != null)
+                    throw JamException.runtime("Duplicate record key: [%s].", entry.getKey());
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Writes this index to its {@code .fai} index file (and, for BGZF
+     * files, the block index to its {@code .gzi} file).
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public void store() {
+        PrintWriter writer = IOUtil.openWriter(indexFile(file));
+
+        for (FastaIndexEntry entry : entries.values())
+            writer.println(String.format("%s\t%d\t%d\t%d\t%d",
+                                         entry.getKey(),
+                                         entry.getLength(),
+                                         entry.getOffset(),
+                                         entry.getLineBases(),
+                                         entry.getLineWidth()));
+
+        writer.close();
+
+        if (bgzf != null)
+            bgzf.getBlockIndex().store(BgzfBlockIndex.indexFile(file));
+    }
+
+    private static MappedByteBuffer[] mapSegments(File file) {
+        //
+        // The mappings remain valid after the channel is closed...
+        //
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+
+            for (int k = 0; k < segments.length; ++k) {
+                long start = (long) k * SEGMENT_SIZE;
+                segments[k] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+
+            return segments;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Identifies records in this index.
+     *
+     * @param key the record key of interest.
+     *
+     * @return {@code true} iff this index contains a record with the
+     * specified key.
+     */
+    public boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Reads the complete sequence for a record.
+     *
+     * @param key the key of the record to read.
+     *
+     * @return the sequence for the specified record, as a string of
+     * single-character codes.
+     *
+     * @throws RuntimeException unless this index contains a record
+     * with the specified key.
+     */
+    public String fetch(String key) {
+        FastaIndexEntry entry = require(key);
+        return fetch(entry, 0, entry.getLength());
+    }
+
+    /**
+     * Reads a subsequence from a record.
+     *
+     * @param key the key of the record to read.
+     *
+     * @param start the zero-based position of the first sequence
+     * element to read (inclusive).
+     *
+     * @param end the zero-based position of the last sequence element
+     * to read (exclusive).
+     *
+     * @return the subsequence {@code [start, end)} for the specified
+     * record, as a string of single-character codes.
+     *
+     * @throws RuntimeException unless this index contains a record
+     * with the specified key and the range lies within the record.
+     */
+    public String fetch(String key, int start, int end) {
+        return fetch(require(key), start, end);
+    }
+
+    private String fetch(FastaIndexEntry entry, int start, int end) {
+        if (start < 0 || end > entry.getLength() || start > end)
+            throw JamException.runtime("Invalid range [%d, %d) for record [%s].", start, end, entry.getKey());
+
+        if (start == end)
+            return "";
+
+        long first = entry.locate(start);
+        long last  = entry.locate(end - 1);
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (last - first + 1));
+        readFully(buffer, first);
+
+        return decode(buffer.array(), end - start);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) {
+        if (bgzf != null) {
+            bgzf.read(position, buffer.array(), 0, buffer.capacity());
+            return;
+        }
+
+        MappedByteBuffer[] mapped = segments;
+
+        if (mapped == null)
+            throw JamException.runtime("FASTA index [%s] has been closed.", file);
+
+        while (buffer.hasRemaining()) {
+            int segment = (int) (position / SEGMENT_SIZE);
+
+            if (segment >= mapped.length)
+                throw JamException.runtime("Unexpected end of file [%s].", file);
+
+            //
+            // Read from a duplicate, since the position of the shared
+            // mapped buffer may not be modified...
+            //
+            ByteBuffer source = mapped[segment].duplicate();
+            source.position((int) (position % SEGMENT_SIZE));
+
+            int count = Math.min(buffer.remaining(), source.remaining());
+
+            if (count == 0)
+                throw JamException.runtime("Unexpected end of file [%s].", file);
+
+            source.limit(source.position() + count);
+            buffer.put(source);
+            position += count;
+        }
+    }
+
+    private static String decode(byte[] bytes, int length) {
+        //
+        // Remove the line terminators...
+        //
+        byte[] sequence = new byte[length];
+        int count = 0;
+
+        for (byte b : bytes)
+            if (b != '\n' && b != '\r')
+                sequence[count++] = b;
+
+        return new String(sequence, 0, count, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the position of a sequence element in the FASTA file:
+     * the byte offset for uncompressed files or the virtual offset
+     * for BGZF files.
+     *
+     * @param key the key of the record of interest.
+     *
+     * @param index the zero-based position of the sequence element
+     * within the record.
+     *
+     * @return the position of the specified sequence element in the
+     * FASTA file.
+     *
+     * @throws RuntimeException unless this index contains a record
+     * with the specified key and the position lies within the record.
+     */
+    public long locate(String key, int index) {
+        long offset = require(key).locate(index);
+
+        if (bgzf != null)
+            return bgzf.getBlockIndex().virtualOffset(offset);
+        else
+            return offset;
+    }
+
+    /**
+     * Identifies indexes over BGZF-compressed files.
+     *
+     * @return {@code true} iff the underlying FASTA file is
+     * compressed in the BGZF format.
+     */
+    public boolean isBgzf() {
+        return bgzf != null;
+    }
+
+    /**
+     * Returns the index entry for a record.
+     *
+     * @param key the record key of interest.
+     *
+     * @return the index entry for the specified record (or
+     * {@code null} if there is no such record).
+     */
+    public FastaIndexEntry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Returns the FASTA file covered by this index.
+     *
+     * @return the FASTA file covered by this index.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the index entry for a record.
+     *
+     * @param key the record key of interest.
+     *
+     * @return the index entry for the specified record.
+     *
+     * @throws RuntimeException unless this index contains a record
+     * with the specified key.
+     */
+    public FastaIndexEntry require(String key) {
+        FastaIndexEntry entry = get(key);
+
+        if (entry != null)
+            return entry;
+        else
+            throw JamException.runtime("Unindexed FASTA record: [%s].", key);
+    }
+
+    /**
+     * Returns the number of records in this index.
+     *
+     * @return the number of records in this index.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a read-only view of the entries in this index (in the
+     * order of their appearance in the FASTA file).
+     *
+     * @return a read-only view of the entries in this index.
+     */
+    public Collection<FastaIndexEntry> viewEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Closes the underlying FASTA file; memory-mapped segments are
+     * released when they are reclaimed by the garbage collector.
+     */
+    @Override public void close() {
+        if (bgzf != null)
+            bgzf.close();
+        else
+            segments = null;
+    }
+
+    private static final class Scanner {
+        private final File file;
+        private final Map<String, FastaIndexEntry> entries = new LinkedHashMap<String, FastaIndexEntry>();
+
+        // Bytes in the header line currently being scanned...
+        private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+
+        // Offset of the first byte in the current line, the first
+        // byte itself, and the number of sequence bytes in the line
+        // (excluding the line terminator)...
+        private long lineStart = 0L;
+        private int  firstByte = -1;
+        private int  lineBases = 0;
+
+        // The record currently being scanned...
+        private String  recordKey = null;
+        private String  recordComment = null;
+        private long    recordOffset = 0L;
+        private int     recordLength = 0;
+        private int     recordLineBases = 0;
+        private int     recordLineWidth = 0;
+        private boolean recordClosed = false;
+
+        // Layout of the previous sequence line in the current record...
+        private int prevLineBases = 0;
+        private int prevLineWidth = 0;
+
+        private Scanner(File file) {
+            this.file = file;
+        }
+
+        static Map<String, FastaIndexEntry> scan(File file, InputStream stream) {
+            Scanner scanner = new Scanner(file);
+            scanner.scan(stream);
+            return scanner.entries;
+        }
+
+        private void scan(InputStream stream) {
+            byte[] buffer = new byte[1 << 16];
+
+            try (stream) {
+                long offset = 0L;
+
+                while (true) {
+                    int count = stream.read(buffer);
+
+                    if (count < 0)
+                        break;
+
+                    for (int k = 0; k < count; ++k, ++offset)
+                        scanByte(buffer[k], offset);
+                }
+
+                if (offset > lineStart)
+                    endLine(offset);
+
+                endRecord();
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private void scanByte(byte b, long offset) {
+            if (b == '\n') {
+                endLine(offset + 1);
+                return;
+            }
+
+            if (firstByte < 0)
+                firstByte = b;
+
+            if (firstByte == '>')
+                header.write(b);
+            else if (b != '\r')
+                ++lineBases;
+        }
+
+        private void endLine(long nextLineStart) {
+            int lineWidth = (int) (nextLineStart - lineStart);
+
+            if (firstByte == '>')
+                startRecord(nextLineStart);
+            else if (firstByte == ';' || lineBases == 0)
+                recordClosed = (recordLength > 0);
+            else
+                addSequenceLine(lineWidth);
+
+            header.reset();
+            firstByte = -1;
+            lineBases = 0;
+            lineStart = nextLineStart;
+        }
+
+        private void startRecord(long offset) {
+            endRecord();
+
+            // Remove the header marker and any carriage return...
+            String headerLine =
+                new String(header.toByteArray(), StandardCharsets.US_ASCII)
+                .substring(FastaRecord.HEADER_MARKER.length()).trim();
+
+            // Split into key and comment, delimited by white space...
+            String[] fields = FastaRecord.KEY_COMMENT_DELIM.split(headerLine, 2);
+
+            recordKey = fields[0];
+            recordComment = (fields.length == 2) ? fields[1] : "";
+            recordOffset = offset;
+            recordLength = 0;
+            recordLineBases = 0;
+            recordLineWidth = 0;
+            recordClosed = false;
+        }
+
+        private void addSequenceLine(int lineWidth) {
+            if (recordKey == null)
+                throw JamException.runtime("Sequence data precedes the first header in [%s].", file);
+
+            if (recordClosed)
+                throw JamException.runtime("Discontiguous sequence data for record [%s].", recordKey);
+
+            if (recordLength == 0) {
+                recordLineBases = lineBases;
+                recordLineWidth = lineWidth;
+            }
+            else if (prevLineBases != recordLineBases || prevLineWidth != recordLineWidth || lineBases > recordLineBases) {
+                //
+                // Only the last line in a record may be shorter than
+                // the first line...
+                //
+                throw JamException.runtime("Irregular line lengths for record [%s].", recordKey);
+            }
+
+            recordLength += lineBases;
+            prevLineBases = lineBases;
+            prevLineWidth = lineWidth;
+        }
+
+        private void endRecord() {
+            if (recordKey == null)
+                return;
+
+            if (recordLength == 0)
+                throw JamException.runtime("No data for record [%s].", recordKey);
+
+            FastaIndexEntry entry =
+                new FastaIndexEntry(recordKey, recordComment, recordOffset,
+                                    recordLength, recordLineBases, recordLineWidth);
+
+            if (entries.put(recordKey, entry) != null)
+                throw JamException.runtime("Duplicate record key: [%s].", recordKey);
+
+            recordKey = null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+
+package jean.fasta;
+
+/**
+ * Describes the location of one record in an indexed FASTA file.
+ *
+ * <p>The layout follows the {@code .fai} convention: the sequence
+ * data begins at a fixed byte offset and is divided into lines that
+ * each contain {@code lineBases} residues (or nucleotides) and span
+ * {@code lineWidth} bytes (including the line terminator), except
+ * for the last line, which may be shorter.
+ */
+public final class FastaIndexEntry {
+    private final String key;
+    private final String comment;
+    private final long offset;
+    private final int length;
+    private final int lineBases;
+    private final int lineWidth;
+
+    FastaIndexEntry(String key, String comment, long offset, int length, int lineBases, int lineWidth) {
+        this.key = key;
+        this.comment = comment;
+        this.offset = offset;
+        this.length = length;
+        this.lineBases = lineBases;
+        this.lineWidth = lineWidth;
+    }
+
+    /**
+     * Returns the offset of the sequence element at a given position
+     * within this record.
+     *
+     * @param index the zero-based position of the sequence element.
+     *
+     * @return the offset of the specified sequence element.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public long locate(int index) {
+        if (index < 0 || index > length)
+            throw new IndexOutOfBoundsException("Invalid sequence index: " + index);
+
+        if (lineBases == 0)
+            return offset;
+        else
+            return offset + (long) (index / lineBases) * lineWidth + (index % lineBases);
+    }
+
+    /**
+     * Returns the key for this record.
+     *
+     * @return the key for this record.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the comment for this record.
+     *
+     * @return the comment for this record.
+     */
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * Returns the offset of the first sequence element in this record.
+     *
+     * @return the offset of the first sequence element in this record.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of residues (or nucleotides) in this record.
+     *
+     * @return the number of residues (or nucleotides) in this record.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the number of residues (or nucleotides) on each full
+     * sequence line.
+     *
+     * @return the number of residues (or nucleotides) on each full
+     * sequence line.
+     */
+    public int getLineBases() {
+        return lineBases;
+    }
+
+    /**
+     * Returns the number of bytes on each full sequence line,
+     * including the line terminator.
+     *
+     * @return the number of bytes on each full sequence line.
+     */
+    public int getLineWidth() {
+        return lineWidth;
+    }
+
+    @Override public String toString() {
+        return String.format("FastaIndexEntry(%s, %d, %d, %d, %d)", key, offset, length, lineBases, lineWidth);
+    }
+}
@@ -0,0 +1,78 @@
+
+package jean.fasta;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import jean.peptide.Peptide;
+
+/**
+ * Decodes peptide sequences from an indexed FASTA file on demand and
+ * retains the most recently used sequences in a cache of bounded
+ * size.
+ *
+ * <p>Decoded peptides are not added to the global cache of peptide
+ * instances, so a sequence that is evicted from this cache may be
+ * reclaimed by the garbage collector.
+ */
+public final class FastaPeptideCache {
+    private final FastaIndex index;
+    private final LoadingCache<String, Peptide> cache;
+
+    private FastaPeptideCache(FastaIndex index, long capacity) {
+        this.index = index;
+        this.cache = CacheBuilder.newBuilder().maximumSize(capacity).build(CacheLoader.from(this::decode));
+    }
+
+    /**
+     * Creates a new peptide cache for an indexed FASTA file.
+     *
+     * @param index the index for the FASTA file.
+     *
+     * @param capacity the maximum number of peptides to retain in the
+     * cache.
+     *
+     * @return a new peptide cache for the specified FASTA file.
+     */
+    public static FastaPeptideCache create(FastaIndex index, long capacity) {
+        return new FastaPeptideCache(index, capacity);
+    }
+
+    private Peptide decode(String key) {
+        return Peptide.parse(index.fetch(key));
+    }
+
+    /**
+     * Returns the peptide sequence for a FASTA record, decoding it
+     * from the FASTA file if necessary.
+     *
+     * @param key the key of the FASTA record.
+     *
+     * @return the peptide sequence for the specified record.
+     *
+     * @throws RuntimeException unless the FASTA file contains a
+     * properly formatted record with the specified key.
+     */
+    public Peptide get(String key) {
+        return cache.getUnchecked(key);
+    }
+
+    /**
+     * Returns the index for the underlying FASTA file.
+     *
+     * @return the index for the underlying FASTA file.
+     */
+    public FastaIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of peptides currently in the cache.
+     *
+     * @return the number of peptides currently in the cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+}
@@ -2,11 +2,14 @@
 package jean.fasta;
 
 import java.io.File;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 
 import jam.io.IOUtil;
+import jam.lang.JamException;
 
 /**
  * Reads and writes FASTA files.
@@ -69,4 +72,32 @@ public final class FastaPeptideFile {
     public static void write(String fileName, Collection<FastaPeptideRecord> records) {
         write(new File(fileName), records);
     }
+
+    /**
+     * Writes FASTA records to a file compressed in the BGZF format,
+     * along with the {@code .fai} and {@code .gzi} index files that
+     * allow random access to the records through {@link FastaIndex}.
+     *
+     * @param file the output file.
+     *
+     * @param records the records to write.
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public static void writeBgzf(File file, Collection<FastaPeptideRecord> records) {
+        BgzfOutputStream stream = BgzfOutputStream.open(file);
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.US_ASCII));
+
+        for (FastaPeptideRecord record : records)
+            writer.println(record.format());
+
+        writer.close();
+
+        if (writer.checkError())
+            throw JamException.runtime("Failed to write [%s].", file);
+
+        try (FastaIndex index = FastaIndex.build(file)) {
+            index.store();
+        }
+    }
 }
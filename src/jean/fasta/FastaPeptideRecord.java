@@ -23,6 +23,28 @@ public final class FastaPeptideRecord extends FastaRecord {
         this.peptide = peptide;
     }
 
+    /**
+     * Creates a new FASTA peptide record from raw sequence bytes; the
+     * peptide is not added to the cache of peptide instances.
+     *
+     * <p>This method may be used as the {@link FastaDecoder} for
+     * peptide files.
+     *
+     * @param key the record key.
+     *
+     * @param comment the record comment.
+     *
+     * @param sequence the single-byte residue codes.
+     *
+     * @return the FASTA peptide record with the specified contents.
+     *
+     * @throws IllegalArgumentException unless the sequence contains
+     * only valid residue codes.
+     */
+    public static FastaPeptideRecord decode(String key, String comment, byte[] sequence) {
+        return new FastaPeptideRecord(key, comment, Peptide.parse(sequence, 0, sequence.length));
+    }
+
     /**
      * Formats this record for output to a FASTA file.
      *
@@ -8,9 +8,16 @@ import java.util.regex.Pattern;
 
 import jam.app.JamLogger;
 import jam.io.LineReader;
+import jam.lang.JamException;
 
 /**
  * Represents a single HLA allele.
+ *
+ * <p>Alleles are canonical (flyweight) objects: every request for the
+ * same locus, supertype, and subtype returns the same instance, and
+ * each raw allele string is parsed only once.  Every allele has a
+ * stable integer {@link #code()}, derived from its locus and types,
+ * and a dense {@link #index()} assigned when it is first created.
  */
 public final class Allele implements Comparable<Allele> {
     private final Locus locus;
@@ -19,19 +26,18 @@ public final class Allele implements Comparable<Allele> {
 
     private final String longKey;
     private final String shortKey;
-    private final int    hashCode;
-
-    private Allele(Locus locus, int superType, int subType) {
-        validateType(superType);
-        validateType(subType);
+    private final int    code;
+    private final int    index;
 
+    Allele(Locus locus, int superType, int subType, int index) {
         this.locus     = locus;
         this.superType = superType;
         this.subType   = subType;
+        this.index     = index;
 
         this.longKey  = formatLongKey(locus, superType, subType);
         this.shortKey = formatShortKey(locus, superType, subType);
-        this.hashCode = computeHashCode(locus, superType, subType);
+        this.code     = encode(locus, superType, subType);
     }
 
     private static void validateType(int type) {
@@ -47,10 +53,23 @@ public final class Allele implements Comparable<Allele> {
         return String.format("%s%02d%02d", locus, superType, subType);
     }
 
-    private static int computeHashCode(Locus locus, int superType, int subType) {
-        return 10000 * locus.ordinal() + 100 * superType + subType;
+    static int encode(Locus locus, int superType, int subType) {
+        validateType(superType);
+        validateType(subType);
+
+        //
+        // The familiar decimal encoding is unique only for two-digit
+        // types; alleles with a three-digit type are placed in a
+        // separate range that cannot collide with it...
+        //
+        if (superType < 100 && subType < 100)
+            return 10000 * locus.ordinal() + 100 * superType + subType;
+        else
+            return WIDE_CODE_OFFSET + 40000 * locus.ordinal() + 200 * superType + subType;
     }
 
+    private static final int WIDE_CODE_OFFSET = 1000000;
+
     /**
      * Standard prefix for HLA allele names.
      */
@@ -73,10 +92,7 @@ public final class Allele implements Comparable<Allele> {
      * valid.
      */
     public static Allele instance(Locus locus, int superType, int subType) {
-        //
-        // Think about a private flyweight cache...
-        //
-        return new Allele(locus, superType, subType);
+        return AlleleRegistry.instance(locus, superType, subType);
     }
 
     /**
@@ -90,7 +106,84 @@ public final class Allele implements Comparable<Allele> {
      * valid allele.
      */
     public static Allele instance(String s) {
-        return Parser.parse(s);
+        return AlleleRegistry.instance(s);
+    }
+
+    /**
+     * Parses the alleles in a genotype field (alleles separated by
+     * white space) directly into allele codes, without creating any
+     * intermediate strings.
+     *
+     * @param field the genotype field to parse.
+     *
+     * @param codes an array to be filled with the allele codes.
+     *
+     * @return the number of alleles in the field.
+     *
+     * @throws RuntimeException unless every allele in the field is
+     * valid and the code array is large enough to hold them.
+     */
+    public static int parseCodes(CharSequence field, int[] codes) {
+        return Parser.parseCodes(field, codes);
+    }
+
+    /**
+     * Returns the allele with a given integer code.
+     *
+     * @param code the code of the desired allele.
+     *
+     * @return the allele with the specified code.
+     *
+     * @throws RuntimeException unless the code is valid.
+     */
+    public static Allele fromCode(int code) {
+        Allele allele = AlleleRegistry.fromCode(code);
+
+        if (allele != null)
+            return allele;
+        else
+            return instance(decodeLocus(code), decodeSuperType(code), decodeSubType(code));
+    }
+
+    private static Locus decodeLocus(int code) {
+        int ordinal = (code < WIDE_CODE_OFFSET) ? code / 10000 : (code - WIDE_CODE_OFFSET) / 40000;
+
+        if (code < 0 || ordinal >= Locus.values().length)
+            throw JamException.runtime("Invalid allele code [%d].", code);
+
+        return Locus.values()[ordinal];
+    }
+
+    private static int decodeSuperType(int code) {
+        return (code < WIDE_CODE_OFFSET) ? (code % 10000) / 100 : ((code - WIDE_CODE_OFFSET) % 40000) / 200;
+    }
+
+    private static int decodeSubType(int code) {
+        return (code < WIDE_CODE_OFFSET) ? code % 100 : (code - WIDE_CODE_OFFSET) % 200;
+    }
+
+    /**
+     * Returns the allele with a given dense index.
+     *
+     * @param index the index of the desired allele.
+     *
+     * @return the allele with the specified index.
+     *
+     * @throws IndexOutOfBoundsException unless an allele has been
+     * assigned the specified index.
+     */
+    public static Allele fromIndex(int index) {
+        return AlleleRegistry.fromIndex(index);
+    }
+
+    /**
+     * Returns the number of distinct alleles created so far (one
+     * greater than the largest dense index).
+     *
+     * @return the number of distinct alleles created so far.
+     */
+    public static int countInstances() {
+        return AlleleRegistry.count();
     }
 
     /**
@@ -165,9 +258,9 @@ public final class Allele implements Comparable<Allele> {
     }
 
     /**
-     * Returns the this allele.
+     * Returns the subtype of this allele.
      *
-     * @return the this allele.
+     * @return the subtype of this allele.
      */
     public int getSubType() {
         return subType;
@@ -191,22 +284,52 @@ public final class Allele implements Comparable<Allele> {
         return shortKey;
     }
 
-    @Override public int compareTo(Allele that) {
-        return Integer.compare(this.hashCode, that.hashCode);
+    /**
+     * Returns the stable integer code for this allele: {@code 10000 *
+     * locus + 100 * superType + subType} (where {@code locus} is the
+     * locus ordinal) for alleles with two-digit types, and a distinct
+     * value above one million for alleles with a three-digit type.
+     * Codes are the same in every process and may be persisted.
+     *
+     * @return the stable integer code for this allele.
+     */
+    public int code() {
+        return code;
     }
 
-    @Override public boolean equals(Object obj) {
-        return (obj instanceof Allele) && equalsAllele((Allele) obj);
+    /**
+     * Returns the dense index of this allele: alleles are numbered
+     * consecutively from zero in the order that they are created.
+     * Indexes are valid only within a single process and must not
+     * be persisted.
+     *
+     * @return the dense index of this allele.
+     */
+    public int index() {
+        return index;
+    }
+
+    @Override public int compareTo(Allele that) {
+        int cmp = this.locus.compareTo(that.locus);
+
+        if (cmp == 0)
+            cmp = Integer.compare(this.superType, that.superType);
+
+        if (cmp == 0)
+            cmp = Integer.compare(this.subType, that.subType);
+
+        return cmp;
     }
 
-    private boolean equalsAllele(Allele that) {
-        return this.locus.equals(that.locus)
-            && this.superType == that.superType
-            && this.subType   == that.subType;
+    @Override public boolean equals(Object obj) {
+        //
+        // Alleles are canonical, so identity is equality...
+        //
+        return this == obj;
     }
 
     @Override public int hashCode() {
-        return hashCode;
+        return code;
     }
 
     @Override public String toString() {
@@ -0,0 +1,204 @@
+
+package jean.hla;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import jean.tcga.PatientID;
+
+/**
+ * Selects patients from a {@link PatientGenotypeTable} by the alleles
+ * in their genotypes, for example, the patients who carry
+ * {@code A*02:01} and {@code B*07:02} but not {@code C*07:01}:
+ *
+ * <pre>
+ *     table.query(A0201).and(B0702).andNot(C0701).viewPatients();
+ * </pre>
+ *
+ * <p>Queries are immutable: each refinement computes a new bitmap of
+ * selected patients from the allele bitmaps stored in the table.
+ */
+public final class AlleleQuery {
+    private final PatientGenotypeTable table;
+    private final BitSet selected;
+
+    AlleleQuery(PatientGenotypeTable table, BitSet selected) {
+        this.table = table;
+        this.selected = selected;
+    }
+
+    /**
+     * Restricts this query to patients who also carry a given allele.
+     *
+     * @param allele the required allele.
+     *
+     * @return a new query selecting the patients who match this query
+     * and carry the specified allele.
+     */
+    public AlleleQuery and(Allele allele) {
+        BitSet bits = copy();
+        bits.and(table.carrierBits(allele));
+        return new AlleleQuery(table, bits);
+    }
+
+    /**
+     * Restricts this query to patients who also match another query.
+     *
+     * @param that another query on the same table.
+     *
+     * @return a new query selecting the patients who match both
+     * queries.
+     *
+     * @throws IllegalArgumentException unless the queries share the
+     * same table.
+     */
+    public AlleleQuery and(AlleleQuery that) {
+        BitSet bits = copy();
+        bits.and(validate(that).selected);
+        return new AlleleQuery(table, bits);
+    }
+
+    /**
+     * Extends this query to patients who carry a given allele.
+     *
+     * @param allele the alternative allele.
+     *
+     * @return a new query selecting the patients who match this query
+     * or carry the specified allele.
+     */
+    public AlleleQuery or(Allele allele) {
+        BitSet bits = copy();
+        bits.or(table.carrierBits(allele));
+        return new AlleleQuery(table, bits);
+    }
+
+    /**
+     * Extends this query to patients who match another query.
+     *
+     * @param that another query on the same table.
+     *
+     * @return a new query selecting the patients who match either
+     * query.
+     *
+     * @throws IllegalArgumentException unless the queries share the
+     * same table.
+     */
+    public AlleleQuery or(AlleleQuery that) {
+        BitSet bits = copy();
+        bits.or(validate(that).selected);
+        return new AlleleQuery(table, bits);
+    }
+
+    /**
+     * Excludes patients who carry a given allele from this query.
+     *
+     * @param allele the excluded allele.
+     *
+     * @return a new query selecting the patients who match this query
+     * and do not carry the specified allele.
+     */
+    public AlleleQuery andNot(Allele allele) {
+        BitSet bits = copy();
+        bits.andNot(table.carrierBits(allele));
+        return new AlleleQuery(table, bits);
+    }
+
+    /**
+     * Excludes patients who match another query from this query.
+     *
+     * @param that another query on the same table.
+     *
+     * @return a new query selecting the patients who match this query
+     * but not the other.
+     *
+     * @throws IllegalArgumentException unless the queries share the
+     * same table.
+     */
+    public AlleleQuery andNot(AlleleQuery that) {
+        BitSet bits = copy();
+        bits.andNot(validate(that).selected);
+        return new AlleleQuery(table, bits);
+    }
+
+    private BitSet copy() {
+        return (BitSet) selected.clone();
+    }
+
+    private AlleleQuery validate(AlleleQuery that) {
+        if (this.table != that.table)
+            throw new IllegalArgumentException("Queries must share the same genotype table.");
+
+        return that;
+    }
+
+    /**
+     * Returns the number of patients selected by this query.
+     *
+     * @return the number of patients selected by this query.
+     */
+    public int count() {
+        return selected.cardinality();
+    }
+
+    /**
+     * Returns the fraction of patients in the table that are
+     * selected by this query.
+     *
+     * @return the fraction of patients in the table that are
+     * selected by this query (zero for an empty table).
+     */
+    public double frequency() {
+        if (table.size() > 0)
+            return ((double) count()) / table.size();
+        else
+            return 0.0;
+    }
+
+    /**
+     * Returns a read-only view of the patients selected by this query
+     * (in patient ID order).  Membership tests are answered from the
+     * bitmap of selected patients.
+     *
+     * @return a read-only view of the patients selected by this query.
+     */
+    public Set<PatientID> viewPatients() {
+        int size = count();
+
+        return new AbstractSet<PatientID>() {
+            @Override public boolean contains(Object obj) {
+                if (!(obj instanceof PatientID))
+                    return false;
+
+                int patientID = table.patientID((PatientID) obj);
+                return patientID >= 0 && selected.get(patientID);
+            }
+
+            @Override public Iterator<PatientID> iterator() {
+                return new Iterator<PatientID>() {
+                    private int next = selected.nextSetBit(0);
+
+                    @Override public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override public PatientID next() {
+                        if (next < 0)
+                            throw new NoSuchElementException();
+
+                        PatientID patient = table.patient(next);
+                        next = selected.nextSetBit(next + 1);
+
+                        return patient;
+                    }
+                };
+            }
+
+            @Override public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+
+package jean.hla;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maintains the canonical (flyweight) instance of every allele that
+ * has been created, together with the raw strings that have been
+ * parsed into alleles.
+ *
+ * <p>Each registered allele is assigned a dense zero-based index in
+ * the order of registration, so that alleles may be stored as
+ * {@code short} or {@code int} arrays and used as bit positions.
+ * Registration is synchronized; lookups are lock-free.
+ */
+final class AlleleRegistry {
+    private static final Map<Integer, Allele> byCode = new ConcurrentHashMap<Integer, Allele>();
+    private static final Map<String, Allele> byString = new ConcurrentHashMap<String, Allele>();
+
+    // Registered alleles indexed by their dense index; replaced (never
+    // modified) when the capacity grows, so readers need no lock...
+    private static volatile Allele[] byIndex = new Allele[256];
+    private static volatile int count = 0;
+
+    // Direct lookup table for the codes of alleles with two-digit
+    // types (all codes below 30000); written only while registering.
+    // The array elements are not volatile, so another thread may read
+    // a stale null for a registered allele: fromCode() then falls back
+    // to the concurrent map, which is always current...
+    private static final int SHORT_CODE_LIMIT = 30000;
+    private static final Allele[] byShortCode = new Allele[SHORT_CODE_LIMIT];
+
+    private AlleleRegistry() {}
+
+    static Allele instance(Locus locus, int superType, int subType) {
+        Allele allele = fromCode(Allele.encode(locus, superType, subType));
+
+        if (allele != null)
+            return allele;
+        else
+            return register(locus, superType, subType);
+    }
+
+    private static synchronized Allele register(Locus locus, int superType, int subType) {
+        int code = Allele.encode(locus, superType, subType);
+        Allele allele = byCode.get(code);
+
+        if (allele != null)
+            return allele;
+
+        allele = new Allele(locus, superType, subType, count);
+
+        if (count == byIndex.length)
+            byIndex = Arrays.copyOf(byIndex, 2 * count);
+
+        byIndex[count] = allele;
+        byCode.put(code, allele);
+
+        if (code < SHORT_CODE_LIMIT)
+            byShortCode[code] = allele;
+
+        // Publish the new index only after the allele is stored...
+        count = count + 1;
+        return allele;
+    }
+
+    static Allele instance(String string) {
+        Allele allele = byString.get(string);
+
+        if (allele == null) {
+            allele = Parser.parse(string);
+            byString.putIfAbsent(string, allele);
+        }
+
+        return allele;
+    }
+
+    static Allele fromCode(int code) {
+        if (code >= 0 && code < SHORT_CODE_LIMIT) {
+            Allele allele = byShortCode[code];
+
+            if (allele != null)
+                return allele;
+        }
+
+        return byCode.get(code);
+    }
+
+    static Allele fromIndex(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Unregistered allele index: " + index);
+
+        return byIndex[index];
+    }
+
+    static int count() {
+        return count;
+    }
+}
@@ -2,17 +2,31 @@
 package jean.hla;
 
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
-import jam.math.DoubleUtil;
+import jam.lang.JamException;
 
 import jean.rna.Expression;
 import jean.rna.ExpressionProfile;
+import jean.rna.SparseExpressionProfile;
 import jean.rna.TumorExpressionMatrix;
 import jean.tcga.TumorBarcode;
 
 /**
  * Encapsulates RNA expression levels for the HLA class I genes.
+ *
+ * <p><b>Cohort computations.</b> The static {@code computeDiversity}
+ * methods score many tumors at once from a primitive expression
+ * matrix with one row per tumor and one column per locus (A, B, C;
+ * see {@link #expressionMatrix(List, TumorExpressionMatrix)}).  The
+ * Herfindahl index depends on a genotype only through the number of
+ * unique alleles at each locus: with {@code f[L]} the fraction of
+ * total expression at locus {@code L} and {@code n[L]} the number of
+ * unique alleles there, the index is the sum of {@code f[L] * f[L] /
+ * n[L]} over the loci present in the genotype.  The batch methods
+ * therefore reduce each genotype to three counts, and the scoring
+ * pass runs over primitive arrays only.
  */
 public final class ExpressionClassI {
     private final Expression total;
@@ -63,6 +77,21 @@ public final class ExpressionClassI {
                       profile.get(Locus.C.getHugoSymbol()));
     }
 
+    /**
+     * Creates a new expression record from a sparse RNA expression
+     * profile.
+     *
+     * @param profile a sparse RNA expression profile.
+     *
+     * @return a new expression record with RNA levels extracted from
+     * the input profile.
+     */
+    public static ExpressionClassI create(SparseExpressionProfile profile) {
+        return create(profile.get(Locus.A.getHugoSymbol()),
+                      profile.get(Locus.B.getHugoSymbol()),
+                      profile.get(Locus.C.getHugoSymbol()));
+    }
+
     /**
      * Creates a new expression record for a tumor sample.
      *
@@ -79,6 +108,235 @@ public final class ExpressionClassI {
                       matrix.get(barcode, Locus.C.getHugoSymbol()));
     }
 
+    /**
+     * Number of columns (one per class I locus) in the expression
+     * matrices used by the cohort computations.
+     */
+    public static final int LOCUS_COUNT = 3;
+
+    /**
+     * Extracts the HLA class I expression for a cohort of tumors into
+     * a primitive matrix.
+     *
+     * @param barcodes the tumors of interest.
+     *
+     * @param matrix the RNA expression matrix.
+     *
+     * @return a row-major matrix (stored in a single array) with one
+     * row per tumor (in the order of the barcode list) and one column
+     * per locus (A, B, C).
+     *
+     * @throws RuntimeException unless the expression matrix contains
+     * every tumor and the HLA genes.
+     */
+    public static double[] expressionMatrix(List<TumorBarcode> barcodes, TumorExpressionMatrix matrix) {
+        int[] cols = new int[LOCUS_COUNT];
+
+        for (Locus locus : Locus.values()) {
+            cols[locus.ordinal()] = matrix.indexOf(locus.getHugoSymbol());
+
+            if (cols[locus.ordinal()] < 0)
+                throw JamException.runtime("Missing expression for [%s].", locus.getHugoSymbol().getKey());
+        }
+
+        double[] expression = new double[LOCUS_COUNT * barcodes.size()];
+
+        for (int tumor = 0; tumor < barcodes.size(); ++tumor) {
+            int row = matrix.indexOf(barcodes.get(tumor));
+
+            if (row < 0)
+                throw JamException.runtime("Missing expression for [%s].", barcodes.get(tumor).getKey());
+
+            for (int locus = 0; locus < LOCUS_COUNT; ++locus)
+                expression[LOCUS_COUNT * tumor + locus] = matrix.get(row, cols[locus]);
+        }
+
+        return expression;
+    }
+
+    /**
+     * Computes the Herfindahl and diversity indexes of the HLA
+     * expression for a cohort of tumors.
+     *
+     * @param genotypes the genotype of each tumor.
+     *
+     * @param expression the HLA expression of each tumor, in the
+     * layout returned by {@code expressionMatrix}: row {@code k}
+     * must contain the expression for {@code genotypes.get(k)}.
+     *
+     * @param herfindahl an array to be filled with the Herfindahl
+     * index of each tumor.
+     *
+     * @param diversity an array to be filled with the diversity index
+     * of each tumor.
+     *
+     * @throws IllegalArgumentException unless the arrays are large
+     * enough for every genotype.
+     */
+    public static void computeDiversity(List<Genotype> genotypes,
+                                        double[] expression,
+                                        double[] herfindahl,
+                                        double[] diversity) {
+        int count = genotypes.size();
+
+        if (expression.length < LOCUS_COUNT * count || herfindahl.length < count || diversity.length < count)
+            throw new IllegalArgumentException("Arrays are too short for the genotypes.");
+
+        //
+        // Reduce each genotype to the inverse number of unique alleles
+        // at each locus (zero at missing loci) and the inverse number
+        // of unique alleles overall...
+        //
+        double[] locusWeights = new double[LOCUS_COUNT * count];
+        double[] uniqueWeights = new double[count];
+
+        for (int k = 0; k < count; ++k) {
+            Genotype genotype = genotypes.get(k);
+
+            for (Locus locus : Locus.values())
+                locusWeights[LOCUS_COUNT * k + locus.ordinal()] = inverse(genotype.countUniqueAlleles(locus));
+
+            uniqueWeights[k] = inverse(genotype.countUniqueAlleles());
+        }
+
+        //
+        // A single branch-free pass over primitive arrays...
+        //
+        for (int k = 0; k < count; ++k) {
+            int offset = LOCUS_COUNT * k;
+
+            double exprA = expression[offset];
+            double exprB = expression[offset + 1];
+            double exprC = expression[offset + 2];
+            double total = exprA + exprB + exprC;
+
+            double fracA = exprA / total;
+            double fracB = exprB / total;
+            double fracC = exprC / total;
+
+            double index =
+                fracA * fracA * locusWeights[offset]
+                + fracB * fracB * locusWeights[offset + 1]
+                + fracC * fracC * locusWeights[offset + 2];
+
+            herfindahl[k] = index;
+            diversity[k] = (1.0 - index) / (1.0 - uniqueWeights[k]);
+        }
+    }
+
+    /**
+     * Returns the number of genotypes that {@code enumerateLOH} would
+     * generate from a given genotype.
+     *
+     * @param genotype the genotype of interest.
+     *
+     * @param lost the number of unique alleles lost.
+     *
+     * @return the number of genotypes that may be formed by losing
+     * the specified number of alleles.
+     */
+    public static int countLOH(Genotype genotype, int lost) {
+        int unique = genotype.countUniqueAlleles();
+        long result = 1;
+
+        for (int k = 1; k <= lost; ++k)
+            result = result * (unique - lost + k) / k;
+
+        return (int) result;
+    }
+
+    /**
+     * Computes the Herfindahl and diversity indexes for every genotype
+     * that may be formed from a given genotype by loss of
+     * heterozygosity, without creating the genotypes.
+     *
+     * <p>The genotypes are scored in the order of the bit masks (in
+     * increasing numerical order) that mark the lost alleles, with
+     * bit {@code k} corresponding to the {@code k}-th unique allele
+     * in allele order.  As in {@code Genotype.enumerateLOH}, each
+     * remaining allele is counted once.
+     *
+     * @param genotype the genotype of interest.
+     *
+     * @param expression an expression matrix in the layout returned
+     * by {@code expressionMatrix}.
+     *
+     * @param row the row of the expression matrix for the tumor.
+     *
+     * @param lost the number of unique alleles lost.
+     *
+     * @param herfindahl an array to be filled with the Herfindahl
+     * index of each LOH genotype.
+     *
+     * @param diversity an array to be filled with the diversity index
+     * of each LOH genotype.
+     *
+     * @return the number of LOH genotypes scored (the value of
+     * {@code countLOH(genotype, lost)}).
+     *
+     * @throws IllegalArgumentException unless the number of lost
+     * alleles is positive and no greater than the number of unique
+     * alleles, and the output arrays are long enough.
+     */
+    public static int computeDiversityLOH(Genotype genotype,
+                                          double[] expression,
+                                          int row,
+                                          int lost,
+                                          double[] herfindahl,
+                                          double[] diversity) {
+        int unique = genotype.countUniqueAlleles();
+
+        if (lost < 1 || lost > unique)
+            throw new IllegalArgumentException("Invalid LOH count.");
+
+        int count = countLOH(genotype, lost);
+
+        if (herfindahl.length < count || diversity.length < count)
+            throw new IllegalArgumentException("Arrays are too short for the LOH genotypes.");
+
+        int offset = LOCUS_COUNT * row;
+        double total = expression[offset] + expression[offset + 1] + expression[offset + 2];
+
+        //
+        // Unique alleles are sorted by locus, so the alleles at each
+        // locus occupy a contiguous block of bits...
+        //
+        int[] locusMasks = new int[LOCUS_COUNT];
+        int shift = 0;
+
+        for (Locus locus : Locus.values()) {
+            int locusCount = genotype.countUniqueAlleles(locus);
+            locusMasks[locus.ordinal()] = ((1 << locusCount) - 1) << shift;
+            shift += locusCount;
+        }
+
+        double uniqueWeight = inverse(unique - lost);
+
+        int index = 0;
+        int limit = 1 << unique;
+
+        for (int mask = (1 << lost) - 1; mask < limit; mask = Genotype.nextCombination(mask)) {
+            double result = 0.0;
+
+            for (int locus = 0; locus < LOCUS_COUNT; ++locus) {
+                double frac = expression[offset + locus] / total;
+                int remaining = Integer.bitCount(locusMasks[locus] & ~mask);
+
+                result += frac * frac * inverse(remaining);
+            }
+
+            herfindahl[index] = result;
+            diversity[index] = (1.0 - result) / (1.0 - uniqueWeight);
+            ++index;
+        }
+
+        return index;
+    }
+
+    private static double inverse(int count) {
+        return (count > 0) ? 1.0 / count : 0.0;
+    }
+
     /**
      * Returns the raw RNA expression for a given HLA locus.
      *
@@ -130,8 +388,14 @@ public final class ExpressionClassI {
     public double herfindahl(Genotype genotype) {
         double result = 0.0;
 
-        for (Allele allele : genotype.viewUniqueAlleles())
-            result += DoubleUtil.square(normalize(allele, genotype));
+        for (Locus locus : Locus.values()) {
+            int count = genotype.countUniqueAlleles(locus);
+
+            if (count > 0) {
+                double frac = expr.get(locus).doubleValue() / total.doubleValue();
+                result += frac * frac / count;
+            }
+        }
 
         return result;
     }
@@ -1,53 +1,85 @@
 
 package jean.hla;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 
-import com.google.common.collect.HashMultiset;
-import com.google.common.collect.ImmutableSortedMultiset;
 import com.google.common.collect.Multiset;
-
-import org.apache.commons.math3.util.Combinations;
+import com.google.common.collect.Multisets;
 
 import jam.io.ObjectParser;
 import jam.io.ObjectReader;
 import jam.lang.JamException;
-import jam.util.AbstractImmutableMultiset;
-import jam.util.CollectionUtil;
 
 /**
  * Represents the complete HLA genotype for a single MHC class.
+ *
+ * <p>A genotype is an immutable multiset of alleles stored as a
+ * small array of dense allele indexes (see {@link Allele#index()}),
+ * sorted in allele order, together with a 64-bit membership
+ * signature.  A class I genotype occupies well under one hundred
+ * bytes, and membership tests, unique allele counts, and
+ * homozygosity tests never allocate or traverse more than the six
+ * stored alleles.
  */
-public final class Genotype extends AbstractImmutableMultiset<Allele> implements Comparable<Genotype> {
-    private final Map<Locus, List<Allele>> locusMap =
-        new EnumMap<Locus, List<Allele>>(Locus.class);
+public final class Genotype extends AbstractCollection<Allele> implements Multiset<Allele>, Comparable<Genotype> {
+    // Dense allele indexes in allele order (repeated for homozygous
+    // alleles) and the number of distinct indexes...
+    private final int[] indexes;
+    private final int uniqueCount;
+
+    // Bit (index % 64) is set for every allele in the genotype, so
+    // most absent alleles are rejected by a single mask test...
+    private final long signature;
+
+    private Genotype(int[] indexes) {
+        this.indexes = indexes;
+        this.uniqueCount = countUnique(indexes);
+        this.signature = computeSignature(indexes);
+    }
+
+    private static int countUnique(int[] indexes) {
+        int count = 0;
+
+        for (int k = 0; k < indexes.length; ++k)
+            if (k == 0 || indexes[k] != indexes[k - 1])
+                ++count;
 
-    private Genotype(ImmutableSortedMultiset<Allele> alleles) {
-        super(alleles);
-        fillLocusMap();
+        return count;
     }
 
-    private void fillLocusMap() {
-        for (Locus locus : Locus.values())
-            locusMap.put(locus, new ArrayList<Allele>(2));
+    private static long computeSignature(int[] indexes) {
+        long signature = 0L;
+
+        for (int index : indexes)
+            signature |= bit(index);
+
+        return signature;
+    }
 
-        for (Allele allele : this)
-            mapAllele(allele);
+    private static long bit(int index) {
+        return 1L << (index & 63);
     }
 
-    private void mapAllele(Allele allele) {
-        List<Allele> alleleList = locusMap.get(allele.getLocus());
+    private static Genotype create(Allele[] alleles) {
+        Arrays.sort(alleles);
 
-        if (!alleleList.contains(allele))
-            alleleList.add(allele);
+        int[] indexes = new int[alleles.length];
+
+        for (int k = 0; k < alleles.length; ++k)
+            indexes[k] = alleles[k].index();
+
+        return new Genotype(indexes);
     }
 
     /**
@@ -58,7 +90,7 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
      * @return the new genotype.
      */
     public static Genotype instance(Allele... alleles) {
-        return new Genotype(ImmutableSortedMultiset.copyOf(alleles));
+        return create(alleles.clone());
     }
 
     /**
@@ -69,7 +101,7 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
      * @return the new genotype.
      */
     public static Genotype instance(Collection<Allele> alleles) {
-        return new Genotype(ImmutableSortedMultiset.copyOf(alleles));
+        return create(alleles.toArray(new Allele[0]));
     }
 
     /**
@@ -100,6 +132,27 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
         }
     }
 
+    /**
+     * Constructs a new fixed genotype by parsing a string of alleles
+     * separated by white space, in a single pass over its characters.
+     *
+     * @param s the string representation.
+     *
+     * @return the fixed genotype described by the input string.
+     *
+     * @throws RuntimeException unless the string contains only valid
+     * alleles.
+     */
+    public static Genotype parse(CharSequence s) {
+        int[] codes = new int[Parser.countFields(s)];
+        Allele[] alleles = new Allele[Allele.parseCodes(s, codes)];
+
+        for (int k = 0; k < alleles.length; ++k)
+            alleles[k] = Allele.fromCode(codes[k]);
+
+        return create(alleles);
+    }
+
     /**
      * Constructs a new fixed genotype by parsing a string
      * representation.
@@ -172,12 +225,19 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
     }
 
     private Allele getLocus(Locus locus, int index) {
-        List<Allele> alleleList = locusMap.get(locus);
+        int found = 0;
+
+        for (int k = 0; k < indexes.length; ++k) {
+            if (k > 0 && indexes[k] == indexes[k - 1])
+                continue;
 
-        if (index < alleleList.size())
-            return alleleList.get(index);
-        else
-            return null;
+            Allele allele = Allele.fromIndex(indexes[k]);
+
+            if (allele.getLocus() == locus && found++ == index)
+                return allele;
+        }
+
+        return null;
     }
 
     /**
@@ -186,7 +246,7 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
      * @return the number of unique alleles in this genotype.
      */
     public int countUniqueAlleles() {
-        return elementSet().size();
+        return uniqueCount;
     }
 
     /**
@@ -197,7 +257,13 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
      * @return the number of unique alleles at the specified locus.
      */
     public int countUniqueAlleles(Locus locus) {
-        return locusMap.get(locus).size();
+        int count = 0;
+
+        for (int k = 0; k < indexes.length; ++k)
+            if ((k == 0 || indexes[k] != indexes[k - 1]) && Allele.fromIndex(indexes[k]).getLocus() == locus)
+                ++count;
+
+        return count;
     }
 
     /**
@@ -233,21 +299,29 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
      * allele in the argument collection.
      */
     public Genotype delete(Collection<Allele> alleles) {
-        Multiset<Allele> keep = HashMultiset.create(this);
-
         for (Allele allele : alleles)
-            if (keep.contains(allele))
-                keep.setCount(allele, 0);
-            else
+            if (!contains(allele))
                 throw JamException.runtime("Genotype does not contain allele [%s].", allele);
 
-        return instance(keep);
+        int[] kept = new int[indexes.length];
+        int keptCount = 0;
+
+        for (int index : indexes)
+            if (!alleles.contains(Allele.fromIndex(index)))
+                kept[keptCount++] = index;
+
+        return new Genotype(Arrays.copyOf(kept, keptCount));
     }
 
     /**
      * Enumerates all genotypes that may be formed from loss of
      * heterozygosity.
      *
+     * <p>Each genotype in the result contains one copy of each unique
+     * allele that remains.  The combinations of lost alleles are
+     * enumerated as bit masks over the unique alleles, so only the
+     * resulting genotypes are allocated.
+     *
      * @param count the number of unique alleles lost.
      *
      * @return a set containing all unique genotypes that may be
@@ -257,26 +331,60 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
         if (count < 1)
             throw new IllegalArgumentException("LOH count must be positive.");
 
-        List<Allele> uniqueAlleles = new ArrayList<Allele>(viewUniqueAlleles());
-
-        if (count > uniqueAlleles.size())
+        if (count > uniqueCount)
             throw new IllegalArgumentException("LOU count must not exceed the number of unique alleles.");
 
-        Set<Genotype> lohGenotypes = new TreeSet<Genotype>();
-        Combinations  combinations = new Combinations(uniqueAlleles.size(), count);
+        if (uniqueCount > 30)
+            throw new IllegalArgumentException("Too many unique alleles for LOH enumeration.");
 
-        for (int[] indexes : combinations) {
-            Set<Allele> lohAlleles = copyUniqueAlleles();
+        int[] unique = uniqueIndexes();
+        Set<Genotype> lohGenotypes = new TreeSet<Genotype>();
 
-            for (int index : indexes)
-                lohAlleles.remove(uniqueAlleles.get(index));
+        //
+        // Visit every mask with exactly "count" bits set in increasing
+        // order (Gosper's hack); each set bit marks a lost allele...
+        //
+        int limit = 1 << uniqueCount;
 
-            lohGenotypes.add(instance(lohAlleles));
-        }
+        for (int lost = (1 << count) - 1; lost < limit; lost = nextCombination(lost))
+            lohGenotypes.add(retain(unique, lost));
 
         return lohGenotypes;
     }
 
+    //
+    // Returns the next larger integer with the same number of set
+    // bits...
+    //
+    static int nextCombination(int mask) {
+        int lowest = mask & -mask;
+        int ripple = mask + lowest;
+
+        return ripple | (((mask ^ ripple) >>> 2) / lowest);
+    }
+
+    private static Genotype retain(int[] unique, int lost) {
+        int[] kept = new int[unique.length - Integer.bitCount(lost)];
+        int keptCount = 0;
+
+        for (int k = 0; k < unique.length; ++k)
+            if ((lost & (1 << k)) == 0)
+                kept[keptCount++] = unique[k];
+
+        return new Genotype(kept);
+    }
+
+    private int[] uniqueIndexes() {
+        int[] unique = new int[uniqueCount];
+        int count = 0;
+
+        for (int k = 0; k < indexes.length; ++k)
+            if (k == 0 || indexes[k] != indexes[k - 1])
+                unique[count++] = indexes[k];
+
+        return unique;
+    }
+
     /**
      * Identifies heterozygous genotypes.
      *
@@ -294,11 +402,7 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
      * copies of any allele.
      */
     public boolean isHomozygous() {
-        for (Multiset.Entry<Allele> entry : entrySet())
-            if (entry.getCount() > 1)
-                return true;
-
-        return false;
+        return uniqueCount < indexes.length;
     }
 
     /**
@@ -310,7 +414,7 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
      * unique alleles at the specified locus.
      */
     public boolean isHomozygous(Locus locus) {
-        return locusMap.get(locus).size() < 2;
+        return countUniqueAlleles(locus) < 2;
     }
 
     /**
@@ -332,7 +436,13 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
      * specified locus.
      */
     public List<Allele> viewUniqueAlleles(Locus locus) {
-        return Collections.unmodifiableList(locusMap.get(locus));
+        List<Allele> alleles = new ArrayList<Allele>(2);
+
+        for (Allele allele : elementSet())
+            if (allele.getLocus() == locus)
+                alleles.add(allele);
+
+        return Collections.unmodifiableList(alleles);
     }
 
     /**
@@ -344,7 +454,179 @@ public final class Genotype extends AbstractImmutableMultiset<Allele> implements
         return elementSet();
     }
 
+    @Override public int size() {
+        return indexes.length;
+    }
+
+    @Override public Iterator<Allele> iterator() {
+        return new AlleleIterator(false);
+    }
+
+    private final class AlleleIterator implements Iterator<Allele> {
+        private final boolean unique;
+        private int position = 0;
+
+        private AlleleIterator(boolean unique) {
+            this.unique = unique;
+        }
+
+        @Override public boolean hasNext() {
+            return position < indexes.length;
+        }
+
+        @Override public Allele next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            int index = indexes[position++];
+
+            if (unique)
+                while (position < indexes.length && indexes[position] == index)
+                    ++position;
+
+            return Allele.fromIndex(index);
+        }
+    }
+
+    @Override public boolean contains(Object obj) {
+        return count(obj) > 0;
+    }
+
+    @Override public int count(Object obj) {
+        if (!(obj instanceof Allele))
+            return 0;
+
+        int index = ((Allele) obj).index();
+
+        if ((signature & bit(index)) == 0L)
+            return 0;
+
+        int count = 0;
+
+        for (int element : indexes)
+            if (element == index)
+                ++count;
+
+        return count;
+    }
+
+    @Override public Set<Allele> elementSet() {
+        return new AbstractSet<Allele>() {
+            @Override public boolean contains(Object obj) {
+                return Genotype.this.contains(obj);
+            }
+
+            @Override public Iterator<Allele> iterator() {
+                return new AlleleIterator(true);
+            }
+
+            @Override public int size() {
+                return uniqueCount;
+            }
+        };
+    }
+
+    @Override public Set<Multiset.Entry<Allele>> entrySet() {
+        return new AbstractSet<Multiset.Entry<Allele>>() {
+            @Override public Iterator<Multiset.Entry<Allele>> iterator() {
+                Iterator<Allele> alleles = new AlleleIterator(true);
+
+                return new Iterator<Multiset.Entry<Allele>>() {
+                    @Override public boolean hasNext() {
+                        return alleles.hasNext();
+                    }
+
+                    @Override public Multiset.Entry<Allele> next() {
+                        Allele allele = alleles.next();
+                        return Multisets.immutableEntry(allele, count(allele));
+                    }
+                };
+            }
+
+            @Override public int size() {
+                return uniqueCount;
+            }
+        };
+    }
+
+    @Override public int add(Allele allele, int occurrences) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public boolean add(Allele allele) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public int remove(Object obj, int occurrences) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public boolean remove(Object obj) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public int setCount(Allele allele, int count) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public boolean setCount(Allele allele, int oldCount, int newCount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
     @Override public int compareTo(Genotype that) {
-        return CollectionUtil.compareIterationOrder(this, that);
+        int length = Math.min(this.indexes.length, that.indexes.length);
+
+        for (int k = 0; k < length; ++k) {
+            if (this.indexes[k] != that.indexes[k]) {
+                Allele thisAllele = Allele.fromIndex(this.indexes[k]);
+                Allele thatAllele = Allele.fromIndex(that.indexes[k]);
+
+                return thisAllele.compareTo(thatAllele);
+            }
+        }
+
+        return Integer.compare(this.indexes.length, that.indexes.length);
+    }
+
+    @Override public boolean equals(Object obj) {
+        if (obj instanceof Genotype)
+            return Arrays.equals(this.indexes, ((Genotype) obj).indexes);
+
+        if (!(obj instanceof Multiset))
+            return false;
+
+        Multiset<?> that = (Multiset<?>) obj;
+
+        if (this.size() != that.size() || this.uniqueCount != that.entrySet().size())
+            return false;
+
+        for (Multiset.Entry<?> entry : that.entrySet())
+            if (count(entry.getElement()) != entry.getCount())
+                return false;
+
+        return true;
+    }
+
+    @Override public int hashCode() {
+        //
+        // The hash code required by the Multiset contract...
+        //
+        return entrySet().hashCode();
+    }
+
+    @Override public String toString() {
+        return entrySet().toString();
     }
 }
@@ -12,6 +12,7 @@ import jam.app.JamProperties;
 import jam.lang.JamException;
 import jam.util.RegexUtil;
 
+import jean.app.LazyGlobal;
 import jean.tcga.TumorBarcode;
 
 /**
@@ -25,11 +26,19 @@ import jean.tcga.TumorBarcode;
  *
  * <p>Commas are the stanard column delimiter, but tabs and pipe
  * characters ({@code |}) are also permitted.
+ *
+ * <p><b>Binary format.</b> A database may also be loaded from a
+ * compiled {@link GenotypeStore}, which is memory-mapped rather than
+ * parsed; {@link GenotypeDb#load(File)} detects compiled files by
+ * their magic number.
  */
 public final class GenotypeDb {
+    // Exactly one of these is non-null...
     private final Map<TumorBarcode, Genotype> genotypes;
+    private final GenotypeStore store;
 
-    private static GenotypeDb global = null;
+    private static final LazyGlobal<GenotypeDb> global =
+        LazyGlobal.create("GenotypeDb", GenotypeDb::createGlobal);
 
     /**
      * Name of the system property that specifies the file containing
@@ -39,7 +48,8 @@ public final class GenotypeDb {
 
     /**
      * Delimiter that separates alleles within the genotype column in
-     * a database file.
+     * a database file (white space, which the loader scans directly
+     * with {@link Genotype#parse(CharSequence)}).
      */
     public static final Pattern ALLELE_ALELE_DELIM = RegexUtil.MULTI_WHITE_SPACE;
 
@@ -60,6 +70,12 @@ public final class GenotypeDb {
      */
     public GenotypeDb(Map<TumorBarcode, Genotype> genotypes) {
         this.genotypes = new HashMap<TumorBarcode, Genotype>(genotypes);
+        this.store = null;
+    }
+
+    private GenotypeDb(GenotypeStore store) {
+        this.genotypes = null;
+        this.store = store;
     }
 
     /**
@@ -70,10 +86,7 @@ public final class GenotypeDb {
      * properties.
      */
     public static GenotypeDb global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static GenotypeDb createGlobal() {
@@ -85,7 +98,8 @@ public final class GenotypeDb {
     }
 
     /**
-     * Loads tumor genotypes from a file in standard format.
+     * Loads tumor genotypes from a file in standard format or from a
+     * compiled genotype store.
      *
      * @param file the genotype file to read.
      *
@@ -93,14 +107,18 @@ public final class GenotypeDb {
      * mapped to their unique identifier.
      *
      * @throws RuntimeException unless the file name contains a valid
-     * genotype file in standard format.
+     * genotype file in standard format or a compiled genotype store.
      */
     public static GenotypeDb load(File file) {
-        return GenotypeDbLoader.load(file);
+        if (GenotypeStore.isBinary(file))
+            return new GenotypeDb(GenotypeStore.map(file));
+        else
+            return GenotypeDbLoader.load(file);
     }
 
     /**
-     * Loads tumor genotypes from a file in standard format.
+     * Loads tumor genotypes from a file in standard format or from a
+     * compiled genotype store.
      *
      * @param fileName the name of the genotype file to read.
      *
@@ -108,7 +126,7 @@ public final class GenotypeDb {
      * mapped to their unique identifier.
      *
      * @throws RuntimeException unless the file name contains a valid
-     * genotype file in standard format.
+     * genotype file in standard format or a compiled genotype store.
      */
     public static GenotypeDb load(String fileName) {
         return load(new File(fileName));
@@ -123,7 +141,10 @@ public final class GenotypeDb {
      * the specified tumor.
      */
     public boolean contains(TumorBarcode barcode) {
-        return genotypes.containsKey(barcode);
+        if (store != null)
+            return store.contains(barcode);
+        else
+            return genotypes.containsKey(barcode);
     }
 
     /**
@@ -135,7 +156,10 @@ public final class GenotypeDb {
      * if the tumor is not in this database.
      */
     public Genotype lookup(TumorBarcode barcode) {
-        return genotypes.get(barcode);
+        if (store != null)
+            return store.lookup(barcode);
+        else
+            return genotypes.get(barcode);
     }
 
     /**
@@ -163,7 +187,10 @@ public final class GenotypeDb {
      * @return the number of genotypes in this database.
      */
     public int size() {
-        return genotypes.size();
+        if (store != null)
+            return store.countTumors();
+        else
+            return genotypes.size();
     }
 
     /**
@@ -173,6 +200,9 @@ public final class GenotypeDb {
      * from this database.
      */
     public Set<TumorBarcode> viewBarcodes() {
-        return Collections.unmodifiableSet(genotypes.keySet());
+        if (store != null)
+            return store.viewBarcodes();
+        else
+            return Collections.unmodifiableSet(genotypes.keySet());
     }
 }
@@ -51,7 +51,7 @@ final class GenotypeDbLoader {
 
     private void parseColumns(List<String> columns) {
         TumorBarcode barcode  = TumorBarcode.instance(columns.get(barcodeIndex));
-        Genotype     genotype = Genotype.parse(columns.get(genotypeIndex), GenotypeDb.ALLELE_ALELE_DELIM);
+        Genotype     genotype = Genotype.parse(columns.get(genotypeIndex));
 
         if (genotypes.containsKey(barcode))
             throw JamException.runtime("Duplicate tumor barcode: [%s]", barcode.getKey());
@@ -0,0 +1,574 @@
+
+package jean.hla;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import jam.app.JamLogger;
+import jam.lang.JamException;
+import jam.lang.KeyedObject;
+
+import jean.tcga.PatientID;
+import jean.tcga.TumorBarcode;
+import jean.tcga.TumorPatientTable;
+
+/**
+ * Stores tumor genotypes in a compiled binary file that is
+ * memory-mapped rather than parsed.
+ *
+ * <p>A store contains a sorted dictionary of genotype keys (patient
+ * IDs, or tumor barcodes for stores compiled from a
+ * {@code GenotypeDb}), one fixed-width row of allele codes (see
+ * {@link Allele#code()}) for each key, a sorted dictionary of tumor
+ * barcodes, and the precomputed join from each tumor to its genotype
+ * row.  Tumors are found by binary search over the mapped barcode
+ * dictionary, so opening a store reads only its header, and every
+ * read uses absolute positions, so a store may be shared by any
+ * number of threads.
+ *
+ * <p>All fields are little-endian {@code int}s unless noted.  A file
+ * contains:
+ *
+ * <ol>
+ *   <li>A fixed header: the magic number {@code JGEN}, the format
+ *   version, the tumor count, the genotype row count, the row width
+ *   (alleles per row), and a reserved zero.</li>
+ *
+ *   <li>The tumor dictionary offsets ({@code tumorCount + 1} byte
+ *   offsets into the tumor key block).</li>
+ *
+ *   <li>The tumor join: the genotype row for each tumor.</li>
+ *
+ *   <li>The genotype dictionary offsets ({@code rowCount + 1} byte
+ *   offsets into the genotype key block).</li>
+ *
+ *   <li>The genotype rows: {@code rowWidth} allele codes per row,
+ *   in allele order, padded with zeros.</li>
+ *
+ *   <li>The tumor key block and the genotype key block: the UTF-8
+ *   bytes of the keys, in unsigned byte order.</li>
+ * </ol>
+ */
+public final class GenotypeStore {
+    private final int tumorCount;
+    private final int rowCount;
+    private final int rowWidth;
+
+    private final IntBuffer tumorOffsets;
+    private final IntBuffer tumorRows;
+    private final IntBuffer rowOffsets;
+    private final IntBuffer alleleCodes;
+
+    private final ByteBuffer tumorKeys;
+    private final ByteBuffer rowKeys;
+
+    // Genotypes decoded so far, indexed by row; genotypes are
+    // immutable, so a race merely decodes a row twice...
+    private final Genotype[] decoded;
+
+    private static final int MAGIC = 0x4E45474A; // "JGEN" in little-endian order
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * Number of allele codes in each genotype row (two alleles at
+     * each class I locus).
+     */
+    public static final int ROW_WIDTH = 6;
+
+    /**
+     * Conventional suffix for compiled genotype files.
+     */
+    public static final String SUFFIX = ".jgen";
+
+    private GenotypeStore(File file, ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw JamException.runtime("File [%s] is not a compiled genotype store.", file);
+
+        if (buffer.getInt(4) != VERSION)
+            throw JamException.runtime("Unsupported genotype store version: [%d].", buffer.getInt(4));
+
+        this.tumorCount = buffer.getInt(8);
+        this.rowCount = buffer.getInt(12);
+        this.rowWidth = buffer.getInt(16);
+
+        if (tumorCount < 0 || rowCount < 0 || rowWidth < 1)
+            throw JamException.runtime("Corrupt genotype store header: [%s].", file);
+
+        long position = HEADER_SIZE;
+
+        this.tumorOffsets = ints(file, buffer, position, tumorCount + 1);
+        position += Integer.BYTES * (tumorCount + 1L);
+
+        this.tumorRows = ints(file, buffer, position, tumorCount);
+        position += Integer.BYTES * (long) tumorCount;
+
+        this.rowOffsets = ints(file, buffer, position, rowCount + 1);
+        position += Integer.BYTES * (rowCount + 1L);
+
+        this.alleleCodes = ints(file, buffer, position, rowCount * rowWidth);
+        position += Integer.BYTES * (long) rowCount * rowWidth;
+
+        this.tumorKeys = bytes(file, buffer, position, tumorOffsets.get(tumorCount));
+        position += tumorOffsets.get(tumorCount);
+
+        this.rowKeys = bytes(file, buffer, position, rowOffsets.get(rowCount));
+        this.decoded = new Genotype[rowCount];
+    }
+
+    private static IntBuffer ints(File file, ByteBuffer buffer, long position, int count) {
+        return slice(file, buffer, position, Integer.BYTES * (long) count).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static ByteBuffer bytes(File file, ByteBuffer buffer, long position, int count) {
+        return slice(file, buffer, position, count);
+    }
+
+    private static ByteBuffer slice(File file, ByteBuffer buffer, long position, long length) {
+        if (length < 0 || position + length > buffer.capacity())
+            throw JamException.runtime("Truncated genotype store: [%s].", file);
+
+        return buffer.duplicate().position((int) position).limit((int) (position + length)).slice();
+    }
+
+    /**
+     * Determines whether a file contains a compiled genotype store.
+     *
+     * @param file the file to examine.
+     *
+     * @return {@code true} iff the specified file begins with the
+     * genotype store magic number.
+     */
+    public static boolean isBinary(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return false;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (magic.hasRemaining())
+                if (channel.read(magic) < 0)
+                    return false;
+
+            return magic.getInt(0) == MAGIC;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Maps a compiled genotype store into memory.
+     *
+     * @param file the compiled store.
+     *
+     * @return a read-only genotype store backed by the mapped file.
+     *
+     * @throws RuntimeException unless the file can be opened for
+     * reading and contains a valid genotype store.
+     */
+    public static GenotypeStore map(File file) {
+        JamLogger.info("Mapping genotype store [%s]...", file.getName());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw JamException.runtime("Genotype store [%s] is too large to map.", file);
+
+            ByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+            return new GenotypeStore(file, buffer);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Compiles a genotype store from a mapping of tumors to genotype
+     * keys and a mapping of genotype keys to genotypes.
+     *
+     * <p>Tumors whose key has no genotype are omitted from the store.
+     *
+     * @param <K> the runtime type of the genotype keys.
+     *
+     * @param tumors the genotype key (e.g., patient ID) of each tumor.
+     *
+     * @param genotypes the genotype for each key.
+     *
+     * @param file the destination file (which is overwritten if it
+     * exists).
+     *
+     * @throws RuntimeException unless every genotype fits in a row
+     * and the file can be written.
+     */
+    public static <K extends KeyedObject<String>> void store(Map<TumorBarcode, K> tumors,
+                                                             Map<K, Genotype> genotypes,
+                                                             File file) {
+        JamLogger.info("Writing genotype store [%s]...", file.getName());
+
+        byte[][] rowKeyBytes = sortedKeys(genotypes.keySet());
+        Map<String, Integer> rowIndex = new HashMap<String, Integer>(rowKeyBytes.length);
+
+        for (int row = 0; row < rowKeyBytes.length; ++row)
+            rowIndex.put(new String(rowKeyBytes[row], StandardCharsets.UTF_8), row);
+
+        Map<String, K> keyObjects = new HashMap<String, K>(genotypes.size());
+
+        for (K key : genotypes.keySet())
+            keyObjects.put(key.getKey(), key);
+
+        Map<TumorBarcode, K> joined = new HashMap<TumorBarcode, K>(tumors.size());
+
+        for (Map.Entry<TumorBarcode, K> entry : tumors.entrySet())
+            if (genotypes.containsKey(entry.getValue()))
+                joined.put(entry.getKey(), entry.getValue());
+
+        byte[][] tumorKeyBytes = sortedKeys(joined.keySet());
+
+        long size = HEADER_SIZE
+            + Integer.BYTES * (2L * tumorKeyBytes.length + 1L)
+            + Integer.BYTES * (rowKeyBytes.length + 1L)
+            + Integer.BYTES * (long) rowKeyBytes.length * ROW_WIDTH
+            + blockSize(tumorKeyBytes)
+            + blockSize(rowKeyBytes);
+
+        if (size > Integer.MAX_VALUE)
+            throw JamException.runtime("Genotype store is too large.");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(tumorKeyBytes.length);
+        buffer.putInt(rowKeyBytes.length);
+        buffer.putInt(ROW_WIDTH);
+        buffer.putInt(0);
+
+        putOffsets(buffer, tumorKeyBytes);
+
+        for (byte[] tumorKey : tumorKeyBytes) {
+            TumorBarcode barcode = TumorBarcode.instance(new String(tumorKey, StandardCharsets.UTF_8));
+            buffer.putInt(rowIndex.get(joined.get(barcode).getKey()));
+        }
+
+        putOffsets(buffer, rowKeyBytes);
+
+        for (byte[] rowKey : rowKeyBytes)
+            putRow(buffer, genotypes.get(keyObjects.get(new String(rowKey, StandardCharsets.UTF_8))));
+
+        for (byte[] tumorKey : tumorKeyBytes)
+            buffer.put(tumorKey);
+
+        for (byte[] rowKey : rowKeyBytes)
+            buffer.put(rowKey);
+
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static byte[][] sortedKeys(Set<? extends KeyedObject<String>> keys) {
+        byte[][] bytes = new byte[keys.size()][];
+        int index = 0;
+
+        for (KeyedObject<String> key : keys)
+            bytes[index++] = key.getKey().getBytes(StandardCharsets.UTF_8);
+
+        Arrays.sort(bytes, Arrays::compareUnsigned);
+        return bytes;
+    }
+
+    private static long blockSize(byte[][] keys) {
+        long size = 0;
+
+        for (byte[] key : keys)
+            size += key.length;
+
+        return size;
+    }
+
+    private static void putOffsets(ByteBuffer buffer, byte[][] keys) {
+        int offset = 0;
+        buffer.putInt(offset);
+
+        for (byte[] key : keys) {
+            offset += key.length;
+            buffer.putInt(offset);
+        }
+    }
+
+    private static void putRow(ByteBuffer buffer, Genotype genotype) {
+        if (genotype.size() > ROW_WIDTH)
+            throw JamException.runtime("Genotype [%s] has more than [%d] alleles.", genotype, ROW_WIDTH);
+
+        for (Allele allele : genotype)
+            buffer.putInt(allele.code());
+
+        for (int k = genotype.size(); k < ROW_WIDTH; ++k)
+            buffer.putInt(0);
+    }
+
+    /**
+     * Compiles the genotypes in a text genotype database (tumor
+     * barcodes and genotypes) into a binary store.
+     *
+     * @param textFile the genotype database to compile.
+     *
+     * @param binaryFile the destination binary file.
+     *
+     * @throws RuntimeException unless the text file contains a valid
+     * genotype database and the binary file can be written.
+     */
+    public static void compile(File textFile, File binaryFile) {
+        GenotypeDb db = GenotypeDb.load(textFile);
+        Map<TumorBarcode, TumorBarcode> tumors = new HashMap<TumorBarcode, TumorBarcode>(db.size());
+        Map<TumorBarcode, Genotype> genotypes = new HashMap<TumorBarcode, Genotype>(db.size());
+
+        for (TumorBarcode barcode : db.viewBarcodes()) {
+            tumors.put(barcode, barcode);
+            genotypes.put(barcode, db.require(barcode));
+        }
+
+        store(tumors, genotypes, binaryFile);
+    }
+
+    /**
+     * Compiles the join of a tumor-patient table and a patient-genotype
+     * table into a binary store.
+     *
+     * @param tumorPatientFile the file containing the mapping from
+     * tumor samples to patients.
+     *
+     * @param patientGenotypeFile the file containing the patient
+     * genotypes.
+     *
+     * @param binaryFile the destination binary file.
+     *
+     * @throws RuntimeException unless the input files contain valid
+     * data tables and the binary file can be written.
+     */
+    public static void compile(File tumorPatientFile, File patientGenotypeFile, File binaryFile) {
+        TumorPatientTable tumorPatientTable = TumorPatientTable.load(tumorPatientFile);
+        PatientGenotypeTable patientGenotypeTable = PatientGenotypeTable.load(patientGenotypeFile);
+
+        Map<TumorBarcode, PatientID> tumors = new HashMap<TumorBarcode, PatientID>(tumorPatientTable.size());
+        Map<PatientID, Genotype> genotypes = new HashMap<PatientID, Genotype>(patientGenotypeTable.size());
+
+        for (TumorBarcode barcode : tumorPatientTable.viewBarcodes())
+            tumors.put(barcode, tumorPatientTable.require(barcode));
+
+        for (PatientID patient : patientGenotypeTable.viewPatients())
+            genotypes.put(patient, patientGenotypeTable.require(patient));
+
+        store(tumors, genotypes, binaryFile);
+    }
+
+    /**
+     * Identifies tumors with genotypes in this store.
+     *
+     * @param barcode a tumor barcode of interest.
+     *
+     * @return {@code true} iff this store contains a genotype for the
+     * specified tumor.
+     */
+    public boolean contains(TumorBarcode barcode) {
+        return indexOf(barcode) >= 0;
+    }
+
+    /**
+     * Returns the genotype for a given tumor.
+     *
+     * @param barcode a tumor barcode of interest.
+     *
+     * @return the genotype for the specified tumor, or {@code null}
+     * if the tumor is not in this store.
+     */
+    public Genotype lookup(TumorBarcode barcode) {
+        int tumor = indexOf(barcode);
+
+        if (tumor < 0)
+            return null;
+        else
+            return decode(tumorRows.get(tumor));
+    }
+
+    /**
+     * Returns the genotype stored under a given patient ID (in stores
+     * compiled from patient genotype tables).
+     *
+     * @param patient a patient ID of interest.
+     *
+     * @return the genotype for the specified patient, or {@code null}
+     * if the patient is not in this store.
+     */
+    public Genotype lookup(PatientID patient) {
+        int row = search(rowKeys, rowOffsets, rowCount, patient.getKey());
+
+        if (row < 0)
+            return null;
+        else
+            return decode(row);
+    }
+
+    private int indexOf(TumorBarcode barcode) {
+        return search(tumorKeys, tumorOffsets, tumorCount, barcode.getKey());
+    }
+
+    private static int search(ByteBuffer keys, IntBuffer offsets, int count, String key) {
+        byte[] target = key.getBytes(StandardCharsets.UTF_8);
+
+        int lo = 0;
+        int hi = count - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(keys, offsets.get(mid), offsets.get(mid + 1), target);
+
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+
+        return -1;
+    }
+
+    private static int compare(ByteBuffer keys, int start, int end, byte[] target) {
+        int length = Math.min(end - start, target.length);
+
+        for (int k = 0; k < length; ++k) {
+            int cmp = Integer.compare(keys.get(start + k) & 0xFF, target[k] & 0xFF);
+
+            if (cmp != 0)
+                return cmp;
+        }
+
+        return Integer.compare(end - start, target.length);
+    }
+
+    private Genotype decode(int row) {
+        Genotype genotype = decoded[row];
+
+        if (genotype == null) {
+            Allele[] alleles = new Allele[rowWidth];
+            int count = 0;
+
+            for (int k = 0; k < rowWidth; ++k) {
+                int code = alleleCodes.get(row * rowWidth + k);
+
+                if (code != 0)
+                    alleles[count++] = Allele.fromCode(code);
+            }
+
+            genotype = Genotype.instance(Arrays.copyOf(alleles, count));
+            decoded[row] = genotype;
+        }
+
+        return genotype;
+    }
+
+    private TumorBarcode barcode(int tumor) {
+        int start = tumorOffsets.get(tumor);
+        int end = tumorOffsets.get(tumor + 1);
+
+        byte[] bytes = new byte[end - start];
+        tumorKeys.duplicate().position(start).get(bytes);
+
+        return TumorBarcode.instance(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the number of tumors in this store.
+     *
+     * @return the number of tumors in this store.
+     */
+    public int countTumors() {
+        return tumorCount;
+    }
+
+    /**
+     * Returns the number of distinct genotype rows in this store.
+     *
+     * @return the number of distinct genotype rows in this store.
+     */
+    public int countGenotypes() {
+        return rowCount;
+    }
+
+    /**
+     * Returns a read-only view of the tumors in this store (in
+     * barcode order); membership tests search the mapped dictionary.
+     *
+     * @return a read-only view of the tumors in this store.
+     */
+    public Set<TumorBarcode> viewBarcodes() {
+        return new AbstractSet<TumorBarcode>() {
+            @Override public boolean contains(Object obj) {
+                return (obj instanceof TumorBarcode) && GenotypeStore.this.contains((TumorBarcode) obj);
+            }
+
+            @Override public Iterator<TumorBarcode> iterator() {
+                return new Iterator<TumorBarcode>() {
+                    private int next = 0;
+
+                    @Override public boolean hasNext() {
+                        return next < tumorCount;
+                    }
+
+                    @Override public TumorBarcode next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+
+                        return barcode(next++);
+                    }
+                };
+            }
+
+            @Override public int size() {
+                return tumorCount;
+            }
+        };
+    }
+
+    private static void usage() {
+        System.err.println("Usage: jean.hla.GenotypeStore GENOTYPE_DB_FILE BINARY_FILE");
+        System.err.println("       jean.hla.GenotypeStore TUMOR_PATIENT_FILE PATIENT_GENOTYPE_FILE BINARY_FILE");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 2)
+            compile(new File(args[0]), new File(args[1]));
+        else if (args.length == 3)
+            compile(new File(args[0]), new File(args[1]), new File(args[2]));
+        else
+            usage();
+    }
+}
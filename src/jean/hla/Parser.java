@@ -2,78 +2,148 @@
 package jean.hla;
 
 import jam.lang.JamException;
-import jam.util.StringUtil;
 
+//
+// Parses allele strings in a single pass over their characters,
+// creating no intermediate strings.  An allele consists of an
+// optional "HLA-" prefix, the locus name, an optional delimiter
+// ("*", "-", "_", in that order), a two-digit supertype, another
+// optional delimiter (":", "-", "_", in that order), and a two- or
+// three-digit subtype; leading and trailing white space is ignored...
+//
 final class Parser {
-    private final String original;
+    private static final Locus[] LOCI = Locus.values();
 
-    private String substr;
-    private Locus  locus;
-    private int    superType;
-    private int    subType;
+    private Parser() {}
 
-    private Parser(String string) {
-        this.original = string;
-        this.substr   = string;
+    static Allele parse(CharSequence chars) {
+        return Allele.fromCode(parseCode(chars, 0, chars.length()));
     }
 
-    static Allele parse(String string) {
-        return new Parser(string).parse();
-    }
+    static int parseCode(CharSequence chars, int start, int end) {
+        int pos = start;
+        int lim = end;
 
-    private Allele parse() {
-        trimWhiteSpace();
-        removePrefix();
-        parseLocus();
-        removeDelim1();
-        parseSuperType();
-        removeDelim2();
-        parseSubType();
+        while (pos < lim && chars.charAt(pos) <= ' ')
+            ++pos;
 
-        return Allele.instance(locus, superType, subType);
-    }
+        while (lim > pos && chars.charAt(lim - 1) <= ' ')
+            --lim;
 
-    private void trimWhiteSpace() {
-        substr = original.trim();
-    }
+        if (matches(chars, pos, lim, Allele.PREFIX))
+            pos += Allele.PREFIX.length();
 
-    private void removePrefix() {
-        substr = StringUtil.removePrefix(substr, Allele.PREFIX);
-    }
+        Locus locus = null;
 
-    private void parseLocus() {
-        for (Locus candidate : Locus.values()) {
-            if (substr.startsWith(candidate.name())) {
-                locus  = candidate;
-                substr = StringUtil.removePrefix(substr, candidate.name());
-                return;
+        for (Locus candidate : LOCI) {
+            if (matches(chars, pos, lim, candidate.name())) {
+                locus = candidate;
+                pos += candidate.name().length();
+                break;
             }
         }
 
-        throw JamException.runtime("Missing locus in allele [%s].", original);
+        if (locus == null)
+            throw JamException.runtime("Missing locus in allele [%s].", chars.subSequence(start, end));
+
+        pos = skip(chars, pos, lim, '*');
+        pos = skip(chars, pos, lim, '-');
+        pos = skip(chars, pos, lim, '_');
+
+        if (lim - pos < 2)
+            throw JamException.runtime("Invalid allele format [%s].", chars.subSequence(start, end));
+
+        int superType = digits(chars, pos, pos + 2, start, end);
+        pos += 2;
+
+        pos = skip(chars, pos, lim, ':');
+        pos = skip(chars, pos, lim, '-');
+        pos = skip(chars, pos, lim, '_');
+
+        if (lim - pos < 2 || lim - pos > 3)
+            throw JamException.runtime("Invalid allele format [%s].", chars.subSequence(start, end));
+
+        int subType = digits(chars, pos, lim, start, end);
+
+        return Allele.encode(locus, superType, subType);
+    }
+
+    //
+    // Parses the white-space delimited alleles in a genotype field into
+    // allele codes and returns the number of alleles...
+    //
+    static int parseCodes(CharSequence chars, int[] codes) {
+        int count = 0;
+        int pos = 0;
+        int end = chars.length();
+
+        while (pos < end) {
+            while (pos < end && Character.isWhitespace(chars.charAt(pos)))
+                ++pos;
+
+            if (pos == end)
+                break;
+
+            int tokenStart = pos;
+
+            while (pos < end && !Character.isWhitespace(chars.charAt(pos)))
+                ++pos;
+
+            if (count == codes.length)
+                throw JamException.runtime("Too many alleles in genotype [%s].", chars);
+
+            codes[count++] = parseCode(chars, tokenStart, pos);
+        }
+
+        return count;
     }
 
-    private void removeDelim1() {
-        substr = StringUtil.removePrefix(substr, "*");
-        substr = StringUtil.removePrefix(substr, "-");
-        substr = StringUtil.removePrefix(substr, "_");
+    static int countFields(CharSequence chars) {
+        int count = 0;
+        boolean inField = false;
+
+        for (int pos = 0; pos < chars.length(); ++pos) {
+            boolean space = Character.isWhitespace(chars.charAt(pos));
+
+            if (!space && !inField)
+                ++count;
+
+            inField = !space;
+        }
+
+        return count;
     }
 
-    private void parseSuperType() {
-        superType = Integer.parseInt(substr.substring(0, 2));
-        substr    = substr.substring(2);
+    private static boolean matches(CharSequence chars, int pos, int lim, String target) {
+        if (lim - pos < target.length())
+            return false;
+
+        for (int k = 0; k < target.length(); ++k)
+            if (chars.charAt(pos + k) != target.charAt(k))
+                return false;
+
+        return true;
     }
 
-    private void removeDelim2() {
-        substr = StringUtil.removePrefix(substr, ":");
-        substr = StringUtil.removePrefix(substr, "-");
-        substr = StringUtil.removePrefix(substr, "_");
+    private static int skip(CharSequence chars, int pos, int lim, char delim) {
+        if (pos < lim && chars.charAt(pos) == delim)
+            return pos + 1;
+        else
+            return pos;
     }
 
-    private void parseSubType() {
-        if (substr.length() < 2 || substr.length() > 3)
-            throw JamException.runtime("Invalid allele format [%s].", original);
+    private static int digits(CharSequence chars, int pos, int lim, int start, int end) {
+        int value = 0;
+
+        for (int k = pos; k < lim; ++k) {
+            int digit = chars.charAt(k) - '0';
+
+            if (digit < 0 || digit > 9)
+                throw JamException.runtime("Invalid allele format [%s].", chars.subSequence(start, end));
+
+            value = 10 * value + digit;
+        }
 
-        subType = Integer.parseInt(substr);
+        return value;
     }
 }
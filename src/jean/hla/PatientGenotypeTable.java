@@ -2,18 +2,18 @@
 package jean.hla;
 
 import java.io.File;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-
 import jam.app.JamLogger;
 import jam.io.TableReader;
 import jam.lang.JamException;
@@ -32,10 +32,21 @@ import jean.tcga.PatientID;
  *
  * <p>Commas are the stanard column delimiter, but tabs and pipe
  * characters ({@code |}) are also permitted.
+ *
+ * <p><b>Allele index.</b> Patients are assigned dense integer IDs (in
+ * patient ID order), and the patients carrying each allele are
+ * stored in a bitmap over those IDs.  Allele matches, carrier
+ * counts, and compound queries (see {@link #query(Allele)}) are
+ * therefore bitwise operations that never touch the genotypes.
  */
 public final class PatientGenotypeTable {
     private final Map<PatientID, Genotype> genotypes;
-    private final Multimap<Allele, PatientID> alleleMap = HashMultimap.create();
+
+    // Patients indexed by their dense ID (so sorted by patient ID)
+    // and the bitmap of carriers (over dense IDs) for each allele...
+    private final PatientID[] patients;
+    private final Map<Allele, BitSet> carriers;
+    private final Set<Allele> alleles;
 
     private PatientGenotypeTable(Map<PatientID, Genotype> genotypes, boolean copy) {
         if (copy)
@@ -43,22 +54,26 @@ public final class PatientGenotypeTable {
         else
             this.genotypes = genotypes;
 
-        fillAlleleMap();
+        this.patients = this.genotypes.keySet().toArray(new PatientID[0]);
+        this.carriers = new HashMap<Allele, BitSet>();
+
+        fillCarriers();
+        this.alleles = Collections.unmodifiableSet(new TreeSet<Allele>(carriers.keySet()));
     }
 
-    private void fillAlleleMap() {
-        for (Map.Entry<PatientID, Genotype> entry : genotypes.entrySet()) {
-            PatientID patient  = entry.getKey();
-            Genotype  genotype = entry.getValue();
+    private void fillCarriers() {
+        for (int patientID = 0; patientID < patients.length; ++patientID) {
+            Genotype genotype = genotypes.get(patients[patientID]);
 
             for (Allele allele : genotype.viewUniqueAlleles())
-                alleleMap.put(allele, patient);
+                carriers.computeIfAbsent(allele, key -> new BitSet(patients.length)).set(patientID);
         }
     }
 
     /**
      * Delimiter that separates alleles within the genotype column in
-     * a database file.
+     * a database file (white space, which the loader scans directly
+     * with {@link Genotype#parse(CharSequence)}).
      */
     public static final Pattern ALELE_DELIM = RegexUtil.MULTI_WHITE_SPACE;
 
@@ -140,11 +155,89 @@ public final class PatientGenotypeTable {
      *
      * @param allele the allele to match.
      *
-     * @return a read-only view of the patients whose genotype
+     * @return a read-only set view of the patients whose genotype
+     * contains the target allele, backed by the carrier bitmap.
+     */
+    public Set<PatientID> match(Allele allele) {
+        return query(allele).viewPatients();
+    }
+
+    /**
+     * Starts a compound query for the patients carrying a given
+     * allele; the query may be refined by further allele criteria.
+     *
+     * @param allele the allele to match.
+     *
+     * @return a query that selects the patients whose genotype
      * contains the target allele.
      */
-    public Collection<PatientID> match(Allele allele) {
-        return Collections.unmodifiableCollection(alleleMap.get(allele));
+    public AlleleQuery query(Allele allele) {
+        return new AlleleQuery(this, carrierBits(allele));
+    }
+
+    /**
+     * Starts a compound query that selects every patient in this
+     * table.
+     *
+     * @return a query that selects every patient in this table.
+     */
+    public AlleleQuery queryAll() {
+        BitSet bits = new BitSet(patients.length);
+        bits.set(0, patients.length);
+
+        return new AlleleQuery(this, bits);
+    }
+
+    //
+    // Returns the stored bitmap, which must never be modified...
+    //
+    BitSet carrierBits(Allele allele) {
+        BitSet bits = carriers.get(allele);
+
+        if (bits != null)
+            return bits;
+        else
+            return new BitSet();
+    }
+
+    PatientID patient(int patientID) {
+        return patients[patientID];
+    }
+
+    //
+    // Returns the dense ID of a patient, or a negative value if the
+    // patient is not in this table...
+    //
+    int patientID(PatientID patient) {
+        return Arrays.binarySearch(patients, patient);
+    }
+
+    /**
+     * Counts the patients whose genotype contains a given allele.
+     *
+     * @param allele the allele to match.
+     *
+     * @return the number of patients whose genotype contains the
+     * target allele.
+     */
+    public int countCarriers(Allele allele) {
+        return carrierBits(allele).cardinality();
+    }
+
+    /**
+     * Computes the carrier frequency of every allele in this table.
+     *
+     * @return a map (sorted by allele) containing the fraction of
+     * patients whose genotype contains each allele (an empty map for
+     * an empty table).
+     */
+    public SortedMap<Allele, Double> computeCarrierFrequencies() {
+        SortedMap<Allele, Double> frequencies = new TreeMap<Allele, Double>();
+
+        for (Allele allele : alleles)
+            frequencies.put(allele, ((double) countCarriers(allele)) / patients.length);
+
+        return frequencies;
     }
 
     /**
@@ -183,11 +276,6 @@ public final class PatientGenotypeTable {
      * from the genotypes in this database.
      */
     public Set<Allele> viewAlleles() {
-        Set<Allele> alleles = new TreeSet<Allele>();
-
-        for (Genotype genotype : genotypes.values())
-            alleles.addAll(genotype);
-
         return alleles;
     }
 
@@ -240,7 +328,7 @@ public final class PatientGenotypeTable {
 
         private void parseColumns(List<String> columns) {
             PatientID patient  = PatientID.instance(columns.get(patientIndex));
-            Genotype  genotype = Genotype.parse(columns.get(genotypeIndex), ALELE_DELIM);
+            Genotype  genotype = Genotype.parse(columns.get(genotypeIndex));
 
             if (genotypes.containsKey(patient))
                 throw JamException.runtime("Duplicate patient: [%s]", patient.getKey());
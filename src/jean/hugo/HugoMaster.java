@@ -13,6 +13,7 @@ import jam.app.JamEnv;
 import jam.app.JamProperties;
 import jam.io.TableReader;
 
+import jean.app.LazyGlobal;
 import jean.ensembl.EnsemblGeneID;
 
 /**
@@ -21,7 +22,8 @@ import jean.ensembl.EnsemblGeneID;
 public final class HugoMaster {
     private final Multimap<HugoSymbol, EnsemblGeneID> map;
 
-    private static HugoMaster global = null;
+    private static final LazyGlobal<HugoMaster> global =
+        LazyGlobal.create("HugoMaster", HugoMaster::createGlobal);
 
     private HugoMaster() {
         this.map = HashMultimap.create();
@@ -51,10 +53,11 @@ public final class HugoMaster {
      * environment variables.
      */
     public static HugoMaster global() {
-        if (global == null)
-            global = load(resolveMasterFile());
+        return global.get();
+    }
 
-        return global;
+    private static HugoMaster createGlobal() {
+        return load(resolveMasterFile());
     }
 
     private static String resolveMasterFile() {
@@ -0,0 +1,158 @@
+
+package jean.hugo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jean.peptide.Peptide;
+
+/**
+ * Stores the gene-peptide mapping of a {@link HugoPeptideTable} in
+ * compact integer arrays for kernels that scatter per-gene values
+ * onto peptides.
+ *
+ * <p>Genes and peptides are assigned dense zero-based indexes; genes
+ * are indexed in the order of their symbol keys, so that other sorted
+ * gene lists may be merged against the index.  The
+ * peptides mapped to gene {@code k} occupy positions
+ * {@code [peptideStart(k), peptideEnd(k))} of a single array of
+ * peptide indexes, which are retrieved by {@code peptideIndex(j)}.
+ */
+public final class HugoPeptideIndex {
+    private final HugoSymbol[] symbols;
+    private final Peptide[] peptides;
+
+    // Compressed sparse row layout: the peptide indexes for symbol k
+    // are stored in peptideIndexes[offsets[k]..offsets[k + 1])...
+    private final int[] offsets;
+    private final int[] peptideIndexes;
+
+    private HugoPeptideIndex(HugoSymbol[] symbols, Peptide[] peptides, int[] offsets, int[] peptideIndexes) {
+        this.symbols = symbols;
+        this.peptides = peptides;
+        this.offsets = offsets;
+        this.peptideIndexes = peptideIndexes;
+    }
+
+    /**
+     * Builds the index for a gene-peptide table.
+     *
+     * @param table the table to index.
+     *
+     * @return the index for the specified table.
+     */
+    static HugoPeptideIndex build(HugoPeptideTable table) {
+        HugoSymbol[] symbols = table.viewSymbols().toArray(new HugoSymbol[0]);
+        Arrays.sort(symbols, Comparator.comparing(HugoSymbol::getKey));
+
+        int[] offsets = new int[symbols.length + 1];
+        int[] peptideIndexes = new int[table.size()];
+
+        List<Peptide> peptides = new ArrayList<Peptide>(table.viewPeptides().size());
+        Map<Peptide, Integer> peptideMap = new HashMap<Peptide, Integer>(table.viewPeptides().size());
+
+        int position = 0;
+
+        for (int k = 0; k < symbols.length; ++k) {
+            Collection<Peptide> mapped = table.get(symbols[k]);
+
+            for (Peptide peptide : mapped) {
+                Integer index = peptideMap.get(peptide);
+
+                if (index == null) {
+                    index = peptides.size();
+                    peptides.add(peptide);
+                    peptideMap.put(peptide, index);
+                }
+
+                peptideIndexes[position++] = index;
+            }
+
+            offsets[k + 1] = position;
+        }
+
+        return new HugoPeptideIndex(symbols, peptides.toArray(new Peptide[0]), offsets, peptideIndexes);
+    }
+
+    /**
+     * Returns the number of genes in this index.
+     *
+     * @return the number of genes in this index.
+     */
+    public int countSymbols() {
+        return symbols.length;
+    }
+
+    /**
+     * Returns the number of unique peptides in this index.
+     *
+     * @return the number of unique peptides in this index.
+     */
+    public int countPeptides() {
+        return peptides.length;
+    }
+
+    /**
+     * Returns the gene with a given index.
+     *
+     * @param symbolIndex the zero-based gene index.
+     *
+     * @return the gene with the specified index.
+     */
+    public HugoSymbol symbol(int symbolIndex) {
+        return symbols[symbolIndex];
+    }
+
+    /**
+     * Returns the peptide with a given index.
+     *
+     * @param peptideIndex the zero-based peptide index.
+     *
+     * @return the peptide with the specified index.
+     */
+    public Peptide peptide(int peptideIndex) {
+        return peptides[peptideIndex];
+    }
+
+    /**
+     * Returns the first position of the peptides mapped to a gene.
+     *
+     * @param symbolIndex the zero-based gene index.
+     *
+     * @return the first position (inclusive) of the peptides mapped
+     * to the specified gene.
+     */
+    public int peptideStart(int symbolIndex) {
+        return offsets[symbolIndex];
+    }
+
+    /**
+     * Returns the last position of the peptides mapped to a gene.
+     *
+     * @param symbolIndex the zero-based gene index.
+     *
+     * @return the last position (exclusive) of the peptides mapped
+     * to the specified gene.
+     */
+    public int peptideEnd(int symbolIndex) {
+        return offsets[symbolIndex + 1];
+    }
+
+    /**
+     * Returns the peptide index stored at a given position.
+     *
+     * @param position a position in the range
+     * {@code [peptideStart(k), peptideEnd(k))} for some gene {@code k}.
+     *
+     * @return the index of the peptide stored at the specified
+     * position.
+     */
+    public int peptideIndex(int position) {
+        return peptideIndexes[position];
+    }
+}
@@ -28,6 +28,9 @@ public final class HugoPeptideTable {
     private final Set<Peptide> peptides = new HashSet<Peptide>();
     private final Multimap<HugoSymbol, Peptide> hugoMap = HashMultimap.create();
 
+    // Built on demand, after the table has been populated...
+    private volatile HugoPeptideIndex index = null;
+
     private static final int SYMBOL_INDEX = 0;
     private static final int PEPTIDE_INDEX = 1;
 
@@ -160,6 +163,29 @@ public final class HugoPeptideTable {
         return Collections.unmodifiableCollection(hugoMap.get(symbol));
     }
 
+    /**
+     * Returns the compact integer index of the gene-peptide mapping
+     * in this table; the index is built on the first call.
+     *
+     * @return the compact index of this table.
+     */
+    public HugoPeptideIndex index() {
+        HugoPeptideIndex result = index;
+
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+
+                if (result == null) {
+                    result = HugoPeptideIndex.build(this);
+                    index = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the number of gene-peptide mappings in this table.
      *
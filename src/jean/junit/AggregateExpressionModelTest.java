@@ -1,6 +1,8 @@
 
 package jean.junit;
 
+import java.util.List;
+
 import jean.hugo.HugoSymbol;
 import jean.rna.AggregateExpressionModel;
 import jean.rna.Expression;
@@ -45,6 +47,28 @@ public class AggregateExpressionModelTest {
         assertNull(model.lookup(tumor2, BRAF));
     }
 
+    @Test public void testBatch() {
+        TumorBarcode tumor1 = TumorBarcode.instance("tumor1");
+
+        HugoSymbol A1BG = HugoSymbol.instance("A1BG");
+        HugoSymbol A2M  = HugoSymbol.instance("A2M");
+        HugoSymbol BRAF = HugoSymbol.instance("BRAF");
+
+        ExpressionModel model = ExpressionModel.global();
+
+        int[] symbolIds = model.indexOf(List.of(A2M, BRAF, A1BG));
+        double[] levels = new double[3];
+
+        assertEquals(-1, symbolIds[1]);
+        model.lookup(tumor1, symbolIds, levels);
+
+        assertEquals(9740.280, levels[0], 0.0001);
+        assertTrue(Double.isNaN(levels[1]));
+        assertEquals(  79.566, levels[2], 0.0001);
+
+        assertEquals(79.566, model.resolve(tumor1).get(model.indexOf(A1BG)), 0.0001);
+    }
+
     @Test(expected = RuntimeException.class)
     public void testMissing() {
         HugoSymbol   BRAF   = HugoSymbol.instance("BRAF");
@@ -47,12 +47,74 @@ public class AlleleTest {
         assertEquals(20702, C2.hashCode());
     }
 
+    @Test public void testCanonical() {
+        assertSame(A1, Allele.instance("HLA-A*02:01"));
+        assertSame(A1, Allele.instance(Locus.A, 2, 1));
+        assertSame(A1, Allele.fromIndex(A1.index()));
+        assertSame(B2, Allele.fromCode(B2.code()));
+
+        assertTrue(Allele.countInstances() > C2.index());
+    }
+
+    @Test public void testCode() {
+        assertEquals(A1.hashCode(), A1.code());
+        assertEquals(13501, B2.code());
+
+        Allele wide1 = Allele.instance("HLA-A*01:150");
+        Allele wide2 = Allele.instance("HLA-A*02:50");
+
+        assertNotEquals(wide1.code(), wide2.code());
+        assertTrue(wide1.compareTo(wide2) < 0);
+
+        // Codes are stable: they decode to the same allele...
+        assertSame(wide1, Allele.fromCode(wide1.code()));
+        assertEquals(Allele.instance(Locus.C, 12, 3), Allele.fromCode(20000 + 1203));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidCode() {
+        Allele.fromCode(-1);
+    }
+
     @Test public void testInstance() {
         assertEquals(A1, Allele.instance("HLA-A*02:01"));
         assertEquals(A1, Allele.instance("HLA-A-02:01"));
         assertEquals(A1, Allele.instance("HLA-A-02-01"));
     }
 
+    @Test public void testDelimiters() {
+        for (String s : List.of("A0201", " HLA-A*02:01 ", "A*0201", "A-02-01", "A_02_01", "HLA-A*-_02:-_01"))
+            assertSame(A1, Allele.instance(s));
+
+        assertEquals(Allele.instance(Locus.A, 2, 101), Allele.instance("HLA-A*02:101"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testBadLocus() {
+        Allele.instance("HLA-E*01:01");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testBadDigits() {
+        Allele.instance("A02x1");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testBadLength() {
+        Allele.instance("A02:1");
+    }
+
+    @Test public void testParseCodes() {
+        int[] codes = new int[8];
+
+        assertEquals(3, Allele.parseCodes("  C0702\tA*02:01  HLA-B*35:01 ", codes));
+        assertEquals(C2.code(), codes[0]);
+        assertEquals(A1.code(), codes[1]);
+        assertEquals(B2.code(), codes[2]);
+
+        assertEquals(0, Allele.parseCodes("   ", codes));
+    }
+
     @Test public void testLoad() {
         List<Allele> alleles = Allele.load("data/test/alleles.txt");
 
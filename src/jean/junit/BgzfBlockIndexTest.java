@@ -0,0 +1,88 @@
+
+package jean.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import jean.fasta.BgzfBlockIndex;
+import jean.fasta.BgzfFile;
+import jean.fasta.BgzfOutputStream;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class BgzfBlockIndexTest {
+    private static final File ENSEMBL_FILE = new File("data/test/ensembl_test1.fa");
+
+    private static File createTempFile(String suffix) throws IOException {
+        File file = File.createTempFile("bgzf", suffix);
+        file.deleteOnExit();
+        BgzfBlockIndex.indexFile(file).deleteOnExit();
+        return file;
+    }
+
+    @Test public void testEmpty() throws IOException {
+        File sourceFile = createTempFile(".txt");
+        File bgzfFile = createTempFile(".gz");
+        File gziFile = BgzfBlockIndex.indexFile(bgzfFile);
+
+        BgzfOutputStream.compress(sourceFile, bgzfFile);
+
+        byte[] bytes = Files.readAllBytes(gziFile.toPath());
+
+        assertEquals(8, bytes.length);
+        assertEquals(0L, ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong());
+
+        BgzfBlockIndex index = BgzfBlockIndex.load(gziFile);
+
+        assertEquals(1, index.countBlocks());
+        assertEquals(0, index.locateBlock(0));
+    }
+
+    @Test public void testStoreLoad() throws IOException {
+        File bgzfFile = createTempFile(".gz");
+        File gziFile = BgzfBlockIndex.indexFile(bgzfFile);
+
+        BgzfOutputStream.compress(ENSEMBL_FILE, bgzfFile);
+
+        try (BgzfFile bgzf = BgzfFile.open(bgzfFile)) {
+            BgzfBlockIndex stored = bgzf.getBlockIndex();
+            BgzfBlockIndex loaded = BgzfBlockIndex.load(gziFile);
+
+            assertEquals(stored.countBlocks(), loaded.countBlocks());
+            assertEquals(0L, loaded.getCompressedOffset(0));
+            assertEquals(0L, loaded.getUncompressedOffset(0));
+            assertEquals(stored.locateBlock(ENSEMBL_FILE.length() - 1), loaded.locateBlock(ENSEMBL_FILE.length() - 1));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testLeadingEmptyBlock() throws IOException {
+        File bgzfFile = createTempFile(".gz");
+        File shiftedFile = createTempFile(".gz");
+
+        BgzfOutputStream.compress(ENSEMBL_FILE, bgzfFile);
+
+        // Prepend an empty (end-of-file marker) block, so the first
+        // block with data no longer starts at compressed offset zero...
+        byte[] bytes = Files.readAllBytes(bgzfFile.toPath());
+        byte[] eofBlock = Arrays.copyOfRange(bytes, bytes.length - 28, bytes.length);
+
+        Files.write(shiftedFile.toPath(), eofBlock);
+        Files.write(shiftedFile.toPath(), bytes, StandardOpenOption.APPEND);
+
+        try (BgzfFile bgzf = BgzfFile.open(shiftedFile)) {
+            assertEquals(28L, bgzf.getBlockIndex().getCompressedOffset(0));
+            bgzf.getBlockIndex().store(BgzfBlockIndex.indexFile(shiftedFile));
+        }
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.BgzfBlockIndexTest");
+    }
+}
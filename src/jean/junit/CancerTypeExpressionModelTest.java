@@ -1,6 +1,8 @@
 
 package jean.junit;
 
+import java.util.List;
+
 import jean.hugo.HugoSymbol;
 import jean.rna.CancerTypeExpressionModel;
 import jean.rna.Expression;
@@ -38,6 +40,42 @@ public class CancerTypeExpressionModelTest {
         assertNull(model.lookup(AU5884_T, BRAF));
     }
 
+    @Test public void testBatch() {
+        ExpressionModel model = ExpressionModel.global();
+
+        TumorBarcode AU5884_T = TumorBarcode.instance("AU5884_T");
+
+        HugoSymbol A1BG  = HugoSymbol.instance("A1BG");
+        HugoSymbol A2M   = HugoSymbol.instance("A2M");
+        HugoSymbol A2ML1 = HugoSymbol.instance("A2ML1");
+        HugoSymbol BRAF  = HugoSymbol.instance("BRAF");
+
+        int[] symbolIds = model.indexOf(List.of(A1BG, A2M, BRAF, A2ML1));
+        double[] levels = new double[4];
+
+        model.lookup(AU5884_T, symbolIds, levels);
+
+        assertEquals(   90.79, levels[0], 0.0001);
+        assertEquals(20501.45, levels[1], 0.0001);
+        assertTrue(Double.isNaN(levels[2]));
+        assertEquals(    0.93, levels[3], 0.0001);
+    }
+
+    @Test public void testUnknownTumor() {
+        ExpressionModel model = ExpressionModel.global();
+
+        TumorBarcode unknown = TumorBarcode.instance("NoSuchTumor");
+        HugoSymbol   A1BG    = HugoSymbol.instance("A1BG");
+
+        assertNull(model.resolve(unknown));
+        assertNull(model.lookup(unknown, A1BG));
+
+        double[] levels = new double[1];
+        model.lookup(unknown, model.indexOf(List.of(A1BG)), levels);
+
+        assertTrue(Double.isNaN(levels[0]));
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jean.junit.CancerTypeExpressionModelTest");
     }
@@ -45,6 +45,44 @@ public class ConcentrationModelTest {
         assertEquals(Concentration.valueOf(20.0), concProfile.get(pep3));
     }
 
+    @Test public void testReusedArrays() {
+        HugoPeptideTable peptideTable = buildPeptideTable();
+        ExpressionProfile exprProfile = buildExpressionProfile();
+
+        double[] levels = new double[peptideTable.index().countSymbols()];
+        double[] totals = new double[peptideTable.index().countPeptides()];
+
+        for (int trial = 0; trial < 2; ++trial) {
+            PeptideConcentrationProfile concProfile =
+                MODEL.buildProfile(peptideTable, exprProfile, levels, totals);
+
+            assertEquals(Concentration.valueOf(10.0), concProfile.get(pep1));
+            assertEquals(Concentration.valueOf(30.0), concProfile.get(pep2));
+            assertEquals(Concentration.valueOf(20.0), concProfile.get(pep3));
+        }
+    }
+
+    @Test public void testBulkTranslate() {
+        double[] levels = new double[] { 0.0, 0.1, 0.13, 0.5, 10.0, 2.0E+05, Double.NaN };
+
+        for (ConcentrationModelType type : ConcentrationModelType.values()) {
+            ConcentrationModel model = type.defaultModel();
+            double[] concs = new double[levels.length];
+
+            model.translate(levels, concs);
+
+            for (int k = 0; k < levels.length - 1; ++k)
+                assertEquals(model.translate(Expression.valueOf(levels[k])).doubleValue(), concs[k], 1.0E-12);
+
+            assertEquals(0.0, concs[levels.length - 1], 0.0);
+
+            // In-place translation...
+            double[] inPlace = levels.clone();
+            model.translate(inPlace, inPlace);
+            assertArrayEquals(concs, inPlace, 0.0);
+        }
+    }
+
     private HugoPeptideTable buildPeptideTable() {
         Multimap<HugoSymbol, Peptide> peptides = HashMultimap.create();
 
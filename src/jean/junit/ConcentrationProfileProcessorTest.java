@@ -0,0 +1,83 @@
+
+package jean.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+
+import jam.app.JamApp;
+import jam.app.JamProperties;
+
+import jean.rna.ConcentrationModel;
+import jean.rna.ConcentrationProfileProcessor;
+import jean.rna.ExpressionManager;
+import jean.rna.ExpressionMatrixFile;
+import jean.rna.TumorExpressionMatrix;
+import jean.tcga.TumorBarcode;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ConcentrationProfileProcessorTest {
+    private static final TumorBarcode tumor1 = TumorBarcode.instance("OR-A5J1");
+    private static final TumorBarcode tumor2 = TumorBarcode.instance("OR-A5J2");
+    private static final TumorBarcode tumor3 = TumorBarcode.instance("OR-A5J3");
+
+    @Test public void testResume() throws IOException {
+        File expressionDir = Files.createTempDirectory("expression").toFile();
+        File profileDir = Files.createTempDirectory("profiles").toFile();
+
+        expressionDir.deleteOnExit();
+        profileDir.deleteOnExit();
+
+        File matrixFile = new File(expressionDir, ExpressionManager.MATRIX_FILE_NAME);
+        ExpressionMatrixFile.store(TumorExpressionMatrix.load("data/test/tumor_expression.csv"), matrixFile);
+
+        // The input lists tumor1 twice, and the checkpoint from an
+        // interrupted run already contains tumor2...
+        File barcodeFile = new File(profileDir, "barcodes.txt");
+        File checkpointFile = new File(profileDir, ConcentrationProfileProcessor.CHECKPOINT_FILE_NAME);
+
+        Files.write(barcodeFile.toPath(), List.of("OR-A5J1", "OR-A5J2", "OR-A5J1", "OR-A5J3"));
+        Files.write(checkpointFile.toPath(), List.of("OR-A5J2"));
+
+        JamProperties.setProperty(JamApp.REPORT_DIR_PROPERTY, profileDir.getPath());
+        JamProperties.setProperty(ConcentrationModel.CONC_MODEL_TYPE_PROPERTY, "LINEAR");
+        JamProperties.setProperty(ConcentrationProfileProcessor.BARCODE_FILE_PROPERTY, barcodeFile.getPath());
+        JamProperties.setProperty(ConcentrationProfileProcessor.EXPRESSION_DIR_PROPERTY, expressionDir.getPath());
+        JamProperties.setProperty(ConcentrationProfileProcessor.PEPTIDE_TABLE_FILE_PROPERTY, "data/test/hugo_peptide_table.tsv");
+        JamProperties.setProperty(ConcentrationProfileProcessor.PROFILE_DIR_PROPERTY, profileDir.getPath());
+        JamProperties.setProperty(ConcentrationProfileProcessor.THREAD_COUNT_PROPERTY, "2");
+
+        ConcentrationProfileProcessor.run();
+
+        assertTrue(profileFile(profileDir, tumor1).exists());
+        assertFalse(profileFile(profileDir, tumor2).exists());
+        assertTrue(profileFile(profileDir, tumor3).exists());
+
+        List<String> checkpoint = Files.readAllLines(checkpointFile.toPath());
+
+        assertEquals(3, checkpoint.size());
+        assertEquals("OR-A5J2", checkpoint.get(0));
+        assertEquals(Set.of("OR-A5J1", "OR-A5J2", "OR-A5J3"), Set.copyOf(checkpoint));
+
+        // A second run finds every barcode in the checkpoint...
+        long modified = profileFile(profileDir, tumor1).lastModified();
+        ConcentrationProfileProcessor.run();
+
+        assertEquals(checkpoint, Files.readAllLines(checkpointFile.toPath()));
+        assertEquals(modified, profileFile(profileDir, tumor1).lastModified());
+    }
+
+    private static File profileFile(File profileDir, TumorBarcode barcode) {
+        File file = ConcentrationProfileProcessor.profileFile(profileDir.getPath(), barcode);
+        file.deleteOnExit();
+        return file;
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.ConcentrationProfileProcessorTest");
+    }
+}
@@ -1,12 +1,18 @@
 
 package jean.junit;
 
+import java.io.File;
+import java.io.IOException;
+
 import jam.app.JamProperties;
 
 import jean.chr.Chromosome;
 import jean.ensembl.EnsemblLocator;
+import jean.fasta.BgzfBlockIndex;
+import jean.fasta.FastaIndex;
 import jean.nucleic.DNA;
 import jean.nucleic.Nucleotide;
+import jean.nucleic.RNA;
 
 import org.junit.*;
 import static org.junit.Assert.*;
@@ -39,6 +45,182 @@ public class DNATest {
         assertTrue(dna.formatString().endsWith("AATAATTAAATAGAACACCTAGAAAAAACTTTAAAATTTACTCAACTGAAAAGAAACCCA"));
     }
 
+    @Test public void testSubsequence() {
+        Chromosome chr = Chromosome.Chr22;
+
+        assertEquals(240, chr.sequenceLength());
+        assertEquals("NNNNNGGACT", chr.subsequence(0, 10).formatString());
+        assertEquals(chr.dna().formatString(55, 185), chr.subsequence(55, 185).formatString());
+
+        chr.release();
+
+        assertEquals("CCA", chr.subsequence(237, 240).formatString());
+        assertEquals(0, chr.subsequence(100, 100).length());
+
+        chr.release();
+    }
+
+    @Test public void testIndexFiles() throws IOException {
+        Chromosome chr = Chromosome.Chr22;
+        File fastaFile = EnsemblLocator.resolveChromosomeFile("22");
+
+        File faiFile = FastaIndex.indexFile(fastaFile);
+        File gziFile = BgzfBlockIndex.indexFile(fastaFile);
+
+        faiFile.deleteOnExit();
+        gziFile.deleteOnExit();
+
+        try {
+            try (FastaIndex index = FastaIndex.build(fastaFile)) {
+                index.store();
+            }
+
+            assertTrue(gziFile.createNewFile());
+            assertTrue(faiFile.exists());
+
+            assertEquals(fastaFile, EnsemblLocator.resolveChromosomeFile("22"));
+
+            chr.release();
+
+            assertEquals(240, chr.sequenceLength());
+            assertEquals("NNNNNGGACT", chr.subsequence(0, 10).formatString());
+            assertEquals(240, chr.dna().length());
+        }
+        finally {
+            chr.release();
+
+            faiFile.delete();
+            gziFile.delete();
+        }
+    }
+
+    @Test public void testPacked() {
+        String s = "ACGTNNNNacgtnnACGT" + "GATTACA".repeat(10) + "TTTTnnnn";
+        DNA dna = DNA.parse(s);
+
+        assertEquals(s.length(), dna.length());
+        assertEquals(s.toUpperCase(), dna.formatString());
+        assertEquals("NNacgt".toUpperCase(), dna.formatString(6, 12));
+
+        for (int index = 0; index < s.length(); ++index) {
+            assertEquals(Nucleotide.valueOf(Character.toUpperCase(s.charAt(index))), dna.at(index));
+            assertEquals(Character.isLowerCase(s.charAt(index)), dna.isSoftMasked(index));
+        }
+
+        int index = 0;
+
+        for (Nucleotide nucleotide : dna)
+            assertEquals(dna.at(index++), nucleotide);
+
+        assertEquals(s.length(), index);
+
+        DNA sub = dna.subsequence(5, 90);
+
+        assertEquals(85, sub.length());
+        assertEquals(dna.formatString(5, 90), sub.formatString());
+
+        for (index = 0; index < sub.length(); ++index) {
+            assertEquals(dna.at(index + 5), sub.at(index));
+            assertEquals(dna.isSoftMasked(index + 5), sub.isSoftMasked(index));
+        }
+    }
+
+    @Test public void testComplement() {
+        String s = "ACGTNNacgtnnGATTACA".repeat(7);
+        DNA dna = DNA.parse(s);
+
+        DNA comp = dna.complement();
+        DNA rev = dna.reverseComplement();
+
+        assertEquals(dna.length(), comp.length());
+        assertEquals(dna.length(), rev.length());
+
+        for (int index = 0; index < dna.length(); ++index) {
+            int mirror = dna.length() - 1 - index;
+
+            assertEquals(dna.at(index).getPartner(), comp.at(index));
+            assertEquals(dna.at(index).getPartner(), rev.at(mirror));
+            assertEquals(dna.isSoftMasked(index), comp.isSoftMasked(index));
+            assertEquals(dna.isSoftMasked(index), rev.isSoftMasked(mirror));
+        }
+
+        assertEquals(dna.formatString(), rev.reverseComplement().formatString());
+        assertEquals(dna.subsequence(3, 101).reverseComplement().formatString(),
+                     rev.subsequence(dna.length() - 101, dna.length() - 3).formatString());
+    }
+
+    @Test public void testComplementUnknown() {
+        // Unknown and soft-masked bases on both sides of the 32-base
+        // word boundaries; complementing changes the packed codes of
+        // the unknown bases, so only the masks preserve them...
+        String s = "nNacGTNNNNgtAcNn" + "ACGTacgtNNnn".repeat(6) + "TTnnNNaa";
+        DNA dna = DNA.parse(s);
+
+        DNA comp = dna.complement();
+        DNA rev = dna.reverseComplement();
+
+        for (int index = 0; index < s.length(); ++index) {
+            char base = s.charAt(index);
+            int mirror = s.length() - 1 - index;
+
+            boolean unknown = Character.toUpperCase(base) == 'N';
+            boolean masked = Character.isLowerCase(base);
+
+            assertEquals(unknown, comp.at(index) == N);
+            assertEquals(unknown, rev.at(mirror) == N);
+            assertEquals(masked, comp.isSoftMasked(index));
+            assertEquals(masked, rev.isSoftMasked(mirror));
+        }
+
+        assertEquals(s.toUpperCase(), comp.complement().formatString());
+        assertEquals(s.toUpperCase(), rev.reverseComplement().formatString());
+
+        for (int index = 0; index < s.length(); ++index) {
+            assertEquals(Character.isLowerCase(s.charAt(index)), comp.complement().isSoftMasked(index));
+            assertEquals(Character.isLowerCase(s.charAt(index)), rev.reverseComplement().isSoftMasked(index));
+        }
+    }
+
+    @Test public void testReverseComplementRange() {
+        String s = "GATTACA".repeat(5) + "NNNacgNtt" + "CCGGA".repeat(8) + "NacN";
+        DNA dna = DNA.parse(s);
+
+        for (int start : new int[] { 0, 3, 30, 36, 40 }) {
+            for (int end : new int[] { 44, 52, s.length() - 2, s.length() }) {
+                DNA rev = dna.reverseComplement(start, end);
+                assertEquals(end - start, rev.length());
+
+                for (int index = 0; index < rev.length(); ++index) {
+                    int source = end - 1 - index;
+
+                    assertEquals(dna.at(source).getPartner(), rev.at(index));
+                    assertEquals(dna.isSoftMasked(source), rev.isSoftMasked(index));
+                }
+
+                assertEquals(dna.subsequence(start, end).reverseComplement().formatString(), rev.formatString());
+            }
+        }
+    }
+
+    @Test public void testTranscribe() {
+        DNA dna = DNA.parse("GATTACA".repeat(11));
+        RNA rna = dna.transcribe();
+
+        assertEquals("GAUUACA".repeat(11), rna.formatString());
+        assertEquals("UUACAGA", RNA.transcribe(dna, 2, 9).formatString());
+        assertEquals("UGUAAUC".repeat(11), rna.reverseComplement().formatString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTranscribeUnknown() {
+        DNA.parse("ACGTNACGT").transcribe();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalid() {
+        DNA.parse("ACGU");
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jean.junit.DNATest");
     }
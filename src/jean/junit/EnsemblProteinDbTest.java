@@ -3,6 +3,7 @@ package jean.junit;
 
 import jean.ensembl.EnsemblGeneID;
 import jean.ensembl.EnsemblProteinDb;
+import jean.ensembl.EnsemblProteinID;
 import jean.ensembl.EnsemblTranscriptID;
 import jean.hugo.HugoSymbol;
 
@@ -44,6 +45,23 @@ public class EnsemblProteinDbTest {
         assertEquals(KRAS_Hugo, db.getHugo(KRAS_Trans2));
     }
 
+    @Test public void testLazy() {
+        EnsemblProteinDb eager = EnsemblProteinDb.load("data/test/ensembl_test2.fa");
+        EnsemblProteinDb lazy  = EnsemblProteinDb.index("data/test/ensembl_test2.fa");
+
+        assertEquals(eager.size(), lazy.size());
+        assertEquals(eager.proteinSet(), lazy.proteinSet());
+        assertEquals(eager.transcriptSet(), lazy.transcriptSet());
+        assertEquals(eager.hugoSet(), lazy.hugoSet());
+
+        for (EnsemblProteinID protein : eager.proteinSet())
+            assertEquals(eager.get(protein).getPeptide(), lazy.get(protein).getPeptide());
+
+        EnsemblTranscriptID BRAF_Trans1 = EnsemblTranscriptID.instance("ENST00000496384");
+        assertTrue(lazy.get(BRAF_Trans1).getPeptide().formatString().startsWith("MAALSGGGGGGAEPGQALFNGDMEPEAGAG"));
+        assertTrue(lazy.get(BRAF_Trans1).getPeptide().formatString().endsWith("LFVSKFFEHHPIPQEE"));
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jean.junit.EnsemblProteinDbTest");
     }
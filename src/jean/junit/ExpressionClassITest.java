@@ -1,6 +1,8 @@
 
 package jean.junit;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import jam.data.DataMatrix;
@@ -76,6 +78,57 @@ public class ExpressionClassITest extends NumericTestBase {
         assertDouble(0.97200, expr.diversity(hetero));
     }
 
+    @Test public void testBatch() {
+        List<Genotype> genotypes = List.of(homoA2, homoB1, hetero, Genotype.instance(A1, B1));
+        double[] expression = new double[ExpressionClassI.LOCUS_COUNT * genotypes.size()];
+
+        for (int k = 0; k < genotypes.size(); ++k) {
+            expression[3 * k]     = exprA;
+            expression[3 * k + 1] = exprB;
+            expression[3 * k + 2] = exprC;
+        }
+
+        double[] herfindahl = new double[genotypes.size()];
+        double[] diversity = new double[genotypes.size()];
+
+        ExpressionClassI.computeDiversity(genotypes, expression, herfindahl, diversity);
+
+        for (int k = 0; k < genotypes.size(); ++k) {
+            assertDouble(expr.herfindahl(genotypes.get(k)), herfindahl[k]);
+            assertDouble(expr.diversity(genotypes.get(k)), diversity[k]);
+        }
+
+        assertDouble(0.235, herfindahl[0]);
+        assertDouble(0.972, diversity[2]);
+    }
+
+    @Test public void testBatchLOH() {
+        double[] expression = new double[] { exprA, exprB, exprC };
+
+        for (int lost = 1; lost < 4; ++lost) {
+            List<Genotype> lohGenotypes = new ArrayList<Genotype>(homoA2.enumerateLOH(lost));
+
+            int count = ExpressionClassI.countLOH(homoA2, lost);
+            assertEquals(lohGenotypes.size(), count);
+
+            double[] herfindahl = new double[count];
+            double[] diversity = new double[count];
+
+            assertEquals(count, ExpressionClassI.computeDiversityLOH(homoA2, expression, 0, lost, herfindahl, diversity));
+
+            double[] expected = new double[count];
+
+            for (int k = 0; k < count; ++k)
+                expected[k] = expr.herfindahl(lohGenotypes.get(k));
+
+            // The orders differ, so compare the sorted scores...
+            Arrays.sort(expected);
+            Arrays.sort(herfindahl);
+
+            assertArrayEquals(expected, herfindahl, 1.0E-12);
+        }
+    }
+
     @Test public void testHerfindahl() {
         assertDouble(0.235, expr.herfindahl(homoA2));
         assertDouble(0.315, expr.herfindahl(homoB1));
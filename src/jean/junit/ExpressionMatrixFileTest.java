@@ -0,0 +1,121 @@
+
+package jean.junit;
+
+import java.io.File;
+import java.io.IOException;
+
+import jam.app.JamProperties;
+
+import jean.hugo.HugoSymbol;
+import jean.rna.ExpressionManager;
+import jean.rna.ExpressionMatrixFile;
+import jean.rna.ExpressionProfile;
+import jean.rna.TumorExpressionMatrix;
+import jean.tcga.TumorBarcode;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ExpressionMatrixFileTest {
+    private static final File TEXT_FILE = new File("data/test/tumor_expression.csv");
+
+    private static final TumorBarcode tumor3 = TumorBarcode.instance("OR-A5J3");
+    private static final TumorBarcode bad_tumor = TumorBarcode.instance("bad_tumor");
+
+    private static final HugoSymbol gene5 = HugoSymbol.instance("A2M");
+
+    @Test public void testConvertMap() {
+        File binaryFile = new File("data/test/tumor_expression" + ExpressionMatrixFile.SUFFIX);
+        binaryFile.deleteOnExit();
+
+        ExpressionMatrixFile.convert(TEXT_FILE, binaryFile);
+
+        assertTrue(ExpressionMatrixFile.isBinary(binaryFile));
+        assertFalse(ExpressionMatrixFile.isBinary(TEXT_FILE));
+
+        TumorExpressionMatrix text = TumorExpressionMatrix.load(TEXT_FILE);
+        TumorExpressionMatrix mapped = TumorExpressionMatrix.load(binaryFile);
+
+        assertTrue(mapped.isSinglePrecision());
+        assertEquals(text.viewBarcodes(), mapped.viewBarcodes());
+        assertEquals(text.viewSymbols(), mapped.viewSymbols());
+
+        for (int col = 0; col < text.countSymbols(); ++col)
+            assertArrayEquals(text.viewColumn(col).toArray(), mapped.viewColumn(col).toArray(), 0.001);
+
+        for (int row = 0; row < text.countBarcodes(); ++row)
+            assertArrayEquals(text.viewRow(row).toArray(), mapped.viewRow(row).toArray(), 0.001);
+
+        assertEquals(7201.84, mapped.get(tumor3, gene5).doubleValue(), 0.001);
+    }
+
+    @Test public void testManager() {
+        File dir = new File("data/test/mapped_expression");
+        File binaryFile = new File(dir, ExpressionManager.MATRIX_FILE_NAME);
+
+        dir.mkdir();
+        dir.deleteOnExit();
+        binaryFile.deleteOnExit();
+
+        ExpressionMatrixFile.convert(TEXT_FILE, binaryFile);
+        ExpressionManager manager = ExpressionManager.create(dir.getPath());
+
+        assertTrue(manager.exists(tumor3));
+        assertFalse(manager.exists(bad_tumor));
+
+        ExpressionProfile profile = manager.load(tumor3);
+        assertEquals(7201.84, profile.get(gene5).doubleValue(), 0.001);
+
+        assertNull(manager.load(bad_tumor));
+    }
+
+    @Test public void testSegments() throws IOException {
+        File binaryFile = File.createTempFile("tumor_expression", ExpressionMatrixFile.SUFFIX);
+        binaryFile.deleteOnExit();
+
+        ExpressionMatrixFile.convert(TEXT_FILE, binaryFile);
+        TumorExpressionMatrix text = TumorExpressionMatrix.load(TEXT_FILE);
+
+        // Map the 3 x 5 matrix in segments of four values, so every
+        // row and most columns span a segment boundary...
+        JamProperties.setProperty(ExpressionMatrixFile.SEGMENT_LENGTH_PROPERTY, "4");
+
+        try {
+            TumorExpressionMatrix mapped = ExpressionMatrixFile.map(binaryFile);
+
+            for (int col = 0; col < text.countSymbols(); ++col)
+                assertArrayEquals(text.viewColumn(col).toArray(), mapped.viewColumn(col).toArray(), 0.001);
+
+            for (int row = 0; row < text.countBarcodes(); ++row)
+                assertArrayEquals(text.viewRow(row).toArray(), mapped.viewRow(row).toArray(), 0.001);
+
+            assertEquals(7201.84, mapped.get(tumor3, gene5).doubleValue(), 0.001);
+            assertEquals(7201.84, mapped.get(tumor3).get(gene5).doubleValue(), 0.001);
+        }
+        finally {
+            System.clearProperty(ExpressionMatrixFile.SEGMENT_LENGTH_PROPERTY);
+            binaryFile.delete();
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidSegmentLength() {
+        JamProperties.setProperty(ExpressionMatrixFile.SEGMENT_LENGTH_PROPERTY, "6");
+
+        try {
+            ExpressionMatrixFile.resolveSegmentLength();
+        }
+        finally {
+            System.clearProperty(ExpressionMatrixFile.SEGMENT_LENGTH_PROPERTY);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNotBinary() {
+        ExpressionMatrixFile.map(TEXT_FILE);
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.ExpressionMatrixFileTest");
+    }
+}
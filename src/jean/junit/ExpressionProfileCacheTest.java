@@ -0,0 +1,108 @@
+
+package jean.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import jean.hugo.HugoSymbol;
+import jean.rna.Expression;
+import jean.rna.ExpressionManager;
+import jean.rna.ExpressionProfile;
+import jean.rna.ExpressionProfileCache;
+import jean.tcga.TumorBarcode;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ExpressionProfileCacheTest {
+    private static final HugoSymbol gene1 = HugoSymbol.instance("Gene1");
+    private static final HugoSymbol gene2 = HugoSymbol.instance("Gene2");
+
+    private static final Expression expr1 = Expression.valueOf(1.0);
+    private static final Expression expr2 = Expression.valueOf(2.0);
+
+    private static final TumorBarcode code1 = TumorBarcode.instance("CacheBarcode1");
+    private static final TumorBarcode code2 = TumorBarcode.instance("CacheBarcode2");
+
+    // Profiles are written to a temporary directory (deleted on exit),
+    // never to the checked-in test data...
+    private static final File profileDir = createProfileDir();
+
+    private static final ExpressionManager manager = ExpressionManager.create(profileDir.getPath());
+
+    private static final ExpressionProfile profile =
+        ExpressionProfile.create(List.of(gene1, gene2), List.of(expr1, expr2));
+
+    @Test public void testCached() {
+        File profileFile = manager.expressionFile(code1);
+        profileFile.deleteOnExit();
+
+        ExpressionProfileCache cache = ExpressionProfileCache.create(manager, 1L << 20);
+        manager.store(code1, profile);
+
+        assertProfile(cache.load(code1));
+        assertNull(cache.load(code2));
+        assertEquals(2, cache.size());
+
+        // The cached profile survives deletion of the file...
+        assertTrue(profileFile.delete());
+        assertProfile(cache.load(code1));
+
+        cache.invalidate(code1);
+        assertNull(cache.load(code1));
+    }
+
+    @Test public void testEviction() {
+        File profileFile = manager.expressionFile(code1);
+        profileFile.deleteOnExit();
+
+        ExpressionProfileCache cache = ExpressionProfileCache.create(manager, 0L);
+        manager.store(code1, profile);
+
+        assertProfile(cache.load(code1));
+        assertTrue(profileFile.delete());
+        assertNull(cache.load(code1));
+    }
+
+    @Test public void testPrefetch() {
+        File profileFile = manager.expressionFile(code1);
+        profileFile.deleteOnExit();
+
+        ExpressionProfileCache cache = ExpressionProfileCache.create(manager, 1L << 20);
+        manager.store(code1, profile);
+
+        cache.prefetch(List.of(code1, code2)).join();
+        assertEquals(2, cache.size());
+
+        assertTrue(profileFile.delete());
+        assertProfile(cache.require(code1));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRequireMissing() {
+        ExpressionProfileCache.create(manager, 1L << 20).require(code2);
+    }
+
+    private static File createProfileDir() {
+        try {
+            File dir = Files.createTempDirectory("expression_profiles").toFile();
+            dir.deleteOnExit();
+            return dir;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void assertProfile(ExpressionProfile actual) {
+        assertEquals(expr1, actual.get(gene1));
+        assertEquals(expr2, actual.get(gene2));
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.ExpressionProfileCacheTest");
+    }
+}
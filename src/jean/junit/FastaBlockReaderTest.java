@@ -0,0 +1,103 @@
+
+package jean.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import jean.fasta.FastaBlockReader;
+import jean.fasta.FastaPeptideReader;
+import jean.fasta.FastaPeptideRecord;
+import jean.peptide.Peptide;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FastaBlockReaderTest {
+    private static final File ENSEMBL_FILE1 = new File("data/test/ensembl_test1.fa");
+    private static final File ENSEMBL_FILE2 = new File("data/test/ensembl_test2.fa");
+
+    private static void assertRecords(List<FastaPeptideRecord> expected, List<FastaPeptideRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int index = 0; index < expected.size(); ++index) {
+            assertEquals(expected.get(index).getKey(), actual.get(index).getKey());
+            assertEquals(expected.get(index).getComment(), actual.get(index).getComment());
+            assertEquals(expected.get(index).getPeptide(), actual.get(index).getPeptide());
+        }
+    }
+
+    @Test public void testOrdered() {
+        assertRecords(FastaPeptideReader.read(ENSEMBL_FILE1), FastaBlockReader.readPeptides(ENSEMBL_FILE1));
+        assertRecords(FastaPeptideReader.read(ENSEMBL_FILE2), FastaBlockReader.readPeptides(ENSEMBL_FILE2));
+
+        List<FastaPeptideRecord> serial = new ArrayList<FastaPeptideRecord>();
+        FastaBlockReader.read(ENSEMBL_FILE2, FastaPeptideRecord::decode, serial::add, true, 1);
+        assertRecords(FastaPeptideReader.read(ENSEMBL_FILE2), serial);
+    }
+
+    @Test public void testUnordered() {
+        List<FastaPeptideRecord> records =
+            Collections.synchronizedList(new ArrayList<FastaPeptideRecord>());
+
+        FastaBlockReader.read(ENSEMBL_FILE1, FastaPeptideRecord::decode, records::add, false, 3);
+        assertEquals(4, records.size());
+
+        List<String> keys = new ArrayList<String>();
+
+        for (FastaPeptideRecord record : records)
+            keys.add(record.getKey());
+
+        assertTrue(keys.contains("ENSP00000487941.1"));
+        assertTrue(keys.contains("ENSP00000428366.1"));
+        assertTrue(keys.contains("ENSP00000498122.1"));
+        assertTrue(keys.contains("ENSP00000481279.1"));
+    }
+
+    @Test public void testLineFormats() throws IOException {
+        File file = File.createTempFile("fasta_block", ".fa");
+        file.deleteOnExit();
+
+        String text =
+            "; leading comment\r\n" +
+            "\r\n" +
+            ">KEY1 first  comment \r\n" +
+            "ACDEF  \r\n" +
+            "  GHIKL\r\n" +
+            "   ; indented comment\r\n" +
+            "\r\n" +
+            "  >KEY2\tsecond comment\r\n" +
+            "MNPQR\r\n" +
+            "STVWY \t\r\n" +
+            ">KEY3\r\n" +
+            "AAAA\r" +
+            "CCCC";
+
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+
+        List<FastaPeptideRecord> records = FastaBlockReader.readPeptides(file);
+        assertRecords(FastaPeptideReader.read(file), records);
+
+        assertEquals(3, records.size());
+
+        assertEquals("KEY1", records.get(0).getKey());
+        assertEquals("first  comment", records.get(0).getComment());
+        assertEquals(Peptide.instance("ACDEFGHIKL"), records.get(0).getPeptide());
+
+        assertEquals("KEY2", records.get(1).getKey());
+        assertEquals("second comment", records.get(1).getComment());
+        assertEquals(Peptide.instance("MNPQRSTVWY"), records.get(1).getPeptide());
+
+        assertEquals("KEY3", records.get(2).getKey());
+        assertEquals("", records.get(2).getComment());
+        assertEquals(Peptide.instance("AAAACCCC"), records.get(2).getPeptide());
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.FastaBlockReaderTest");
+    }
+}
@@ -0,0 +1,101 @@
+
+package jean.junit;
+
+import java.io.File;
+import java.util.List;
+
+import jean.fasta.BgzfBlockIndex;
+import jean.fasta.FastaIndex;
+import jean.fasta.FastaIndexEntry;
+import jean.fasta.FastaPeptideCache;
+import jean.fasta.FastaPeptideFile;
+import jean.fasta.FastaPeptideRecord;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FastaIndexTest {
+    private static final String ENSEMBL_FILE = "data/test/ensembl_test1.fa";
+
+    @Test public void testEnsembl() {
+        try (FastaIndex index = FastaIndex.build(ENSEMBL_FILE)) {
+            assertEquals(4, index.size());
+            assertTrue(index.contains("ENSP00000487941.1"));
+            assertFalse(index.contains("ENSP00000487941"));
+
+            FastaIndexEntry entry = index.require("ENSP00000498122.1");
+
+            assertEquals("pep gene:ENSG00000196266.5", entry.getComment());
+            assertEquals(313, entry.getLength());
+            assertEquals(60, entry.getLineBases());
+            assertEquals(61, entry.getLineWidth());
+
+            assertEquals("GTGG", index.fetch("ENSP00000487941.1"));
+            assertEquals("VL*LRLGELSLY", index.fetch("ENSP00000428366.1"));
+
+            String pep2 = index.fetch("ENSP00000498122.1");
+            String pep3 = index.fetch("ENSP00000481279.1");
+
+            assertEquals(313, pep2.length());
+            assertEquals("MPKLNSTFVTEFLFEGFSSFRRQHKLVFFVVFLTLYLLTLSGNVIIMTIIRLDHHLHTPM", pep2.substring(0, 60));
+            assertEquals("SAQSRGAKNSVSL", pep2.substring(300, 313));
+
+            assertEquals(374, pep3.length());
+            assertEquals("MSLMVIIMACVGFFLLQGAWPQEEVHRKPSFLALPGHLVKSEETVILQCWSDVMFEHFLL", pep3.substring(0, 60));
+            assertEquals("QNRVASSHVPAAGI", pep3.substring(360, 374));
+
+            assertEquals(pep2.substring(55, 65), index.fetch("ENSP00000498122.1", 55, 65));
+            assertEquals(pep3.substring(120, 300), index.fetch("ENSP00000481279.1", 120, 300));
+            assertEquals("", index.fetch("ENSP00000481279.1", 10, 10));
+        }
+    }
+
+    @Test public void testPeptideCache() {
+        FastaPeptideCache cache = FastaPeptideCache.create(FastaIndex.build(ENSEMBL_FILE), 2);
+
+        assertEquals("GTGG", cache.get("ENSP00000487941.1").formatString());
+        assertEquals("VLXLRLGELSLY", cache.get("ENSP00000428366.1").formatString());
+        assertEquals(374, cache.get("ENSP00000481279.1").length());
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test public void testBgzf() {
+        File bgzfFile = new File("data/test/_tmp_ensembl_test1.fa.gz");
+        File faiFile = FastaIndex.indexFile(bgzfFile);
+        File gziFile = BgzfBlockIndex.indexFile(bgzfFile);
+
+        bgzfFile.deleteOnExit();
+        faiFile.deleteOnExit();
+        gziFile.deleteOnExit();
+
+        List<FastaPeptideRecord> records = FastaPeptideFile.read(ENSEMBL_FILE);
+        FastaPeptideFile.writeBgzf(bgzfFile, records);
+
+        assertTrue(faiFile.exists());
+        assertTrue(gziFile.exists());
+
+        // The compressed file must remain readable as a gzip stream...
+        List<FastaPeptideRecord> copies = FastaPeptideFile.read(bgzfFile);
+        assertEquals(records.size(), copies.size());
+
+        try (FastaIndex index = FastaIndex.open(bgzfFile)) {
+            assertTrue(index.isBgzf());
+            assertEquals(4, index.size());
+
+            for (FastaPeptideRecord record : records)
+                assertEquals(record.getPeptide().formatString(),
+                             index.fetch(record.getKey()).replace('*', 'X'));
+
+            assertEquals("LHTPMYFFLC", index.fetch("ENSP00000498122.1", 55, 65));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingKey() {
+        FastaIndex.build(ENSEMBL_FILE).fetch("ENSP00000000000.1");
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.FastaIndexTest");
+    }
+}
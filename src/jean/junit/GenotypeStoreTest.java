@@ -0,0 +1,86 @@
+
+package jean.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import jean.hla.GenotypeDb;
+import jean.hla.GenotypeStore;
+import jean.tcga.PatientID;
+import jean.tcga.TumorBarcode;
+import jean.tcga.TumorGenotypeTable;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class GenotypeStoreTest {
+    private static final String GENOTYPE_DB_FILE = "data/test/genotype3.csv";
+    private static final String TUMOR_PATIENT_FILE = "data/test/tumor_patient_table2.tsv";
+    private static final String PATIENT_GENOTYPE_FILE = "data/test/patient_genotype_table2.csv";
+
+    private static File tempFile() {
+        try {
+            File file = File.createTempFile("genotype", GenotypeStore.SUFFIX);
+            file.deleteOnExit();
+            return file;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Test public void testGenotypeDb() {
+        File binaryFile = tempFile();
+        GenotypeStore.compile(new File(GENOTYPE_DB_FILE), binaryFile);
+
+        assertTrue(GenotypeStore.isBinary(binaryFile));
+        assertFalse(GenotypeStore.isBinary(new File(GENOTYPE_DB_FILE)));
+
+        GenotypeDb text = GenotypeDb.load(GENOTYPE_DB_FILE);
+        GenotypeDb binary = GenotypeDb.load(binaryFile);
+
+        assertEquals(text.size(), binary.size());
+        assertEquals(text.viewBarcodes(), binary.viewBarcodes());
+
+        for (TumorBarcode barcode : text.viewBarcodes()) {
+            assertTrue(binary.contains(barcode));
+            assertEquals(text.require(barcode), binary.require(barcode));
+        }
+
+        assertFalse(binary.contains(TumorBarcode.instance("Missing")));
+        assertNull(binary.lookup(TumorBarcode.instance("Missing")));
+    }
+
+    @Test public void testTumorGenotypeTable() {
+        File binaryFile = tempFile();
+        GenotypeStore.compile(new File(TUMOR_PATIENT_FILE), new File(PATIENT_GENOTYPE_FILE), binaryFile);
+
+        TumorGenotypeTable text = TumorGenotypeTable.load(TUMOR_PATIENT_FILE, PATIENT_GENOTYPE_FILE);
+        TumorGenotypeTable binary = TumorGenotypeTable.load(binaryFile);
+
+        assertEquals(3, binary.size());
+        assertEquals(text.viewBarcodes(), binary.viewBarcodes());
+
+        for (TumorBarcode barcode : text.viewBarcodes())
+            assertEquals(text.require(barcode), binary.require(barcode));
+
+        assertFalse(binary.contains(TumorBarcode.instance("Tumor3")));
+
+        GenotypeStore store = GenotypeStore.map(binaryFile);
+
+        assertEquals(3, store.countTumors());
+        assertEquals(2, store.countGenotypes());
+        assertEquals(binary.require(TumorBarcode.instance("Tumor1A")), store.lookup(PatientID.instance("Pat1")));
+        assertNull(store.lookup(PatientID.instance("Missing")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNotBinary() {
+        GenotypeStore.map(new File(GENOTYPE_DB_FILE));
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.GenotypeStoreTest");
+    }
+}
@@ -4,6 +4,9 @@ package jean.junit;
 import java.util.List;
 import java.util.Set;
 
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
 import jam.util.RegexUtil;
 
 import jean.hla.Allele;
@@ -196,8 +199,33 @@ public class GenotypeTest {
         assertEquals(List.of(C1, C2), hetero.viewUniqueAlleles(Locus.C));
     }
 
+    @Test public void testMultiset() {
+        Multiset<Allele> multiset = HashMultiset.create(List.of(A2, A2, B1, B2, C1, C2));
+
+        assertEquals(multiset, homoA2);
+        assertEquals(homoA2, multiset);
+        assertEquals(multiset.hashCode(), homoA2.hashCode());
+
+        assertEquals(6, homoA2.size());
+        assertEquals(2, homoA2.count(A2));
+        assertEquals(1, homoA2.count(B1));
+        assertEquals(0, homoA2.count(A1));
+        assertFalse(homoA2.contains(A1));
+        assertFalse(homoA2.contains("A0201"));
+
+        assertEquals(List.of(A2, A2, B1, B2, C1, C2), List.copyOf(homoA2));
+        assertEquals(List.of(A2, B1, B2, C1, C2), List.copyOf(homoA2.elementSet()));
+        assertEquals("[HLA-A*30:10 x 2, HLA-B*07:02, HLA-B*35:01, HLA-C*01:03, HLA-C*07:02]", homoA2.toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        hetero.add(A1);
+    }
+
     @Test public void testParse() {
         assertEquals(Genotype.instance(C2, A1, B2), Genotype.parse("C0702 A0201 B3501", RegexUtil.MULTI_WHITE_SPACE));
+        assertEquals(Genotype.instance(C2, A1, B2), Genotype.parse(" C0702  HLA-A*02:01\tB3501 "));
     }
 
     public static void main(String[] args) {
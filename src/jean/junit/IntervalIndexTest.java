@@ -0,0 +1,109 @@
+
+package jean.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import jean.chr.Chromosome;
+import jean.chr.GenomicInterval;
+import jean.chr.IntervalIndex;
+import jean.chr.Length;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class IntervalIndexTest {
+    private static final Chromosome CHR1 = Chromosome.Chr1;
+    private static final Chromosome CHR2 = Chromosome.Chr2;
+
+    private static GenomicInterval interval(Chromosome chr, int start, int end) {
+        return GenomicInterval.of(chr, start, end);
+    }
+
+    private static List<GenomicInterval> randomIntervals(Random random, int count) {
+        List<GenomicInterval> intervals = new ArrayList<GenomicInterval>();
+
+        for (int k = 0; k < count; ++k) {
+            int start = random.nextInt(100000);
+            int length = random.nextBoolean() ? 1 + random.nextInt(100) : 1 + random.nextInt(20000);
+
+            intervals.add(interval(random.nextBoolean() ? CHR1 : CHR2, start, start + length));
+        }
+
+        return intervals;
+    }
+
+    @Test public void testOverlap() {
+        Random random = new Random(20201018);
+        List<GenomicInterval> intervals = randomIntervals(random, 5000);
+        IntervalIndex<GenomicInterval> index = IntervalIndex.create(intervals, x -> x);
+
+        assertEquals(5000, index.size());
+        assertEquals(index.size(), index.size(CHR1) + index.size(CHR2));
+        assertEquals(0, index.size(Chromosome.Chr3));
+
+        for (int trial = 0; trial < 500; ++trial) {
+            int start = random.nextInt(120000);
+            GenomicInterval query = interval(CHR1, start, start + random.nextInt(5000));
+
+            List<GenomicInterval> expected = new ArrayList<GenomicInterval>();
+
+            for (GenomicInterval interval : intervals)
+                if (interval.overlaps(query))
+                    expected.add(interval);
+
+            List<GenomicInterval> actual = index.overlap(query);
+
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.size(), index.countOverlaps(CHR1, query.start(), query.end()));
+            assertTrue(actual.containsAll(expected));
+
+            for (int k = 1; k < actual.size(); ++k)
+                assertTrue(actual.get(k - 1).start() <= actual.get(k).start());
+        }
+    }
+
+    @Test public void testNearest() {
+        List<GenomicInterval> intervals =
+            List.of(interval(CHR1, 100, 200), interval(CHR1, 150, 160), interval(CHR1, 400, 500), interval(CHR1, 1000, 1001));
+
+        IntervalIndex<GenomicInterval> index = IntervalIndex.createSorted(intervals, x -> x);
+
+        assertEquals(intervals.get(0), index.nearest(CHR1, 0));
+        assertEquals(intervals.get(0), index.nearest(CHR1, 155));
+        assertEquals(intervals.get(0), index.nearest(CHR1, 250));
+        assertEquals(intervals.get(2), index.nearest(CHR1, 350));
+        assertEquals(intervals.get(2), index.nearest(CHR1, 700));
+        assertEquals(intervals.get(3), index.nearest(CHR1, 800));
+        assertEquals(intervals.get(3), index.nearest(CHR1, 5000));
+        assertNull(index.nearest(CHR2, 100));
+
+        assertEquals(List.of(intervals.get(0), intervals.get(1)), index.stab(CHR1, 150));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnsorted() {
+        IntervalIndex.createSorted(List.of(interval(CHR1, 100, 200), interval(CHR1, 50, 60)), x -> x);
+    }
+
+    @Test public void testCoverage() {
+        List<GenomicInterval> intervals =
+            List.of(interval(CHR1, 500, 2500), interval(CHR1, 1500, 1600), interval(CHR2, 0, 10));
+
+        IntervalIndex<GenomicInterval> index = IntervalIndex.create(intervals, x -> x);
+        long[] bins = index.coverage(CHR1, Length.kilo(1));
+
+        assertEquals(CHR1.length().kilo(), bins.length);
+        assertEquals(500, bins[0]);
+        assertEquals(1100, bins[1]);
+        assertEquals(500, bins[2]);
+        assertEquals(0, bins[3]);
+
+        assertEquals(10, index.coverage(CHR2, Length.mega(1))[0]);
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.IntervalIndexTest");
+    }
+}
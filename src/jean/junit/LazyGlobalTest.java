@@ -0,0 +1,81 @@
+
+package jean.junit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import jean.app.LazyGlobal;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class LazyGlobalTest {
+    @Test public void testSingleLoad() {
+        AtomicInteger loadCount = new AtomicInteger(0);
+
+        LazyGlobal<Object> global =
+            LazyGlobal.create("test", () -> {
+                    loadCount.incrementAndGet();
+                    sleep(50);
+                    return new Object();
+                });
+
+        assertFalse(global.isLoaded());
+        assertTrue(Double.isNaN(global.getLoadTime()));
+
+        List<Object> results =
+            IntStream.range(0, 16).parallel().mapToObj(k -> global.get()).collect(Collectors.toList());
+
+        assertEquals(1, loadCount.get());
+        assertTrue(global.isLoaded());
+        assertTrue(global.getLoadTime() >= 0.0);
+
+        for (Object result : results)
+            assertSame(global.get(), result);
+    }
+
+    @Test public void testRetry() {
+        AtomicInteger loadCount = new AtomicInteger(0);
+
+        LazyGlobal<String> global =
+            LazyGlobal.create("test", () -> {
+                    if (loadCount.incrementAndGet() == 1)
+                        throw new IllegalStateException();
+
+                    return "loaded";
+                });
+
+        try {
+            global.get();
+            fail("Expected a loading failure.");
+        }
+        catch (IllegalStateException ex) {
+            // Expected...
+        }
+
+        assertFalse(global.isLoaded());
+        assertEquals("loaded", global.warmUp().get());
+        assertEquals("loaded", global.get());
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNull() {
+        LazyGlobal.create("test", () -> null).get();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.LazyGlobalTest");
+    }
+}
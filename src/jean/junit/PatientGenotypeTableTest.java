@@ -1,6 +1,7 @@
 
 package jean.junit;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -59,6 +60,54 @@ public class PatientGenotypeTableTest {
         assertEquals(Set.of(Pat02, Pat03), new TreeSet<PatientID>(table.match(A0301)));
     }
 
+    @Test public void testQuery() {
+        assertEquals(Set.of(Pat02, Pat03), Set.copyOf(table.query(A0301).and(B0702).viewPatients()));
+        assertEquals(Set.of(Pat03), Set.copyOf(table.query(A0301).and(B0702).andNot(C1202).viewPatients()));
+        assertEquals(Set.of(Pat01, Pat03), Set.copyOf(table.query(A0201).or(table.query(C0702).andNot(A1101)).viewPatients()));
+        assertEquals(Set.of(Pat01), Set.copyOf(table.queryAll().andNot(B0702).viewPatients()));
+
+        assertEquals(0, table.query(A0101).or(A0101).count());
+        assertEquals(2, table.query(C0702).count());
+        assertEquals(2.0 / 3.0, table.query(C0702).frequency(), 1.0E-12);
+    }
+
+    @Test public void testCarriers() {
+        assertEquals(0, table.countCarriers(A0101));
+        assertEquals(1, table.countCarriers(A0201));
+        assertEquals(2, table.countCarriers(A0301));
+
+        Map<Allele, Double> frequencies = table.computeCarrierFrequencies();
+
+        assertEquals(table.viewAlleles(), frequencies.keySet());
+        assertEquals(1.0 / 3.0, frequencies.get(A3201), 1.0E-12);
+        assertEquals(2.0 / 3.0, frequencies.get(B0702), 1.0E-12);
+    }
+
+    @Test public void testMatchContains() {
+        Set<PatientID> carriers = table.match(A0301);
+
+        assertTrue(carriers.contains(Pat02));
+        assertTrue(carriers.contains(Pat03));
+        assertFalse(carriers.contains(Pat01));
+        assertFalse(carriers.contains(Pat04));
+        assertFalse(carriers.contains(A0301));
+
+        assertEquals(Set.of(Pat02, Pat03), carriers);
+        assertTrue(table.match(A0101).isEmpty());
+    }
+
+    @Test public void testEmpty() {
+        PatientGenotypeTable empty = new PatientGenotypeTable(Map.of());
+
+        assertEquals(0, empty.size());
+        assertTrue(empty.match(A0201).isEmpty());
+        assertFalse(empty.match(A0201).contains(Pat01));
+
+        assertEquals(0.0, empty.query(A0201).frequency(), 0.0);
+        assertEquals(0.0, empty.queryAll().frequency(), 0.0);
+        assertTrue(empty.computeCarrierFrequencies().isEmpty());
+    }
+
     @Test public void testViewAlleles() {
         assertEquals(Set.of(A0201, A0301, A1101, A3201, B0702, B1501, B5201, C0303, C0702, C1202),
                      table.viewAlleles());
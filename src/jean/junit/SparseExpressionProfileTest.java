@@ -0,0 +1,119 @@
+
+package jean.junit;
+
+import java.io.File;
+
+import jean.hla.ExpressionClassI;
+import jean.hla.Locus;
+import jean.hugo.HugoPeptideTable;
+import jean.hugo.HugoSymbol;
+import jean.peptide.Peptide;
+import jean.peptide.PeptideConcentrationProfile;
+import jean.rna.ConcentrationModel;
+import jean.rna.ConcentrationModelType;
+import jean.rna.Expression;
+import jean.rna.ExpressionProfile;
+import jean.rna.SparseExpressionProfile;
+import jean.rna.TumorExpressionMatrix;
+import jean.tcga.TumorBarcode;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SparseExpressionProfileTest {
+    private static final ExpressionProfile DENSE =
+        ExpressionProfile.load("data/test/expression_profile.csv");
+
+    private static final SparseExpressionProfile SPARSE =
+        SparseExpressionProfile.create(DENSE);
+
+    private static final HugoSymbol gene1 = HugoSymbol.instance("A1BG");
+    private static final HugoSymbol gene2 = HugoSymbol.instance("A2LD1");
+    private static final HugoSymbol bad_gene = HugoSymbol.instance("NO_SUCH_GENE");
+
+    @Test public void testLookup() {
+        assertEquals(10373.7, SPARSE.getDouble(gene1), 1.0E-08);
+        assertEquals(182.392, SPARSE.get(gene2).doubleValue(), 1.0E-08);
+
+        assertFalse(SPARSE.contains(bad_gene));
+        assertEquals(-1, SPARSE.indexOf(bad_gene));
+        assertEquals(Expression.ZERO, SPARSE.get(bad_gene));
+        assertEquals(0.0, SPARSE.getDouble(bad_gene), 0.0);
+
+        for (HugoSymbol symbol : DENSE.viewSymbols())
+            assertEquals(DENSE.get(symbol).doubleValue(), SPARSE.getDouble(symbol), 0.0);
+    }
+
+    @Test public void testOrder() {
+        for (int k = 1; k < SPARSE.size(); ++k) {
+            assertTrue(SPARSE.symbol(k - 1).getKey().compareTo(SPARSE.symbol(k).getKey()) < 0);
+            assertTrue(SPARSE.level(k) > 0.0);
+            assertEquals(k, SPARSE.indexOf(SPARSE.symbol(k)));
+        }
+    }
+
+    @Test public void testStoreLoad() {
+        File file = new File("data/test/sparse_profile.jexp");
+        file.deleteOnExit();
+
+        SPARSE.store(file);
+        SparseExpressionProfile loaded = SparseExpressionProfile.load(file);
+
+        assertEquals(SPARSE.size(), loaded.size());
+
+        for (int k = 0; k < SPARSE.size(); ++k) {
+            assertEquals(SPARSE.symbol(k), loaded.symbol(k));
+            assertEquals(SPARSE.level(k), loaded.level(k), 0.0);
+        }
+
+        ExpressionProfile dense = loaded.toProfile();
+
+        for (HugoSymbol symbol : DENSE.viewSymbols())
+            assertEquals(DENSE.get(symbol).doubleValue(), dense.get(symbol).doubleValue(), 0.0);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testNotSparse() {
+        SparseExpressionProfile.load(new File("data/test/expression_profile.csv"));
+    }
+
+    @Test public void testMatrix() {
+        TumorExpressionMatrix matrix = TumorExpressionMatrix.load("data/test/tumor_expression.csv");
+
+        for (TumorBarcode barcode : matrix.viewBarcodes()) {
+            ExpressionProfile dense = matrix.get(barcode);
+            SparseExpressionProfile sparse = matrix.getSparse(barcode);
+
+            for (HugoSymbol symbol : matrix.viewSymbols())
+                assertEquals(dense.get(symbol).doubleValue(), sparse.getDouble(symbol), 0.0);
+        }
+
+        assertNull(matrix.getSparse(TumorBarcode.instance("bad_tumor")));
+    }
+
+    @Test public void testBuildProfile() {
+        HugoPeptideTable peptideTable = HugoPeptideTable.load("data/test/hugo_peptide_table.tsv");
+
+        for (ConcentrationModelType type : ConcentrationModelType.values()) {
+            ConcentrationModel model = type.defaultModel();
+
+            PeptideConcentrationProfile dense = model.buildProfile(peptideTable, DENSE);
+            PeptideConcentrationProfile sparse = model.buildProfile(peptideTable, SPARSE);
+
+            for (Peptide peptide : peptideTable.viewPeptides())
+                assertEquals(dense.get(peptide).doubleValue(), sparse.get(peptide).doubleValue(), 1.0E-12);
+        }
+    }
+
+    @Test public void testClassI() {
+        ExpressionClassI dense = ExpressionClassI.create(DENSE);
+        ExpressionClassI sparse = ExpressionClassI.create(SPARSE);
+
+        for (Locus locus : Locus.values())
+            assertEquals(dense.get(locus), sparse.get(locus));
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.SparseExpressionProfileTest");
+    }
+}
@@ -0,0 +1,63 @@
+
+package jean.junit;
+
+import java.util.List;
+
+import jean.nucleic.Codon;
+import jean.nucleic.DNA;
+import jean.nucleic.Nucleotide;
+import jean.nucleic.Translator;
+import jean.peptide.Peptide;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class TranslatorTest {
+    @Test public void testCodonTable() {
+        for (Codon codon : Codon.values()) {
+            assertEquals(codon, Codon.instance(codon.packedIndex()));
+            assertEquals(codon, Codon.instance(codon.getNucleotide(0), codon.getNucleotide(1), codon.getNucleotide(2)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThymineCodon() {
+        Codon.instance(Nucleotide.A, Nucleotide.T, Nucleotide.G);
+    }
+
+    @Test public void testForward() {
+        DNA dna = DNA.parse("ATGGCCTAAGG");
+
+        assertEquals("MA.", Translator.translatePeptide(dna, 0, false).formatString());
+        assertEquals("WPK", Translator.translatePeptide(dna, 1, false).formatString());
+        assertEquals("GLR", Translator.translatePeptide(dna, 2, false).formatString());
+    }
+
+    @Test public void testReverse() {
+        // Reverse complement: CCTTAGGCCAT
+        DNA dna = DNA.parse("ATGGCCTAAGG");
+
+        assertEquals("P.A", Translator.translatePeptide(dna, 0, true).formatString());
+        assertEquals("LRP", Translator.translatePeptide(dna, 1, true).formatString());
+        assertEquals("LGH", Translator.translatePeptide(dna, 2, true).formatString());
+    }
+
+    @Test public void testUnknown() {
+        DNA dna = DNA.parse("ATGNAAAAA");
+        assertEquals("MXK", Translator.translatePeptide(dna, 0, false).formatString());
+        assertEquals("FXH", Translator.translatePeptide(dna, 0, true).formatString());
+    }
+
+    @Test public void testSixFrames() {
+        DNA dna = DNA.parse("ATGGCCTAAGGATGCCC");
+        List<Peptide> peptides = Translator.translateSixFrames(dna);
+
+        assertEquals(6, peptides.size());
+        assertEquals(Peptide.instance("MA.GC"), peptides.get(0));
+        assertEquals(List.of(Peptide.instance("MA"), Peptide.instance("GC")), peptides.get(0).nativeFragments(2));
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.TranslatorTest");
+    }
+}
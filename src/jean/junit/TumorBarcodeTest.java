@@ -3,6 +3,7 @@ package jean.junit;
 
 import java.util.List;
 
+import jean.tcga.PatientID;
 import jean.tcga.TumorBarcode;
 
 import org.junit.*;
@@ -20,6 +21,23 @@ public class TumorBarcodeTest {
         assertEquals(List.of(barcode1, barcode2, barcode3), barcodes);
     }
 
+    @Test public void testInterned() {
+        assertSame(barcode1, TumorBarcode.instance("Barcode1"));
+        assertEquals(barcode1.index(), TumorBarcode.instance("Barcode1").index());
+
+        assertTrue(barcode1.index() != barcode2.index());
+        assertTrue(barcode3.index() < TumorBarcode.countInstances());
+    }
+
+    @Test public void testPatientID() {
+        TumorBarcode barcode = TumorBarcode.instance("TCGA-02-0047-01A-01R-1849-01");
+        PatientID patient = barcode.patientID();
+
+        assertEquals(PatientID.instance("TCGA-02-0047"), patient);
+        assertSame(patient, barcode.patientID());
+        assertSame(patient, PatientID.instance("TCGA-02-0047"));
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jean.junit.TumorBarcodeTest");
     }
@@ -0,0 +1,45 @@
+
+package jean.junit;
+
+import jean.tcga.CancerType;
+import jean.tcga.PatientCancerTypeTable;
+import jean.tcga.TumorBarcode;
+import jean.tcga.TumorCancerTypeTable;
+import jean.tcga.TumorPatientTable;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class TumorCancerTypeTableTest {
+    private static final TumorBarcode AL4602_T1 = TumorBarcode.instance("AL4602_T1");
+    private static final TumorBarcode AU5884_T  = TumorBarcode.instance("AU5884_T");
+
+    static {
+        System.setProperty(PatientCancerTypeTable.TABLE_FILE_PROPERTY, "data/test/patient_cancer_type_map.tsv");
+        System.setProperty(TumorPatientTable.TABLE_FILE_PROPERTY, "data/test/tumor_patient_map.tsv");
+    }
+
+    @Test public void testGlobal() {
+        TumorCancerTypeTable table = TumorCancerTypeTable.global();
+
+        // Only patient AU5884 has a cancer type...
+        assertEquals(1, table.size());
+
+        assertTrue(table.contains(AU5884_T));
+        assertFalse(table.contains(AL4602_T1));
+        assertFalse(table.contains(TumorBarcode.instance("Missing")));
+
+        assertEquals(CancerType.LUAD, table.require(AU5884_T));
+        assertNull(table.lookup(AL4602_T1));
+        assertNull(table.lookup(TumorBarcode.instance("Missing")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRequire() {
+        TumorCancerTypeTable.global().require(AL4602_T1);
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.TumorCancerTypeTableTest");
+    }
+}
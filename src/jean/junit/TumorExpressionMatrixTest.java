@@ -1,13 +1,19 @@
 
 package jean.junit;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import jam.junit.NumericTestBase;
 
 import jean.hugo.HugoSymbol;
 import jean.rna.Expression;
 import jean.rna.ExpressionProfile;
+import jean.rna.ExpressionVector;
 import jean.rna.TumorExpressionMatrix;
 import jean.tcga.TumorBarcode;
 
@@ -65,6 +71,106 @@ public class TumorExpressionMatrixTest extends NumericTestBase {
         assertExpression(7201.84,   profile.get(gene5));
     }
 
+    @Test public void testIndexes() {
+        assertEquals(0, matrix.indexOf(tumor1));
+        assertEquals(2, matrix.indexOf(tumor3));
+        assertEquals(-1, matrix.indexOf(bad_tumor));
+
+        assertEquals(0, matrix.indexOf(gene1));
+        assertEquals(4, matrix.indexOf(gene5));
+        assertEquals(-1, matrix.indexOf(bad_gene));
+
+        assertEquals(3, matrix.countBarcodes());
+        assertEquals(5, matrix.countSymbols());
+
+        assertEquals(5.6368, matrix.get(1, 2), 0.0001);
+    }
+
+    @Test public void testViews() {
+        ExpressionVector row = matrix.viewRow(tumor3);
+        ExpressionVector col = matrix.viewColumn(gene1);
+
+        assertEquals(5, row.size());
+        assertEquals(3, col.size());
+
+        assertEquals(  20.7377, row.get(0), 0.0001);
+        assertEquals(7201.84,   row.get(4), 0.0001);
+        assertEquals(  16.3305, col.get(0), 0.0001);
+        assertEquals(  20.7377, col.get(2), 0.0001);
+
+        assertArrayEquals(new double[] { 20.7377, 0.5925, 8.8876, 138.883, 7201.84 }, row.toArray(), 0.0001);
+
+        assertNull(matrix.viewRow(bad_tumor));
+        assertNull(matrix.viewColumn(bad_gene));
+    }
+
+    @Test public void testSinglePrecision() {
+        TumorExpressionMatrix single =
+            TumorExpressionMatrix.load(new File("data/test/tumor_expression.csv"), true);
+
+        assertTrue(single.isSinglePrecision());
+        assertFalse(matrix.isSinglePrecision());
+
+        for (int row = 0; row < matrix.countBarcodes(); ++row)
+            assertArrayEquals(matrix.viewRow(row).toArray(), single.viewRow(row).toArray(), 0.001);
+
+        for (int col = 0; col < matrix.countSymbols(); ++col)
+            assertArrayEquals(matrix.viewColumn(col).toArray(), single.viewColumn(col).toArray(), 0.001);
+    }
+
+    @Test public void testProfileView() {
+        ExpressionProfile profile = matrix.get(tumor2);
+
+        assertEquals(5, profile.size());
+        assertEquals(Set.of(gene1, gene2, gene3, gene4, gene5), profile.viewSymbols());
+        assertEquals(5, profile.viewEntries().size());
+
+        for (Map.Entry<HugoSymbol, Expression> entry : profile.viewEntries())
+            assertExpression(matrix.get(tumor2, entry.getKey()).doubleValue(), entry.getValue());
+
+        assertTrue(profile.contains(gene3));
+        assertFalse(profile.contains(bad_gene));
+        assertEquals(Expression.ZERO, profile.get(bad_gene));
+    }
+
+    @Test public void testTabDelimited() throws IOException {
+        File file = File.createTempFile("tumor_expression", ".tsv");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("Tumor_Barcode\tA1BG\tA2M");
+            writer.println("");
+            writer.println("OR-A5J1\t 16.3305\t10373.7");
+            writer.println("OR-A5J3\t20.7377\t7201.84 ");
+            writer.println("");
+        }
+
+        TumorExpressionMatrix tabbed = TumorExpressionMatrix.load(file);
+
+        assertEquals(List.of(tumor1, tumor3), tabbed.viewBarcodes());
+        assertEquals(List.of(gene1, gene5), tabbed.viewSymbols());
+        assertEquals(matrix.get(tumor3, gene5).doubleValue(), tabbed.get(1, 1), 0.0001);
+        assertEquals(matrix.get(tumor1, gene1).doubleValue(), tabbed.get(0, 0), 0.0001);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingValue() throws IOException {
+        File file = File.createTempFile("tumor_expression", ".csv");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println(",A1BG,A2M");
+            writer.println("OR-A5J1,16.3305");
+        }
+
+        TumorExpressionMatrix.load(file);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidIndex() {
+        matrix.get(3, 0);
+    }
+
     private void assertExpression(double expected, Expression actual) {
         assertEquals(expected, actual.doubleValue(), 0.0001);
     }
@@ -1,7 +1,13 @@
 
 package jean.junit;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import jean.hugo.HugoSymbol;
@@ -83,6 +89,133 @@ public class TumorGenePeptideTableTest {
         assertEquals(Set.of(), table.viewSymbols(TumorX));
     }
 
+    @Test public void testCode() {
+        for (String s : List.of("A", "AAA", "VVV", "WRE", "YLLPAIVHI", "KLMVDEFGHIKL")) {
+            long code = TumorGenePeptideTable.encode(s, 0, s.length());
+            assertEquals(Peptide.instance(s), TumorGenePeptideTable.decode(code));
+        }
+
+        assertTrue(TumorGenePeptideTable.encode("AA", 0, 2) != TumorGenePeptideTable.encode("AAA", 0, 3));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCodeTooLong() {
+        TumorGenePeptideTable.encode("ACDEFGHIKLMNP", 0, 13);
+    }
+
+    @Test public void testStream() {
+        Set<String> records = new HashSet<String>();
+
+        long count =
+            TumorGenePeptideTable.stream(new File(PEPTIDE_FILE),
+                                         (barcode, symbol, peptide) ->
+                                         records.add(barcode.getKey() + ":" + symbol.getKey() + ":" + peptide.formatString()));
+
+        assertEquals(7, count);
+        assertTrue(records.contains("Tumor1:A1CF:VVV"));
+        assertTrue(records.contains("Tumor2:A4GNT:END"));
+    }
+
+    @Test public void testLongPeptides() throws IOException {
+        File file = writeTemp("Tumor_Barcode\tHugo_Symbol\tPeptide",
+                              "LongTumor1\tA1CF\tACDEFGHIKLMNP",
+                              "LongTumor1\tA1CF\tAAA",
+                              "LongTumor1\tA1CF\tACDEFGHIKLMNP",
+                              "LongTumor2\tA1CF\tACDEFGHIKLMNPQRSTVWYACDEF",
+                              "LongTumor2\tA1CF\tKLMVDEFGHIKL");
+
+        TumorGenePeptideTable table = TumorGenePeptideTable.load(file);
+
+        assertEquals(4, table.size());
+        assertEquals(Set.of(Peptide.instance("ACDEFGHIKLMNP"), AAA),
+                     new HashSet<Peptide>(table.get(TumorBarcode.instance("LongTumor1"), A1CF)));
+        assertEquals(Set.of(Peptide.instance("ACDEFGHIKLMNPQRSTVWYACDEF"), Peptide.instance("KLMVDEFGHIKL")),
+                     new HashSet<Peptide>(table.get(TumorBarcode.instance("LongTumor2"), A1CF)));
+    }
+
+    @Test public void testExtraColumnsAndBlankLines() throws IOException {
+        File file = writeTemp("Tumor_Barcode,Hugo_Symbol,Peptide,Score",
+                              "",
+                              "ExtraTumor1,A1CF,AAA,0.5",
+                              "  ",
+                              "ExtraTumor1,A2M, VVV ,1.0,extra",
+                              "ExtraTumor1,A2M,FSF",
+                              "");
+
+        TumorGenePeptideTable table = TumorGenePeptideTable.load(file);
+        TumorBarcode barcode = TumorBarcode.instance("ExtraTumor1");
+
+        assertEquals(3, table.size());
+        assertEquals(Set.of(AAA), new HashSet<Peptide>(table.get(barcode, A1CF)));
+        assertEquals(Set.of(VVV, FSF), new HashSet<Peptide>(table.get(barcode, A2M)));
+        assertEquals(3, TumorGenePeptideTable.stream(file, (tumor, symbol, peptide) -> {}));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingColumn() throws IOException {
+        TumorGenePeptideTable.load(writeTemp("Tumor_Barcode,Hugo_Symbol,Peptide", "MissingTumor1,A1CF"));
+    }
+
+    private static File writeTemp(String... lines) throws IOException {
+        File file = File.createTempFile("tumor_gene_peptide", ".txt");
+        file.deleteOnExit();
+
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (String line : lines)
+                writer.println(line);
+        }
+
+        return file;
+    }
+
+    @Test public void testChunks() throws IOException {
+        //
+        // Enough rows for several parallel chunks, with duplicates
+        // spread across chunks...
+        //
+        File file = File.createTempFile("tumor_gene_peptide", ".tsv");
+        file.deleteOnExit();
+
+        String residues = "ACDEFGHIKLMNPQRSTVWY";
+        int rowCount = 3 * TumorGenePeptideTable.CHUNK_SIZE / 2;
+
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("Tumor_Barcode\tHugo_Symbol\tPeptide");
+
+            for (int row = 0; row < rowCount; ++row) {
+                StringBuilder peptide = new StringBuilder();
+
+                for (int k = 0; k < 9; ++k)
+                    peptide.append(residues.charAt((row * (k + 3) + k) % 20));
+
+                writer.println(String.format("ChunkTumor%d\tChunkGene%d\t%s", row % 37, row % 53, peptide));
+            }
+        }
+
+        Map<String, Set<Peptide>> expected = new HashMap<String, Set<Peptide>>();
+
+        TumorGenePeptideTable.stream(file, (barcode, symbol, peptide) ->
+                                     expected.computeIfAbsent(barcode.getKey() + ":" + symbol.getKey(),
+                                                              key -> new HashSet<Peptide>()).add(peptide));
+
+        TumorGenePeptideTable table = TumorGenePeptideTable.load(file);
+
+        assertEquals(37, table.viewBarcodes().size());
+        assertEquals(expected.values().stream().mapToInt(Set::size).sum(), table.size());
+
+        for (TumorBarcode barcode : table.viewBarcodes())
+            for (HugoSymbol symbol : table.viewSymbols(barcode))
+                assertEquals(expected.get(barcode.getKey() + ":" + symbol.getKey()),
+                             new HashSet<Peptide>(table.get(barcode, symbol)));
+
+        int pairCount = 0;
+
+        for (TumorBarcode barcode : table.viewBarcodes())
+            pairCount += table.viewSymbols(barcode).size();
+
+        assertEquals(expected.size(), pairCount);
+    }
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.main("jean.junit.TumorGenePeptideTableTest");
     }
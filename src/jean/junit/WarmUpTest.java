@@ -0,0 +1,79 @@
+
+package jean.junit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import jean.app.LazyGlobal;
+import jean.app.WarmUp;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class WarmUpTest {
+    @Test public void testConcurrent() {
+        //
+        // Each loader waits until all three have started, so the
+        // warm-up can only finish if they run concurrently...
+        //
+        CountDownLatch started = new CountDownLatch(3);
+        WarmUp warmUp = WarmUp.create(3);
+
+        LazyGlobal<String> r1 = warmUp.add("r1", () -> await(started, "A"));
+        LazyGlobal<String> r2 = warmUp.add("r2", () -> await(started, "B"));
+        LazyGlobal<String> r3 = warmUp.add("r3", () -> await(started, "C"));
+
+        assertEquals(3, warmUp.size());
+        assertFalse(r1.isLoaded());
+
+        warmUp.run();
+
+        assertTrue(r1.isLoaded());
+        assertTrue(r2.isLoaded());
+        assertTrue(r3.isLoaded());
+
+        assertEquals("A", r1.get());
+        assertEquals("B", r2.get());
+        assertEquals("C", r3.get());
+    }
+
+    @Test public void testFailure() {
+        WarmUp warmUp = WarmUp.create(2);
+
+        LazyGlobal<String> good = warmUp.add("good", () -> "good");
+        warmUp.add("bad", () -> { throw new IllegalStateException("bad"); });
+
+        try {
+            warmUp.run();
+            fail("Expected a loading failure.");
+        }
+        catch (IllegalStateException ex) {
+            assertEquals("bad", ex.getMessage());
+        }
+
+        assertTrue(good.isLoaded());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThreadCount() {
+        WarmUp.create(0);
+    }
+
+    private static String await(CountDownLatch started, String result) {
+        started.countDown();
+
+        try {
+            if (!started.await(10L, TimeUnit.SECONDS))
+                throw new IllegalStateException("Loaders did not run concurrently.");
+        }
+        catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        return result;
+    }
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("jean.junit.WarmUpTest");
+    }
+}
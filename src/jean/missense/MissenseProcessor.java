@@ -9,6 +9,8 @@ import jam.app.JamApp;
 import jam.app.JamLogger;
 import jam.lang.JamException;
 
+import jean.app.LazyGlobal;
+import jean.app.WarmUp;
 import jean.ensembl.EnsemblProteinDb;
 import jean.hugo.HugoMaster;
 import jean.hugo.HugoSymbol;
@@ -31,8 +33,8 @@ public final class MissenseProcessor extends JamApp {
     private MissenseManager manager;
     private List<TumorBarcode> barcodes;
 
-    private final HugoMaster hugoMaster = HugoMaster.global();
-    private final EnsemblProteinDb ensemblDb = EnsemblProteinDb.reference();
+    private HugoMaster hugoMaster;
+    private EnsemblProteinDb ensemblDb;
 
     private MissenseProcessor(String mafFile, String barcodeFile, String missenseDir, CellFraction ccfThreshold) {
         this.mafFile = mafFile;
@@ -67,9 +69,8 @@ public final class MissenseProcessor extends JamApp {
     }
 
     private void run() {
-        table = MissenseTable.load(mafFile);
+        loadResources();
         manager = MissenseManager.create(missenseDir);
-        barcodes = TumorBarcode.load(barcodeFile);
 
         writeRuntimeEnv("JAM_", "JEAN_");
         writeRuntimeProperties("jam.", "jean.");
@@ -78,6 +79,33 @@ public final class MissenseProcessor extends JamApp {
         JamLogger.info("DONE!");
     }
 
+    //
+    // The reference data, the MAF file, and the barcode list are
+    // independent, so they are loaded concurrently...
+    //
+    private void loadResources() {
+        WarmUp warmUp = WarmUp.create();
+
+        LazyGlobal<HugoMaster> hugoResource =
+            warmUp.add("HugoMaster", HugoMaster::global);
+
+        LazyGlobal<EnsemblProteinDb> ensemblResource =
+            warmUp.add("EnsemblProteinDb", EnsemblProteinDb::reference);
+
+        LazyGlobal<MissenseTable> tableResource =
+            warmUp.add("MissenseTable", () -> MissenseTable.load(mafFile));
+
+        LazyGlobal<List<TumorBarcode>> barcodeResource =
+            warmUp.add("TumorBarcodes", () -> TumorBarcode.load(barcodeFile));
+
+        warmUp.run();
+
+        hugoMaster = hugoResource.get();
+        ensemblDb = ensemblResource.get();
+        table = tableResource.get();
+        barcodes = barcodeResource.get();
+    }
+
     private void processBarcodes() {
         barcodes.parallelStream().forEach(barcode -> processBarcode(barcode));
     }
@@ -13,6 +13,8 @@ import jam.lang.JamException;
 import jam.math.IntUtil;
 import jam.util.StreamUtil;
 
+import jean.app.LazyGlobal;
+import jean.app.WarmUp;
 import jean.ensembl.EnsemblProteinDb;
 import jean.hugo.HugoMaster;
 import jean.hugo.HugoSymbol;
@@ -77,13 +79,32 @@ public final class PeptidePairProcessor extends JamApp {
         writeRuntimeEnv("JAM_", "JEAN_");
         writeRuntimeProperties("jam.", "jean.");
 
+        loadResources();
         initializeEngine();
-        loadMissenseTable();
         processMissenseGroups();
 
         JamLogger.info("DONE!");
     }
 
+    //
+    // The reference data and the MAF file are independent, so they
+    // are loaded concurrently...
+    //
+    private void loadResources() {
+        WarmUp warmUp = WarmUp.create();
+
+        warmUp.add("HugoMaster", HugoMaster::global);
+        warmUp.add("EnsemblProteinDb", EnsemblProteinDb::reference);
+
+        LazyGlobal<MissenseTable> table =
+            warmUp.add("MissenseTable", () -> MissenseTable.load(mafFile, ccfThreshold));
+
+        warmUp.run();
+
+        missenseTable = table.get();
+        missenseGroups = missenseTable.group();
+    }
+
     private void initializeEngine() {
         HugoMaster hugoMaster = HugoMaster.global();
         EnsemblProteinDb ensemblDb = EnsemblProteinDb.reference();
@@ -91,11 +112,6 @@ public final class PeptidePairProcessor extends JamApp {
         PeptidePairEngine.initialize(hugoMaster, ensemblDb);
     }
 
-    private void loadMissenseTable() {
-        missenseTable = MissenseTable.load(mafFile, ccfThreshold);
-        missenseGroups = missenseTable.group();
-    }
-
     private void processMissenseGroups() {
         /*
         List<List<PeptidePairRecord>> engineOutput =
@@ -108,6 +108,10 @@ public enum Codon {
     UGA(Residue.STOP);
 
     private final Residue residue;
+    private final Nucleotide[] nucleotides;
+
+    // Codons indexed by their packed two-bit nucleotide codes...
+    private static final Codon[] packedTable = new Codon[64];
 
     private static final List<Codon> nativeList = new ArrayList<Codon>();
 
@@ -115,10 +119,16 @@ public enum Codon {
         new EnumMap<Residue, Set<Codon>>(Residue.class);
 
     static {
+        populatePackedTable();
         populateNativeList();
         populateReverseMap();
     }
 
+    private static void populatePackedTable() {
+        for (Codon codon : values())
+            packedTable[codon.packedIndex()] = codon;
+    }
+
     private static void populateNativeList() {
         for (Codon codon : values())
             if (codon.translate().isNative())
@@ -138,12 +148,20 @@ public enum Codon {
 
     private Codon(Residue residue) {
         this.residue = residue;
+        this.nucleotides = parseNucleotides();
         validateNucleotides();
     }
 
-    private void validateNucleotides() {
-        Nucleotide[] nucleotides = getNucleotides();
+    private Nucleotide[] parseNucleotides() {
+        Nucleotide[] nucleotides = new Nucleotide[name().length()];
+
+        for (int position = 0; position < nucleotides.length; position++)
+            nucleotides[position] = Nucleotide.valueOf(name().charAt(position));
+
+        return nucleotides;
+    }
 
+    private void validateNucleotides() {
         if (nucleotides.length != LENGTH)
             throw new IllegalStateException("Invalid codon.");
 
@@ -231,7 +249,32 @@ public enum Codon {
      * to a codon (e.g., if a thymine is given instead of a uracil).
      */
     public static Codon instance(Nucleotide n1, Nucleotide n2, Nucleotide n3) {
-        return valueOf(nameOf(n1, n2, n3));
+        if (!n1.inRNA() || !n2.inRNA() || !n3.inRNA())
+            throw new IllegalArgumentException("No codon for nucleotides: " + nameOf(n1, n2, n3));
+
+        return packedTable[packedIndex(n1, n2, n3)];
+    }
+
+    /**
+     * Finds the codon with a given packed index.
+     *
+     * @param index the packed index of the codon, as returned by
+     * {@link Codon#packedIndex()}.
+     *
+     * @return the codon with the specified packed index.
+     *
+     * @throws IllegalArgumentException unless the index is in the
+     * closed range {@code [0, 63]}.
+     */
+    public static Codon instance(int index) {
+        if (index < 0 || index >= packedTable.length)
+            throw new IllegalArgumentException("Invalid packed codon index.");
+
+        return packedTable[index];
+    }
+
+    private static int packedIndex(Nucleotide n1, Nucleotide n2, Nucleotide n3) {
+        return (NucleicAcid.encode(n1) << 4) | (NucleicAcid.encode(n2) << 2) | NucleicAcid.encode(n3);
     }
 
     /**
@@ -282,7 +325,7 @@ public enum Codon {
         if (position < 0 || position > 2)
             throw new IllegalArgumentException("Invalid nucleotide position.");
 
-        return Nucleotide.valueOf(name().charAt(position));
+        return nucleotides[position];
     }
 
     /**
@@ -291,12 +334,19 @@ public enum Codon {
      * @return the three nucleotides in this codon.
      */
     public Nucleotide[] getNucleotides() {
-        Nucleotide[] nucleotides = new Nucleotide[LENGTH];
-
-        for (int position = 0; position < LENGTH; position++)
-            nucleotides[position] = getNucleotide(position);
+        return nucleotides.clone();
+    }
 
-        return nucleotides;
+    /**
+     * Returns the packed index of this codon: the two-bit codes of
+     * its nucleotides (as stored in packed nucleic acids), with the
+     * first nucleotide in the most significant bits.
+     *
+     * @return the packed index of this codon, in the closed range
+     * {@code [0, 63]}.
+     */
+    public int packedIndex() {
+        return packedIndex(nucleotides[0], nucleotides[1], nucleotides[2]);
     }
 
     /**
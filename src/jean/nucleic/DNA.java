@@ -72,15 +72,86 @@ public final class DNA extends NucleicAcid {
         return dna;
     }
 
+    /**
+     * Extracts a contiguous range of this DNA molecule.
+     *
+     * @param start the index of the first nucleotide to extract.
+     *
+     * @param end one past the index of the last nucleotide to
+     * extract.
+     *
+     * @return a new DNA molecule containing the nucleotides in the
+     * specified range (with their unknown and soft-masked status).
+     *
+     * @throws IndexOutOfBoundsException unless the range is valid.
+     */
+    public DNA subsequence(int start, int end) {
+        DNA dna = new DNA(end - start);
+        dna.addRange(this, start, end);
+        return dna;
+    }
+
+    /**
+     * Returns the complementary strand of this DNA molecule (in the
+     * same orientation, so that nucleotide {@code k} in the result
+     * pairs with nucleotide {@code k} in this molecule).
+     *
+     * @return the complementary strand of this DNA molecule.
+     */
+    public DNA complement() {
+        DNA dna = new DNA(length());
+        dna.addPacked(this, 0, length(), true, false);
+        return dna;
+    }
+
+    /**
+     * Returns the reverse complement of this DNA molecule: the
+     * complementary strand read in its own 5' to 3' direction.
+     *
+     * @return the reverse complement of this DNA molecule.
+     */
+    public DNA reverseComplement() {
+        DNA dna = new DNA(length());
+        dna.addPacked(this, 0, length(), true, true);
+        return dna;
+    }
+
+    /**
+     * Returns the reverse complement of a contiguous range of this
+     * DNA molecule.
+     *
+     * @param start the index of the first nucleotide in the range.
+     *
+     * @param end one past the index of the last nucleotide in the
+     * range.
+     *
+     * @return the reverse complement of the specified range (with
+     * the unknown and soft-masked status of each nucleotide).
+     *
+     * @throws IndexOutOfBoundsException unless the range is valid.
+     */
+    public DNA reverseComplement(int start, int end) {
+        DNA dna = new DNA(end - start);
+        dna.addPacked(this, start, end, true, true);
+        return dna;
+    }
+
     /**
      * Returns the transcription product of this DNA molecule.
      *
      * @return the transcription product of this DNA molecule.
+     *
+     * @throws IllegalArgumentException if this molecule contains
+     * unknown nucleotides.
      */
     public RNA transcribe() {
         return RNA.transcribe(this);
     }
 
+    @Override protected Nucleotide adeninePartner() {
+        return Nucleotide.T;
+    }
+
     @Override protected void validate(Nucleotide nucleotide) {
         if (!nucleotide.inDNA())
             throw new IllegalArgumentException("Invalid nucleotide: " + nucleotide);
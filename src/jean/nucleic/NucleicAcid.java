@@ -2,11 +2,13 @@
 package jean.nucleic;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 
 import jam.io.LineReader;
 import jam.lang.JamException;
@@ -15,16 +17,58 @@ import jean.fasta.FastaReader;
 
 /**
  * Defines a fixed linear sequence of nucleotides.
+ *
+ * <p>The nucleotides are packed two bits per base (adenine, cytosine,
+ * guanine, and thymine or uracil), so a nucleic acid occupies about
+ * one quarter of a byte per base.  Unknown bases ({@code N}) and
+ * soft-masked bases (lower-case codes in FASTA files) are recorded as
+ * sparse runs alongside the packed sequence.
  */
 public abstract class NucleicAcid implements Iterable<Nucleotide> {
-    private final List<Nucleotide> nucleotides;
+    // Two-bit nucleotide codes, 32 per word, with the first base in
+    // the least significant bits...
+    private long[] words;
+    private int length = 0;
+
+    // Unknown bases: their codes in the packed words are arbitrary
+    // (zero when parsed, but three after complementing), so only this
+    // mask identifies them...
+    private final RunMask unknownMask = new RunMask();
+
+    // Soft-masked bases...
+    private final RunMask softMask = new RunMask();
+
+    // Nucleotides indexed by their two-bit codes...
+    private final Nucleotide[] decodeTable;
+
+    // Two-bit codes indexed by nucleotide ordinal...
+    private static final int[] encodeTable = new int[Nucleotide.values().length];
+
+    // Nucleotides indexed by their (upper- or lower-case) ASCII codes...
+    private static final Nucleotide[] charTable = new Nucleotide[128];
+
+    private static final int BASES_PER_WORD = 32;
+
+    static {
+        encodeTable[Nucleotide.A.ordinal()] = 0;
+        encodeTable[Nucleotide.C.ordinal()] = 1;
+        encodeTable[Nucleotide.G.ordinal()] = 2;
+        encodeTable[Nucleotide.T.ordinal()] = 3;
+        encodeTable[Nucleotide.U.ordinal()] = 3;
+        encodeTable[Nucleotide.N.ordinal()] = 0;
+
+        for (Nucleotide nucleotide : Nucleotide.values()) {
+            charTable[nucleotide.name().charAt(0)] = nucleotide;
+            charTable[Character.toLowerCase(nucleotide.name().charAt(0))] = nucleotide;
+        }
+    }
 
     /**
      * Creates a new (empty) nucleic acid: the concrete subclass must
      * assign the nucleotides.
      */
     protected NucleicAcid() {
-        this.nucleotides = new ArrayList<Nucleotide>();
+        this(BASES_PER_WORD);
     }
 
     /**
@@ -34,7 +78,12 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      * @param capacity the expected number of nucleotides.
      */
     protected NucleicAcid(int capacity) {
-        this.nucleotides = new ArrayList<Nucleotide>(capacity);
+        this.words = new long[wordCount(Math.max(1, capacity))];
+        this.decodeTable = new Nucleotide[] { Nucleotide.A, Nucleotide.C, Nucleotide.G, adeninePartner() };
+    }
+
+    private static int wordCount(int baseCount) {
+        return (baseCount + BASES_PER_WORD - 1) / BASES_PER_WORD;
     }
 
     /**
@@ -47,7 +96,7 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      */
     protected void add(Nucleotide nucleotide) {
         validate(nucleotide);
-        nucleotides.add(nucleotide);
+        append(nucleotide, false);
     }            
 
     /**
@@ -63,10 +112,132 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
             add(nucleotide);
     }            
 
+    /**
+     * Adds a range of nucleotides from another nucleic acid of the
+     * same type, copying the packed sequence and the unknown and
+     * soft-masked runs without validating each base.
+     *
+     * @param source the nucleic acid to copy.
+     *
+     * @param start the index of the first nucleotide to copy.
+     *
+     * @param end one past the index of the last nucleotide to copy.
+     *
+     * @throws IllegalArgumentException unless the source has the same
+     * type as this nucleic acid.
+     *
+     * @throws IndexOutOfBoundsException unless the range is valid.
+     */
+    protected void addRange(NucleicAcid source, int start, int end) {
+        if (source.getClass() != getClass())
+            throw new IllegalArgumentException("Nucleic acid types do not match.");
+
+        addPacked(source, start, end, false, false);
+    }
+
+    /**
+     * Adds a range of nucleotides from another nucleic acid by
+     * transforming the packed sequence 32 nucleotides at a time: the
+     * caller is responsible for ensuring that the nucleotides are
+     * permitted in this nucleic acid.
+     *
+     * <p>The two-bit code of the complement of a nucleotide is the
+     * bitwise complement of its code.  Unknown nucleotides are their
+     * own complements: complementing changes their packed codes, but
+     * the unknown runs (like the soft-masked runs) are copied
+     * unchanged (or reversed), and those runs alone mark unknown
+     * nucleotides.
+     *
+     * @param source the nucleic acid to copy.
+     *
+     * @param start the index of the first nucleotide to copy.
+     *
+     * @param end one past the index of the last nucleotide to copy.
+     *
+     * @param complement whether to add the complement of each
+     * nucleotide.
+     *
+     * @param reverse whether to add the nucleotides in reverse order.
+     *
+     * @throws IndexOutOfBoundsException unless the range is valid.
+     */
+    void addPacked(NucleicAcid source, int start, int end, boolean complement, boolean reverse) {
+        Objects.checkFromToIndex(start, end, source.length);
+        ensureCapacity(length + end - start);
+
+        if (reverse) {
+            unknownMask.addReversed(source.unknownMask, start, end, length);
+            softMask.addReversed(source.softMask, start, end, length);
+        }
+        else {
+            unknownMask.addRange(source.unknownMask, start, end, length - start);
+            softMask.addRange(source.softMask, start, end, length - start);
+        }
+
+        for (int copied = 0; copied < end - start; copied += BASES_PER_WORD) {
+            int count = Math.min(BASES_PER_WORD, end - start - copied);
+            long bits;
+
+            if (reverse)
+                bits = reverseCodes(source.readWord(end - copied - count, count), count);
+            else
+                bits = source.readWord(start + copied, count);
+
+            if (complement)
+                bits = ~bits & lowMask(count);
+
+            appendWord(bits, count);
+        }
+    }
+
+    // Returns the codes for a run of (at most 32) nucleotides packed
+    // into a single word...
+    private long readWord(int index, int count) {
+        int word  = index / BASES_PER_WORD;
+        int shift = 2 * (index % BASES_PER_WORD);
+
+        long bits = words[word] >>> shift;
+
+        if (shift > 0 && word + 1 < words.length)
+            bits |= words[word + 1] << (64 - shift);
+
+        return bits & lowMask(count);
+    }
+
+    // Appends the codes for a run of (at most 32) nucleotides packed
+    // into a single word...
+    private void appendWord(long bits, int count) {
+        int word  = length / BASES_PER_WORD;
+        int shift = 2 * (length % BASES_PER_WORD);
+
+        words[word] |= bits << shift;
+
+        if (shift > 0 && shift + 2 * count > 64)
+            words[word + 1] |= bits >>> (64 - shift);
+
+        length += count;
+    }
+
+    private static long lowMask(int count) {
+        return (count == BASES_PER_WORD) ? -1L : (1L << (2 * count)) - 1L;
+    }
+
+    // Reverses the order of the first (count) two-bit codes in a word...
+    private static long reverseCodes(long bits, int count) {
+        //
+        // Reversing all 64 bits also reverses the two bits within
+        // each code, so swap them back...
+        //
+        long reversed = Long.reverse(bits);
+        reversed = ((reversed >>> 1) & 0x5555555555555555L) | ((reversed & 0x5555555555555555L) << 1);
+
+        return reversed >>> (64 - 2 * count);
+    }
+
     /**
      * Assigns the nucleotide sequence for this nucleic acid from a
      * string representation containing single-character nucleotide
-     * codes.
+     * codes; lower-case codes mark soft-masked nucleotides.
      *
      * @param s a sequence of single-character nucleotide codes.
      *
@@ -77,15 +248,100 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      * been assigned.
      */
     protected void parseString(String s) {
-        if (!nucleotides.isEmpty())
+        if (length > 0)
             throw new IllegalStateException("Nucleotides have already been assigned.");
 
         addString(s);
     }
 
     private void addString(String s) {
+        ensureCapacity(length + s.length());
+
         for (int k = 0; k < s.length(); ++k)
-            add(Nucleotide.valueOf(s.charAt(k)));
+            addChar(s.charAt(k));
+    }
+
+    private void addChar(char c) {
+        Nucleotide nucleotide = (c < charTable.length) ? charTable[c] : null;
+
+        if (nucleotide == null)
+            nucleotide = Nucleotide.valueOf(c);
+
+        validate(nucleotide);
+        append(nucleotide, Character.isLowerCase(c));
+    }
+
+    private void append(Nucleotide nucleotide, boolean softMasked) {
+        ensureCapacity(length + 1);
+
+        if (nucleotide == Nucleotide.N)
+            unknownMask.add(length);
+
+        if (softMasked)
+            softMask.add(length);
+
+        appendCode(encode(nucleotide));
+    }
+
+    private void appendCode(int code) {
+        words[length / BASES_PER_WORD] |= ((long) code) << (2 * (length % BASES_PER_WORD));
+        ++length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        int required = wordCount(capacity);
+
+        if (required > words.length)
+            words = Arrays.copyOf(words, Math.max(required, 2 * words.length));
+    }
+
+    private void trimToSize() {
+        words = Arrays.copyOf(words, wordCount(length));
+        unknownMask.trim();
+        softMask.trim();
+    }
+
+    /**
+     * Returns the two-bit code for a nucleotide: zero for adenine,
+     * one for cytosine, two for guanine, and three for thymine and
+     * uracil.  Unknown nucleotides are encoded as zero.
+     *
+     * @param nucleotide the nucleotide to encode.
+     *
+     * @return the two-bit code for the specified nucleotide.
+     */
+    static int encode(Nucleotide nucleotide) {
+        return encodeTable[nucleotide.ordinal()];
+    }
+
+    /**
+     * Returns the two-bit code for the nucleotide at a given location
+     * without validating the index.  The code for an unknown
+     * nucleotide is arbitrary, so callers must check for unknown
+     * nucleotides with {@code containsUnknown}.
+     *
+     * @param index the index of the desired location.
+     *
+     * @return the two-bit code for the nucleotide at the specified
+     * location.
+     */
+    int code(int index) {
+        return (int) (words[index / BASES_PER_WORD] >>> (2 * (index % BASES_PER_WORD))) & 3;
+    }
+
+    /**
+     * Identifies ranges that contain unknown nucleotides.
+     *
+     * @param start the index of the first nucleotide in the range.
+     *
+     * @param end one past the index of the last nucleotide in the
+     * range.
+     *
+     * @return {@code true} iff the specified range contains at least
+     * one unknown nucleotide.
+     */
+    boolean containsUnknown(int start, int end) {
+        return unknownMask.intersects(start, end);
     }
 
     /**
@@ -94,7 +350,8 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      *
      * <p>The first line of the FASTA file must be a header line
      * (which is ignored).  All remaining lines must contain the
-     * nucleotide sequence.
+     * nucleotide sequence; lower-case codes mark soft-masked
+     * nucleotides.
      *
      * @param file the FASTA file to parse.
      *
@@ -105,7 +362,7 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      * been assigned.
      */
     protected void parseFASTA(File file) {
-        if (!nucleotides.isEmpty())
+        if (length > 0)
             throw new IllegalStateException("Nucleotides have already been assigned.");
 
         LineReader reader = LineReader.open(file);
@@ -125,6 +382,8 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
         finally {
             reader.close();
         }
+
+        trimToSize();
     }
 
     /**
@@ -137,6 +396,18 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      */
     protected abstract void validate(Nucleotide nucleotide);
 
+    /**
+     * Returns the nucleotide that pairs with adenine in this nucleic
+     * acid (thymine in DNA, uracil in RNA), which shares its packed
+     * two-bit code.
+     *
+     * <p>This method is called from the base class constructor, so it
+     * must not depend on the state of the subclass.
+     *
+     * @return the nucleotide that pairs with adenine.
+     */
+    protected abstract Nucleotide adeninePartner();
+
     /**
      * Returns the nucleotide at a specified location.
      *
@@ -147,7 +418,28 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      * @throws IndexOutOfBoundsException unless the index is valid.
      */
     public Nucleotide at(int index) {
-        return nucleotides.get(index);
+        Objects.checkIndex(index, length);
+
+        if (unknownMask.contains(index))
+            return Nucleotide.N;
+        else
+            return decodeTable[code(index)];
+    }
+
+    /**
+     * Identifies soft-masked nucleotides (those with lower-case codes
+     * in the source sequence).
+     *
+     * @param index the index of the desired location.
+     *
+     * @return {@code true} iff the nucleotide at the specified
+     * location is soft-masked.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public boolean isSoftMasked(int index) {
+        Objects.checkIndex(index, length);
+        return softMask.contains(index);
     }
 
     /**
@@ -156,7 +448,7 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      * @return the number of nucleotides in this nucleic acid.
      */
     public int length() {
-        return nucleotides.size();
+        return length;
     }
 
     /**
@@ -165,7 +457,17 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      * @return a read-only view of the nucleotides in this nucleic acid.
      */
     public List<Nucleotide> viewNucleotides() {
-        return Collections.unmodifiableList(nucleotides);
+        return new NucleotideView();
+    }
+
+    private final class NucleotideView extends AbstractList<Nucleotide> implements RandomAccess {
+        @Override public Nucleotide get(int index) {
+            return at(index);
+        }
+
+        @Override public int size() {
+            return length;
+        }
     }
 
     /**
@@ -176,12 +478,37 @@ public abstract class NucleicAcid implements Iterable<Nucleotide> {
      * single-character codes.
      */
     public String formatString() {
-        StringBuilder builder = new StringBuilder();
+        return formatString(0, length);
+    }
 
-        for (Nucleotide nucleotide : nucleotides)
-            builder.append(nucleotide.name());
+    /**
+     * Formats a range of nucleotides in this nucleic acid into a
+     * string of (upper-case) single-character codes.
+     *
+     * @param start the index of the first nucleotide to format.
+     *
+     * @param end one past the index of the last nucleotide to format.
+     *
+     * @return the nucleotides in the specified range as a string of
+     * single-character codes.
+     *
+     * @throws IndexOutOfBoundsException unless the range is valid.
+     */
+    public String formatString(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+
+        char[] symbols = new char[decodeTable.length];
+
+        for (int code = 0; code < symbols.length; ++code)
+            symbols[code] = decodeTable[code].name().charAt(0);
+
+        char[] chars = new char[end - start];
+
+        for (int index = start; index < end; ++index)
+            chars[index - start] = symbols[code(index)];
 
-        return builder.toString();
+        unknownMask.fill(chars, start, end, 'N');
+        return new String(chars);
     }
 
     @Override public Iterator<Nucleotide> iterator() {
@@ -16,19 +16,62 @@ public final class RNA extends NucleicAcid {
     /**
      * Creates the RNA transcript for a DNA molecule.
      *
+     * <p>Thymine and uracil share a packed code, so the transcript is
+     * a direct copy of the packed DNA sequence.
+     *
      * @param dna the DNA molecule to transcribe.
      *
      * @return the RNA transcript for the specified DNA molecule.
+     *
+     * @throws IllegalArgumentException if the DNA molecule contains
+     * unknown nucleotides.
      */
     public static RNA transcribe(DNA dna) {
-        RNA rna = new RNA(dna.length());
+        return transcribe(dna, 0, dna.length());
+    }
+
+    /**
+     * Creates the RNA transcript for a range of a DNA molecule (e.g.,
+     * a single exon).
+     *
+     * @param dna the DNA molecule to transcribe.
+     *
+     * @param start the index of the first nucleotide to transcribe.
+     *
+     * @param end one past the index of the last nucleotide to
+     * transcribe.
+     *
+     * @return the RNA transcript for the specified range.
+     *
+     * @throws IllegalArgumentException if the range contains unknown
+     * nucleotides.
+     *
+     * @throws IndexOutOfBoundsException unless the range is valid.
+     */
+    public static RNA transcribe(DNA dna, int start, int end) {
+        if (dna.containsUnknown(start, end))
+            throw new IllegalArgumentException("Invalid nucleotide: " + Nucleotide.N);
 
-        for (Nucleotide nucleotide : dna)
-            rna.add(nucleotide.transcribe());
+        RNA rna = new RNA(end - start);
+        rna.addPacked(dna, start, end, false, false);
+        return rna;
+    }
 
+    /**
+     * Returns the reverse complement of this RNA molecule.
+     *
+     * @return the reverse complement of this RNA molecule.
+     */
+    public RNA reverseComplement() {
+        RNA rna = new RNA(length());
+        rna.addPacked(this, 0, length(), true, true);
         return rna;
     }
 
+    @Override protected Nucleotide adeninePartner() {
+        return Nucleotide.U;
+    }
+
     @Override protected void validate(Nucleotide nucleotide) {
         if (!nucleotide.inRNA())
             throw new IllegalArgumentException("Invalid nucleotide: " + nucleotide);
@@ -0,0 +1,187 @@
+
+package jean.nucleic;
+
+import java.util.Arrays;
+
+/**
+ * Marks positions in a nucleotide sequence as a sorted list of
+ * disjoint half-open runs {@code [start, end)}.
+ *
+ * <p>Runs must be added in increasing order of position; adjacent
+ * runs are merged, so a masked region of any length occupies a
+ * single run.
+ */
+final class RunMask {
+    private int[] starts = new int[4];
+    private int[] ends = new int[4];
+    private int count = 0;
+
+    /**
+     * Marks a single position, which must not precede any position
+     * that has already been marked.
+     *
+     * @param index the position to mark.
+     */
+    void add(int index) {
+        add(index, index + 1);
+    }
+
+    /**
+     * Marks a range of positions, which must not precede any position
+     * that has already been marked.
+     *
+     * @param start the first position to mark.
+     *
+     * @param end one past the last position to mark.
+     */
+    void add(int start, int end) {
+        if (start >= end)
+            return;
+
+        if (count > 0 && start < ends[count - 1])
+            throw new IllegalStateException("Runs must be added in order.");
+
+        if (count > 0 && start == ends[count - 1]) {
+            ends[count - 1] = end;
+            return;
+        }
+
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, Math.max(4, 2 * count));
+            ends = Arrays.copyOf(ends, Math.max(4, 2 * count));
+        }
+
+        starts[count] = start;
+        ends[count] = end;
+        ++count;
+    }
+
+    /**
+     * Marks the positions in a range of another mask, shifted by a
+     * fixed offset.
+     *
+     * @param source the mask to copy.
+     *
+     * @param start the first position to copy from the source mask.
+     *
+     * @param end one past the last position to copy from the source
+     * mask.
+     *
+     * @param shift the offset to add to the copied positions.
+     */
+    void addRange(RunMask source, int start, int end, int shift) {
+        for (int run = source.firstRun(start); run < source.count && source.starts[run] < end; ++run)
+            add(Math.max(start, source.starts[run]) + shift, Math.min(end, source.ends[run]) + shift);
+    }
+
+    /**
+     * Marks the positions in a range of another mask in reverse
+     * order: position {@code p} in the source maps to position
+     * {@code shift + end - 1 - p}.
+     *
+     * @param source the mask to copy.
+     *
+     * @param start the first position to copy from the source mask.
+     *
+     * @param end one past the last position to copy from the source
+     * mask.
+     *
+     * @param shift the position of the reversed range.
+     */
+    void addReversed(RunMask source, int start, int end, int shift) {
+        int first = source.firstRun(start);
+        int last = source.firstRun(end);
+
+        if (last < source.count && source.starts[last] < end)
+            ++last;
+
+        for (int run = last - 1; run >= first; --run)
+            add(shift + end - Math.min(end, source.ends[run]), shift + end - Math.max(start, source.starts[run]));
+    }
+
+    /**
+     * Determines whether a position has been marked.
+     *
+     * @param index the position to test.
+     *
+     * @return {@code true} iff the specified position lies within a
+     * marked run.
+     */
+    boolean contains(int index) {
+        if (count == 0)
+            return false;
+
+        int run = firstRun(index);
+        return run < count && starts[run] <= index;
+    }
+
+    /**
+     * Determines whether any position within a range has been marked.
+     *
+     * @param start the first position in the range.
+     *
+     * @param end one past the last position in the range.
+     *
+     * @return {@code true} iff any position in the specified range
+     * lies within a marked run.
+     */
+    boolean intersects(int start, int end) {
+        if (count == 0 || start >= end)
+            return false;
+
+        int run = firstRun(start);
+        return run < count && starts[run] < end;
+    }
+
+    /**
+     * Assigns a character at every marked position within a range.
+     *
+     * @param chars the characters to update, where {@code chars[0]}
+     * corresponds to position {@code start}.
+     *
+     * @param start the first position in the range.
+     *
+     * @param end one past the last position in the range.
+     *
+     * @param c the character to assign.
+     */
+    void fill(char[] chars, int start, int end, char c) {
+        for (int run = firstRun(start); run < count && starts[run] < end; ++run)
+            Arrays.fill(chars, Math.max(start, starts[run]) - start, Math.min(end, ends[run]) - start, c);
+    }
+
+    /**
+     * Returns the number of disjoint runs in this mask.
+     *
+     * @return the number of disjoint runs in this mask.
+     */
+    int countRuns() {
+        return count;
+    }
+
+    /**
+     * Releases any unused storage.
+     */
+    void trim() {
+        starts = Arrays.copyOf(starts, count);
+        ends = Arrays.copyOf(ends, count);
+    }
+
+    // Returns the index of the first run that ends after the given
+    // position (count if there is none)...
+    private int firstRun(int index) {
+        int lo = 0;
+        int hi = count;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (ends[mid] <= index)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        return lo;
+    }
+}
@@ -0,0 +1,186 @@
+
+package jean.nucleic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jean.peptide.Peptide;
+import jean.peptide.Residue;
+
+/**
+ * Translates nucleic acids into amino acid sequences in any of the
+ * six reading frames.
+ *
+ * <p>Translation operates directly on the packed two-bit nucleotide
+ * codes: the codes of each triplet form a six-bit index into a
+ * 64-entry table of residues, so no codon or nucleotide objects are
+ * created.  Thymine and uracil share a packed code, so DNA and RNA
+ * are translated identically.  Codons that contain an unknown
+ * nucleotide translate to {@link Residue#UNK}; stop codons translate
+ * to {@link Residue#STOP}.  Neither is a native residue, so the
+ * native fragments of a translated peptide never span them.
+ *
+ * <p>Forward frames begin at positions {@code 0}, {@code 1}, and
+ * {@code 2} of the nucleic acid; reverse frames begin at the same
+ * offsets from the end of the reverse complement.
+ */
+public final class Translator {
+    private Translator() {}
+
+    // Residue ordinals indexed by packed codon index...
+    private static final byte[] residueTable = new byte[64];
+
+    private static final Residue[] residues = Residue.values();
+
+    private static final byte UNKNOWN = (byte) Residue.UNK.ordinal();
+
+    /**
+     * Number of reading frames on each strand.
+     */
+    public static final int FRAME_COUNT = 3;
+
+    static {
+        for (int index = 0; index < residueTable.length; ++index)
+            residueTable[index] = (byte) Codon.instance(index).translate().ordinal();
+    }
+
+    /**
+     * Translates one reading frame of a nucleic acid into residue
+     * ordinals.
+     *
+     * @param acid the nucleic acid to translate.
+     *
+     * @param frame the zero-based reading frame (the offset of the
+     * first codon from the start of the strand).
+     *
+     * @param reverse whether to translate the reverse complement of
+     * the nucleic acid.
+     *
+     * @return an array containing the ordinals of the translated
+     * residues, one for each complete codon in the reading frame.
+     *
+     * @throws IllegalArgumentException unless the frame is in the
+     * closed range {@code [0, 2]}.
+     */
+    public static byte[] translate(NucleicAcid acid, int frame, boolean reverse) {
+        validateFrame(frame);
+
+        if (reverse)
+            return translateReverse(acid, frame);
+        else
+            return translateForward(acid, frame);
+    }
+
+    private static void validateFrame(int frame) {
+        if (frame < 0 || frame >= FRAME_COUNT)
+            throw new IllegalArgumentException("Invalid reading frame: " + frame);
+    }
+
+    private static int countCodons(NucleicAcid acid, int frame) {
+        return Math.max(0, acid.length() - frame) / Codon.LENGTH;
+    }
+
+    private static byte[] translateForward(NucleicAcid acid, int frame) {
+        byte[] ordinals = new byte[countCodons(acid, frame)];
+
+        for (int k = 0, pos = frame; k < ordinals.length; ++k, pos += Codon.LENGTH) {
+            if (acid.containsUnknown(pos, pos + Codon.LENGTH)) {
+                ordinals[k] = UNKNOWN;
+                continue;
+            }
+
+            int index = (acid.code(pos) << 4) | (acid.code(pos + 1) << 2) | acid.code(pos + 2);
+            ordinals[k] = residueTable[index];
+        }
+
+        return ordinals;
+    }
+
+    private static byte[] translateReverse(NucleicAcid acid, int frame) {
+        byte[] ordinals = new byte[countCodons(acid, frame)];
+
+        //
+        // The complement of a two-bit code is (3 - code): A <-> T(U)
+        // and C <-> G.  Codon k in the reverse frame covers positions
+        // [pos - 2, pos] of the forward strand, read backwards...
+        //
+        for (int k = 0, pos = acid.length() - 1 - frame; k < ordinals.length; ++k, pos -= Codon.LENGTH) {
+            if (acid.containsUnknown(pos - 2, pos + 1)) {
+                ordinals[k] = UNKNOWN;
+                continue;
+            }
+
+            int index = ((3 - acid.code(pos)) << 4) | ((3 - acid.code(pos - 1)) << 2) | (3 - acid.code(pos - 2));
+            ordinals[k] = residueTable[index];
+        }
+
+        return ordinals;
+    }
+
+    /**
+     * Translates one reading frame of a nucleic acid into a peptide.
+     *
+     * @param acid the nucleic acid to translate.
+     *
+     * @param frame the zero-based reading frame (the offset of the
+     * first codon from the start of the strand).
+     *
+     * @param reverse whether to translate the reverse complement of
+     * the nucleic acid.
+     *
+     * @return a new (uncached) peptide containing the translated
+     * residues, including stop markers and unknown residues.
+     *
+     * @throws IllegalArgumentException unless the frame is in the
+     * closed range {@code [0, 2]}.
+     */
+    public static Peptide translatePeptide(NucleicAcid acid, int frame, boolean reverse) {
+        byte[] ordinals = translate(acid, frame, reverse);
+        Residue[] translated = new Residue[ordinals.length];
+
+        for (int k = 0; k < ordinals.length; ++k)
+            translated[k] = residues[ordinals[k]];
+
+        return Peptide.of(translated);
+    }
+
+    /**
+     * Translates a nucleic acid in all six reading frames.
+     *
+     * @param acid the nucleic acid to translate.
+     *
+     * @return a list containing the peptides translated from forward
+     * frames 0, 1, and 2 followed by reverse frames 0, 1, and 2.
+     */
+    public static List<Peptide> translateSixFrames(NucleicAcid acid) {
+        List<Peptide> peptides = new ArrayList<Peptide>(2 * FRAME_COUNT);
+
+        for (int frame = 0; frame < FRAME_COUNT; ++frame)
+            peptides.add(translatePeptide(acid, frame, false));
+
+        for (int frame = 0; frame < FRAME_COUNT; ++frame)
+            peptides.add(translatePeptide(acid, frame, true));
+
+        return peptides;
+    }
+
+    /**
+     * Extracts the native peptide fragments of a fixed length from
+     * all six reading frames of a nucleic acid.
+     *
+     * @param acid the nucleic acid to translate.
+     *
+     * @param length the length of the peptide fragments.
+     *
+     * @return a list containing the native fragments from all six
+     * reading frames (in frame order).
+     */
+    public static List<Peptide> nativeFragments(NucleicAcid acid, int length) {
+        List<Peptide> fragments = new ArrayList<Peptide>();
+
+        for (Peptide peptide : translateSixFrames(acid))
+            fragments.addAll(peptide.nativeFragments(length));
+
+        return fragments;
+    }
+}
@@ -76,7 +76,25 @@ public final class Peptide extends AbstractList<Residue> {
         return peptide;
     }
 
-    private static Peptide parse(String s) {
+    /**
+     * Creates a new peptide having the amino acid sequence encoded as
+     * a sequence of single-character residue codes in a string.
+     *
+     * <p>Unlike {@link Peptide#instance(String)}, the new peptide is
+     * not added to the cache of peptide instances, so it may be
+     * reclaimed by the garbage collector when no longer referenced.
+     * This method should be used for long sequences (e.g., complete
+     * proteins) that are accessed infrequently.
+     *
+     * @param s a sequence of single-character residue codes.
+     *
+     * @return a new peptide containing the residues specified in the
+     * input string.
+     *
+     * @throws IllegalArgumentException unless the input string is a
+     * valid peptide representation.
+     */
+    public static Peptide parse(String s) {
         List<Residue> residues = new ArrayList<Residue>(s.length());
 
         for (int k = 0; k < s.length(); ++k)
@@ -85,6 +103,34 @@ public final class Peptide extends AbstractList<Residue> {
         return new Peptide(residues, false);
     }
 
+    /**
+     * Creates a new peptide from a sequence of single-byte residue
+     * codes (e.g., from an ASCII-encoded FASTA file).
+     *
+     * <p>Like {@link Peptide#parse(String)}, the new peptide is not
+     * added to the cache of peptide instances.
+     *
+     * @param codes an array containing single-byte residue codes.
+     *
+     * @param offset the index of the first code in the peptide.
+     *
+     * @param length the number of residues in the peptide.
+     *
+     * @return a new peptide containing the residues specified in the
+     * byte array.
+     *
+     * @throws IllegalArgumentException unless the byte array contains
+     * a valid peptide representation.
+     */
+    public static Peptide parse(byte[] codes, int offset, int length) {
+        List<Residue> residues = new ArrayList<Residue>(length);
+
+        for (int k = offset; k < offset + length; ++k)
+            residues.add(Residue.valueOfCode1(codes[k]));
+
+        return new Peptide(residues, false);
+    }
+
     /**
      * Reads peptides from a flat file (no header, one peptide per line).
      *
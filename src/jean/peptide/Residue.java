@@ -150,6 +150,7 @@ public enum Residue {
     private final boolean isNative;
 
     private static final Map<Character, Residue> map1 = new HashMap<Character, Residue>();
+    private static final Residue[] ascii1 = new Residue[128];
     private static final List<Residue> nativeList = new ArrayList<Residue>();
 
     static {
@@ -171,6 +172,9 @@ public enum Residue {
 
         for (char code : UNKNOWN_ALIAS)
             map1.put(code, Residue.UNK);
+
+        for (Map.Entry<Character, Residue> entry : map1.entrySet())
+            ascii1[entry.getKey()] = entry.getValue();
     }
 
     private static void populateNative() {
@@ -212,7 +216,29 @@ public enum Residue {
      * code, or {@code null} if the code is invalid.
      */
     public static Residue lookupCode1(char code1) {
-        return map1.get(code1);
+        if (code1 < ascii1.length)
+            return ascii1[code1];
+        else
+            return null;
+    }
+
+    /**
+     * Retrieves an amino acid by its single-character code, given as
+     * a single byte (e.g., from an ASCII-encoded FASTA file).
+     *
+     * @param code1 a single-byte code.
+     *
+     * @return the amino acid with the specified single-byte code.
+     *
+     * @throws IllegalArgumentException unless the byte code is valid.
+     */
+    public static Residue valueOfCode1(byte code1) {
+        Residue residue = (code1 >= 0) ? ascii1[code1] : null;
+
+        if (residue != null)
+            return residue;
+        else
+            throw new IllegalArgumentException(String.format("Invalid amino acid code [%c].", (char) (code1 & 0xff)));
     }
 
     /**
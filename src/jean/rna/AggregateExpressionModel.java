@@ -12,6 +12,7 @@ import jam.io.TableReader;
 import jam.lang.JamException;
 import jam.util.MapUtil;
 
+import jean.app.LazyGlobal;
 import jean.hugo.HugoSymbol;
 import jean.tcga.TumorBarcode;
 
@@ -23,10 +24,27 @@ import jean.tcga.TumorBarcode;
 public final class AggregateExpressionModel extends ExpressionModel {
     private final Map<HugoSymbol, Expression> profile;
 
-    private static AggregateExpressionModel global = null;
+    // Gene identifiers and the primitive profile that they index...
+    private final Map<HugoSymbol, Integer> symbolIndex;
+    private final ExpressionVector vector;
+
+    private static final LazyGlobal<AggregateExpressionModel> global =
+        LazyGlobal.create("AggregateExpressionModel", AggregateExpressionModel::createGlobal);
 
     private AggregateExpressionModel(Map<HugoSymbol, Expression> profile) {
         this.profile = Collections.unmodifiableMap(profile);
+        this.symbolIndex = new HashMap<HugoSymbol, Integer>(profile.size());
+
+        double[] levels = new double[profile.size()];
+
+        for (Map.Entry<HugoSymbol, Expression> entry : profile.entrySet()) {
+            int index = symbolIndex.size();
+
+            symbolIndex.put(entry.getKey(), index);
+            levels[index] = entry.getValue().doubleValue();
+        }
+
+        this.vector = ExpressionVector.of(levels, 0, 1, levels.length);
     }
 
     /**
@@ -44,10 +62,7 @@ public final class AggregateExpressionModel extends ExpressionModel {
      * properties.
      */
     public static AggregateExpressionModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static AggregateExpressionModel createGlobal() {
@@ -103,6 +118,18 @@ public final class AggregateExpressionModel extends ExpressionModel {
         return load(new File(fileName));
     }
 
+    @Override public int indexOf(HugoSymbol symbol) {
+        Integer index = symbolIndex.get(symbol);
+        return (index != null) ? index : -1;
+    }
+
+    @Override public ExpressionVector resolve(TumorBarcode barcode) {
+        //
+        // All tumors share the same profile...
+        //
+        return vector;
+    }
+
     @Override public Expression lookup(TumorBarcode barcode, HugoSymbol symbol) {
         //
         // All tumors have the same expression for a given gene...
@@ -2,35 +2,57 @@
 package jean.rna;
 
 import java.io.File;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import jam.app.JamProperties;
 import jam.data.DataMatrix;
 import jam.data.DenseDataMatrixLoader;
 
+import jean.app.LazyGlobal;
 import jean.hugo.HugoSymbol;
 import jean.tcga.CancerType;
-import jean.tcga.PatientCancerTypeTable;
-import jean.tcga.PatientID;
 import jean.tcga.TumorBarcode;
-import jean.tcga.TumorPatientTable;
+import jean.tcga.TumorCancerTypeTable;
 
 /**
  * Represents a gene expression model with uniform expression within
  * a cancer type (typically the median expression of a cancer-specific
- * cohort).  The mapping from tumor barcode to patient key is defined
- * by the global {@code TumorPatientTable} table, and the mapping from
- * patient to cancer type by the global {@code PatientCancerTypeTable}.
+ * cohort).  The mapping from tumor barcode to cancer type is defined
+ * by the global {@code TumorCancerTypeTable}, which joins the global
+ * {@code TumorPatientTable} and {@code PatientCancerTypeTable} once
+ * for each tumor.
  */
 public final class CancerTypeExpressionModel extends ExpressionModel {
-    private final DataMatrix<HugoSymbol, CancerType> cancerTypeExpression;
+    // Gene identifiers and the primitive profile for each cancer type
+    // that they index...
+    private final Map<HugoSymbol, Integer> symbolIndex;
+    private final Map<CancerType, ExpressionVector> cancerTypeExpression;
 
-    private final TumorPatientTable tumorPatientTable = TumorPatientTable.global();
-    private final PatientCancerTypeTable patientCancerTypeTable = PatientCancerTypeTable.global();
+    private final TumorCancerTypeTable cancerTypeTable = TumorCancerTypeTable.global();
 
-    private static CancerTypeExpressionModel global = null;
+    private static final LazyGlobal<CancerTypeExpressionModel> global =
+        LazyGlobal.create("CancerTypeExpressionModel", CancerTypeExpressionModel::createGlobal);
 
-    private CancerTypeExpressionModel(DataMatrix<HugoSymbol, CancerType> cancerTypeExpression) {
-        this.cancerTypeExpression = cancerTypeExpression.immutable();
+    private CancerTypeExpressionModel(DataMatrix<HugoSymbol, CancerType> expression) {
+        List<HugoSymbol> symbols = expression.rowKeyList();
+
+        this.symbolIndex = new HashMap<HugoSymbol, Integer>(symbols.size());
+        this.cancerTypeExpression = new EnumMap<CancerType, ExpressionVector>(CancerType.class);
+
+        for (int index = 0; index < symbols.size(); ++index)
+            symbolIndex.put(symbols.get(index), index);
+
+        for (CancerType cancerType : expression.colKeyList()) {
+            double[] levels = new double[symbols.size()];
+
+            for (int index = 0; index < levels.length; ++index)
+                levels[index] = expression.get(symbols.get(index), cancerType);
+
+            cancerTypeExpression.put(cancerType, ExpressionVector.of(levels, 0, 1, levels.length));
+        }
     }
 
     /**
@@ -48,10 +70,7 @@ public final class CancerTypeExpressionModel extends ExpressionModel {
      * properties.
      */
     public static CancerTypeExpressionModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static CancerTypeExpressionModel createGlobal() {
@@ -118,12 +137,26 @@ public final class CancerTypeExpressionModel extends ExpressionModel {
         return instance(new File(expressionFileName));
     }
 
+    @Override public int indexOf(HugoSymbol symbol) {
+        Integer index = symbolIndex.get(symbol);
+        return (index != null) ? index : -1;
+    }
+
+    @Override public ExpressionVector resolve(TumorBarcode barcode) {
+        CancerType cancerType = cancerTypeTable.lookup(barcode);
+
+        if (cancerType != null)
+            return cancerTypeExpression.get(cancerType);
+        else
+            return null;
+    }
+
     @Override public Expression lookup(TumorBarcode barcode, HugoSymbol symbol) {
-        PatientID  patientID  = tumorPatientTable.require(barcode);
-        CancerType cancerType = patientCancerTypeTable.require(patientID);
+        ExpressionVector vector = resolve(barcode);
+        int index = indexOf(symbol);
 
-        if (cancerTypeExpression.contains(symbol, cancerType))
-            return Expression.valueOf(cancerTypeExpression.get(symbol, cancerType));
+        if (vector != null && index >= 0)
+            return Expression.valueOf(vector.get(index));
         else
             return null;
     }
@@ -1,14 +1,18 @@
 
 package jean.rna;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jean.app.LazyGlobal;
 import jean.chem.Concentration;
-import jean.hugo.HugoSymbol;
+import jean.hugo.HugoPeptideIndex;
 import jean.hugo.HugoPeptideTable;
 import jean.peptide.Peptide;
-import jean.peptide.PeptideConcentrationBuilder;
 import jean.peptide.PeptideConcentrationProfile;
 
 /**
@@ -19,7 +23,8 @@ public abstract class ConcentrationModel {
     private final double exprThreshold;
     private final double maxExpression;
 
-    private static ConcentrationModel global = null;
+    private static final LazyGlobal<ConcentrationModel> global =
+        LazyGlobal.create("ConcentrationModel", ConcentrationModel::createGlobal);
 
     /**
      * Creates a new concentration model with given expression bounds.
@@ -71,10 +76,7 @@ public abstract class ConcentrationModel {
      * properties.
      */
     public static ConcentrationModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static ConcentrationModel createGlobal() {
@@ -117,6 +119,11 @@ public abstract class ConcentrationModel {
      * Builds a protein concentration profile from RNA expression
      * data.
      *
+     * <p>The profile is computed by a single pass over primitive
+     * arrays: the expression of every gene in the peptide table is
+     * gathered into an array, translated into concentration in bulk,
+     * and scattered onto the peptides derived from each gene.
+     *
      * @param peptideTable a table containing peptides derived from
      * proteins (e.g., by proteasomal cleavage).
      *
@@ -127,18 +134,167 @@ public abstract class ConcentrationModel {
      */
     public PeptideConcentrationProfile buildProfile(HugoPeptideTable peptideTable,
                                                     ExpressionProfile expressionProfile) {
-        PeptideConcentrationBuilder builder =
-            PeptideConcentrationBuilder.create();
+        HugoPeptideIndex index = peptideTable.index();
+
+        double[] levels = new double[index.countSymbols()];
+        double[] totals = new double[index.countPeptides()];
+
+        return buildProfile(peptideTable, expressionProfile, levels, totals);
+    }
+
+    /**
+     * Builds a protein concentration profile from RNA expression data
+     * using caller-supplied work arrays, so that a thread building
+     * many profiles may reuse the same arrays.
+     *
+     * @param peptideTable a table containing peptides derived from
+     * proteins (e.g., by proteasomal cleavage).
+     *
+     * @param expressionProfile RNA expression indexed by gene.
+     *
+     * @param levels a work array whose length is at least the number
+     * of genes in the peptide table index (its contents are
+     * overwritten).
+     *
+     * @param totals a work array whose length is at least the number
+     * of peptides in the peptide table index (its contents are
+     * overwritten).
+     *
+     * @return the protein concentration profile derived from the
+     * given expression profile.
+     *
+     * @throws IllegalArgumentException if either work array is too
+     * short.
+     */
+    public PeptideConcentrationProfile buildProfile(HugoPeptideTable peptideTable,
+                                                    ExpressionProfile expressionProfile,
+                                                    double[] levels,
+                                                    double[] totals) {
+        HugoPeptideIndex index = peptideTable.index();
+
+        int symbolCount = index.countSymbols();
+        int peptideCount = index.countPeptides();
 
-        for (HugoSymbol symbol : peptideTable.viewSymbols()) {
-            Expression expression = expressionProfile.get(symbol);
-            Concentration concentration = translate(expression);
+        if (levels.length < symbolCount || totals.length < peptideCount)
+            throw new IllegalArgumentException("Work arrays are too short.");
 
-            if (concentration.isPositive())
-                builder.addAll(peptideTable.get(symbol), concentration);
+        for (int k = 0; k < symbolCount; ++k)
+            levels[k] = expressionProfile.get(index.symbol(k)).doubleValue();
+
+        return translateAndScatter(index, levels, totals);
+    }
+
+    /**
+     * Builds a protein concentration profile from a sparse RNA
+     * expression profile.
+     *
+     * @param peptideTable a table containing peptides derived from
+     * proteins (e.g., by proteasomal cleavage).
+     *
+     * @param expressionProfile RNA expression for the genes with
+     * positive expression.
+     *
+     * @return the protein concentration profile derived from the
+     * given expression profile.
+     */
+    public PeptideConcentrationProfile buildProfile(HugoPeptideTable peptideTable,
+                                                    SparseExpressionProfile expressionProfile) {
+        HugoPeptideIndex index = peptideTable.index();
+
+        double[] levels = new double[index.countSymbols()];
+        double[] totals = new double[index.countPeptides()];
+
+        return buildProfile(peptideTable, expressionProfile, levels, totals);
+    }
+
+    /**
+     * Builds a protein concentration profile from a sparse RNA
+     * expression profile using caller-supplied work arrays.
+     *
+     * <p>The genes in the sparse profile and the peptide table index
+     * are both sorted by symbol key, so the expression levels are
+     * gathered by a single merge of the two gene lists rather than a
+     * lookup for every gene in the table.
+     *
+     * @param peptideTable a table containing peptides derived from
+     * proteins (e.g., by proteasomal cleavage).
+     *
+     * @param expressionProfile RNA expression for the genes with
+     * positive expression.
+     *
+     * @param levels a work array whose length is at least the number
+     * of genes in the peptide table index (its contents are
+     * overwritten).
+     *
+     * @param totals a work array whose length is at least the number
+     * of peptides in the peptide table index (its contents are
+     * overwritten).
+     *
+     * @return the protein concentration profile derived from the
+     * given expression profile.
+     *
+     * @throws IllegalArgumentException if either work array is too
+     * short.
+     */
+    public PeptideConcentrationProfile buildProfile(HugoPeptideTable peptideTable,
+                                                    SparseExpressionProfile expressionProfile,
+                                                    double[] levels,
+                                                    double[] totals) {
+        HugoPeptideIndex index = peptideTable.index();
+
+        int symbolCount = index.countSymbols();
+        int peptideCount = index.countPeptides();
+
+        if (levels.length < symbolCount || totals.length < peptideCount)
+            throw new IllegalArgumentException("Work arrays are too short.");
+
+        Arrays.fill(levels, 0, symbolCount, 0.0);
+
+        int k = 0;
+        int s = 0;
+
+        while (k < symbolCount && s < expressionProfile.size()) {
+            int cmp = index.symbol(k).getKey().compareTo(expressionProfile.symbol(s).getKey());
+
+            if (cmp < 0)
+                ++k;
+            else if (cmp > 0)
+                ++s;
+            else
+                levels[k++] = expressionProfile.level(s++);
         }
 
-        return builder.build();
+        return translateAndScatter(index, levels, totals);
+    }
+
+    private PeptideConcentrationProfile translateAndScatter(HugoPeptideIndex index, double[] levels, double[] totals) {
+        translate(levels, levels, index.countSymbols());
+        Arrays.fill(totals, 0, index.countPeptides(), 0.0);
+
+        return scatter(index, levels, totals);
+    }
+
+    private static PeptideConcentrationProfile scatter(HugoPeptideIndex index, double[] concentrations, double[] totals) {
+        for (int k = 0; k < index.countSymbols(); ++k) {
+            double concentration = concentrations[k];
+
+            if (concentration > 0.0)
+                for (int j = index.peptideStart(k); j < index.peptideEnd(k); ++j)
+                    totals[index.peptideIndex(j)] += concentration;
+        }
+
+        Map<Peptide, Concentration> map = new HashMap<Peptide, Concentration>();
+
+        for (int j = 0; j < index.countPeptides(); ++j) {
+            if (totals[j] > 0.0) {
+                Concentration concentration = Concentration.valueOf(totals[j]);
+
+                if (concentration.isPositive())
+                    map.put(index.peptide(j), concentration);
+            }
+        }
+
+        return PeptideConcentrationProfile.create(map);
     }
 
     /**
@@ -181,6 +337,50 @@ public abstract class ConcentrationModel {
             return Concentration.valueOf(translate(Math.min(expr, maxExpression)));
     }
 
+    /**
+     * Translates an array of RNA expression levels into protein
+     * concentrations.
+     *
+     * <p>Expression levels below the threshold (and {@code NaN}
+     * values, which denote missing expression) translate to zero
+     * concentration; levels above the maximum are clamped to it.
+     *
+     * @param expression the RNA expression levels.
+     *
+     * @param out an array to hold the protein concentrations, which
+     * may be the same array as {@code expression}: on return,
+     * {@code out[k]} contains the concentration corresponding to
+     * {@code expression[k]}.
+     *
+     * @throws IllegalArgumentException if the output array is shorter
+     * than the expression array.
+     */
+    public void translate(double[] expression, double[] out) {
+        if (out.length < expression.length)
+            throw new IllegalArgumentException("Output array is too short.");
+
+        translate(expression, out, expression.length);
+    }
+
+    /**
+     * Translates an array of RNA expression levels into protein
+     * concentrations.
+     *
+     * <p>Implementations must apply the expression threshold and
+     * maximum in the same way as {@link
+     * ConcentrationModel#translate(Expression)}, and must map values
+     * that are not at or above the threshold (including {@code NaN})
+     * to zero.  Each element must be read before the corresponding
+     * output element is written, because the arrays may be the same.
+     *
+     * @param expression the RNA expression levels.
+     *
+     * @param out an array to hold the protein concentrations.
+     *
+     * @param length the number of elements to translate.
+     */
+    protected abstract void translate(double[] expression, double[] out, int length);
+
     /**
      * Returns the protein concentration that corresponds to a given
      * RNA expression.
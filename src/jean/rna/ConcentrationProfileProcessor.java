@@ -0,0 +1,441 @@
+
+package jean.rna;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jam.app.JamApp;
+import jam.app.JamLogger;
+import jam.app.JamProperties;
+import jam.lang.JamException;
+
+import jean.app.LazyGlobal;
+import jean.app.WarmUp;
+import jean.hugo.HugoPeptideIndex;
+import jean.hugo.HugoPeptideTable;
+import jean.peptide.PeptideConcentrationProfile;
+import jean.tcga.TumorBarcode;
+
+/**
+ * Generates peptide concentration profiles for every tumor in a
+ * cohort.
+ *
+ * <p>One peptide table (and its compact index) is shared by all
+ * worker threads.  Barcodes are streamed through a fixed pool of
+ * workers with a bounded task queue; each worker reuses its own work
+ * arrays for every profile that it builds.  Completed profiles are
+ * passed through a bounded queue to a single writer thread, which
+ * stores each profile and then appends its barcode to a checkpoint
+ * file; workers wait when the queue is full.  If the writer fails,
+ * the workers skip the remaining barcodes and the processor rethrows
+ * the failure once they finish.  Duplicate barcodes in
+ * the input are processed once.  When the processor is restarted,
+ * barcodes listed in the checkpoint file are skipped, so an
+ * interrupted run resumes where it stopped.
+ */
+public final class ConcentrationProfileProcessor extends JamApp {
+    private final String barcodeFile;
+    private final String peptideTableFile;
+    private final String profileDir;
+    private final int threadCount;
+
+    private final ExpressionManager expressionManager;
+
+    private ConcentrationModel concentrationModel;
+
+    private List<TumorBarcode> pending;
+    private HugoPeptideTable peptideTable;
+    private ThreadLocal<double[][]> workArrays;
+
+    private final AtomicInteger processed = new AtomicInteger(0);
+
+    // The error that stopped the writer thread, if any...
+    private volatile Throwable writerFailure = null;
+
+    private static final String BASE_SUFFIX = "_peptide_concentration.csv.gz";
+
+    // Interval at which workers waiting on a full store queue check
+    // that the writer thread is still alive...
+    private static final long PUT_TIMEOUT_MILLIS = 1000L;
+
+    // A profile to be stored by the writer thread; END marks the end
+    // of the queue...
+    private static final class StoreRequest {
+        private final TumorBarcode barcode;
+        private final PeptideConcentrationProfile profile;
+
+        private StoreRequest(TumorBarcode barcode, PeptideConcentrationProfile profile) {
+            this.barcode = barcode;
+            this.profile = profile;
+        }
+
+        private static final StoreRequest END = new StoreRequest(null, null);
+    }
+
+    private ConcentrationProfileProcessor(String... propFiles) {
+        super(propFiles);
+
+        this.barcodeFile = JamProperties.getRequired(BARCODE_FILE_PROPERTY);
+        this.peptideTableFile = JamProperties.getRequired(PEPTIDE_TABLE_FILE_PROPERTY);
+        this.profileDir = JamProperties.getRequired(PROFILE_DIR_PROPERTY);
+        this.threadCount = resolveThreadCount();
+
+        this.expressionManager = ExpressionManager.create(JamProperties.getRequired(EXPRESSION_DIR_PROPERTY));
+    }
+
+    /**
+     * Name of the system property that specifies the file containing
+     * the tumor barcodes to process (one barcode per line).
+     */
+    public static final String BARCODE_FILE_PROPERTY = "jean.rna.ConcentrationProfileProcessor.barcodeFile";
+
+    /**
+     * Name of the system property that specifies the directory
+     * managed by the {@code ExpressionManager} that supplies the
+     * tumor expression profiles.
+     */
+    public static final String EXPRESSION_DIR_PROPERTY = "jean.rna.ConcentrationProfileProcessor.expressionDir";
+
+    /**
+     * Name of the system property that specifies the file containing
+     * the gene-peptide table.
+     */
+    public static final String PEPTIDE_TABLE_FILE_PROPERTY = "jean.rna.ConcentrationProfileProcessor.peptideTableFile";
+
+    /**
+     * Name of the system property that specifies the directory where
+     * the peptide concentration profiles (and the checkpoint file)
+     * will be written.
+     */
+    public static final String PROFILE_DIR_PROPERTY = "jean.rna.ConcentrationProfileProcessor.profileDir";
+
+    /**
+     * Name of the system property that specifies the number of worker
+     * threads (one per available processor by default).
+     */
+    public static final String THREAD_COUNT_PROPERTY = "jean.rna.ConcentrationProfileProcessor.threadCount";
+
+    /**
+     * Name of the checkpoint file (in the profile directory) that
+     * lists the barcodes whose profiles have been written.
+     */
+    public static final String CHECKPOINT_FILE_NAME = "completed_barcodes.txt";
+
+    /**
+     * Maximum number of barcodes waiting to be processed, and of
+     * profiles waiting to be written, for each worker thread.
+     */
+    public static final int QUEUE_PER_THREAD = 4;
+
+    /**
+     * Generates peptide concentration profiles for every tumor in a
+     * cohort.
+     *
+     * @param propFiles files containing the system properties that
+     * define the runtime environment.
+     *
+     * @throws RuntimeException if any errors occur.
+     */
+    public static void run(String... propFiles) {
+        ConcentrationProfileProcessor processor = new ConcentrationProfileProcessor(propFiles);
+        processor.run();
+    }
+
+    /**
+     * Returns the file containing the peptide concentration profile
+     * for a given tumor.
+     *
+     * @param profileDir the directory containing the profiles.
+     *
+     * @param barcode the barcode of the tumor sample.
+     *
+     * @return the file containing the peptide concentration profile
+     * for the specified tumor.
+     */
+    public static File profileFile(String profileDir, TumorBarcode barcode) {
+        return new File(profileDir, barcode.getKey() + BASE_SUFFIX);
+    }
+
+    private static int resolveThreadCount() {
+        int threadCount =
+            JamProperties.getOptionalInt(THREAD_COUNT_PROPERTY, Runtime.getRuntime().availableProcessors());
+
+        if (threadCount < 1)
+            throw JamException.runtime("Thread count must be positive.");
+
+        return threadCount;
+    }
+
+    private void run() {
+        writeRuntimeEnv("JAM_", "JEAN_");
+        writeRuntimeProperties("jam.", "jean.");
+
+        loadResources();
+        processBarcodes();
+
+        JamLogger.info("DONE!");
+    }
+
+    //
+    // The peptide table, the concentration model, and the barcode lists
+    // are independent, so they are loaded concurrently...
+    //
+    private void loadResources() {
+        WarmUp warmUp = WarmUp.create(threadCount);
+
+        LazyGlobal<HugoPeptideTable> tableResource =
+            warmUp.add("HugoPeptideTable", () -> HugoPeptideTable.load(peptideTableFile));
+
+        LazyGlobal<ConcentrationModel> modelResource =
+            warmUp.add("ConcentrationModel", ConcentrationModel::global);
+
+        LazyGlobal<List<TumorBarcode>> barcodeResource =
+            warmUp.add("TumorBarcodes", () -> TumorBarcode.load(barcodeFile));
+
+        LazyGlobal<Set<TumorBarcode>> completedResource =
+            warmUp.add("CompletedBarcodes", this::loadCompleted);
+
+        warmUp.run();
+
+        peptideTable = tableResource.get();
+        concentrationModel = modelResource.get();
+        pending = selectPending(barcodeResource.get(), completedResource.get());
+
+        indexPeptideTable();
+    }
+
+    //
+    // Removes duplicate and completed barcodes, keeping the first
+    // occurrence of each remaining barcode in input order...
+    //
+    private static List<TumorBarcode> selectPending(List<TumorBarcode> barcodes, Set<TumorBarcode> completed) {
+        Set<TumorBarcode> unique = new LinkedHashSet<TumorBarcode>(barcodes);
+        int uniqueCount = unique.size();
+
+        unique.removeAll(completed);
+
+        JamLogger.info("Skipping [%d] duplicate and [%d] completed barcodes...",
+                       barcodes.size() - uniqueCount, uniqueCount - unique.size());
+
+        return new ArrayList<TumorBarcode>(unique);
+    }
+
+    private void indexPeptideTable() {
+        HugoPeptideIndex index = peptideTable.index();
+
+        int symbolCount = index.countSymbols();
+        int peptideCount = index.countPeptides();
+
+        workArrays = ThreadLocal.withInitial(() -> new double[][] { new double[symbolCount], new double[peptideCount] });
+    }
+
+    private Set<TumorBarcode> loadCompleted() {
+        Set<TumorBarcode> result = new HashSet<TumorBarcode>();
+        File checkpointFile = checkpointFile();
+
+        if (checkpointFile.exists())
+            result.addAll(TumorBarcode.load(checkpointFile));
+
+        return result;
+    }
+
+    private File checkpointFile() {
+        return new File(profileDir, CHECKPOINT_FILE_NAME);
+    }
+
+    private void processBarcodes() {
+        ExecutorService workers = boundedPool(threadCount);
+        BlockingQueue<StoreRequest> storeQueue = new ArrayBlockingQueue<StoreRequest>(QUEUE_PER_THREAD * threadCount);
+
+        try (PrintWriter checkpoint = openCheckpoint()) {
+            Thread writer = new Thread(() -> storeProfiles(storeQueue, checkpoint), "ConcentrationProfileWriter");
+            writer.start();
+
+            try {
+                for (TumorBarcode barcode : pending) {
+                    if (!writer.isAlive())
+                        break;
+
+                    workers.execute(() -> processBarcode(barcode, storeQueue, writer));
+                }
+
+                await(workers);
+            }
+            finally {
+                put(storeQueue, StoreRequest.END, writer);
+                join(writer);
+            }
+        }
+
+        if (writerFailure != null)
+            throw new RuntimeException("The concentration profile writer failed.", writerFailure);
+    }
+
+    //
+    // A full task queue makes the submitting thread run the task
+    // itself, which throttles the producer: barcodes are submitted no
+    // faster than they are processed.  (Profiles are always stored by
+    // the writer thread; a full store queue blocks the workers.)
+    //
+    private static ExecutorService boundedPool(int threadCount) {
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<Runnable>(QUEUE_PER_THREAD * threadCount),
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static void await(ExecutorService executor) {
+        executor.shutdown();
+
+        try {
+            while (!executor.awaitTermination(1L, TimeUnit.MINUTES))
+                JamLogger.info("Waiting for tasks to finish...");
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    //
+    // Waits for space in the store queue only while the writer is
+    // alive, so workers never block on a queue that will not drain;
+    // returns false if the writer has stopped...
+    //
+    private static boolean put(BlockingQueue<StoreRequest> queue, StoreRequest request, Thread writer) {
+        try {
+            while (!queue.offer(request, PUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                if (!writer.isAlive())
+                    return false;
+
+            return true;
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private PrintWriter openCheckpoint() {
+        try {
+            return new PrintWriter(new FileWriter(checkpointFile(), true));
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void processBarcode(TumorBarcode barcode, BlockingQueue<StoreRequest> storeQueue, Thread writer) {
+        //
+        // Once the writer has failed, nothing more can be stored, so
+        // the remaining barcodes are skipped (and remain unlisted in
+        // the checkpoint file)...
+        //
+        if (!writer.isAlive())
+            return;
+
+        try {
+            PeptideConcentrationProfile profile = buildProfile(barcode);
+
+            if (profile != null)
+                put(storeQueue, new StoreRequest(barcode, profile), writer);
+        }
+        catch (Exception ex) {
+            String message =
+                String.format("Error building concentration profile [%s]: %s", barcode.getKey(), ex.getMessage());
+
+            JamLogger.warn(message);
+            JamException.log(message);
+        }
+    }
+
+    private PeptideConcentrationProfile buildProfile(TumorBarcode barcode) {
+        SparseExpressionProfile expressionProfile = expressionManager.loadSparse(barcode);
+
+        if (expressionProfile == null) {
+            JamLogger.info("Missing expression data: [%s].", barcode.getKey());
+            return null;
+        }
+
+        double[][] arrays = workArrays.get();
+        return concentrationModel.buildProfile(peptideTable, expressionProfile, arrays[0], arrays[1]);
+    }
+
+    //
+    // Runs on the writer thread, the only thread that writes profiles
+    // or checkpoint lines...
+    //
+    private void storeProfiles(BlockingQueue<StoreRequest> storeQueue, PrintWriter checkpoint) {
+        try {
+            for (StoreRequest request = storeQueue.take(); request != StoreRequest.END; request = storeQueue.take())
+                storeProfile(request.barcode, request.profile, checkpoint);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (RuntimeException | Error ex) {
+            JamLogger.warn("The concentration profile writer failed: %s", ex);
+            writerFailure = ex;
+        }
+    }
+
+    private void storeProfile(TumorBarcode barcode, PeptideConcentrationProfile profile, PrintWriter checkpoint) {
+        try {
+            profile.store(profileFile(profileDir, barcode));
+        }
+        catch (Exception ex) {
+            String message =
+                String.format("Error storing concentration profile [%s]: %s", barcode.getKey(), ex.getMessage());
+
+            JamLogger.warn(message);
+            JamException.log(message);
+            return;
+        }
+
+        // A checkpoint that cannot be written would make a restarted
+        // run repeat or skip profiles, so it stops the writer...
+        checkpoint.println(barcode.getKey());
+        checkpoint.flush();
+
+        if (checkpoint.checkError())
+            throw JamException.runtime("Error writing checkpoint file [%s].", checkpointFile());
+
+        JamLogger.info("Stored profile [%s] (%d of %d)...",
+                       barcode.getKey(), processed.incrementAndGet(), pending.size());
+    }
+
+    private static void usage() {
+        System.err.println("Usage: jean.rna.ConcentrationProfileProcessor PROP_FILE1 [PROP_FILE2 ...]");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1)
+            usage();
+
+        run(args);
+    }
+}
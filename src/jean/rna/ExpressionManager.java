@@ -9,15 +9,40 @@ import jean.tcga.TumorBarcode;
 
 /**
  * Manages persistent RNA expression profile data.
+ *
+ * <p>If the data directory contains a binary expression matrix (named
+ * {@code MATRIX_FILE_NAME}), the matrix is memory-mapped and profiles
+ * for the tumors that it contains are read from the mapped matrix;
+ * other profiles are read from the individual profile files, which
+ * may be delimited text or binary sparse profiles (written by
+ * {@link SparseExpressionProfile}).
  */
 public final class ExpressionManager {
     private final String dirName;
+    private final TumorExpressionMatrix matrix;
 
     private ExpressionManager(String dirName) {
         this.dirName = dirName;
+        this.matrix = mapMatrix(dirName);
     }
 
     private static final String BASE_SUFFIX = "_expression_profile.csv.gz";
+    private static final String SPARSE_SUFFIX = "_expression_profile.jexp";
+
+    /**
+     * Name of the binary expression matrix file (written by {@link
+     * ExpressionMatrixFile}) within the data directory.
+     */
+    public static final String MATRIX_FILE_NAME = "expression_matrix" + ExpressionMatrixFile.SUFFIX;
+
+    private static TumorExpressionMatrix mapMatrix(String dirName) {
+        File matrixFile = new File(dirName, MATRIX_FILE_NAME);
+
+        if (ExpressionMatrixFile.isBinary(matrixFile))
+            return ExpressionMatrixFile.map(matrixFile);
+        else
+            return null;
+    }
 
     /**
      * Creates a new expression data manager.
@@ -49,6 +74,19 @@ public final class ExpressionManager {
         return barcode.getKey() + BASE_SUFFIX;
     }
 
+    /**
+     * Returns the full path name of the binary sparse expression file
+     * for a given tumor sample.
+     *
+     * @param barcode the barcode of the tumor sample.
+     *
+     * @return the full path name of the binary sparse expression file
+     * for a given tumor sample.
+     */
+    public File sparseFile(TumorBarcode barcode) {
+        return new File(dirName, barcode.getKey() + SPARSE_SUFFIX);
+    }
+
     /**
      * Determines whether the expression profile for a given tumor
      * sample exists.
@@ -59,7 +97,11 @@ public final class ExpressionManager {
      * specified tumor sample exists in the data directory.
      */
     public boolean exists(TumorBarcode barcode) {
-        return expressionFile(barcode).exists();
+        return inMatrix(barcode) || sparseFile(barcode).exists() || expressionFile(barcode).exists();
+    }
+
+    private boolean inMatrix(TumorBarcode barcode) {
+        return matrix != null && matrix.contains(barcode);
     }
 
     /**
@@ -71,10 +113,45 @@ public final class ExpressionManager {
      * ({@code null} if the profile does not exist).
      */
     public ExpressionProfile load(TumorBarcode barcode) {
+        if (inMatrix(barcode))
+            return matrix.get(barcode);
+
         File file = expressionFile(barcode);
 
         if (file.canRead())
             return ExpressionProfile.load(file);
+
+        File sparse = sparseFile(barcode);
+
+        if (sparse.canRead())
+            return SparseExpressionProfile.load(sparse).toProfile();
+        else
+            return null;
+    }
+
+    /**
+     * Loads the sparse expression profile for a given tumor sample,
+     * reading the binary sparse file in preference to the delimited
+     * text file.
+     *
+     * @param barcode the barcode of the desired tumor sample.
+     *
+     * @return the sparse expression profile for the specified tumor
+     * sample ({@code null} if the profile does not exist).
+     */
+    public SparseExpressionProfile loadSparse(TumorBarcode barcode) {
+        if (inMatrix(barcode))
+            return matrix.getSparse(barcode);
+
+        File sparse = sparseFile(barcode);
+
+        if (sparse.canRead())
+            return SparseExpressionProfile.load(sparse);
+
+        File file = expressionFile(barcode);
+
+        if (file.canRead())
+            return SparseExpressionProfile.create(ExpressionProfile.load(file));
         else
             return null;
     }
@@ -98,7 +175,8 @@ public final class ExpressionManager {
     }
 
     /**
-     * Stores the expression profile for a given tumor sample.
+     * Stores the expression profile for a given tumor sample in an
+     * individual profile file.
      *
      * @param barcode the barcode for the tumor sample.
      *
@@ -107,4 +185,17 @@ public final class ExpressionManager {
     public void store(TumorBarcode barcode, ExpressionProfile profile) {
         profile.store(expressionFile(barcode));
     }
+
+    /**
+     * Stores the expression profile for a given tumor sample in a
+     * binary sparse profile file (alongside any delimited text file).
+     *
+     * @param barcode the barcode for the tumor sample.
+     *
+     * @param profile the sparse expression profile for the tumor
+     * sample.
+     */
+    public void storeSparse(TumorBarcode barcode, SparseExpressionProfile profile) {
+        profile.store(sparseFile(barcode));
+    }
 }
@@ -0,0 +1,337 @@
+
+package jean.rna;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import jam.app.JamLogger;
+import jam.app.JamProperties;
+import jam.lang.JamException;
+
+import jean.hugo.HugoSymbol;
+import jean.tcga.TumorBarcode;
+
+/**
+ * Reads and writes tumor expression matrices in a compact binary
+ * format that is memory-mapped rather than parsed.
+ *
+ * <p>All fields are little-endian.  A file contains:
+ *
+ * <ol>
+ *   <li>A fixed header: the magic number {@code JEXM} (as an
+ *   {@code int}), the format version, the row (tumor) count, the
+ *   column (gene) count (each an {@code int}), and the byte offset of
+ *   the value block (a {@code long}).</li>
+ *
+ *   <li>The key dictionary: the row keys (tumor barcodes) followed by
+ *   the column keys (HUGO symbols), each stored as an {@code int}
+ *   byte count followed by the UTF-8 bytes of the key.</li>
+ *
+ *   <li>Zero padding to the next multiple of eight bytes.</li>
+ *
+ *   <li>The value block: {@code rowCount * colCount} single-precision
+ *   values in column-major order, so the values for each gene are
+ *   contiguous.</li>
+ * </ol>
+ *
+ * <p>Mapped matrices are served from the operating system page
+ * cache: opening a matrix reads only the key dictionary, and each
+ * expression value is read from the mapped file on demand.  The value
+ * block is mapped in segments of {@code SEGMENT_LENGTH_DEFAULT} values
+ * (1 GB), so the file size is not limited by the 2 GB capacity of a
+ * single mapped buffer; a matrix may contain up to about two billion
+ * ({@code 2^31}) values.
+ */
+public final class ExpressionMatrixFile {
+    private ExpressionMatrixFile() {}
+
+    private static final int MAGIC = 0x4D58454A; // "JEXM" in little-endian order
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+    private static final int BLOCK_ALIGNMENT = 8;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Conventional suffix for binary expression matrix files.
+     */
+    public static final String SUFFIX = ".jexm";
+
+    /**
+     * Name of the system property that specifies the number of
+     * expression values in each memory-mapped segment; the value must
+     * be a power of two no larger than the default.
+     */
+    public static final String SEGMENT_LENGTH_PROPERTY = "jean.rna.expressionSegmentLength";
+
+    /**
+     * Default number of expression values in each memory-mapped
+     * segment (1 GB of single-precision values).
+     */
+    public static final int SEGMENT_LENGTH_DEFAULT = FloatSegments.MAX_SEGMENT_LENGTH;
+
+    /**
+     * Returns the number of expression values in each memory-mapped
+     * segment (as specified through system properties).
+     *
+     * @return the number of expression values in each memory-mapped
+     * segment.
+     *
+     * @throws RuntimeException unless the specified length is a power
+     * of two no larger than {@code SEGMENT_LENGTH_DEFAULT}.
+     */
+    public static int resolveSegmentLength() {
+        int length = JamProperties.getOptionalInt(SEGMENT_LENGTH_PROPERTY, SEGMENT_LENGTH_DEFAULT);
+
+        if (Integer.bitCount(length) != 1 || length > SEGMENT_LENGTH_DEFAULT)
+            throw JamException.runtime("Invalid expression segment length: [%d].", length);
+
+        return length;
+    }
+
+    /**
+     * Determines whether a file contains a binary expression matrix.
+     *
+     * @param file the file to examine.
+     *
+     * @return {@code true} iff the specified file begins with the
+     * binary expression matrix magic number.
+     */
+    public static boolean isBinary(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return false;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (magic.hasRemaining())
+                if (channel.read(magic) < 0)
+                    return false;
+
+            return magic.getInt(0) == MAGIC;
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Maps a binary expression matrix file into memory.
+     *
+     * @param file the binary matrix file.
+     *
+     * @return a single-precision matrix whose expression values are
+     * read directly from the mapped file.
+     *
+     * @throws RuntimeException unless the file can be opened for
+     * reading and contains a valid binary expression matrix.
+     */
+    public static TumorExpressionMatrix map(File file) {
+        JamLogger.info("Mapping expression matrix [%s]...", file.getName());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return map(file, channel);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static TumorExpressionMatrix map(File file, FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE)
+            throw JamException.runtime("File [%s] is not a binary expression matrix.", file);
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        int magic = header.getInt();
+        int version = header.getInt();
+        int rowCount = header.getInt();
+        int colCount = header.getInt();
+        long blockOffset = header.getLong();
+
+        if (magic != MAGIC)
+            throw JamException.runtime("File [%s] is not a binary expression matrix.", file);
+
+        if (version != VERSION)
+            throw JamException.runtime("Unsupported expression matrix version: [%d].", version);
+
+        if (rowCount < 0 || colCount < 0 || blockOffset < HEADER_SIZE || blockOffset > Integer.MAX_VALUE)
+            throw JamException.runtime("Corrupt expression matrix header: [%s].", file);
+
+        long valueCount = (long) rowCount * (long) colCount;
+        long blockSize = valueCount * Float.BYTES;
+
+        if (valueCount > Integer.MAX_VALUE - 8)
+            throw JamException.runtime("Expression matrix [%d x %d] is too large to map.", rowCount, colCount);
+
+        if (channel.size() < blockOffset + blockSize)
+            throw JamException.runtime("Truncated expression matrix: [%s].", file);
+
+        ByteBuffer dictionary =
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, blockOffset - HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        List<TumorBarcode> barcodes = new ArrayList<TumorBarcode>(rowCount);
+        List<HugoSymbol> symbols = new ArrayList<HugoSymbol>(colCount);
+
+        for (int row = 0; row < rowCount; ++row)
+            barcodes.add(TumorBarcode.instance(readKey(file, dictionary)));
+
+        for (int col = 0; col < colCount; ++col)
+            symbols.add(HugoSymbol.instance(readKey(file, dictionary)));
+
+        FloatSegments values =
+            FloatSegments.map(channel, blockOffset, (int) valueCount, resolveSegmentLength());
+
+        return TumorExpressionMatrix.wrap(barcodes, symbols, values);
+    }
+
+    private static String readKey(File file, ByteBuffer dictionary) {
+        if (dictionary.remaining() < Integer.BYTES)
+            throw JamException.runtime("Corrupt expression matrix dictionary: [%s].", file);
+
+        int length = dictionary.getInt();
+
+        if (length < 0 || length > dictionary.remaining())
+            throw JamException.runtime("Corrupt expression matrix dictionary: [%s].", file);
+
+        byte[] bytes = new byte[length];
+        dictionary.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an expression matrix to a binary file.  The expression
+     * values are stored with single precision.
+     *
+     * @param matrix the matrix to write.
+     *
+     * @param file the destination file (which is overwritten if it
+     * exists).
+     *
+     * @throws RuntimeException if any I/O errors occur.
+     */
+    public static void store(TumorExpressionMatrix matrix, File file) {
+        JamLogger.info("Writing expression matrix [%s]...", file.getName());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            store(matrix, channel);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void store(TumorExpressionMatrix matrix, FileChannel channel) throws IOException {
+        List<byte[]> keys = new ArrayList<byte[]>(matrix.countBarcodes() + matrix.countSymbols());
+
+        for (TumorBarcode barcode : matrix.viewBarcodes())
+            keys.add(barcode.getKey().getBytes(StandardCharsets.UTF_8));
+
+        for (HugoSymbol symbol : matrix.viewSymbols())
+            keys.add(symbol.getKey().getBytes(StandardCharsets.UTF_8));
+
+        long blockOffset = HEADER_SIZE;
+
+        for (byte[] key : keys)
+            blockOffset += Integer.BYTES + key.length;
+
+        long padding = (BLOCK_ALIGNMENT - blockOffset % BLOCK_ALIGNMENT) % BLOCK_ALIGNMENT;
+        blockOffset += padding;
+
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(matrix.countBarcodes());
+        buffer.putInt(matrix.countSymbols());
+        buffer.putLong(blockOffset);
+
+        for (byte[] key : keys) {
+            ensureRemaining(channel, buffer, Integer.BYTES);
+            buffer.putInt(key.length);
+
+            for (int start = 0; start < key.length; ) {
+                ensureRemaining(channel, buffer, 1);
+
+                int count = Math.min(buffer.remaining(), key.length - start);
+                buffer.put(key, start, count);
+                start += count;
+            }
+        }
+
+        for (long k = 0; k < padding; ++k) {
+            ensureRemaining(channel, buffer, 1);
+            buffer.put((byte) 0);
+        }
+
+        for (int col = 0; col < matrix.countSymbols(); ++col) {
+            ExpressionVector column = matrix.viewColumn(col);
+
+            for (int row = 0; row < column.size(); ++row) {
+                ensureRemaining(channel, buffer, Float.BYTES);
+                buffer.putFloat((float) column.get(row));
+            }
+        }
+
+        flush(channel, buffer);
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int required) throws IOException {
+        if (buffer.remaining() < required)
+            flush(channel, buffer);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+
+        buffer.clear();
+    }
+
+    /**
+     * Converts a delimited text expression matrix (with tumor barcodes
+     * in rows and HUGO symbols in columns) into a binary matrix file.
+     *
+     * @param textFile the text matrix to convert.
+     *
+     * @param binaryFile the destination binary file.
+     *
+     * @throws RuntimeException unless the text file contains a valid
+     * expression matrix and the binary file can be written.
+     */
+    public static void convert(File textFile, File binaryFile) {
+        store(TumorExpressionMatrix.load(textFile, true), binaryFile);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: jean.rna.ExpressionMatrixFile TEXT_MATRIX_FILE BINARY_MATRIX_FILE");
+        System.err.println();
+        System.err.println("The binary file is mapped in 1 GB segments, so it is not limited to 2 GB;");
+        System.err.println("a matrix may contain up to about two billion (2^31) expression values.");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2)
+            usage();
+
+        String textFile   = args[0];
+        String binaryFile = args[1];
+
+        convert(new File(textFile), new File(binaryFile));
+    }
+}
@@ -1,17 +1,29 @@
 
 package jean.rna;
 
+import java.util.List;
+
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jean.app.LazyGlobal;
 import jean.hugo.HugoSymbol;
 import jean.tcga.TumorBarcode;
 
 /**
  * Defines an interface to RNA expression data for a patient cohort.
+ *
+ * <p>In addition to the scalar {@code lookup} method, each model
+ * assigns an integer identifier to every gene that it contains and
+ * supports columnar lookups: {@link ExpressionModel#resolve} locates
+ * the expression profile for a tumor once (for example, by resolving
+ * its patient and cancer type), and the resulting vector is indexed
+ * by the gene identifiers without creating {@code Expression}
+ * objects.
  */
 public abstract class ExpressionModel {
-    private static ExpressionModel global = null;
+    private static final LazyGlobal<ExpressionModel> global =
+        LazyGlobal.create("ExpressionModel", ExpressionModel::createGlobal);
 
     /**
      * Name of the system property that specifies the type of the
@@ -28,10 +40,7 @@ public abstract class ExpressionModel {
      * properties.
      */
     public static ExpressionModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static ExpressionModel createGlobal() {
@@ -56,6 +65,76 @@ public abstract class ExpressionModel {
         return JamProperties.getRequiredEnum(MODEL_TYPE_PROPERTY, ExpressionModelType.class);
     }
 
+    /**
+     * Returns the identifier assigned to a gene by this model.
+     *
+     * @param symbol the HUGO symbol for the gene of interest.
+     *
+     * @return the zero-based identifier of the specified gene, or
+     * {@code -1} if the model does not contain the gene.
+     */
+    public abstract int indexOf(HugoSymbol symbol);
+
+    /**
+     * Returns the identifiers assigned to genes by this model.
+     *
+     * @param symbols the HUGO symbols for the genes of interest.
+     *
+     * @return an array containing the identifier of each gene in the
+     * input list ({@code -1} for genes not contained in the model).
+     */
+    public int[] indexOf(List<HugoSymbol> symbols) {
+        int[] symbolIds = new int[symbols.size()];
+
+        for (int k = 0; k < symbolIds.length; ++k)
+            symbolIds[k] = indexOf(symbols.get(k));
+
+        return symbolIds;
+    }
+
+    /**
+     * Resolves the expression profile for a specified tumor.
+     *
+     * @param barcode the identifer for the tumor of interest.
+     *
+     * @return a vector containing the RNA expression level (FPKM) for
+     * each gene in the model, indexed by the gene identifiers assigned
+     * by {@link ExpressionModel#indexOf(HugoSymbol)}, or {@code null}
+     * if the model does not contain the tumor.
+     */
+    public abstract ExpressionVector resolve(TumorBarcode barcode);
+
+    /**
+     * Returns the RNA expression levels (FPKM) for a specified tumor
+     * and many genes; the tumor profile is resolved only once.
+     *
+     * @param barcode the identifer for the tumor of interest.
+     *
+     * @param symbolIds the identifiers of the genes of interest, as
+     * assigned by {@link ExpressionModel#indexOf(HugoSymbol)}.
+     *
+     * @param out an array to hold the expression levels: on return,
+     * {@code out[k]} contains the expression level for gene
+     * {@code symbolIds[k]}, or {@code Double.NaN} if the model does
+     * not contain the tumor or gene.
+     *
+     * @throws IllegalArgumentException if the output array is shorter
+     * than the identifier array.
+     */
+    public void lookup(TumorBarcode barcode, int[] symbolIds, double[] out) {
+        if (out.length < symbolIds.length)
+            throw new IllegalArgumentException("Output array is too short.");
+
+        ExpressionVector vector = resolve(barcode);
+
+        for (int k = 0; k < symbolIds.length; ++k) {
+            if (vector != null && symbolIds[k] >= 0)
+                out[k] = vector.get(symbolIds[k]);
+            else
+                out[k] = Double.NaN;
+        }
+    }
+
     /**
      * Returns the RNA expression level (FPKM) for a specified tumor
      * and gene.
@@ -3,11 +3,15 @@ package jean.rna;
 
 import java.io.File;
 import java.text.DecimalFormat;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -21,10 +25,22 @@ import jean.hugo.HugoSymbol;
 
 /**
  * An immutable collection of RNA expression indexed by HUGO symbol.
+ *
+ * <p>Profiles are backed either by a map of expression objects or by
+ * a primitive {@link ExpressionVector} (such as a row of a {@link
+ * TumorExpressionMatrix}) with a shared gene index; vector-backed
+ * profiles create an {@code Expression} object only when a gene is
+ * accessed.
  */
 public final class ExpressionProfile {
+    // Exactly one of the profile map and the expression vector is
+    // non-null; the vector is indexed by symbolIndex...
     private final Map<HugoSymbol, Expression> profile;
 
+    private final List<HugoSymbol> symbols;
+    private final Map<HugoSymbol, Integer> symbolIndex;
+    private final ExpressionVector vector;
+
     private static final DecimalFormat EXPRESSION_FORMAT = new DecimalFormat("#0.0###");
 
     private ExpressionProfile(Map<HugoSymbol, Expression> profile, boolean copy) {
@@ -32,6 +48,20 @@ public final class ExpressionProfile {
             this.profile = new HashMap<HugoSymbol, Expression>(profile);
         else
             this.profile = Collections.unmodifiableMap(profile);
+
+        this.symbols = null;
+        this.symbolIndex = null;
+        this.vector = null;
+    }
+
+    private ExpressionProfile(List<HugoSymbol> symbols, Map<HugoSymbol, Integer> symbolIndex, ExpressionVector vector) {
+        if (symbols.size() != vector.size())
+            throw JamException.runtime("Symbol and expression counts do not match.");
+
+        this.profile = null;
+        this.symbols = symbols;
+        this.symbolIndex = symbolIndex;
+        this.vector = vector;
     }
 
     /**
@@ -62,6 +92,27 @@ public final class ExpressionProfile {
         return new ExpressionProfile(MapUtil.zipHash(symbols, levels), false);
     }
 
+    /**
+     * Creates a profile that views a primitive expression vector;
+     * the vector and the symbol list and index are shared, not
+     * copied.
+     *
+     * @param symbols the genes in the order of the vector.
+     *
+     * @param symbolIndex a read-only mapping from each gene to its
+     * index in the symbol list.
+     *
+     * @param vector the expression level of each gene.
+     *
+     * @return a profile backed by the specified vector.
+     *
+     * @throws RuntimeException unless the symbol list and vector have
+     * equal length.
+     */
+    static ExpressionProfile view(List<HugoSymbol> symbols, Map<HugoSymbol, Integer> symbolIndex, ExpressionVector vector) {
+        return new ExpressionProfile(symbols, symbolIndex, vector);
+    }
+
     /**
      * Loads an expression profile from a data file.
      *
@@ -119,7 +170,10 @@ public final class ExpressionProfile {
      * @return {@code true} iff this profile contains the target gene.
      */
     public boolean contains(HugoSymbol symbol) {
-        return profile.containsKey(symbol);
+        if (profile != null)
+            return profile.containsKey(symbol);
+        else
+            return symbolIndex.containsKey(symbol);
     }
 
     /**
@@ -132,7 +186,7 @@ public final class ExpressionProfile {
      * (never {@code null}).
      */
     public Expression get(HugoSymbol symbol) {
-        Expression expression = profile.get(symbol);
+        Expression expression = lookup(symbol);
 
         if (expression != null)
             return expression;
@@ -140,6 +194,30 @@ public final class ExpressionProfile {
             return Expression.ZERO;
     }
 
+    private Expression lookup(HugoSymbol symbol) {
+        if (profile != null)
+            return profile.get(symbol);
+
+        Integer index = symbolIndex.get(symbol);
+
+        if (index != null)
+            return Expression.valueOf(vector.get(index));
+        else
+            return null;
+    }
+
+    /**
+     * Returns the number of genes in this profile.
+     *
+     * @return the number of genes in this profile.
+     */
+    public int size() {
+        if (profile != null)
+            return profile.size();
+        else
+            return symbols.size();
+    }
+
     /**
      * Stores this expression profile in a data file.
      *
@@ -181,14 +259,14 @@ public final class ExpressionProfile {
         //
         // Much nicer to see the genes in alphabetical order...
         //
-        Set<HugoSymbol> symbols = new TreeSet<HugoSymbol>(profile.keySet());
+        Set<HugoSymbol> sorted = new TreeSet<HugoSymbol>(viewSymbols());
 
-        for (HugoSymbol symbol : symbols)
+        for (HugoSymbol symbol : sorted)
             writeExpression(writer, symbol);
     }
 
     private void writeExpression(TableWriter writer, HugoSymbol symbol) {
-        Expression expression = profile.get(symbol);
+        Expression expression = lookup(symbol);
 
         if (expression.isPositive())
             writer.println(symbol.getKey(), expression.format(EXPRESSION_FORMAT));
@@ -202,7 +280,35 @@ public final class ExpressionProfile {
      * profile.
      */
     public Set<Map.Entry<HugoSymbol, Expression>> viewEntries() {
-        return Collections.unmodifiableSet(profile.entrySet());
+        if (profile != null)
+            return Collections.unmodifiableSet(profile.entrySet());
+
+        return new AbstractSet<Map.Entry<HugoSymbol, Expression>>() {
+            @Override public Iterator<Map.Entry<HugoSymbol, Expression>> iterator() {
+                return new Iterator<Map.Entry<HugoSymbol, Expression>>() {
+                    private int index = 0;
+
+                    @Override public boolean hasNext() {
+                        return index < symbols.size();
+                    }
+
+                    @Override public Map.Entry<HugoSymbol, Expression> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+
+                        HugoSymbol symbol = symbols.get(index);
+                        Expression level = Expression.valueOf(vector.get(index));
+
+                        ++index;
+                        return new AbstractMap.SimpleImmutableEntry<HugoSymbol, Expression>(symbol, level);
+                    }
+                };
+            }
+
+            @Override public int size() {
+                return symbols.size();
+            }
+        };
     }
 
     /**
@@ -211,6 +317,9 @@ public final class ExpressionProfile {
      * @return a read-only view of the genes in this profile.
      */
     public Set<HugoSymbol> viewSymbols() {
-        return Collections.unmodifiableSet(profile.keySet());
+        if (profile != null)
+            return Collections.unmodifiableSet(profile.keySet());
+        else
+            return Collections.unmodifiableSet(symbolIndex.keySet());
     }
 }
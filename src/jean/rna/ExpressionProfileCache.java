@@ -0,0 +1,195 @@
+
+package jean.rna;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import jam.app.JamProperties;
+import jam.lang.JamException;
+
+import jean.tcga.TumorBarcode;
+
+/**
+ * Retains recently used tumor expression profiles loaded by an
+ * {@code ExpressionManager} in a cache of bounded memory.
+ *
+ * <p>The cache is bounded by the estimated size of its profiles (in
+ * bytes, proportional to the number of genes in each profile), so a
+ * few complete profiles and many sparse profiles may share the same
+ * memory budget.  Concurrent requests for a profile that is not yet
+ * cached share a single load.  The absence of a profile is also
+ * cached, so missing tumors are not searched for repeatedly.
+ *
+ * <p>Profiles that are stored through the manager after they have
+ * been cached are not reloaded until they are evicted or invalidated.
+ */
+public final class ExpressionProfileCache {
+    private final ExpressionManager manager;
+    private final LoadingCache<TumorBarcode, Optional<ExpressionProfile>> cache;
+
+    private ExpressionProfileCache(ExpressionManager manager, long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Memory bound must be non-negative.");
+
+        this.manager = manager;
+        this.cache =
+            CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((TumorBarcode barcode, Optional<ExpressionProfile> profile) -> weigh(profile))
+            .build(CacheLoader.from(this::loadProfile));
+    }
+
+    /**
+     * Estimated memory occupied by each gene in a cached profile (the
+     * map entry, symbol, and expression objects), in bytes.
+     */
+    public static final int BYTES_PER_GENE = 128;
+
+    /**
+     * Name of the system property that specifies the memory bound for
+     * cached expression profiles (in megabytes).
+     */
+    public static final String MAX_MEGABYTES_PROPERTY = "jean.rna.expressionCacheMegabytes";
+
+    /**
+     * Default memory bound for cached expression profiles (in
+     * megabytes).
+     */
+    public static final int MAX_MEGABYTES_DEFAULT = 1024;
+
+    /**
+     * Creates a new profile cache with a memory bound specified by the
+     * {@code MAX_MEGABYTES_PROPERTY} system property.
+     *
+     * @param manager the manager that loads the profiles.
+     *
+     * @return a new profile cache for the specified manager.
+     */
+    public static ExpressionProfileCache create(ExpressionManager manager) {
+        return create(manager, resolveMaxBytes());
+    }
+
+    /**
+     * Creates a new profile cache with a fixed memory bound.
+     *
+     * @param manager the manager that loads the profiles.
+     *
+     * @param maxBytes the maximum estimated size of the cached
+     * profiles, in bytes.
+     *
+     * @return a new profile cache for the specified manager.
+     *
+     * @throws IllegalArgumentException if the memory bound is
+     * negative.
+     */
+    public static ExpressionProfileCache create(ExpressionManager manager, long maxBytes) {
+        return new ExpressionProfileCache(manager, maxBytes);
+    }
+
+    private static long resolveMaxBytes() {
+        return 1024L * 1024L * JamProperties.getOptionalInt(MAX_MEGABYTES_PROPERTY, MAX_MEGABYTES_DEFAULT);
+    }
+
+    private static int weigh(Optional<ExpressionProfile> profile) {
+        //
+        // Absent profiles still occupy a cache entry...
+        //
+        long genes = profile.map(ExpressionProfile::size).orElse(0);
+        return (int) Math.min(Integer.MAX_VALUE, BYTES_PER_GENE * (1L + genes));
+    }
+
+    private Optional<ExpressionProfile> loadProfile(TumorBarcode barcode) {
+        return Optional.ofNullable(manager.load(barcode));
+    }
+
+    /**
+     * Returns the expression profile for a given tumor sample, loading
+     * it through the manager if necessary.
+     *
+     * @param barcode the barcode of the desired tumor sample.
+     *
+     * @return the expression profile for the specified tumor sample
+     * ({@code null} if the profile does not exist).
+     */
+    public ExpressionProfile load(TumorBarcode barcode) {
+        return cache.getUnchecked(barcode).orElse(null);
+    }
+
+    /**
+     * Returns the expression profile for a given tumor sample, loading
+     * it through the manager if necessary.
+     *
+     * @param barcode the barcode of the desired tumor sample.
+     *
+     * @return the expression profile for the specified tumor sample.
+     *
+     * @throws RuntimeException if the profile does not exist.
+     */
+    public ExpressionProfile require(TumorBarcode barcode) {
+        ExpressionProfile profile = load(barcode);
+
+        if (profile == null)
+            throw JamException.runtime("No expression profile for barcode [%s].", barcode.getKey());
+
+        return profile;
+    }
+
+    /**
+     * Loads expression profiles into this cache asynchronously (in the
+     * common fork-join pool), so that subsequent requests for them
+     * need not wait.
+     *
+     * <p>Prefetching more profiles than fit within the memory bound
+     * evicts the earliest ones, so callers should prefetch only the
+     * tumors that they are about to analyze.
+     *
+     * @param barcodes the barcodes of the tumor samples to load.
+     *
+     * @return a future that completes when every profile has been
+     * loaded (or found to be missing).
+     */
+    public CompletableFuture<Void> prefetch(Collection<TumorBarcode> barcodes) {
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(barcodes.size());
+
+        for (TumorBarcode barcode : barcodes)
+            futures.add(CompletableFuture.runAsync(() -> cache.getUnchecked(barcode)));
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Removes a profile from this cache, so that the next request will
+     * reload it through the manager.
+     *
+     * @param barcode the barcode of the tumor sample to remove.
+     */
+    public void invalidate(TumorBarcode barcode) {
+        cache.invalidate(barcode);
+    }
+
+    /**
+     * Returns the manager that loads the profiles.
+     *
+     * @return the manager that loads the profiles.
+     */
+    public ExpressionManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Returns the number of entries (including absent profiles)
+     * currently in the cache.
+     *
+     * @return the number of entries currently in the cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,105 @@
+
+package jean.rna;
+
+/**
+ * Provides a read-only view of a vector of primitive expression
+ * values, such as a row or column of a {@link TumorExpressionMatrix}
+ * or a tumor profile resolved by an {@link ExpressionModel}.
+ *
+ * <p>Views share the storage of the underlying matrix, so creating a
+ * view does not copy or box any expression values.  For matrices
+ * mapped from binary files, the values are read directly from the
+ * memory-mapped file segments, and strided views may span segment
+ * boundaries.
+ */
+public final class ExpressionVector {
+    // Exactly one of these is non-null...
+    private final double[] doubles;
+    private final FloatSegments floats;
+
+    private final int offset;
+    private final int stride;
+    private final int length;
+
+    private ExpressionVector(double[] doubles, FloatSegments floats, int offset, int stride, int length) {
+        this.doubles = doubles;
+        this.floats = floats;
+        this.offset = offset;
+        this.stride = stride;
+        this.length = length;
+    }
+
+    static ExpressionVector of(double[] doubles, int offset, int stride, int length) {
+        return new ExpressionVector(doubles, null, offset, stride, length);
+    }
+
+    static ExpressionVector of(FloatSegments floats, int offset, int stride, int length) {
+        return new ExpressionVector(null, floats, offset, stride, length);
+    }
+
+    /**
+     * Returns an expression value from this vector.
+     *
+     * @param index the zero-based index of the value.
+     *
+     * @return the expression value at the specified index.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public double get(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Invalid vector index: " + index);
+
+        int position = offset + index * stride;
+
+        if (doubles != null)
+            return doubles[position];
+        else
+            return floats.get(position);
+    }
+
+    /**
+     * Copies the values in this vector into an array.
+     *
+     * @param target the destination array, which must have a length
+     * of at least {@code size()}.
+     */
+    public void copyInto(double[] target) {
+        if (target.length < length)
+            throw new IllegalArgumentException("Target array is too short.");
+
+        if (doubles != null && stride == 1) {
+            System.arraycopy(doubles, offset, target, 0, length);
+            return;
+        }
+
+        int position = offset;
+
+        if (doubles != null)
+            for (int index = 0; index < length; ++index, position += stride)
+                target[index] = doubles[position];
+        else
+            for (int index = 0; index < length; ++index, position += stride)
+                target[index] = floats.get(position);
+    }
+
+    /**
+     * Returns the values in this vector in a new array.
+     *
+     * @return the values in this vector in a new array.
+     */
+    public double[] toArray() {
+        double[] array = new double[length];
+        copyInto(array);
+        return array;
+    }
+
+    /**
+     * Returns the number of values in this vector.
+     *
+     * @return the number of values in this vector.
+     */
+    public int size() {
+        return length;
+    }
+}
@@ -0,0 +1,102 @@
+
+package jean.rna;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stores single-precision expression values in one or more buffers
+ * of equal (power-of-two) length, so that a matrix may be mapped from
+ * a file larger than the 2 GB limit on a single mapped buffer.
+ */
+final class FloatSegments {
+    private final FloatBuffer[] segments;
+
+    // Value (position) is stored in segment (position >>> shift) at
+    // index (position & mask)...
+    private final int shift;
+    private final int mask;
+    private final int length;
+
+    /**
+     * Largest number of values in a mapped segment (1 GB of values).
+     */
+    static final int MAX_SEGMENT_LENGTH = 1 << 28;
+
+    private FloatSegments(FloatBuffer[] segments, int shift, int length) {
+        this.segments = segments;
+        this.shift = shift;
+        this.mask = (int) ((1L << shift) - 1);
+        this.length = length;
+    }
+
+    /**
+     * Wraps an array in a single segment; the array is shared, not
+     * copied.
+     *
+     * @param floats the values to wrap.
+     *
+     * @return a single segment backed by the specified array.
+     */
+    static FloatSegments wrap(float[] floats) {
+        return new FloatSegments(new FloatBuffer[] { FloatBuffer.wrap(floats) }, Integer.SIZE - 1, floats.length);
+    }
+
+    /**
+     * Maps little-endian values from a file into read-only segments.
+     *
+     * @param channel an open channel for the file.
+     *
+     * @param offset the byte offset of the first value.
+     *
+     * @param length the number of values to map.
+     *
+     * @param segmentLength the number of values in each segment
+     * (except possibly the last), which must be a power of two no
+     * larger than {@code MAX_SEGMENT_LENGTH}.
+     *
+     * @return the mapped segments.
+     *
+     * @throws IOException if the file cannot be mapped.
+     */
+    static FloatSegments map(FileChannel channel, long offset, int length, int segmentLength) throws IOException {
+        if (Integer.bitCount(segmentLength) != 1 || segmentLength > MAX_SEGMENT_LENGTH)
+            throw new IllegalArgumentException("Invalid segment length: " + segmentLength);
+
+        FloatBuffer[] segments = new FloatBuffer[Math.max(1, (int) (((long) length + segmentLength - 1) / segmentLength))];
+
+        for (int k = 0; k < segments.length; ++k) {
+            long start = (long) k * segmentLength;
+            long count = Math.min(segmentLength, length - start);
+
+            segments[k] =
+                channel.map(FileChannel.MapMode.READ_ONLY, offset + start * Float.BYTES, count * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer();
+        }
+
+        return new FloatSegments(segments, Integer.numberOfTrailingZeros(segmentLength), length);
+    }
+
+    /**
+     * Returns a value from these segments.
+     *
+     * @param position the zero-based position of the value.
+     *
+     * @return the value at the specified position.
+     */
+    float get(int position) {
+        return segments[position >>> shift].get(position & mask);
+    }
+
+    /**
+     * Returns the total number of values in these segments.
+     *
+     * @return the total number of values in these segments.
+     */
+    int length() {
+        return length;
+    }
+}
@@ -5,6 +5,7 @@ import java.io.File;
 
 import jam.app.JamProperties;
 
+import jean.app.LazyGlobal;
 import jean.hugo.HugoSymbol;
 import jean.tcga.TumorBarcode;
 
@@ -14,7 +15,8 @@ import jean.tcga.TumorBarcode;
 public final class IndividualExpressionModel extends ExpressionModel {
     private final TumorExpressionMatrix profile;
 
-    private static IndividualExpressionModel global = null;
+    private static final LazyGlobal<IndividualExpressionModel> global =
+        LazyGlobal.create("IndividualExpressionModel", IndividualExpressionModel::createGlobal);
 
     private IndividualExpressionModel(TumorExpressionMatrix profile) {
         this.profile = profile;
@@ -22,7 +24,9 @@ public final class IndividualExpressionModel extends ExpressionModel {
 
     /**
      * Name of the system property that specifies the data file
-     * containing the tumor expression profiles.
+     * containing the tumor expression profiles: a delimited text
+     * matrix or a binary matrix written by {@link ExpressionMatrixFile}
+     * (which is memory-mapped rather than parsed).
      */
     public static final String PROFILE_FILE_NAME_PROPERTY =
         "jean.rna.tumorExpressionProfile";
@@ -35,10 +39,7 @@ public final class IndividualExpressionModel extends ExpressionModel {
      * properties.
      */
     public static IndividualExpressionModel global() {
-        if (global == null)
-            global = createGlobal();
-
-        return global;
+        return global.get();
     }
 
     private static IndividualExpressionModel createGlobal() {
@@ -79,6 +80,14 @@ public final class IndividualExpressionModel extends ExpressionModel {
         return load(new File(fileName));
     }
 
+    @Override public int indexOf(HugoSymbol symbol) {
+        return profile.indexOf(symbol);
+    }
+
+    @Override public ExpressionVector resolve(TumorBarcode barcode) {
+        return profile.viewRow(barcode);
+    }
+
     @Override public Expression lookup(TumorBarcode barcode, HugoSymbol symbol) {
         return profile.get(barcode, symbol);
     }
@@ -4,6 +4,7 @@ package jean.rna;
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jean.app.LazyGlobal;
 import jean.chem.Concentration;
 
 /**
@@ -18,7 +19,8 @@ import jean.chem.Concentration;
  * {@code Cmax} is the maximum concentration.
  */
 public final class LinearConcentrationModel extends ConcentrationModel {
-    private static LinearConcentrationModel global = null;
+    private static final LazyGlobal<LinearConcentrationModel> global =
+        LazyGlobal.create("LinearConcentrationModel", LinearConcentrationModel::createGlobal);
 
     /**
      * Creates a new linear concentration model with fixed parameters.
@@ -47,10 +49,11 @@ public final class LinearConcentrationModel extends ConcentrationModel {
      * properties.
      */
     public static LinearConcentrationModel global() {
-        if (global == null)
-            global = new LinearConcentrationModel(resolveExprThreshold(), resolveMaxExpression());
+        return global.get();
+    }
 
-        return global;
+    private static LinearConcentrationModel createGlobal() {
+        return new LinearConcentrationModel(resolveExprThreshold(), resolveMaxExpression());
     }
 
     @Override public ConcentrationModelType getType() {
@@ -63,4 +66,18 @@ public final class LinearConcentrationModel extends ConcentrationModel {
         //
         return expression;
     }
+
+    @Override protected void translate(double[] expression, double[] out, int length) {
+        double threshold = getExprThreshold();
+        double maximum = getMaxExpression();
+
+        //
+        // Conditional moves rather than branches, so the loop may be
+        // vectorized...
+        //
+        for (int k = 0; k < length; ++k) {
+            double expr = expression[k];
+            out[k] = (expr >= threshold) ? Math.min(expr, maximum) : 0.0;
+        }
+    }
 }
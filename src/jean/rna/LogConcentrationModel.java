@@ -4,6 +4,7 @@ package jean.rna;
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jean.app.LazyGlobal;
 import jean.chem.Concentration;
 
 /**
@@ -21,7 +22,8 @@ import jean.chem.Concentration;
 public final class LogConcentrationModel extends ConcentrationModel {
     private final double alphaFactor;
 
-    private static LogConcentrationModel global = null;
+    private static final LazyGlobal<LogConcentrationModel> global =
+        LazyGlobal.create("LogConcentrationModel", LogConcentrationModel::createGlobal);
 
     /**
      * Creates a new log-transformed concentration model with fixed
@@ -67,12 +69,13 @@ public final class LogConcentrationModel extends ConcentrationModel {
      * by system properties.
      */
     public static LogConcentrationModel global() {
-        if (global == null)
-            global = new LogConcentrationModel(resolveExprThreshold(),
-                                               resolveMaxExpression(),
-                                               resolveAlphaFactor());
+        return global.get();
+    }
 
-        return global;
+    private static LogConcentrationModel createGlobal() {
+        return new LogConcentrationModel(resolveExprThreshold(),
+                                         resolveMaxExpression(),
+                                         resolveAlphaFactor());
     }
 
     private static double resolveAlphaFactor() {
@@ -89,4 +92,16 @@ public final class LogConcentrationModel extends ConcentrationModel {
         //
         return Math.log(1.0 + expression / alphaFactor);
     }
+
+    @Override protected void translate(double[] expression, double[] out, int length) {
+        double threshold = getExprThreshold();
+        double maximum = getMaxExpression();
+
+        for (int k = 0; k < length; ++k) {
+            double expr = expression[k];
+            double conc = Math.log(1.0 + Math.min(expr, maximum) / alphaFactor);
+
+            out[k] = (expr >= threshold) ? conc : 0.0;
+        }
+    }
 }
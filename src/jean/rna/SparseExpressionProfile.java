@@ -0,0 +1,335 @@
+
+package jean.rna;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import jam.app.JamLogger;
+import jam.lang.JamException;
+
+import jean.hugo.HugoSymbol;
+
+/**
+ * An immutable RNA expression profile that stores only the genes with
+ * positive expression.
+ *
+ * <p>The genes are stored in a sorted array (ordered by symbol key)
+ * parallel to a primitive array of expression levels, so a profile
+ * occupies a small fraction of the memory of a hash map containing
+ * every gene.  Single genes are found by binary search, and the
+ * entries may be visited in symbol order to merge them with other
+ * sorted gene lists.  Genes that are absent have zero expression.
+ *
+ * <p>Profiles may be stored in a compact binary file: the magic
+ * number {@code JEXP}, the entry count, and then each entry as a
+ * modified UTF-8 symbol key followed by its expression level (in the
+ * big-endian order of {@code DataOutputStream}).
+ */
+public final class SparseExpressionProfile {
+    private final HugoSymbol[] symbols;
+    private final double[] levels;
+
+    private static final int MAGIC = 0x4A455850; // "JEXP"
+
+    private static final Comparator<HugoSymbol> SYMBOL_ORDER = Comparator.comparing(HugoSymbol::getKey);
+
+    private SparseExpressionProfile(HugoSymbol[] symbols, double[] levels) {
+        this.symbols = symbols;
+        this.levels = levels;
+    }
+
+    /**
+     * The single empty profile.
+     */
+    public static final SparseExpressionProfile EMPTY =
+        new SparseExpressionProfile(new HugoSymbol[0], new double[0]);
+
+    /**
+     * Creates a sparse profile from the positive entries in another
+     * expression profile.
+     *
+     * @param profile the profile to compress.
+     *
+     * @return a sparse profile containing the positive entries from
+     * the input profile.
+     */
+    public static SparseExpressionProfile create(ExpressionProfile profile) {
+        List<HugoSymbol> positive = new ArrayList<HugoSymbol>();
+
+        for (Map.Entry<HugoSymbol, Expression> entry : profile.viewEntries())
+            if (entry.getValue().doubleValue() > 0.0)
+                positive.add(entry.getKey());
+
+        HugoSymbol[] symbols = positive.toArray(new HugoSymbol[0]);
+        Arrays.sort(symbols, SYMBOL_ORDER);
+
+        double[] levels = new double[symbols.length];
+
+        for (int k = 0; k < symbols.length; ++k)
+            levels[k] = profile.get(symbols[k]).doubleValue();
+
+        return validate(symbols, levels);
+    }
+
+    /**
+     * Creates a sparse profile from a vector of expression levels.
+     *
+     * @param symbols the genes corresponding to the elements of the
+     * vector.
+     *
+     * @param vector the expression levels.
+     *
+     * @param order the positions of the genes sorted by symbol key:
+     * {@code symbols.get(order[0])} must be the first gene in symbol
+     * order.
+     *
+     * @return a sparse profile containing the positive entries in the
+     * vector.
+     */
+    static SparseExpressionProfile create(List<HugoSymbol> symbols, ExpressionVector vector, int[] order) {
+        int count = 0;
+
+        for (int k = 0; k < vector.size(); ++k)
+            if (vector.get(k) > 0.0)
+                ++count;
+
+        HugoSymbol[] sparseSymbols = new HugoSymbol[count];
+        double[] sparseLevels = new double[count];
+
+        count = 0;
+
+        for (int index : order) {
+            double level = vector.get(index);
+
+            if (level > 0.0) {
+                sparseSymbols[count] = symbols.get(index);
+                sparseLevels[count] = level;
+                ++count;
+            }
+        }
+
+        return validate(sparseSymbols, sparseLevels);
+    }
+
+    /**
+     * Returns the positions of a list of genes sorted by symbol key,
+     * as required by {@code create(List, ExpressionVector, int[])}.
+     *
+     * @param symbols the genes to sort.
+     *
+     * @return the positions of the genes in symbol order.
+     */
+    static int[] sortOrder(List<HugoSymbol> symbols) {
+        Integer[] order = new Integer[symbols.size()];
+
+        for (int k = 0; k < order.length; ++k)
+            order[k] = k;
+
+        Arrays.sort(order, Comparator.comparing(k -> symbols.get(k).getKey()));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static SparseExpressionProfile validate(HugoSymbol[] symbols, double[] levels) {
+        for (int k = 1; k < symbols.length; ++k)
+            if (symbols[k - 1].getKey().compareTo(symbols[k].getKey()) >= 0)
+                throw JamException.runtime("Duplicate or unsorted gene: [%s].", symbols[k].getKey());
+
+        for (double level : levels)
+            Expression.validate(level);
+
+        return new SparseExpressionProfile(symbols, levels);
+    }
+
+    /**
+     * Loads a sparse profile from a binary file.
+     *
+     * @param file the file to load.
+     *
+     * @return the sparse profile stored in the specified file.
+     *
+     * @throws RuntimeException unless the file contains a valid
+     * sparse profile.
+     */
+    public static SparseExpressionProfile load(File file) {
+        JamLogger.info("Loading sparse expression profile [%s]...", file.getName());
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC)
+                throw JamException.runtime("File [%s] is not a sparse expression profile.", file);
+
+            int count = input.readInt();
+
+            if (count < 0)
+                throw JamException.runtime("Corrupt sparse expression profile: [%s].", file);
+
+            HugoSymbol[] symbols = new HugoSymbol[count];
+            double[] levels = new double[count];
+
+            for (int k = 0; k < count; ++k) {
+                symbols[k] = HugoSymbol.instance(input.readUTF());
+                levels[k] = input.readDouble();
+            }
+
+            return validate(symbols, levels);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Stores this profile in a binary file.
+     *
+     * @param file the file to write.
+     *
+     * @throws RuntimeException if the file cannot be written.
+     */
+    public void store(File file) {
+        JamLogger.info("Storing sparse expression profile [%s]...", file.getName());
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(symbols.length);
+
+            for (int k = 0; k < symbols.length; ++k) {
+                output.writeUTF(symbols[k].getKey());
+                output.writeDouble(levels[k]);
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the position of a gene in this profile.
+     *
+     * @param symbol the HUGO symbol of the target gene.
+     *
+     * @return the position of the target gene in symbol order, or
+     * {@code -1} if the gene has no positive expression.
+     */
+    public int indexOf(HugoSymbol symbol) {
+        String key = symbol.getKey();
+
+        int lo = 0;
+        int hi = symbols.length - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = symbols[mid].getKey().compareTo(key);
+
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Identifies genes with positive expression.
+     *
+     * @param symbol the HUGO symbol of the target gene.
+     *
+     * @return {@code true} iff the target gene has positive
+     * expression in this profile.
+     */
+    public boolean contains(HugoSymbol symbol) {
+        return indexOf(symbol) >= 0;
+    }
+
+    /**
+     * Returns the RNA expression for a given gene.
+     *
+     * @param symbol the HUGO symbol of the target gene.
+     *
+     * @return the RNA expression of the target gene, or
+     * {@code Expression.ZERO} if the gene is absent (never
+     * {@code null}).
+     */
+    public Expression get(HugoSymbol symbol) {
+        int index = indexOf(symbol);
+
+        if (index >= 0)
+            return Expression.valueOf(levels[index]);
+        else
+            return Expression.ZERO;
+    }
+
+    /**
+     * Returns the RNA expression for a given gene.
+     *
+     * @param symbol the HUGO symbol of the target gene.
+     *
+     * @return the RNA expression of the target gene, or zero if the
+     * gene is absent.
+     */
+    public double getDouble(HugoSymbol symbol) {
+        int index = indexOf(symbol);
+        return (index >= 0) ? levels[index] : 0.0;
+    }
+
+    /**
+     * Returns the gene at a given position in symbol order.
+     *
+     * @param index the zero-based position.
+     *
+     * @return the gene at the specified position.
+     */
+    public HugoSymbol symbol(int index) {
+        return symbols[index];
+    }
+
+    /**
+     * Returns the expression level at a given position in symbol
+     * order.
+     *
+     * @param index the zero-based position.
+     *
+     * @return the expression level at the specified position.
+     */
+    public double level(int index) {
+        return levels[index];
+    }
+
+    /**
+     * Returns the number of genes with positive expression.
+     *
+     * @return the number of genes with positive expression.
+     */
+    public int size() {
+        return symbols.length;
+    }
+
+    /**
+     * Creates a map-based expression profile with the same entries
+     * as this profile.
+     *
+     * @return a map-based expression profile with the same entries
+     * as this profile.
+     */
+    public ExpressionProfile toProfile() {
+        List<Expression> expression = new ArrayList<Expression>(levels.length);
+
+        for (double level : levels)
+            expression.add(Expression.valueOf(level));
+
+        return ExpressionProfile.create(Arrays.asList(symbols), expression);
+    }
+}
@@ -4,6 +4,7 @@ package jean.rna;
 import jam.app.JamProperties;
 import jam.lang.JamException;
 
+import jean.app.LazyGlobal;
 import jean.chem.Concentration;
 
 /**
@@ -19,7 +20,8 @@ import jean.chem.Concentration;
  * {@code Fmin} is a threshold expression level.
  */
 public final class StepConcentrationModel extends ConcentrationModel {
-    private static StepConcentrationModel global = null;
+    private static final LazyGlobal<StepConcentrationModel> global =
+        LazyGlobal.create("StepConcentrationModel", StepConcentrationModel::createGlobal);
 
     /**
      * Creates a new step-function concentration model with a fixed
@@ -46,10 +48,11 @@ public final class StepConcentrationModel extends ConcentrationModel {
      * system properties.
      */
     public static StepConcentrationModel global() {
-        if (global == null)
-            global = new StepConcentrationModel(resolveExprThreshold());
+        return global.get();
+    }
 
-        return global;
+    private static StepConcentrationModel createGlobal() {
+        return new StepConcentrationModel(resolveExprThreshold());
     }
 
     @Override public ConcentrationModelType getType() {
@@ -62,4 +65,11 @@ public final class StepConcentrationModel extends ConcentrationModel {
         //
         return 1.0;
     }
+
+    @Override protected void translate(double[] expression, double[] out, int length) {
+        double threshold = getExprThreshold();
+
+        for (int k = 0; k < length; ++k)
+            out[k] = (expression[k] >= threshold) ? 1.0 : 0.0;
+    }
 }
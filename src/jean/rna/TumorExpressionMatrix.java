@@ -2,40 +2,154 @@
 package jean.rna;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import jam.app.JamProperties;
 import jam.data.DataMatrix;
-import jam.data.DenseDataMatrixLoader;
+import jam.io.LineReader;
+import jam.lang.JamException;
 
 import jean.hugo.HugoSymbol;
 import jean.tcga.TumorBarcode;
 
 /**
  * Stores RNA expression indexed by tumor barcode and HUGO symbol.
+ *
+ * <p>The expression values are stored in a single primitive array
+ * (of {@code double} or, optionally, {@code float} values) in
+ * column-major order, so the values for each gene are contiguous.
+ * Barcodes and symbols are mapped to integer row and column indexes
+ * once, and row (tumor) and column (gene) vectors may be viewed
+ * without copying or boxing the expression values.
+ *
+ * <p>Matrices may be loaded from delimited text files or mapped from
+ * the binary files written by {@link ExpressionMatrixFile} (whose
+ * values are mapped in segments of at most 1 GB, so a mapped matrix
+ * is not limited by the 2 GB capacity of a single buffer); the
+ * {@code load} methods detect the file format automatically.  Text
+ * files are parsed directly into the primitive array, so no boxed
+ * intermediate matrix is created.
  */
 public final class TumorExpressionMatrix {
-    private final DataMatrix<TumorBarcode, HugoSymbol> expression;
+    private final List<TumorBarcode> barcodes;
+    private final List<HugoSymbol> symbols;
 
-    private TumorExpressionMatrix(DataMatrix<TumorBarcode, HugoSymbol> expression, boolean wrap) {
-        if (wrap)
-            this.expression = expression.immutable();
-        else
-            this.expression = expression;
+    private final Map<TumorBarcode, Integer> rowIndex;
+    private final Map<HugoSymbol, Integer> colIndex;
+
+    // Column indexes sorted by symbol key, for sparse profiles...
+    private final int[] symbolOrder;
+
+    // Exactly one of these is non-null; element (row, col) is stored
+    // at position (col * rowCount + row)...
+    private final double[] doubles;
+    private final FloatSegments floats;
+
+    private final int rowCount;
+    private final int colCount;
+
+    /**
+     * Name of the system property that selects single-precision
+     * ({@code float}) storage for expression matrices loaded from
+     * data files.
+     */
+    public static final String SINGLE_PRECISION_PROPERTY = "jean.rna.singlePrecisionExpression";
+
+    private TumorExpressionMatrix(List<TumorBarcode> barcodes,
+                                  List<HugoSymbol> symbols,
+                                  double[] doubles,
+                                  FloatSegments floats) {
+        this.barcodes = List.copyOf(barcodes);
+        this.symbols = List.copyOf(symbols);
+
+        this.rowIndex = indexKeys(this.barcodes);
+        this.colIndex = indexKeys(this.symbols);
+        this.symbolOrder = SparseExpressionProfile.sortOrder(this.symbols);
+
+        this.rowCount = barcodes.size();
+        this.colCount = symbols.size();
+
+        this.doubles = doubles;
+        this.floats = floats;
+
+        int size = validateSize(rowCount, colCount);
+        int capacity = (doubles != null) ? doubles.length : floats.length();
+
+        if (capacity != size)
+            throw JamException.runtime("Expected [%d] expression values but found [%d].", size, capacity);
+    }
+
+    private static double[] copyDoubles(DataMatrix<TumorBarcode, HugoSymbol> expression) {
+        List<TumorBarcode> barcodes = expression.rowKeyList();
+        List<HugoSymbol> symbols = expression.colKeyList();
+
+        double[] doubles = new double[validateSize(barcodes.size(), symbols.size())];
+
+        for (int col = 0; col < symbols.size(); ++col)
+            for (int row = 0; row < barcodes.size(); ++row)
+                doubles[col * barcodes.size() + row] = expression.get(barcodes.get(row), symbols.get(col));
+
+        return doubles;
+    }
+
+    /**
+     * Creates a matrix backed by single-precision values in
+     * column-major order; the segments are shared, not copied.
+     *
+     * @param barcodes the tumor barcodes (row keys).
+     *
+     * @param symbols the HUGO symbols (column keys).
+     *
+     * @param floats the expression values, where the value for row
+     * {@code r} and column {@code c} is stored at position
+     * {@code c * barcodes.size() + r}.
+     *
+     * @return a matrix backed by the specified segments.
+     *
+     * @throws RuntimeException unless the number of values matches
+     * the matrix dimensions and the keys are unique.
+     */
+    static TumorExpressionMatrix wrap(List<TumorBarcode> barcodes, List<HugoSymbol> symbols, FloatSegments floats) {
+        return new TumorExpressionMatrix(barcodes, symbols, null, floats);
+    }
+
+    private static <K> Map<K, Integer> indexKeys(List<K> keys) {
+        Map<K, Integer> index = new HashMap<K, Integer>(keys.size());
+
+        for (int k = 0; k < keys.size(); ++k)
+            if (index.put(keys.get(k), k) != null)
+                throw JamException.runtime("Duplicate expression matrix key: [%s].", keys.get(k));
+
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static int validateSize(int rowCount, int colCount) {
+        long size = (long) rowCount * (long) colCount;
+
+        if (size > Integer.MAX_VALUE - 8)
+            throw JamException.runtime("Expression matrix [%d x %d] is too large.", rowCount, colCount);
+
+        return (int) size;
     }
 
     /**
      * Creates a new tumor expression matrix.
      *
      * @param expression the expression data.
-     */ 
+     */
     public TumorExpressionMatrix(DataMatrix<TumorBarcode, HugoSymbol> expression) {
-        this(expression, true);
+        this(expression.rowKeyList(), expression.colKeyList(), copyDoubles(expression), null);
     }
 
     /**
-     * Loads a tumor expression matrix from a data file.
+     * Loads a tumor expression matrix from a data file; the storage
+     * precision is specified by the {@code SINGLE_PRECISION_PROPERTY}
+     * system property (double precision by default).
      *
      * @param file the file to load.
      *
@@ -46,7 +160,39 @@ public final class TumorExpressionMatrix {
      * reading and contains valid expression data.
      */
     public static TumorExpressionMatrix load(File file) {
-        return new TumorExpressionMatrix(loadExpression(file), false);
+        return load(file, resolveSinglePrecision());
+    }
+
+    /**
+     * Loads a tumor expression matrix from a data file.
+     *
+     * <p>Text files must be delimited (comma, tab, or pipe), contain a
+     * header line with the HUGO symbols in the second and later
+     * columns, and contain one line for each tumor with the barcode
+     * in the first column followed by the expression of each gene.
+     *
+     * @param file the file to load.
+     *
+     * @param singlePrecision whether to store the expression values
+     * with single ({@code float}) precision, which halves the memory
+     * required.  Binary matrix files always store single-precision
+     * values, so this flag applies only to delimited text files.
+     *
+     * @return a new matrix with expression data loaded from the
+     * specified file.
+     *
+     * @throws RuntimeException unless the file can be opened for
+     * reading and contains valid expression data.
+     */
+    public static TumorExpressionMatrix load(File file, boolean singlePrecision) {
+        if (ExpressionMatrixFile.isBinary(file))
+            return ExpressionMatrixFile.map(file);
+        else
+            return parse(file, singlePrecision);
+    }
+
+    private static boolean resolveSinglePrecision() {
+        return JamProperties.getOptionalBoolean(SINGLE_PRECISION_PROPERTY, false);
     }
 
     /**
@@ -64,23 +210,159 @@ public final class TumorExpressionMatrix {
         return load(new File(fileName));
     }
 
-    private static DataMatrix<TumorBarcode, HugoSymbol> loadExpression(File file) {
-        Loader loader = new Loader(file);
-        return loader.load();
+    //
+    // Parses a delimited text file directly into the column-major
+    // value array.  The first pass only counts the tumor lines, so
+    // that the array can be allocated at its final size and filled in
+    // place by the second pass...
+    //
+    private static TumorExpressionMatrix parse(File file, boolean singlePrecision) {
+        int rowCount = countRows(file);
+
+        try (LineReader reader = LineReader.open(file)) {
+            Iterator<String> lines = reader.iterator();
+
+            String header = nextLine(lines);
+
+            if (header == null)
+                throw JamException.runtime("Missing header line in file [%s].", file);
+
+            char delimiter = findDelimiter(file, header);
+            List<HugoSymbol> symbols = parseSymbols(header, delimiter);
+            List<TumorBarcode> barcodes = new ArrayList<TumorBarcode>(rowCount);
+
+            int size = validateSize(rowCount, symbols.size());
+            double[] doubles = singlePrecision ? null : new double[size];
+            float[] floats = singlePrecision ? new float[size] : null;
+
+            for (String line = nextLine(lines); line != null; line = nextLine(lines)) {
+                int row = barcodes.size();
+
+                if (row >= rowCount)
+                    throw JamException.runtime("File [%s] changed while loading.", file);
+
+                int start = line.indexOf(delimiter);
+
+                if (start < 0)
+                    throw JamException.runtime("Invalid expression record: [%s].", line);
+
+                barcodes.add(TumorBarcode.instance(line.substring(0, start).trim()));
+
+                for (int col = 0; col < symbols.size(); ++col) {
+                    if (start < 0)
+                        throw JamException.runtime("Missing expression values in record: [%s].", line);
+
+                    int end = line.indexOf(delimiter, start + 1);
+
+                    if (end < 0)
+                        end = line.length();
+
+                    double value = Double.parseDouble(line.substring(start + 1, end).trim());
+                    int position = col * rowCount + row;
+
+                    if (doubles != null)
+                        doubles[position] = value;
+                    else
+                        floats[position] = (float) value;
+
+                    start = (end < line.length()) ? end : -1;
+                }
+
+                if (start >= 0)
+                    throw JamException.runtime("Extra expression values in record: [%s].", line);
+            }
+
+            if (barcodes.size() != rowCount)
+                throw JamException.runtime("File [%s] changed while loading.", file);
+
+            if (doubles != null)
+                return new TumorExpressionMatrix(barcodes, symbols, doubles, null);
+            else
+                return new TumorExpressionMatrix(barcodes, symbols, null, FloatSegments.wrap(floats));
+        }
     }
 
-    private static final class Loader extends DenseDataMatrixLoader<TumorBarcode, HugoSymbol> {
-        private Loader(File file) {
-            super(file);
+    private static int countRows(File file) {
+        int count = 0;
+
+        try (LineReader reader = LineReader.open(file)) {
+            for (String line : reader)
+                if (!isBlank(line))
+                    ++count;
         }
 
-        @Override public HugoSymbol parseColKey(String geneKey) {
-            return HugoSymbol.instance(geneKey);
+        // Exclude the header line...
+        return Math.max(0, count - 1);
+    }
+
+    private static String nextLine(Iterator<String> lines) {
+        while (lines.hasNext()) {
+            String line = lines.next();
+
+            if (!isBlank(line))
+                return line;
         }
 
-        @Override public TumorBarcode parseRowKey(String tumorKey) {
-            return TumorBarcode.instance(tumorKey);
+        return null;
+    }
+
+    private static boolean isBlank(String line) {
+        return line.trim().isEmpty();
+    }
+
+    private static char findDelimiter(File file, String header) {
+        for (char delimiter : new char[] { '\t', ',', '|' })
+            if (header.indexOf(delimiter) >= 0)
+                return delimiter;
+
+        throw JamException.runtime("Invalid header in file [%s].", file);
+    }
+
+    private static List<HugoSymbol> parseSymbols(String header, char delimiter) {
+        List<HugoSymbol> symbols = new ArrayList<HugoSymbol>();
+        int start = header.indexOf(delimiter);
+
+        while (start >= 0) {
+            int end = header.indexOf(delimiter, start + 1);
+
+            if (end < 0)
+                end = header.length();
+
+            symbols.add(HugoSymbol.instance(header.substring(start + 1, end).trim()));
+            start = (end < header.length()) ? end : -1;
         }
+
+        return symbols;
+    }
+
+    private int position(int row, int col) {
+        return col * rowCount + row;
+    }
+
+    /**
+     * Returns the row index for a tumor.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return the zero-based row index for the specified tumor, or
+     * {@code -1} if this matrix does not contain the tumor.
+     */
+    public int indexOf(TumorBarcode barcode) {
+        Integer index = rowIndex.get(barcode);
+        return (index != null) ? index : -1;
+    }
+
+    /**
+     * Returns the column index for a gene.
+     *
+     * @param symbol the HUGO gene symbol of interest.
+     *
+     * @return the zero-based column index for the specified gene, or
+     * {@code -1} if this matrix does not contain the gene.
+     */
+    public int indexOf(HugoSymbol symbol) {
+        Integer index = colIndex.get(symbol);
+        return (index != null) ? index : -1;
     }
 
     /**
@@ -92,7 +374,7 @@ public final class TumorExpressionMatrix {
      * for the specified barcode.
      */
     public boolean contains(TumorBarcode barcode) {
-        return expression.containsRow(barcode);
+        return rowIndex.containsKey(barcode);
     }
 
     /**
@@ -104,7 +386,7 @@ public final class TumorExpressionMatrix {
      * for the specified symbol.
      */
     public boolean contains(HugoSymbol symbol) {
-        return expression.containsCol(symbol);
+        return colIndex.containsKey(symbol);
     }
 
     /**
@@ -118,7 +400,7 @@ public final class TumorExpressionMatrix {
      * for the specified barcode and symbol.
      */
     public boolean contains(TumorBarcode barcode, HugoSymbol symbol) {
-        return expression.contains(barcode, symbol);
+        return contains(barcode) && contains(symbol);
     }
 
     /**
@@ -127,19 +409,35 @@ public final class TumorExpressionMatrix {
      * @param barcode the tumor barcode of interest.
      *
      * @return the full expression for the specified tumor, or
-     * {@code null} if this matrix does not contain the tumor.
+     * {@code null} if this matrix does not contain the tumor; the
+     * profile views the tumor row of this matrix without copying or
+     * boxing the expression values.
      */
     public ExpressionProfile get(TumorBarcode barcode) {
-        if (!contains(barcode))
-            return null;
+        int row = indexOf(barcode);
 
-        List<HugoSymbol> symbols = viewSymbols();
-        Map<HugoSymbol, Expression> profile = new HashMap<HugoSymbol, Expression>(symbols.size());
+        if (row < 0)
+            return null;
+        else
+            return ExpressionProfile.view(symbols, colIndex, viewRow(row));
+    }
 
-        for (HugoSymbol symbol : symbols)
-            profile.put(symbol, get(barcode, symbol));
+    /**
+     * Returns the sparse expression profile (containing only the genes
+     * with positive expression) for a given tumor.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return the sparse expression profile for the specified tumor,
+     * or {@code null} if this matrix does not contain the tumor.
+     */
+    public SparseExpressionProfile getSparse(TumorBarcode barcode) {
+        int row = indexOf(barcode);
 
-        return ExpressionProfile.create(profile);
+        if (row < 0)
+            return null;
+        else
+            return SparseExpressionProfile.create(symbols, viewRow(row), symbolOrder);
     }
 
     /**
@@ -154,19 +452,142 @@ public final class TumorExpressionMatrix {
      * gene.
      */
     public Expression get(TumorBarcode barcode, HugoSymbol symbol) {
-        if (contains(barcode, symbol))
-            return Expression.valueOf(expression.get(barcode, symbol));
+        int row = indexOf(barcode);
+        int col = indexOf(symbol);
+
+        if (row >= 0 && col >= 0)
+            return Expression.valueOf(get(row, col));
         else
             return null;
     }
 
+    /**
+     * Returns the expression for a given row and column.
+     *
+     * @param row the zero-based row (tumor) index.
+     *
+     * @param col the zero-based column (gene) index.
+     *
+     * @return the expression at the specified location.
+     *
+     * @throws IndexOutOfBoundsException unless the indexes are valid.
+     */
+    public double get(int row, int col) {
+        if (row < 0 || row >= rowCount || col < 0 || col >= colCount)
+            throw new IndexOutOfBoundsException(String.format("Invalid matrix location: (%d, %d).", row, col));
+
+        if (doubles != null)
+            return doubles[position(row, col)];
+        else
+            return floats.get(position(row, col));
+    }
+
+    /**
+     * Returns a view of the expression of every gene in a tumor, in
+     * the order of {@link TumorExpressionMatrix#viewSymbols()}.
+     *
+     * @param barcode the tumor barcode of interest.
+     *
+     * @return a view of the expression profile for the specified
+     * tumor, or {@code null} if this matrix does not contain the
+     * tumor.
+     */
+    public ExpressionVector viewRow(TumorBarcode barcode) {
+        int row = indexOf(barcode);
+        return (row >= 0) ? viewRow(row) : null;
+    }
+
+    /**
+     * Returns a view of the expression of every gene in a tumor, in
+     * the order of {@link TumorExpressionMatrix#viewSymbols()}.
+     *
+     * @param row the zero-based row (tumor) index.
+     *
+     * @return a view of the expression profile for the specified
+     * tumor.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public ExpressionVector viewRow(int row) {
+        if (row < 0 || row >= rowCount)
+            throw new IndexOutOfBoundsException("Invalid row index: " + row);
+
+        return view(row, rowCount, colCount);
+    }
+
+    /**
+     * Returns a view of the expression of a gene in every tumor, in
+     * the order of {@link TumorExpressionMatrix#viewBarcodes()}.
+     *
+     * @param symbol the HUGO gene symbol of interest.
+     *
+     * @return a view of the expression of the specified gene, or
+     * {@code null} if this matrix does not contain the gene.
+     */
+    public ExpressionVector viewColumn(HugoSymbol symbol) {
+        int col = indexOf(symbol);
+        return (col >= 0) ? viewColumn(col) : null;
+    }
+
+    /**
+     * Returns a view of the expression of a gene in every tumor, in
+     * the order of {@link TumorExpressionMatrix#viewBarcodes()}.
+     *
+     * @param col the zero-based column (gene) index.
+     *
+     * @return a view of the expression of the specified gene.
+     *
+     * @throws IndexOutOfBoundsException unless the index is valid.
+     */
+    public ExpressionVector viewColumn(int col) {
+        if (col < 0 || col >= colCount)
+            throw new IndexOutOfBoundsException("Invalid column index: " + col);
+
+        return view(position(0, col), 1, rowCount);
+    }
+
+    private ExpressionVector view(int offset, int stride, int length) {
+        if (doubles != null)
+            return ExpressionVector.of(doubles, offset, stride, length);
+        else
+            return ExpressionVector.of(floats, offset, stride, length);
+    }
+
+    /**
+     * Identifies matrices that store single-precision values.
+     *
+     * @return {@code true} iff this matrix stores its expression
+     * values with single ({@code float}) precision.
+     */
+    public boolean isSinglePrecision() {
+        return floats != null;
+    }
+
+    /**
+     * Returns the number of tumors (rows) in this matrix.
+     *
+     * @return the number of tumors (rows) in this matrix.
+     */
+    public int countBarcodes() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of genes (columns) in this matrix.
+     *
+     * @return the number of genes (columns) in this matrix.
+     */
+    public int countSymbols() {
+        return colCount;
+    }
+
     /**
      * Returns a read-only view of the barcodes in this matrix.
      *
      * @return a read-only view of the barcodes in this matrix.
      */
     public List<TumorBarcode> viewBarcodes() {
-        return expression.rowKeyList();
+        return barcodes;
     }
 
     /**
@@ -175,6 +596,6 @@ public final class TumorExpressionMatrix {
      * @return a read-only view of the HUGO symbols in this matrix.
      */
     public List<HugoSymbol> viewSymbols() {
-        return expression.colKeyList();
+        return symbols;
     }
 }
@@ -0,0 +1,34 @@
+
+package jean.tcga;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+//
+// A read-only set view of a sorted identifier array whose membership
+// test is delegated to the owning table (typically an array lookup by
+// the identifier index)...
+//
+final class IdentifierSet<T> extends AbstractSet<T> {
+    private final T[] elements;
+    private final Predicate<Object> membership;
+
+    IdentifierSet(T[] elements, Predicate<Object> membership) {
+        this.elements = elements;
+        this.membership = membership;
+    }
+
+    @Override public boolean contains(Object obj) {
+        return membership.test(obj);
+    }
+
+    @Override public Iterator<T> iterator() {
+        return Arrays.asList(elements).iterator();
+    }
+
+    @Override public int size() {
+        return elements.length;
+    }
+}
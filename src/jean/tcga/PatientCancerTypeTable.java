@@ -2,7 +2,7 @@
 package jean.tcga;
 
 import java.io.File;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,20 +13,52 @@ import jam.app.JamProperties;
 import jam.io.TableReader;
 import jam.lang.JamException;
 
+import jean.app.LazyGlobal;
+
 /**
  * Maps patients to their cancer types.
  *
  * <p><b>File format.</b> The data file must contain a header line
  * (which is ignored) and every other line must contain the patient
  * key and cancer type separated by a comma, tab, or pipe character.
+ *
+ * <p>Cancer types are stored as {@code byte} ordinals in an array
+ * indexed by the dense indexes of the (interned) patient IDs, so
+ * every lookup is a single array access.
  */
 public final class PatientCancerTypeTable {
-    private final Map<PatientID, CancerType> map;
+    // Cancer type ordinals indexed by PatientID.index(), with NONE for
+    // patients that are not in this table...
+    private final byte[] cancerTypes;
+
+    // The patients in this table in sorted order...
+    private final PatientID[] patients;
+
+    private static final CancerType[] CANCER_TYPES = CancerType.values();
+
+    static final byte NONE = -1;
+
+    private static final LazyGlobal<PatientCancerTypeTable> global =
+        LazyGlobal.create("PatientCancerTypeTable", PatientCancerTypeTable::createGlobal);
+
+    private PatientCancerTypeTable(Map<PatientID, CancerType> map) {
+        this.patients = map.keySet().toArray(new PatientID[0]);
+        Arrays.sort(patients);
+
+        int limit = 0;
+
+        for (PatientID patient : patients)
+            limit = Math.max(limit, patient.index() + 1);
+
+        this.cancerTypes = new byte[limit];
+        Arrays.fill(cancerTypes, NONE);
 
-    private static PatientCancerTypeTable global = null;
+        for (PatientID patient : patients)
+            cancerTypes[patient.index()] = (byte) map.get(patient).ordinal();
+    }
 
-    private PatientCancerTypeTable() {
-        this.map = new HashMap<PatientID, CancerType>();
+    static CancerType cancerType(byte ordinal) {
+        return CANCER_TYPES[ordinal];
     }
 
     /**
@@ -45,10 +77,11 @@ public final class PatientCancerTypeTable {
      * a file with a valid table.
      */
     public static PatientCancerTypeTable global() {
-        if (global == null)
-            global = load(resolveFileName());
+        return global.get();
+    }
 
-        return global;
+    private static PatientCancerTypeTable createGlobal() {
+        return load(resolveFileName());
     }
 
     private static String resolveFileName() {
@@ -66,11 +99,10 @@ public final class PatientCancerTypeTable {
      * data table.
      */
     public static PatientCancerTypeTable load(File file) {
-        PatientCancerTypeTable table = new PatientCancerTypeTable();
-
         TableReader reader = openReader(file);
-        table.load(reader);
+        PatientCancerTypeTable table = new PatientCancerTypeTable(load(reader));
 
+        JamLogger.info("PatientCancerTypeTable: Loaded [%d] records.", table.size());
         return table;
     }
 
@@ -97,19 +129,21 @@ public final class PatientCancerTypeTable {
         return reader;
     }
 
-    private void load(TableReader reader) {
+    private static Map<PatientID, CancerType> load(TableReader reader) {
+        Map<PatientID, CancerType> map = new HashMap<PatientID, CancerType>();
+
         try {
             for (List<String> columns : reader)
-                parseColumns(columns);
+                parseColumns(map, columns);
         }
         finally {
             reader.close();
         }
 
-        JamLogger.info("PatientCancerTypeTable: Loaded [%d] records.", size());
+        return map;
     }
 
-    private void parseColumns(List<String> columns) {
+    private static void parseColumns(Map<PatientID, CancerType> map, List<String> columns) {
         assert columns.size() == 2;
 
         PatientID  patientID  = PatientID.instance(columns.get(0));
@@ -130,7 +164,7 @@ public final class PatientCancerTypeTable {
      * patient.
      */
     public boolean contains(PatientID patientID) {
-        return map.containsKey(patientID);
+        return ordinal(patientID) != NONE;
     }
 
     /**
@@ -142,7 +176,25 @@ public final class PatientCancerTypeTable {
      * ({@code null} if the patient is not in this table).
      */
     public CancerType lookup(PatientID patientID) {
-        return map.get(patientID);
+        byte ordinal = ordinal(patientID);
+
+        if (ordinal != NONE)
+            return cancerType(ordinal);
+        else
+            return null;
+    }
+
+    //
+    // Returns the cancer type ordinal for a patient, or NONE if the
+    // patient is not in this table...
+    //
+    byte ordinal(PatientID patientID) {
+        int index = patientID.index();
+
+        if (index < cancerTypes.length)
+            return cancerTypes[index];
+        else
+            return NONE;
     }
 
     /**
@@ -170,16 +222,17 @@ public final class PatientCancerTypeTable {
      * @return the number of patients in this table.
      */
     public int size() {
-        return map.size();
+        return patients.length;
     }
 
     /**
-     * Returns a read-only view of the patients in this table.
+     * Returns a read-only view of the patients in this table (in
+     * sorted order).
      *
      * @return an unmodifiable set containing all patients in this
      * table.
      */
     public Set<PatientID> viewPatients() {
-        return Collections.unmodifiableSet(map.keySet());
+        return new IdentifierSet<PatientID>(patients, obj -> (obj instanceof PatientID) && contains((PatientID) obj));
     }
 }
@@ -1,15 +1,29 @@
 
 package jean.tcga;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import jam.lang.JamException;
 import jam.lang.KeyedObject;
 
 /**
  * Represents a unique patient identifier in the TCGA database.
+ *
+ * <p>Patient IDs are interned: there is one instance for each key,
+ * and each instance carries a dense zero-based index (assigned in
+ * order of creation) that tables may use to index arrays.
  */
 public final class PatientID extends KeyedObject<String> {
-    private PatientID(String key) {
+    private final int index;
+
+    private static final Map<String, PatientID> instances = new ConcurrentHashMap<String, PatientID>();
+    private static final AtomicInteger instanceCount = new AtomicInteger(0);
+
+    private PatientID(String key, int index) {
         super(key);
+        this.index = index;
     }
 
     /**
@@ -26,6 +40,30 @@ public final class PatientID extends KeyedObject<String> {
      * @return the patient ID for the given key string.
      */
     public static PatientID instance(String key) {
-        return new PatientID(key);
+        PatientID patient = instances.get(key);
+
+        if (patient != null)
+            return patient;
+        else
+            return instances.computeIfAbsent(key, k -> new PatientID(k, instanceCount.getAndIncrement()));
+    }
+
+    /**
+     * Returns the number of distinct patient IDs created so far (one
+     * greater than the largest index assigned).
+     *
+     * @return the number of distinct patient IDs created so far.
+     */
+    public static int countInstances() {
+        return instanceCount.get();
+    }
+
+    /**
+     * Returns the dense index of this patient ID.
+     *
+     * @return the dense index of this patient ID.
+     */
+    public int index() {
+        return index;
     }
 }
@@ -4,6 +4,9 @@ package jean.tcga;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import jam.app.JamLogger;
 import jam.io.LineReader;
@@ -11,10 +14,24 @@ import jam.lang.KeyedObject;
 
 /**
  * Represents a unique tumor sample identifier in the TCGA database.
+ *
+ * <p>Tumor barcodes are interned: there is one instance for each
+ * key, and each instance carries a dense zero-based index (assigned
+ * in order of creation) that tables may use to index arrays.
  */
 public final class TumorBarcode extends KeyedObject<String> {
-    private TumorBarcode(String key) {
+    private final int index;
+
+    // Derived from the key on first use; patient IDs are interned, so
+    // a race merely computes the same instance twice...
+    private PatientID patientID = null;
+
+    private static final Map<String, TumorBarcode> instances = new ConcurrentHashMap<String, TumorBarcode>();
+    private static final AtomicInteger instanceCount = new AtomicInteger(0);
+
+    private TumorBarcode(String key, int index) {
         super(key);
+        this.index = index;
     }
 
     /**
@@ -37,7 +54,22 @@ public final class TumorBarcode extends KeyedObject<String> {
      * @return the tumor barcode for the given key string.
      */
     public static TumorBarcode instance(String key) {
-        return new TumorBarcode(key);
+        TumorBarcode barcode = instances.get(key);
+
+        if (barcode != null)
+            return barcode;
+        else
+            return instances.computeIfAbsent(key, k -> new TumorBarcode(k, instanceCount.getAndIncrement()));
+    }
+
+    /**
+     * Returns the number of distinct tumor barcodes created so far
+     * (one greater than the largest index assigned).
+     *
+     * @return the number of distinct tumor barcodes created so far.
+     */
+    public static int countInstances() {
+        return instanceCount.get();
     }
 
     /**
@@ -80,6 +112,22 @@ public final class TumorBarcode extends KeyedObject<String> {
      * sampled.
      */
     public PatientID patientID() {
-        return PatientID.instance(getKey().substring(0, PATIENT_KEY_LENGTH));
+        PatientID result = patientID;
+
+        if (result == null) {
+            result = PatientID.instance(getKey().substring(0, PATIENT_KEY_LENGTH));
+            patientID = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the dense index of this barcode.
+     *
+     * @return the dense index of this barcode.
+     */
+    public int index() {
+        return index;
     }
 }
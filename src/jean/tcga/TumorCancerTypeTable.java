@@ -0,0 +1,157 @@
+
+package jean.tcga;
+
+import java.util.Arrays;
+
+import jam.app.JamLogger;
+import jam.lang.JamException;
+
+import jean.app.LazyGlobal;
+
+/**
+ * Maps tumor barcodes directly to the cancer type of the sampled
+ * patient.
+ *
+ * <p>The tumor-patient and patient-cancer type tables are joined once
+ * for each tumor when this table is created, and the cancer type
+ * ordinals are stored as {@code byte}s in an array indexed by the
+ * dense indexes of the (interned) barcodes, so every lookup is a
+ * single array access.
+ */
+public final class TumorCancerTypeTable {
+    // Cancer type ordinals indexed by TumorBarcode.index(), with NONE
+    // for tumors that are not in this table...
+    private final byte[] cancerTypes;
+    private final int size;
+
+    private static final byte NONE = PatientCancerTypeTable.NONE;
+
+    private static final LazyGlobal<TumorCancerTypeTable> global =
+        LazyGlobal.create("TumorCancerTypeTable", TumorCancerTypeTable::createGlobal);
+
+    private TumorCancerTypeTable(byte[] cancerTypes, int size) {
+        this.cancerTypes = cancerTypes;
+        this.size = size;
+    }
+
+    /**
+     * Returns the global table, joined from the global tumor-patient
+     * table and the global patient-cancer type table.
+     *
+     * @return the global table.
+     *
+     * @throws RuntimeException unless the global tumor-patient and
+     * patient-cancer type tables can be loaded.
+     */
+    public static TumorCancerTypeTable global() {
+        return global.get();
+    }
+
+    private static TumorCancerTypeTable createGlobal() {
+        return join(TumorPatientTable.global(), PatientCancerTypeTable.global());
+    }
+
+    /**
+     * Creates a tumor-cancer type table by joining a tumor-patient
+     * table and a patient-cancer type table.
+     *
+     * <p>Tumors whose patient has no cancer type are omitted.
+     *
+     * @param tumorPatientTable the mapping from tumor samples to
+     * patients.
+     *
+     * @param patientCancerTypeTable the mapping from patients to
+     * cancer types.
+     *
+     * @return a table mapping tumor barcodes to cancer types.
+     */
+    public static TumorCancerTypeTable join(TumorPatientTable tumorPatientTable,
+                                            PatientCancerTypeTable patientCancerTypeTable) {
+        int limit = 0;
+
+        for (TumorBarcode barcode : tumorPatientTable.viewBarcodes())
+            limit = Math.max(limit, barcode.index() + 1);
+
+        byte[] cancerTypes = new byte[limit];
+        Arrays.fill(cancerTypes, NONE);
+
+        int size = 0;
+
+        for (TumorBarcode barcode : tumorPatientTable.viewBarcodes()) {
+            byte ordinal = patientCancerTypeTable.ordinal(tumorPatientTable.require(barcode));
+
+            if (ordinal != NONE) {
+                cancerTypes[barcode.index()] = ordinal;
+                ++size;
+            }
+        }
+
+        JamLogger.info("TumorCancerTypeTable: Joined [%d] records.", size);
+        return new TumorCancerTypeTable(cancerTypes, size);
+    }
+
+    /**
+     * Identifies tumors in this table.
+     *
+     * @param barcode a tumor barcode of interest.
+     *
+     * @return {@code true} iff this table contains the specified
+     * tumor.
+     */
+    public boolean contains(TumorBarcode barcode) {
+        return ordinal(barcode) != NONE;
+    }
+
+    /**
+     * Returns the cancer type for a given tumor.
+     *
+     * @param barcode a tumor barcode of interest.
+     *
+     * @return the cancer type of the sampled patient ({@code null} if
+     * the tumor is not in this table).
+     */
+    public CancerType lookup(TumorBarcode barcode) {
+        byte ordinal = ordinal(barcode);
+
+        if (ordinal != NONE)
+            return PatientCancerTypeTable.cancerType(ordinal);
+        else
+            return null;
+    }
+
+    /**
+     * Returns the cancer type for a given tumor.
+     *
+     * @param barcode a tumor barcode of interest.
+     *
+     * @return the cancer type of the sampled patient.
+     *
+     * @throws RuntimeException unless the tumor is present.
+     */
+    public CancerType require(TumorBarcode barcode) {
+        CancerType cancerType = lookup(barcode);
+
+        if (cancerType != null)
+            return cancerType;
+        else
+            throw JamException.runtime("No cancer type mapped to barcode [%s].", barcode.getKey());
+    }
+
+    private byte ordinal(TumorBarcode barcode) {
+        int index = barcode.index();
+
+        if (index < cancerTypes.length)
+            return cancerTypes[index];
+        else
+            return NONE;
+    }
+
+    /**
+     * Returns the number of tumors in this table.
+     *
+     * @return the number of tumors in this table.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -2,29 +2,223 @@
 package jean.tcga;
 
 import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import jam.app.JamLogger;
-import jam.io.TableReader;
-import jam.util.PairKeyMultimap;
+import jam.io.LineReader;
+import jam.lang.JamException;
+import jam.lang.KeyedObject;
 
 import jean.hugo.HugoSymbol;
 import jean.peptide.Peptide;
+import jean.peptide.Residue;
 
 /**
  * Indexes peptides by tumor barcode and HUGO symbol.
+ *
+ * <p>Peptides are stored as primitive k-mer codes (five bits per
+ * residue) sorted by barcode and then by symbol, so the peptides for
+ * each tumor-gene pair occupy one contiguous slice of a single
+ * {@code long} array.  Peptide objects are created only when a slice
+ * is read; they are not added to the global peptide cache.  Peptides
+ * longer than {@code MAX_PEPTIDE_LENGTH} residues do not fit in a
+ * k-mer code: they are stored once each as peptide objects in an
+ * overflow array and referenced from the slices by negative codes.
+ *
+ * <p>Large files are parsed in chunks of lines on parallel threads.
+ * Files that are too large to index in memory may be processed one
+ * record at a time with {@link TumorGenePeptideTable#stream}.
  */
 public final class TumorGenePeptideTable {
-    private final PairKeyMultimap<TumorBarcode, HugoSymbol, Peptide> table = PairKeyMultimap.hash();
+    // Barcodes and symbols in sorted order...
+    private final TumorBarcode[] barcodes;
+    private final HugoSymbol[] symbols;
+
+    // Barcode positions indexed by TumorBarcode.index() (-1 for tumors
+    // that are not in this table) and symbol positions by symbol...
+    private final int[] barcodePositions;
+    private final Map<HugoSymbol, Integer> symbolPositions;
+
+    // The groups (distinct tumor-gene pairs) for barcode position b
+    // are [barcodeGroups[b], barcodeGroups[b + 1]); group g has symbol
+    // position groupSymbols[g] and peptide codes in the slice
+    // [groupStarts[g], groupStarts[g + 1]) of peptideCodes...
+    private final int[] barcodeGroups;
+    private final int[] groupSymbols;
+    private final int[] groupStarts;
+    private final long[] peptideCodes;
+
+    // Peptides too long for a k-mer code: code -(k + 1) refers to
+    // overflowPeptides[k]...
+    private final Peptide[] overflowPeptides;
 
     private static final int BARCODE_INDEX = 0;
     private static final int SYMBOL_INDEX  = 1;
     private static final int PEPTIDE_INDEX = 2;
 
-    private TumorGenePeptideTable() {
+    private static final int RESIDUE_BITS = 5;
+    private static final int RESIDUE_MASK = (1 << RESIDUE_BITS) - 1;
+    private static final Residue[] RESIDUES = Residue.values();
+
+    /**
+     * Maximum number of residues in a peptide stored as a k-mer code.
+     */
+    public static final int MAX_PEPTIDE_LENGTH = 12;
+
+    /**
+     * Number of lines parsed together by one thread while loading.
+     */
+    public static final int CHUNK_SIZE = 65536;
+
+    private TumorGenePeptideTable(Loader loader) {
+        this.barcodes = loader.barcodes();
+        this.symbols = loader.symbols();
+        this.overflowPeptides = loader.overflowPeptides();
+
+        int[] barcodeRanks = rank(barcodes, loader.barcodeKeys);
+        int[] symbolRanks = rank(symbols, loader.symbolKeys);
+
+        this.barcodePositions = new int[indexLimit(barcodes)];
+        this.symbolPositions = new HashMap<HugoSymbol, Integer>(symbols.length);
+
+        Arrays.fill(barcodePositions, -1);
+
+        for (int position = 0; position < barcodes.length; ++position)
+            barcodePositions[barcodes[position].index()] = position;
+
+        for (int position = 0; position < symbols.length; ++position)
+            symbolPositions.put(symbols[position], position);
+
+        // Two stable counting sorts (by symbol, then by barcode) order
+        // the rows by barcode and then by symbol...
+        int rowCount = loader.rowCount();
+
+        int[] rowBarcodes = new int[rowCount];
+        int[] rowSymbols = new int[rowCount];
+        long[] rowCodes = new long[rowCount];
+
+        loader.copyRows(barcodeRanks, symbolRanks, rowBarcodes, rowSymbols, rowCodes);
+
+        int[] bySymbol = countingSort(rowSymbols, symbols.length, identity(rowCount));
+        int[] order = countingSort(rowBarcodes, barcodes.length, bySymbol);
+
+        List<Integer> groupSymbolList = new ArrayList<Integer>();
+        List<Integer> groupStartList = new ArrayList<Integer>();
+
+        this.barcodeGroups = new int[barcodes.length + 1];
+        this.peptideCodes = new long[rowCount];
+
+        int codeCount = 0;
+        int row = 0;
+
+        for (int barcode = 0; barcode < barcodes.length; ++barcode) {
+            barcodeGroups[barcode] = groupSymbolList.size();
+
+            while (row < rowCount && rowBarcodes[order[row]] == barcode) {
+                int symbol = rowSymbols[order[row]];
+                int groupStart = codeCount;
+
+                while (row < rowCount
+                       && rowBarcodes[order[row]] == barcode
+                       && rowSymbols[order[row]] == symbol)
+                    peptideCodes[codeCount++] = rowCodes[order[row++]];
+
+                codeCount = groupStart + unique(peptideCodes, groupStart, codeCount);
+
+                groupSymbolList.add(symbol);
+                groupStartList.add(groupStart);
+            }
+        }
+
+        barcodeGroups[barcodes.length] = groupSymbolList.size();
+        groupStartList.add(codeCount);
+
+        this.groupSymbols = groupSymbolList.stream().mapToInt(Integer::intValue).toArray();
+        this.groupStarts = groupStartList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    //
+    // Maps the loader ids (the indexes of the keys) to the positions of
+    // the corresponding objects in sorted order...
+    //
+    private static int[] rank(KeyedObject<String>[] sorted, List<String> keys) {
+        Map<String, Integer> positions = new HashMap<String, Integer>(sorted.length);
+
+        for (int position = 0; position < sorted.length; ++position)
+            positions.put(sorted[position].getKey(), position);
+
+        int[] ranks = new int[keys.size()];
+
+        for (int id = 0; id < ranks.length; ++id)
+            ranks[id] = positions.get(keys.get(id));
+
+        return ranks;
+    }
+
+    private static int indexLimit(TumorBarcode[] barcodes) {
+        int limit = 0;
+
+        for (TumorBarcode barcode : barcodes)
+            limit = Math.max(limit, barcode.index() + 1);
+
+        return limit;
+    }
+
+    private static int[] identity(int length) {
+        int[] result = new int[length];
+
+        for (int k = 0; k < length; ++k)
+            result[k] = k;
+
+        return result;
+    }
+
+    private static int[] countingSort(int[] keys, int keyCount, int[] order) {
+        int[] starts = new int[keyCount + 1];
+
+        for (int row : order)
+            ++starts[keys[row] + 1];
+
+        for (int key = 0; key < keyCount; ++key)
+            starts[key + 1] += starts[key];
+
+        int[] sorted = new int[order.length];
+
+        for (int row : order)
+            sorted[starts[keys[row]]++] = row;
+
+        return sorted;
+    }
+
+    //
+    // Sorts the codes in [start, end) and moves the distinct codes to
+    // the front of the range; returns the number of distinct codes...
+    //
+    private static int unique(long[] codes, int start, int end) {
+        if (start == end)
+            return 0;
+
+        Arrays.sort(codes, start, end);
+
+        int last = start;
+
+        for (int k = start + 1; k < end; ++k)
+            if (codes[k] != codes[last])
+                codes[++last] = codes[k];
+
+        return last - start + 1;
     }
 
     /**
@@ -60,31 +254,352 @@ public final class TumorGenePeptideTable {
      * @throws RuntimeException if any errors occur.
      */
     public static TumorGenePeptideTable load(File file) {
-        TableReader reader = TableReader.open(file);
-        TumorGenePeptideTable table = new TumorGenePeptideTable();
+        Loader loader = new Loader();
+
+        try (LineReader reader = LineReader.open(file)) {
+            Iterator<String> lines = reader.iterator();
+            char delimiter = readHeader(file, lines);
+
+            List<List<String>> chunks = new ArrayList<List<String>>();
+            int chunkLimit = Runtime.getRuntime().availableProcessors();
+
+            while (lines.hasNext()) {
+                chunks.add(readChunk(lines));
+
+                if (chunks.size() == chunkLimit || !lines.hasNext()) {
+                    loader.parse(chunks, delimiter);
+                    chunks.clear();
+                }
+            }
+        }
+
+        TumorGenePeptideTable table = new TumorGenePeptideTable(loader);
+        JamLogger.info("TumorGenePeptideTable: Loaded [%d] records.", table.size());
 
-        table.load(reader);
         return table;
     }
 
-    private void load(TableReader reader) {
-        try {
-            for (List<String> fields : reader)
-                processFields(fields);
+    private static char readHeader(File file, Iterator<String> lines) {
+        if (!lines.hasNext())
+            throw JamException.runtime("Missing header line in file [%s].", file);
+
+        String header = lines.next();
+
+        for (char delimiter : new char[] { '\t', ',', '|' })
+            if (header.indexOf(delimiter) >= 0)
+                return delimiter;
+
+        throw JamException.runtime("Invalid header in file [%s].", file);
+    }
+
+    private static List<String> readChunk(Iterator<String> lines) {
+        List<String> chunk = new ArrayList<String>(CHUNK_SIZE);
+
+        while (chunk.size() < CHUNK_SIZE && lines.hasNext()) {
+            String line = lines.next();
+
+            if (!isBlank(line))
+                chunk.add(line);
+        }
+
+        return chunk;
+    }
+
+    private static boolean isBlank(String line) {
+        return line.trim().isEmpty();
+    }
+
+    //
+    // Locates the first three fields in a line: on return, bounds[2k]
+    // and bounds[2k + 1] are the start and end of field k, with leading
+    // and trailing white space removed; any further fields are ignored...
+    //
+    private static void split(String line, char delimiter, int[] bounds) {
+        int start = 0;
+
+        for (int field = 0; field < 3; ++field) {
+            if (start > line.length())
+                throw JamException.runtime("Invalid record: [%s].", line);
+
+            int end = line.indexOf(delimiter, start);
+
+            if (end < 0)
+                end = line.length();
+
+            int lo = start;
+            int hi = end;
+
+            while (lo < hi && Character.isWhitespace(line.charAt(lo)))
+                ++lo;
+
+            while (hi > lo && Character.isWhitespace(line.charAt(hi - 1)))
+                --hi;
+
+            bounds[2 * field] = lo;
+            bounds[2 * field + 1] = hi;
+
+            start = end + 1;
+        }
+    }
+
+    private static String field(String line, int[] bounds, int field) {
+        return line.substring(bounds[2 * field], bounds[2 * field + 1]);
+    }
+
+    private static boolean isEncodable(int start, int end) {
+        return end - start <= MAX_PEPTIDE_LENGTH;
+    }
+
+    /**
+     * Encodes a peptide as a k-mer code.
+     *
+     * @param chars the single-character residue codes.
+     *
+     * @param start the index of the first residue.
+     *
+     * @param end one past the index of the last residue.
+     *
+     * @return the k-mer code for the peptide.
+     *
+     * @throws RuntimeException unless the characters are valid
+     * residue codes and the peptide contains at most
+     * {@code MAX_PEPTIDE_LENGTH} residues.
+     */
+    public static long encode(CharSequence chars, int start, int end) {
+        if (!isEncodable(start, end))
+            throw JamException.runtime("Peptide [%s] is too long.", chars.subSequence(start, end));
+
+        long code = 0L;
+
+        // Residue ordinals are offset by one so that leading residues
+        // are never zero and peptides of different length differ...
+        for (int k = start; k < end; ++k)
+            code = (code << RESIDUE_BITS) | (Residue.valueOfCode1(chars.charAt(k)).ordinal() + 1);
+
+        return code;
+    }
+
+    /**
+     * Decodes a k-mer code into a new peptide (which is not added to
+     * the global peptide cache).
+     *
+     * @param code a k-mer code created by {@code encode}.
+     *
+     * @return the peptide encoded by the specified code.
+     */
+    public static Peptide decode(long code) {
+        List<Residue> residues = new ArrayList<Residue>(MAX_PEPTIDE_LENGTH);
+
+        for (long rest = code; rest != 0L; rest >>>= RESIDUE_BITS)
+            residues.add(RESIDUES[(int) (rest & RESIDUE_MASK) - 1]);
+
+        Collections.reverse(residues);
+        return Peptide.of(residues);
+    }
+
+    private Peptide peptide(long code) {
+        if (code < 0L)
+            return overflowPeptides[(int) (-code - 1L)];
+        else
+            return decode(code);
+    }
+
+    /**
+     * Receives the records of a tumor-gene-peptide file one at a time.
+     */
+    public interface RecordConsumer {
+        /**
+         * Processes one record.
+         *
+         * @param barcode the tumor barcode in the record.
+         *
+         * @param symbol the HUGO symbol in the record.
+         *
+         * @param peptide the peptide in the record.
+         */
+        void accept(TumorBarcode barcode, HugoSymbol symbol, Peptide peptide);
+    }
+
+    /**
+     * Reads the records in a data file one at a time, without building
+     * a table, so that files larger than the available memory may be
+     * processed.
+     *
+     * @param file the file to read (in the format required by the
+     * {@code load} methods).
+     *
+     * @param consumer the consumer for each record, called in file
+     * order.
+     *
+     * @return the number of records read.
+     *
+     * @throws RuntimeException if any errors occur.
+     */
+    public static long stream(File file, RecordConsumer consumer) {
+        long count = 0;
+        int[] bounds = new int[6];
+
+        try (LineReader reader = LineReader.open(file)) {
+            Iterator<String> lines = reader.iterator();
+            char delimiter = readHeader(file, lines);
+
+            while (lines.hasNext()) {
+                String line = lines.next();
+
+                if (isBlank(line))
+                    continue;
+
+                split(line, delimiter, bounds);
+
+                TumorBarcode barcode = TumorBarcode.instance(field(line, bounds, BARCODE_INDEX));
+                HugoSymbol   symbol  = HugoSymbol.instance(field(line, bounds, SYMBOL_INDEX));
+                Peptide      peptide = Peptide.parse(field(line, bounds, PEPTIDE_INDEX));
+
+                consumer.accept(barcode, symbol, peptide);
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    //
+    // Accumulates parsed rows as primitive triples.  Barcode and symbol
+    // keys receive dense ids in order of first appearance (from any
+    // thread); each chunk stores its rows in its own arrays...
+    //
+    private static final class Loader {
+        private final Map<String, Integer> barcodeIds = new ConcurrentHashMap<String, Integer>();
+        private final Map<String, Integer> symbolIds = new ConcurrentHashMap<String, Integer>();
+
+        private final AtomicInteger barcodeCount = new AtomicInteger(0);
+        private final AtomicInteger symbolCount = new AtomicInteger(0);
+
+        // Peptides too long for k-mer codes, with ids assigned like the
+        // barcode and symbol ids...
+        private final Map<String, Integer> overflowIds = new ConcurrentHashMap<String, Integer>();
+        private final AtomicInteger overflowCount = new AtomicInteger(0);
+
+        // Keys indexed by id, filled in after parsing...
+        private final List<String> barcodeKeys = new ArrayList<String>();
+        private final List<String> symbolKeys = new ArrayList<String>();
+
+        private final List<Chunk> chunks = new ArrayList<Chunk>();
+
+        private void parse(List<List<String>> lineChunks, char delimiter) {
+            List<Chunk> parsed = new ArrayList<Chunk>(lineChunks.size());
+
+            for (List<String> lines : lineChunks)
+                parsed.add(new Chunk(lines.size()));
+
+            IntStream.range(0, lineChunks.size())
+                .parallel()
+                .forEach(k -> parsed.get(k).parse(this, lineChunks.get(k), delimiter));
+
+            chunks.addAll(parsed);
+        }
+
+        private int barcodeId(String key) {
+            return barcodeIds.computeIfAbsent(key, k -> barcodeCount.getAndIncrement());
+        }
+
+        private int symbolId(String key) {
+            return symbolIds.computeIfAbsent(key, k -> symbolCount.getAndIncrement());
+        }
+
+        private long peptideCode(String line, int start, int end) {
+            if (isEncodable(start, end))
+                return encode(line, start, end);
+
+            int id = overflowIds.computeIfAbsent(line.substring(start, end), k -> overflowCount.getAndIncrement());
+            return -(id + 1L);
+        }
+
+        private Peptide[] overflowPeptides() {
+            Peptide[] peptides = new Peptide[overflowIds.size()];
+
+            for (Map.Entry<String, Integer> entry : overflowIds.entrySet())
+                peptides[entry.getValue()] = Peptide.parse(entry.getKey());
+
+            return peptides;
+        }
+
+        private TumorBarcode[] barcodes() {
+            fillKeys(barcodeKeys, barcodeIds);
+            TumorBarcode[] barcodes = new TumorBarcode[barcodeKeys.size()];
+
+            for (int id = 0; id < barcodes.length; ++id)
+                barcodes[id] = TumorBarcode.instance(barcodeKeys.get(id));
 
-            JamLogger.info("TumorGenePeptideTable: Loaded [%d] records.", size());
+            Arrays.sort(barcodes);
+            return barcodes;
         }
-        finally {
-            reader.close();
+
+        private HugoSymbol[] symbols() {
+            fillKeys(symbolKeys, symbolIds);
+            HugoSymbol[] symbols = new HugoSymbol[symbolKeys.size()];
+
+            for (int id = 0; id < symbols.length; ++id)
+                symbols[id] = HugoSymbol.instance(symbolKeys.get(id));
+
+            Arrays.sort(symbols);
+            return symbols;
+        }
+
+        private static void fillKeys(List<String> keys, Map<String, Integer> ids) {
+            keys.clear();
+            keys.addAll(Collections.nCopies(ids.size(), (String) null));
+
+            for (Map.Entry<String, Integer> entry : ids.entrySet())
+                keys.set(entry.getValue(), entry.getKey());
+        }
+
+        private int rowCount() {
+            int count = 0;
+
+            for (Chunk chunk : chunks)
+                count += chunk.codes.length;
+
+            return count;
+        }
+
+        private void copyRows(int[] barcodeRanks, int[] symbolRanks, int[] rowBarcodes, int[] rowSymbols, long[] rowCodes) {
+            int row = 0;
+
+            for (Chunk chunk : chunks) {
+                for (int k = 0; k < chunk.codes.length; ++k) {
+                    rowBarcodes[row] = barcodeRanks[chunk.barcodeIds[k]];
+                    rowSymbols[row] = symbolRanks[chunk.symbolIds[k]];
+                    rowCodes[row] = chunk.codes[k];
+                    ++row;
+                }
+            }
         }
     }
 
-    private void processFields(List<String> fields) {
-        TumorBarcode barcode = TumorBarcode.instance(fields.get(BARCODE_INDEX));
-        HugoSymbol   symbol  = HugoSymbol.instance(fields.get(SYMBOL_INDEX));
-        Peptide      peptide = Peptide.instance(fields.get(PEPTIDE_INDEX));
+    private static final class Chunk {
+        private final int[] barcodeIds;
+        private final int[] symbolIds;
+        private final long[] codes;
+
+        private Chunk(int size) {
+            this.barcodeIds = new int[size];
+            this.symbolIds = new int[size];
+            this.codes = new long[size];
+        }
+
+        private void parse(Loader loader, List<String> lines, char delimiter) {
+            int[] bounds = new int[6];
+
+            for (int k = 0; k < lines.size(); ++k) {
+                String line = lines.get(k);
+                split(line, delimiter, bounds);
 
-        table.put(barcode, symbol, peptide);
+                barcodeIds[k] = loader.barcodeId(field(line, bounds, BARCODE_INDEX));
+                symbolIds[k] = loader.symbolId(field(line, bounds, SYMBOL_INDEX));
+                codes[k] = loader.peptideCode(line, bounds[2 * PEPTIDE_INDEX], bounds[2 * PEPTIDE_INDEX + 1]);
+            }
+        }
     }
 
     /**
@@ -96,7 +611,7 @@ public final class TumorGenePeptideTable {
      * barcode.
      */
     public boolean contains(TumorBarcode barcode) {
-        return table.contains(barcode);
+        return barcodePosition(barcode) >= 0;
     }
 
     /**
@@ -110,7 +625,32 @@ public final class TumorGenePeptideTable {
      * tumor-gene pair.
      */
     public boolean contains(TumorBarcode barcode, HugoSymbol symbol) {
-        return table.contains(barcode, symbol);
+        return group(barcode, symbol) >= 0;
+    }
+
+    private int barcodePosition(TumorBarcode barcode) {
+        int index = barcode.index();
+
+        if (index < barcodePositions.length)
+            return barcodePositions[index];
+        else
+            return -1;
+    }
+
+    private int group(TumorBarcode barcode, HugoSymbol symbol) {
+        int barcodePosition = barcodePosition(barcode);
+        Integer symbolPosition = symbolPositions.get(symbol);
+
+        if (barcodePosition < 0 || symbolPosition == null)
+            return -1;
+
+        int group =
+            Arrays.binarySearch(groupSymbols,
+                                barcodeGroups[barcodePosition],
+                                barcodeGroups[barcodePosition + 1],
+                                symbolPosition);
+
+        return Math.max(group, -1);
     }
 
     /**
@@ -120,11 +660,32 @@ public final class TumorGenePeptideTable {
      *
      * @param symbol the HUGO symbol of interest.
      *
-     * @return the peptides mapped to the specified tumor and gene
-     * (an empty collection if there are none).
+     * @return a read-only view of the peptides mapped to the
+     * specified tumor and gene (an empty collection if there are
+     * none); peptides stored as k-mer codes are decoded each time
+     * they are accessed.
      */
     public Collection<Peptide> get(TumorBarcode barcode, HugoSymbol symbol) {
-        return Collections.unmodifiableCollection(table.get(barcode, symbol));
+        int group = group(barcode, symbol);
+
+        if (group < 0)
+            return Collections.emptyList();
+
+        int start = groupStarts[group];
+        int end = groupStarts[group + 1];
+
+        return new AbstractList<Peptide>() {
+            @Override public Peptide get(int index) {
+                if (index < 0 || index >= end - start)
+                    throw new IndexOutOfBoundsException();
+
+                return peptide(peptideCodes[start + index]);
+            }
+
+            @Override public int size() {
+                return end - start;
+            }
+        };
     }
 
     /**
@@ -133,7 +694,7 @@ public final class TumorGenePeptideTable {
      * @return the number of entries in this table.
      */
     public int size() {
-        return table.size();
+        return groupStarts[groupStarts.length - 1];
     }
 
     /**
@@ -142,7 +703,7 @@ public final class TumorGenePeptideTable {
      * @return a read-only view of the tumor barcodes in this table.
      */
     public Set<TumorBarcode> viewBarcodes() {
-        return table.viewOuterKeys();
+        return new IdentifierSet<TumorBarcode>(barcodes, obj -> (obj instanceof TumorBarcode) && contains((TumorBarcode) obj));
     }
 
     /**
@@ -155,6 +716,19 @@ public final class TumorGenePeptideTable {
      * specfied barcode.
      */
     public Set<HugoSymbol> viewSymbols(TumorBarcode barcode) {
-        return table.viewInnerKeys(barcode);
+        int barcodePosition = barcodePosition(barcode);
+
+        if (barcodePosition < 0)
+            return Collections.emptySet();
+
+        int start = barcodeGroups[barcodePosition];
+        int end = barcodeGroups[barcodePosition + 1];
+
+        HugoSymbol[] paired = new HugoSymbol[end - start];
+
+        for (int group = start; group < end; ++group)
+            paired[group - start] = symbols[groupSymbols[group]];
+
+        return new IdentifierSet<HugoSymbol>(paired, obj -> (obj instanceof HugoSymbol) && contains(barcode, (HugoSymbol) obj));
     }
 }
@@ -10,22 +10,70 @@ import java.util.Set;
 import jam.lang.JamException;
 
 import jean.hla.Genotype;
+import jean.hla.GenotypeStore;
 import jean.hla.PatientGenotypeTable;
 
 /**
  * Maps tumor barcodes to the genotype of the sampled patient.
+ *
+ * <p>Tables merged from text files are stored in memory; tables
+ * loaded from a compiled {@link GenotypeStore} (with the tumor-patient
+ * join already computed) are memory-mapped and may be shared
+ * read-only across threads.
  */
 public final class TumorGenotypeTable {
+    // Exactly one of these is non-null...
     private final Map<TumorBarcode, Genotype> map;
+    private final GenotypeStore store;
 
     private TumorGenotypeTable(Map<TumorBarcode, Genotype> map) {
         this.map = map;
+        this.store = null;
+    }
+
+    private TumorGenotypeTable(GenotypeStore store) {
+        this.map = null;
+        this.store = store;
+    }
+
+    /**
+     * Creates a tumor-genotype table from a compiled genotype store.
+     *
+     * @param storeFile a genotype store compiled from a tumor-patient
+     * table and a patient-genotype table.
+     *
+     * @return a table mapping tumor barcodes to patient genotypes.
+     *
+     * @throws RuntimeException unless the file contains a valid
+     * compiled genotype store.
+     */
+    public static TumorGenotypeTable load(File storeFile) {
+        return new TumorGenotypeTable(GenotypeStore.map(storeFile));
+    }
+
+    /**
+     * Creates a tumor-genotype table from a compiled genotype store.
+     *
+     * @param storeFile a genotype store compiled from a tumor-patient
+     * table and a patient-genotype table.
+     *
+     * @return a table mapping tumor barcodes to patient genotypes.
+     *
+     * @throws RuntimeException unless the file contains a valid
+     * compiled genotype store.
+     */
+    public static TumorGenotypeTable load(String storeFile) {
+        return load(new File(storeFile));
     }
 
     /**
      * Creates a tumor-genotype table by loading and merging a
      * tumor-patient table and a patient-genotype table.
      *
+     * <p>Both files must be delimited text files; the joined tables
+     * are held in memory.  To map a compiled genotype store instead,
+     * use the single-file {@code load} methods.
+     *
      * @param tumorPatientFile the file containing the mapping from
      * tumor samples to patients.
      *
@@ -52,6 +100,10 @@ public final class TumorGenotypeTable {
      * Creates a tumor-genotype table by loading and merging a
      * tumor-patient table and a patient-genotype table.
      *
+     * <p>Both files must be delimited text files; the joined tables
+     * are held in memory.  To map a compiled genotype store instead,
+     * use the single-file {@code load} methods.
+     *
      * @param tumorPatientFile the file containing the mapping from
      * tumor samples to patients.
      *
@@ -106,7 +158,10 @@ public final class TumorGenotypeTable {
      * tumor sample.
      */
     public boolean contains(TumorBarcode barcode) {
-        return map.containsKey(barcode);
+        if (store != null)
+            return store.contains(barcode);
+        else
+            return map.containsKey(barcode);
     }
 
     /**
@@ -118,7 +173,10 @@ public final class TumorGenotypeTable {
      * the barcode is not in this table).
      */
     public Genotype lookup(TumorBarcode barcode) {
-        return map.get(barcode);
+        if (store != null)
+            return store.lookup(barcode);
+        else
+            return map.get(barcode);
     }
 
     /**
@@ -145,7 +203,10 @@ public final class TumorGenotypeTable {
      * @return the number of tumors in this table.
      */
     public int size() {
-        return map.size();
+        if (store != null)
+            return store.countTumors();
+        else
+            return map.size();
     }
 
     /**
@@ -155,6 +216,9 @@ public final class TumorGenotypeTable {
      * table.
      */
     public Set<TumorBarcode> viewBarcodes() {
-        return Collections.unmodifiableSet(map.keySet());
+        if (store != null)
+            return store.viewBarcodes();
+        else
+            return Collections.unmodifiableSet(map.keySet());
     }
 }
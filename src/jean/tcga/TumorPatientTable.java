@@ -2,6 +2,7 @@
 package jean.tcga;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -9,34 +10,88 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.google.common.collect.Multimap;
-import com.google.common.collect.TreeMultimap;
-
 import jam.app.JamLogger;
 import jam.app.JamProperties;
 import jam.io.TableReader;
 import jam.lang.JamException;
 import jam.util.MapUtil;
 
+import jean.app.LazyGlobal;
+
 /**
  * Maps tumor barcodes to the sampled patient in the cohort.
  *
  * <p>Tumor barcodes must be unique, but mulitple tumors may map
  * to the same patient.
  *
+ * <p>The table is stored in arrays indexed by the dense indexes of
+ * the (interned) barcodes and patient IDs, so every lookup is a
+ * single array access.
+ *
  * <p><b>File format.</b> The data file must contain a header line
  * (which is ignored) and every other line must contain the barcode
  * and patient key separated by a comma, tab, or pipe character.
  */
 public final class TumorPatientTable {
-    private final Map<TumorBarcode, PatientID> tumorMap;
-    private final Multimap<PatientID, TumorBarcode> patientMap;
+    // Indexed by TumorBarcode.index() and PatientID.index(), with null
+    // elements for identifiers that are not in this table; the tumors
+    // for each patient are sorted by barcode...
+    private final PatientID[] tumorPatients;
+    private final TumorBarcode[][] patientTumors;
+
+    // The barcodes and patients in this table in sorted order...
+    private final TumorBarcode[] barcodes;
+    private final PatientID[] patients;
+
+    private static final LazyGlobal<TumorPatientTable> global =
+        LazyGlobal.create("TumorPatientTable", TumorPatientTable::createGlobal);
+
+    private TumorPatientTable(Map<TumorBarcode, PatientID> tumorMap) {
+        this.barcodes = tumorMap.keySet().toArray(new TumorBarcode[0]);
+        this.patients = tumorMap.values().stream().distinct().toArray(PatientID[]::new);
+
+        Arrays.sort(barcodes);
+        Arrays.sort(patients);
+
+        this.tumorPatients = new PatientID[indexLimit(barcodes)];
+        this.patientTumors = new TumorBarcode[indexLimit(patients)][];
+
+        int[] tumorCounts = new int[patientTumors.length];
 
-    private static TumorPatientTable global = null;
+        for (TumorBarcode barcode : barcodes) {
+            PatientID patient = tumorMap.get(barcode);
 
-    private TumorPatientTable() {
-        this.tumorMap = new HashMap<TumorBarcode, PatientID>();
-        this.patientMap = TreeMultimap.create();
+            tumorPatients[barcode.index()] = patient;
+            ++tumorCounts[patient.index()];
+        }
+
+        for (PatientID patient : patients)
+            patientTumors[patient.index()] = new TumorBarcode[tumorCounts[patient.index()]];
+
+        int[] filled = new int[patientTumors.length];
+
+        for (TumorBarcode barcode : barcodes) {
+            int patientIndex = tumorPatients[barcode.index()].index();
+            patientTumors[patientIndex][filled[patientIndex]++] = barcode;
+        }
+    }
+
+    private static int indexLimit(TumorBarcode[] barcodes) {
+        int limit = 0;
+
+        for (TumorBarcode barcode : barcodes)
+            limit = Math.max(limit, barcode.index() + 1);
+
+        return limit;
+    }
+
+    private static int indexLimit(PatientID[] patients) {
+        int limit = 0;
+
+        for (PatientID patient : patients)
+            limit = Math.max(limit, patient.index() + 1);
+
+        return limit;
     }
 
     /**
@@ -55,10 +110,11 @@ public final class TumorPatientTable {
      * a file with a valid table.
      */
     public static TumorPatientTable global() {
-        if (global == null)
-            global = load(resolveFileName());
+        return global.get();
+    }
 
-        return global;
+    private static TumorPatientTable createGlobal() {
+        return load(resolveFileName());
     }
 
     private static String resolveFileName() {
@@ -76,11 +132,10 @@ public final class TumorPatientTable {
      * data table.
      */
     public static TumorPatientTable load(File file) {
-        TumorPatientTable table = new TumorPatientTable();
-
         TableReader reader = openReader(file);
-        table.load(reader);
+        TumorPatientTable table = new TumorPatientTable(load(reader));
 
+        JamLogger.info("TumorPatientTable: Loaded [%d] records.", table.size());
         return table;
     }
 
@@ -107,25 +162,26 @@ public final class TumorPatientTable {
         return reader;
     }
 
-    private void load(TableReader reader) {
+    private static Map<TumorBarcode, PatientID> load(TableReader reader) {
+        Map<TumorBarcode, PatientID> tumorMap = new HashMap<TumorBarcode, PatientID>();
+
         try {
             for (List<String> columns : reader)
-                parseColumns(columns);
+                parseColumns(tumorMap, columns);
         }
         finally {
             reader.close();
         }
 
-        JamLogger.info("TumorPatientTable: Loaded [%d] records.", size());
+        return tumorMap;
     }
 
-    private void parseColumns(List<String> columns) {
+    private static void parseColumns(Map<TumorBarcode, PatientID> tumorMap, List<String> columns) {
         assert columns.size() == 2;
 
         TumorBarcode barcode   = TumorBarcode.instance(columns.get(0));
         PatientID    patientID = PatientID.instance(columns.get(1));
 
-        patientMap.put(patientID, barcode);
         MapUtil.putUnique(tumorMap, barcode, patientID);
     }
 
@@ -138,7 +194,7 @@ public final class TumorPatientTable {
      * patient.
      */
     public boolean contains(PatientID patient) {
-        return patientMap.containsKey(patient);
+        return lookupTumors(patient) != null;
     }
 
     /**
@@ -150,7 +206,7 @@ public final class TumorPatientTable {
      * tumor.
      */
     public boolean contains(TumorBarcode barcode) {
-        return tumorMap.containsKey(barcode);
+        return lookup(barcode) != null;
     }
 
     /**
@@ -162,7 +218,21 @@ public final class TumorPatientTable {
      * empty collection if this table does not contain the patient).
      */
     public Collection<TumorBarcode> lookup(PatientID patient) {
-        return patientMap.get(patient);
+        TumorBarcode[] tumors = lookupTumors(patient);
+
+        if (tumors != null)
+            return Collections.unmodifiableList(Arrays.asList(tumors));
+        else
+            return Collections.emptyList();
+    }
+
+    private TumorBarcode[] lookupTumors(PatientID patient) {
+        int index = patient.index();
+
+        if (index < patientTumors.length)
+            return patientTumors[index];
+        else
+            return null;
     }
 
     /**
@@ -174,7 +244,12 @@ public final class TumorPatientTable {
      * ({@code null} if the barcode is not in this table).
      */
     public PatientID lookup(TumorBarcode barcode) {
-        return tumorMap.get(barcode);
+        int index = barcode.index();
+
+        if (index < tumorPatients.length)
+            return tumorPatients[index];
+        else
+            return null;
     }
 
     /**
@@ -202,26 +277,28 @@ public final class TumorPatientTable {
      * @return the number of tumors in this table.
      */
     public int size() {
-        return tumorMap.size();
+        return barcodes.length;
     }
 
     /**
-     * Returns a read-only view of the patients in this table.
+     * Returns a read-only view of the patients in this table (in
+     * sorted order).
      *
      * @return an unmodifiable set containing all patients in this
      * table.
      */
     public Set<PatientID> viewPatients() {
-        return Collections.unmodifiableSet(patientMap.keySet());
+        return new IdentifierSet<PatientID>(patients, obj -> (obj instanceof PatientID) && contains((PatientID) obj));
     }
 
     /**
-     * Returns a read-only view of the barcodes in this table.
+     * Returns a read-only view of the barcodes in this table (in
+     * sorted order).
      *
      * @return an unmodifiable set containing all barcodes in this
      * table.
      */
     public Set<TumorBarcode> viewBarcodes() {
-        return Collections.unmodifiableSet(tumorMap.keySet());
+        return new IdentifierSet<TumorBarcode>(barcodes, obj -> (obj instanceof TumorBarcode) && contains((TumorBarcode) obj));
     }
 }